@@ -0,0 +1,263 @@
+package org.xiph.vorbis.broadcast;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xiph.vorbis.encoder.EncodeFeed;
+import org.xiph.vorbis.ogg.OggPage;
+
+/**
+ * Fans one live Ogg Vorbis encode out to any number of {@link Subscriber}s. The encoder's output is written to the
+ * broadcaster as to any stream, by handing it to a {@link org.xiph.vorbis.helper.JavaSoundVorbisRecorder} or from
+ * {@link EncodeFeed#writeVorbisData}, and cut into pages. Each page is copied once into a buffer of its own, which from
+ * then on is only read, and queued for every subscriber as it is.
+ * <p>
+ * The header pages of the current stream are kept, so a listener can join at any time: it waits for the next page that
+ * starts with a whole packet and gets the headers followed by that page, a complete stream a decoder can start on. When
+ * the encoder chains a new stream the subscribers get its headers as they come and late joiners the new ones.
+ * <p>
+ * Each subscriber's queue is bounded; one that falls so far behind that its queue is full is evicted, so a slow listener
+ * neither holds up the others nor makes the broadcast buffer without bound. Closing the broadcaster ends the broadcast,
+ * the subscribers can still read what is queued.
+ */
+public class OggBroadcaster extends OutputStream {
+	private static final Logger LOG = LoggerFactory.getLogger(OggBroadcaster.class);
+
+	/**
+	 * The default queue of each subscriber, a few seconds at a low page latency
+	 */
+	public static final int DEFAULT_QUEUE_PAGES = 64;
+
+	/* the vorbis identification, comment and setup headers */
+	private static final int HEADER_PACKETS = 3;
+
+	private final int queuePages;
+	private final List<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+
+	/* the current page as it is written, only touched by the writing thread */
+	private final byte[] assembly = new byte[OggPage.MAX_LENGTH];
+	private int assembled;
+
+	/* the header pages of the current stream, and of the next while it starts */
+	private byte[][] headers = new byte[0][];
+	private final List<byte[]> nextHeaders = new ArrayList<byte[]>();
+	private int nextHeaderPackets = - 1;
+
+	private volatile boolean closed;
+	private volatile long pages;
+	private volatile long bytes;
+	private volatile long evictions;
+	private volatile int peakSubscribers;
+
+	public OggBroadcaster() {
+		this(DEFAULT_QUEUE_PAGES);
+	}
+
+	/**
+	 * @param queuePages how many pages a subscriber may fall behind before it is evicted, not counting the headers it joins
+	 *        with
+	 */
+	public OggBroadcaster(int queuePages) {
+		if (queuePages <= 0) {
+			throw new IllegalArgumentException("Queue must hold at least one page.");
+		}
+		this.queuePages = queuePages;
+	}
+
+	/**
+	 * Subscribes a listener that reads with {@link Subscriber#take} or polls
+	 *
+	 * @return the subscriber, joining at the next page
+	 */
+	public Subscriber subscribe() {
+		return subscribe(null);
+	}
+
+	/**
+	 * Subscribes a listener
+	 *
+	 * @param listener told when pages are queued and when the subscription ends, may be <code>null</code>
+	 * @return the subscriber, joining at the next page
+	 */
+	public Subscriber subscribe(SubscriberListener listener) {
+		Subscriber subscriber = new Subscriber(this, listener, queuePages);
+		subscribers.add(subscriber);
+		peakSubscribers = Math.max(peakSubscribers, subscribers.size());
+		// the broadcast may have ended in between, end the subscriber either way
+		if (closed) {
+			remove(subscriber);
+			subscriber.end(false);
+		}
+		return subscriber;
+	}
+
+	void remove(Subscriber subscriber) {
+		subscribers.remove(subscriber);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	/**
+	 * Takes the next bytes of the encoded stream and broadcasts every page they complete. Only one thread may write.
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Broadcast has ended");
+		}
+		while (len > 0) {
+			int count = Math.min(len, assembly.length - assembled);
+			System.arraycopy(b, off, assembly, assembled, count);
+			assembled += count;
+			off += count;
+			len -= count;
+			int length;
+			while ((length = pageLength()) > 0) {
+				publish(Arrays.copyOf(assembly, length));
+				assembled -= length;
+				System.arraycopy(assembly, length, assembly, 0, assembled);
+			}
+		}
+	}
+
+	/* the length of the page at the start of the assembly once it is complete, 0 until then */
+	private int pageLength() throws IOException {
+		if (assembled < OggPage.HEADER_LENGTH) {
+			return 0;
+		}
+		if (assembly[0] != 'O' || assembly[1] != 'g' || assembly[2] != 'g' || assembly[3] != 'S') {
+			throw new IOException("Broadcast is not an Ogg stream");
+		}
+		int segments = assembly[26] & 0xff;
+		int length = OggPage.HEADER_LENGTH + segments;
+		if (assembled < length) {
+			return 0;
+		}
+		for (int i = 0; i < segments; i++) {
+			length += assembly[OggPage.HEADER_LENGTH + i] & 0xff;
+		}
+		return assembled < length ? 0 : length;
+	}
+
+	private void publish(byte[] page) {
+		int headerType = page[5];
+		pages++;
+		bytes += page.length;
+
+		if ((headerType & OggPage.FLAG_BEGINNING_OF_STREAM) != 0) {
+			nextHeaders.clear();
+			nextHeaderPackets = 0;
+		}
+		boolean header = nextHeaderPackets >= 0;
+		if (header) {
+			nextHeaders.add(page);
+			nextHeaderPackets += packetsEnding(page);
+			if (nextHeaderPackets >= HEADER_PACKETS) {
+				headers = nextHeaders.toArray(new byte[nextHeaders.size()][]);
+				nextHeaderPackets = - 1;
+				LOG.debug("Cached {} header pages for late joiners", headers.length);
+			}
+		}
+		boolean joinable = !header && (headerType & OggPage.FLAG_CONTINUED) == 0 && headers.length > 0;
+
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.isJoining()) {
+				if (joinable) {
+					subscriber.join(headers, page);
+				}
+			} else if (!subscriber.offer(page)) {
+				evictions++;
+				remove(subscriber);
+				subscriber.end(true);
+				LOG.debug("Evicted a subscriber that fell {} pages behind", queuePages);
+			}
+		}
+	}
+
+	private static int packetsEnding(byte[] page) {
+		int segments = page[26] & 0xff;
+		int packets = 0;
+		for (int i = 0; i < segments; i++) {
+			if ((page[OggPage.HEADER_LENGTH + i] & 0xff) < 255) {
+				packets++;
+			}
+		}
+		return packets;
+	}
+
+	/**
+	 * Ends the broadcast. Subscribers can read what they have queued, then they are finished.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		for (Subscriber subscriber : subscribers) {
+			subscriber.end(false);
+		}
+		subscribers.clear();
+		if (assembled > 0) {
+			LOG.warn("Broadcast ended inside a page, {} bytes not sent", assembled);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public int getQueuePages() {
+		return queuePages;
+	}
+
+	/**
+	 * @return the number of subscribers, including those still waiting to join
+	 */
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	/**
+	 * @return the most subscribers there were at once
+	 */
+	public int getPeakSubscribers() {
+		return peakSubscribers;
+	}
+
+	/**
+	 * @return the number of pages broadcast
+	 */
+	public long getPages() {
+		return pages;
+	}
+
+	/**
+	 * @return the number of bytes broadcast, each page counted once however many subscribers it went to
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the number of subscribers evicted for falling behind
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public String toString() {
+		return "OggBroadcaster [subscribers=" + subscribers.size() + ", peakSubscribers=" + peakSubscribers + ", pages=" + pages
+		        + ", bytes=" + bytes + ", evictions=" + evictions + "]";
+	}
+}
@@ -0,0 +1,220 @@
+package org.xiph.vorbis.broadcast;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One listener of an {@link OggBroadcaster}. Its pages are queued up to the limit of the broadcaster, a subscriber that lets
+ * the queue fill up is evicted rather than holding up the broadcast or everyone else. The pages are shared by all
+ * subscribers, each is handed out as a read-only view.
+ * <p>
+ * A subscriber is fed by the broadcaster's writing thread and read by any one other thread.
+ */
+public final class Subscriber {
+	private static enum State {
+		/* waiting for a page to join at */
+		JOINING,
+		ACTIVE,
+		/* the broadcast ended, what is queued can still be read */
+		FINISHED,
+		EVICTED,
+		CLOSED
+	}
+
+	private final OggBroadcaster broadcaster;
+	private final SubscriberListener listener;
+	private final int queuePages;
+	private final ArrayDeque<byte[]> queue;
+	/* the headers joined with that are still at the head of the queue, they are not held against the limit */
+	private int headerPages;
+	private State state = State.JOINING;
+	private long pagesTaken;
+	private long bytesTaken;
+	private int highWaterPages;
+
+	Subscriber(OggBroadcaster broadcaster, SubscriberListener listener, int queuePages) {
+		this.broadcaster = broadcaster;
+		this.listener = listener;
+		this.queuePages = queuePages;
+		this.queue = new ArrayDeque<byte[]>(queuePages + 4);
+	}
+
+	synchronized boolean isJoining() {
+		return state == State.JOINING;
+	}
+
+	/**
+	 * Joins the broadcast with the cached headers and the page to start at, which do not count against the limit
+	 */
+	void join(byte[][] headers, byte[] page) {
+		synchronized (this) {
+			if (state != State.JOINING) {
+				return;
+			}
+			for (byte[] header : headers) {
+				queue.add(header);
+			}
+			headerPages = headers.length;
+			queue.add(page);
+			state = State.ACTIVE;
+			highWaterPages = Math.max(highWaterPages, queue.size());
+			notifyAll();
+		}
+		if (listener != null) {
+			listener.pagesQueued(this);
+		}
+	}
+
+	/**
+	 * Queues a page for an active subscriber
+	 *
+	 * @return <code>false</code> if the queue is full and the subscriber has to be evicted
+	 */
+	boolean offer(byte[] page) {
+		synchronized (this) {
+			if (state != State.ACTIVE) {
+				return true;
+			}
+			if (queue.size() - headerPages >= queuePages) {
+				return false;
+			}
+			queue.add(page);
+			highWaterPages = Math.max(highWaterPages, queue.size());
+			if (queue.size() > 1) {
+				// whoever drains the queue has been told already
+				return true;
+			}
+			notifyAll();
+		}
+		if (listener != null) {
+			listener.pagesQueued(this);
+		}
+		return true;
+	}
+
+	/**
+	 * Ends the subscription from the broadcaster's side
+	 */
+	void end(boolean evicted) {
+		synchronized (this) {
+			if (state == State.EVICTED || state == State.CLOSED || state == State.FINISHED) {
+				return;
+			}
+			if (evicted) {
+				state = State.EVICTED;
+				queue.clear();
+				headerPages = 0;
+			} else {
+				state = State.FINISHED;
+			}
+			notifyAll();
+		}
+		if (listener != null) {
+			listener.subscriptionEnded(this);
+		}
+	}
+
+	/**
+	 * @return the next page, <code>null</code> if none is queued
+	 */
+	public synchronized ByteBuffer poll() {
+		byte[] page = queue.poll();
+		if (page == null) {
+			return null;
+		}
+		if (headerPages > 0) {
+			headerPages--;
+		}
+		pagesTaken++;
+		bytesTaken += page.length;
+		return ByteBuffer.wrap(page).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Waits for the next page
+	 *
+	 * @param timeout how long to wait at most
+	 * @param unit the unit of the timeout
+	 * @return the next page, <code>null</code> if none came in time or none will come any more
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized ByteBuffer take(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (queue.isEmpty() && !isEnded()) {
+			long left = deadline - System.nanoTime();
+			if (left <= 0) {
+				return null;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, left);
+		}
+		return poll();
+	}
+
+	/**
+	 * Leaves the broadcast and drops whatever is queued
+	 */
+	public void close() {
+		synchronized (this) {
+			if (state == State.EVICTED || state == State.CLOSED) {
+				return;
+			}
+			state = State.CLOSED;
+			queue.clear();
+			headerPages = 0;
+			notifyAll();
+		}
+		broadcaster.remove(this);
+	}
+
+	private boolean isEnded() {
+		return state == State.FINISHED || state == State.EVICTED || state == State.CLOSED;
+	}
+
+	/**
+	 * @return whether no more pages will be queued, because the broadcast ended, the subscriber fell too far behind or
+	 *         was closed
+	 */
+	public synchronized boolean isFinished() {
+		return isEnded();
+	}
+
+	/**
+	 * @return whether the subscriber was dropped for falling too far behind
+	 */
+	public synchronized boolean isEvicted() {
+		return state == State.EVICTED;
+	}
+
+	/**
+	 * @return whether the subscriber is still waiting for a page to join the broadcast at
+	 */
+	public synchronized boolean isWaitingToJoin() {
+		return state == State.JOINING;
+	}
+
+	public synchronized int getQueuedPages() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the most pages that were queued at once
+	 */
+	public synchronized int getHighWaterPages() {
+		return highWaterPages;
+	}
+
+	public synchronized long getPagesTaken() {
+		return pagesTaken;
+	}
+
+	public synchronized long getBytesTaken() {
+		return bytesTaken;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Subscriber [state=" + state + ", queuedPages=" + queue.size() + ", highWaterPages=" + highWaterPages
+		        + ", pagesTaken=" + pagesTaken + ", bytesTaken=" + bytesTaken + "]";
+	}
+}
@@ -0,0 +1,23 @@
+package org.xiph.vorbis.broadcast;
+
+/**
+ * Hears about the pages of a {@link Subscriber}, for servers that write to many listeners from a few threads rather than
+ * blocking a thread per listener in {@link Subscriber#take}. Both methods are called from the thread writing to the
+ * {@link OggBroadcaster}, usually the encoder's, so they must not block: wake up a selector, schedule a write, and return.
+ */
+public interface SubscriberListener {
+	/**
+	 * Called when pages were queued for the subscriber, not necessarily once per page
+	 *
+	 * @param subscriber the subscriber to poll
+	 */
+	void pagesQueued(Subscriber subscriber);
+
+	/**
+	 * Called once the subscriber gets no more pages, because it was evicted or the broadcast ended. Pages already queued
+	 * can still be polled after the broadcast ended, not after an eviction.
+	 *
+	 * @param subscriber the subscriber
+	 */
+	void subscriptionEnded(Subscriber subscriber);
+}
@@ -0,0 +1,145 @@
+package org.xiph.vorbis.cache;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+import org.xiph.vorbis.decoder.PcmFormat;
+import org.xiph.vorbis.sampled.VorbisPcmInputStream;
+
+/**
+ * A fully decoded clip held outside the heap. It stays valid for as long as it is referenced, also after its
+ * {@link PcmCache} has evicted it, and may be read by any number of threads at once.
+ */
+public class CachedPcm {
+	private final ByteBuffer data;
+	private final PcmFormat pcmFormat;
+	private final int channels;
+	private final long sampleRate;
+
+	CachedPcm(ByteBuffer data, PcmFormat pcmFormat, int channels, long sampleRate) {
+		this.data = data.asReadOnlyBuffer();
+		this.pcmFormat = pcmFormat;
+		this.channels = channels;
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * @return a read only view of the interleaved little-endian frames, with a position of its own
+	 */
+	public ByteBuffer getData() {
+		return data.duplicate();
+	}
+
+	/**
+	 * @return the size in bytes
+	 */
+	public int getLength() {
+		return data.capacity();
+	}
+
+	public PcmFormat getPcmFormat() {
+		return pcmFormat;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public long getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return the length in sample frames
+	 */
+	public long getTotalSamples() {
+		return getLength() / (channels * pcmFormat.getBytesPerSample());
+	}
+
+	/**
+	 * @return the Java Sound description of the data
+	 */
+	public AudioFormat getFormat() {
+		return VorbisPcmInputStream.toAudioFormat(pcmFormat, sampleRate, channels);
+	}
+
+	/**
+	 * @return a stream over the data from the start, reading copies straight out of the off-heap memory
+	 */
+	public InputStream newInputStream() {
+		return new DataInputStream(getData());
+	}
+
+	/**
+	 * @return a stream over the data from the start, to play or convert through Java Sound
+	 */
+	public AudioInputStream newAudioInputStream() {
+		return new AudioInputStream(newInputStream(), getFormat(), getTotalSamples());
+	}
+
+	private static class DataInputStream extends InputStream {
+		private final ByteBuffer data;
+		private int mark;
+
+		private DataInputStream(ByteBuffer data) {
+			this.data = data;
+		}
+
+		@Override
+		public int read() {
+			return data.hasRemaining() ? data.get() & 0xff : - 1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (off < 0 || len < 0 || off + len > b.length) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (len == 0) {
+				return 0;
+			}
+			if (!data.hasRemaining()) {
+				return - 1;
+			}
+			int count = Math.min(len, data.remaining());
+			data.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			int count = (int) Math.max(0, Math.min(n, data.remaining()));
+			data.position(data.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return data.remaining();
+		}
+
+		@Override
+		public boolean markSupported() {
+			return true;
+		}
+
+		@Override
+		public synchronized void mark(int readlimit) {
+			mark = data.position();
+		}
+
+		@Override
+		public synchronized void reset() {
+			data.position(mark);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CachedPcm [pcmFormat=" + pcmFormat + ", channels=" + channels + ", sampleRate=" + sampleRate + ", length="
+		        + getLength() + "]";
+	}
+}
@@ -0,0 +1,16 @@
+package org.xiph.vorbis.cache;
+
+/**
+ * Which entry a {@link PcmCache} drops when it needs room
+ */
+public enum EvictionPolicy {
+	/**
+	 * The entry that has gone unused the longest
+	 */
+	LEAST_RECENTLY_USED,
+
+	/**
+	 * The entry used the fewest times since it was loaded, the least recently used of those on a tie
+	 */
+	LEAST_FREQUENTLY_USED
+}
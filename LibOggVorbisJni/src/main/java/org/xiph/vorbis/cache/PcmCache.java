@@ -0,0 +1,341 @@
+package org.xiph.vorbis.cache;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.xiph.vorbis.decoder.DecodeOptions;
+import org.xiph.vorbis.decoder.PcmFormat;
+import org.xiph.vorbis.decoder.VorbisPcmReader;
+
+/**
+ * Keeps decoded clips in direct buffers outside the heap, so replaying one costs a copy rather than a decode. Entries are
+ * keyed by the file, its size and modification time, and the output format, so a file that changes is decoded again. The
+ * cache holds up to a byte budget and evicts by {@link EvictionPolicy} to stay under it; a clip larger than the whole budget
+ * is decoded but not kept.
+ * <p>
+ * Concurrent requests for a clip that is not cached wait for a single decode. Evicted entries are only dropped from the
+ * cache, readers still holding one can carry on and the memory goes when the last of them lets go of it. The budget therefore
+ * bounds the buffers the cache holds, not the direct memory in use: evicted clips still referenced stay allocated until they
+ * are collected, <code>-XX:MaxDirectMemorySize</code> caps the whole.
+ */
+public class PcmCache {
+	private final long budget;
+	private final EvictionPolicy policy;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private final Map<Key, FutureTask<CachedPcm>> loading = new HashMap<Key, FutureTask<CachedPcm>>();
+	private long size;
+	private long hits;
+	private long misses;
+	private long loads;
+	private long evictions;
+
+	/**
+	 * @param budget the most bytes of pcm to keep
+	 * @param policy which entries to evict first
+	 */
+	public PcmCache(long budget, EvictionPolicy policy) {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("Budget must be positive.");
+		}
+		if (policy == null) {
+			throw new IllegalArgumentException("Eviction policy must not be null.");
+		}
+		this.budget = budget;
+		this.policy = policy;
+	}
+
+	/**
+	 * Looks up a file decoded to 16 bit pcm, decoding it on a miss
+	 *
+	 * @param file the vorbis file
+	 * @return the decoded clip
+	 * @throws IOException if the file cannot be decoded
+	 */
+	public CachedPcm get(File file) throws IOException {
+		return get(file, null);
+	}
+
+	/**
+	 * Looks up a decoded file, decoding it on a miss
+	 *
+	 * @param file the vorbis file
+	 * @param options the output format, <code>null</code> for 16 bit pcm, loudness is not measured
+	 * @return the decoded clip
+	 * @throws IOException if the file cannot be decoded
+	 */
+	public CachedPcm get(final File file, DecodeOptions options) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("File must not be null.");
+		}
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+		final DecodeOptions decodeOptions = options == null ? new DecodeOptions() : options;
+		final Key key = new Key(file, decodeOptions);
+		FutureTask<CachedPcm> task;
+		boolean loader = false;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				entry.uses++;
+				hits++;
+				return entry.pcm;
+			}
+			misses++;
+			task = loading.get(key);
+			if (task == null) {
+				task = new FutureTask<CachedPcm>(new Callable<CachedPcm>() {
+					@Override
+					public CachedPcm call() throws IOException {
+						return load(file, decodeOptions);
+					}
+				});
+				loading.put(key, task);
+				loader = true;
+			}
+		}
+		if (loader) {
+			// Decode outside the lock, anyone else missing on the same clip waits on the task instead
+			task.run();
+			synchronized (this) {
+				loads++;
+				// A load that invalidate or clear dropped while it ran may have decoded the old file, it is not kept
+				if (loading.get(key) == task) {
+					loading.remove(key);
+					try {
+						add(key, task.get());
+					} catch (Exception e) {
+						// Failed decodes are not cached, the waiting callers get the failure below
+					}
+				}
+			}
+		}
+		return result(task);
+	}
+
+	private static CachedPcm result(FutureTask<CachedPcm> task) throws IOException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					// The decode carries on regardless, so keep waiting for it
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw new IOException(e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/* decodes a clip, outside the lock */
+	CachedPcm load(File file, DecodeOptions options) throws IOException {
+		VorbisPcmReader reader = new VorbisPcmReader(file, options);
+		try {
+			long length = reader.getTotalSamples() * reader.getFrameLength();
+			if (length > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(file + " decodes to " + length + " bytes, too many for a single buffer.");
+			}
+			ByteBuffer data = ByteBuffer.allocateDirect((int) length).order(ByteOrder.LITTLE_ENDIAN);
+			while (data.remaining() >= reader.getFrameLength() && reader.read(data) > 0) {}
+			data.flip();
+			if (data.limit() < data.capacity()) {
+				// The stream ended early, a copy the right size keeps the budget honest
+				ByteBuffer copy = ByteBuffer.allocateDirect(data.limit()).order(ByteOrder.LITTLE_ENDIAN);
+				copy.put(data).flip();
+				data = copy;
+			}
+			return new CachedPcm(data, reader.getPcmFormat(), reader.getChannels(), reader.getSampleRate());
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void add(Key key, CachedPcm pcm) {
+		if (pcm.getLength() > budget) {
+			return;
+		}
+		while (size + pcm.getLength() > budget && !entries.isEmpty()) {
+			evict();
+		}
+		entries.put(key, new Entry(pcm));
+		size += pcm.getLength();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+		Map.Entry<Key, Entry> victim = iterator.next();
+		if (policy == EvictionPolicy.LEAST_FREQUENTLY_USED) {
+			// Iterating goes from least to most recently used, so ties go to the least recent
+			while (iterator.hasNext()) {
+				Map.Entry<Key, Entry> entry = iterator.next();
+				if (entry.getValue().uses < victim.getValue().uses) {
+					victim = entry;
+				}
+			}
+		}
+		entries.remove(victim.getKey());
+		size -= victim.getValue().pcm.getLength();
+		evictions++;
+	}
+
+	/**
+	 * Drops every cached decode of a file, in any format. Decodes of it still running are left to finish for whoever waits
+	 * on them but are not cached, the next lookup decodes the file again.
+	 *
+	 * @param file the file
+	 */
+	public synchronized void invalidate(File file) {
+		if (file == null) {
+			throw new IllegalArgumentException("File must not be null.");
+		}
+		String path = file.getAbsolutePath();
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Key, Entry> entry = iterator.next();
+			if (entry.getKey().path.equals(path)) {
+				size -= entry.getValue().pcm.getLength();
+				iterator.remove();
+			}
+		}
+		Iterator<Key> keys = loading.keySet().iterator();
+		while (keys.hasNext()) {
+			if (keys.next().path.equals(path)) {
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops all entries, decodes still running are not cached either, the metrics are kept
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		loading.clear();
+		size = 0;
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	public EvictionPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * @return the bytes of pcm held
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the lookups answered from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the lookups that had to decode, or wait for someone else's decode
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the decodes run, at most one per clip at a time however many missed on it
+	 */
+	public synchronized long getLoads() {
+		return loads;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "PcmCache [budget=" + budget + ", policy=" + policy + ", size=" + size + ", entries=" + entries.size() + ", hits="
+		        + hits + ", misses=" + misses + ", loads=" + loads + ", evictions=" + evictions + "]";
+	}
+
+	private static class Entry {
+		private final CachedPcm pcm;
+		private long uses = 1;
+
+		private Entry(CachedPcm pcm) {
+			this.pcm = pcm;
+		}
+	}
+
+	private static final class Key {
+		private final String path;
+		private final long length;
+		private final long lastModified;
+		private final PcmFormat pcmFormat;
+		private final boolean dither;
+		private final float gain;
+
+		private Key(File file, DecodeOptions options) {
+			this.path = file.getAbsolutePath();
+			this.length = file.length();
+			this.lastModified = file.lastModified();
+			this.pcmFormat = options.getPcmFormat();
+			this.dither = options.isDither();
+			this.gain = options.getGain();
+		}
+
+		@Override
+		public int hashCode() {
+			int result = path.hashCode();
+			result = 31 * result + (int) (length ^ (length >>> 32));
+			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			result = 31 * result + pcmFormat.hashCode();
+			result = 31 * result + (dither ? 1 : 0);
+			return 31 * result + Float.floatToIntBits(gain);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return path.equals(other.path) && length == other.length && lastModified == other.lastModified
+			        && pcmFormat == other.pcmFormat && dither == other.dither && Float.floatToIntBits(gain) == Float.floatToIntBits(other.gain);
+		}
+	}
+}
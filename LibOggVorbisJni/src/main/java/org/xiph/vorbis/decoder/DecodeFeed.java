@@ -40,6 +40,26 @@ public interface DecodeFeed {
 	 */
 	public static final int PREMATURE_END_OF_FILE = - 26;
 
+	/**
+	 * The output file could not be created or written
+	 */
+	public static final int ERROR_WRITING_OUTPUT_FILE = - 27;
+
+	/**
+	 * The stream could not be decoded or sought past the headers
+	 */
+	public static final int ERROR_DECODING = - 28;
+
+	/**
+	 * The stream was joined mid-way and the {@link VorbisHeaderCache} had no headers for it
+	 */
+	public static final int MISSING_HEADERS = - 29;
+
+	/**
+	 * A chained stream changed its channel count, the output file is complete up to the link that did
+	 */
+	public static final int CHAIN_LAYOUT_CHANGED = - 31;
+
 	/**
 	 * Triggered from the native {@link VorbisDecoder} that is requesting to read the next bit of vorbis data
 	 * 
@@ -0,0 +1,99 @@
+package org.xiph.vorbis.decoder;
+
+/**
+ * Options controlling how the native {@link VorbisDecoder} converts decoded audio before handing it to the {@link DecodeFeed}
+ */
+public class DecodeOptions {
+	private PcmFormat pcmFormat = PcmFormat.S16;
+	private boolean dither;
+	private float gain = 1f;
+	private boolean measureLoudness;
+	private VorbisHeaderCache headerCache;
+
+	public DecodeOptions() {}
+
+	public DecodeOptions(PcmFormat pcmFormat, boolean dither) {
+		setPcmFormat(pcmFormat);
+		this.dither = dither;
+	}
+
+	public PcmFormat getPcmFormat() {
+		return pcmFormat;
+	}
+
+	/**
+	 * @param pcmFormat the output sample format, anything other than {@link PcmFormat#S16} requires a
+	 *            {@link FormattedDecodeFeed}
+	 */
+	public void setPcmFormat(PcmFormat pcmFormat) {
+		if (pcmFormat == null) {
+			throw new IllegalArgumentException("Pcm format must not be null.");
+		}
+		this.pcmFormat = pcmFormat;
+	}
+
+	public boolean isDither() {
+		return dither;
+	}
+
+	/**
+	 * @param dither whether to add triangular (TPDF) dither when reducing to {@link PcmFormat#S16}, ignored for wider formats
+	 */
+	public void setDither(boolean dither) {
+		this.dither = dither;
+	}
+
+	public float getGain() {
+		return gain;
+	}
+
+	/**
+	 * @param gain the linear gain applied to every sample during the conversion, 1 leaves the audio untouched. Samples pushed
+	 *            past full scale are clipped and counted in {@link DecodeStatistics#getClippedSamples()}.
+	 */
+	public void setGain(float gain) {
+		if (gain < 0f || Float.isNaN(gain) || Float.isInfinite(gain)) {
+			throw new IllegalArgumentException("Gain must be a finite, non negative number.");
+		}
+		this.gain = gain;
+	}
+
+	/**
+	 * @param decibels the gain in dB to apply during the conversion, for instance {@link DecodeStatistics#getReplayGain()}
+	 */
+	public void setGainDecibels(double decibels) {
+		setGain((float) Math.pow(10, decibels / 20));
+	}
+
+	public boolean isMeasureLoudness() {
+		return measureLoudness;
+	}
+
+	/**
+	 * @param measureLoudness whether to measure the integrated loudness and peaks of the source while decoding, the result
+	 *            ends up in the {@link DecodeStatistics} and describes the audio before the gain is applied
+	 */
+	public void setMeasureLoudness(boolean measureLoudness) {
+		this.measureLoudness = measureLoudness;
+	}
+
+	public VorbisHeaderCache getHeaderCache() {
+		return headerCache;
+	}
+
+	/**
+	 * @param headerCache lets {@link VorbisDecoder#startDecoding(DecodeFeed, DecodeOptions, DecodeStatistics)} join a live
+	 *            stream mid-way: the feed may start anywhere, the decoder skips to the first whole page and takes the headers
+	 *            of its stream from the cache, or fails with {@link DecodeFeed#MISSING_HEADERS}. Streams read from their start
+	 *            add their headers to the cache. <code>null</code>, the default, expects the feed to start at the beginning.
+	 */
+	public void setHeaderCache(VorbisHeaderCache headerCache) {
+		this.headerCache = headerCache;
+	}
+
+	@Override
+	public String toString() {
+		return "DecodeOptions [pcmFormat=" + pcmFormat + ", dither=" + dither + ", gain=" + gain + ", measureLoudness="
+		        + measureLoudness + ", headerCache=" + headerCache + "]";
+	}
+}
@@ -0,0 +1,15 @@
+package org.xiph.vorbis.decoder;
+
+/**
+ * Receives coarse progress from native decodes that otherwise never call back into Java, roughly every percent of the input
+ */
+public interface DecodeProgressListener {
+	/**
+	 * Triggered from the native {@link VorbisDecoder} on the decoding thread. Throwing stops the decode, the partial output
+	 * is deleted and the exception is thrown on from {@link VorbisDecoder#decodeToFile}
+	 *
+	 * @param decodedSamples the sample frames decoded so far
+	 * @param totalSamples the sample frames in the whole input, <code>-1</code> when the input is not seekable
+	 */
+	public void onProgress(long decodedSamples, long totalSamples);
+}
@@ -0,0 +1,157 @@
+package org.xiph.vorbis.decoder;
+
+import java.io.Serializable;
+
+/**
+ * Counters filled in by the native {@link VorbisDecoder} once decoding has finished. The loudness figures are only
+ * measured when {@link DecodeOptions#setMeasureLoudness(boolean)} was set and are {@link Double#NaN} otherwise. How a
+ * live stream was joined and how long the first audio took are set as soon as they are known, while decoding goes on.
+ */
+public class DecodeStatistics implements Serializable {
+	/**
+	 * The ReplayGain 2.0 reference level in LUFS
+	 */
+	public static final double REPLAY_GAIN_REFERENCE = - 18;
+
+	private static final long serialVersionUID = 1L;
+	private long decodedSamples;
+	private long clippedSamples;
+	private double integratedLoudness = Double.NaN;
+	private double truePeak = Double.NaN;
+	private double samplePeak = Double.NaN;
+	private volatile boolean joined;
+	private volatile long joinSkippedBytes;
+	private volatile long joinGranulePosition = - 1;
+	private volatile long firstAudioNanos = - 1;
+	private long peakNativeBytes;
+
+	/**
+	 * @return the number of sample frames (one sample per channel) handed to the decode feed
+	 */
+	public long getDecodedSamples() {
+		return decodedSamples;
+	}
+
+	public void setDecodedSamples(long decodedSamples) {
+		this.decodedSamples = decodedSamples;
+	}
+
+	/**
+	 * @return the number of individual channel samples that were outside full scale and had to be clipped
+	 */
+	public long getClippedSamples() {
+		return clippedSamples;
+	}
+
+	public void setClippedSamples(long clippedSamples) {
+		this.clippedSamples = clippedSamples;
+	}
+
+	/**
+	 * @return the gated integrated loudness after ITU-R BS.1770 / EBU R128 in LUFS, negative infinity for silence
+	 */
+	public double getIntegratedLoudness() {
+		return integratedLoudness;
+	}
+
+	public void setIntegratedLoudness(double integratedLoudness) {
+		this.integratedLoudness = integratedLoudness;
+	}
+
+	/**
+	 * @return the highest inter-sample peak found by oversampling, in dBTP
+	 */
+	public double getTruePeak() {
+		return truePeak;
+	}
+
+	public void setTruePeak(double truePeak) {
+		this.truePeak = truePeak;
+	}
+
+	/**
+	 * @return the highest sample in dBFS
+	 */
+	public double getSamplePeak() {
+		return samplePeak;
+	}
+
+	public void setSamplePeak(double samplePeak) {
+		this.samplePeak = samplePeak;
+	}
+
+	/**
+	 * @return whether the decode joined a live stream mid-way with headers from the {@link VorbisHeaderCache}
+	 */
+	public boolean isJoined() {
+		return joined;
+	}
+
+	/**
+	 * @return the number of bytes skipped to reach the first whole page of a joined stream
+	 */
+	public long getJoinSkippedBytes() {
+		return joinSkippedBytes;
+	}
+
+	/**
+	 * @return the granule position of the page a stream was joined at, -1 if not joined or no packet ended on it
+	 */
+	public long getJoinGranulePosition() {
+		return joinGranulePosition;
+	}
+
+	/* set by the native decoder as it joins */
+	public void setJoined(long joinSkippedBytes, long joinGranulePosition) {
+		this.joinSkippedBytes = joinSkippedBytes;
+		this.joinGranulePosition = joinGranulePosition;
+		this.joined = true;
+	}
+
+	/**
+	 * @return the time from the start of decoding until the first audio was handed to the feed, in nanoseconds, -1 until
+	 *         then
+	 */
+	public long getFirstAudioNanos() {
+		return firstAudioNanos;
+	}
+
+	public void setFirstAudioNanos(long firstAudioNanos) {
+		this.firstAudioNanos = firstAudioNanos;
+	}
+
+	/**
+	 * @return the most native memory the decoder state took up at once, in bytes
+	 */
+	public long getPeakNativeBytes() {
+		return peakNativeBytes;
+	}
+
+	public void setPeakNativeBytes(long peakNativeBytes) {
+		this.peakNativeBytes = peakNativeBytes;
+	}
+
+	/**
+	 * @return the gain in dB that brings the audio to the ReplayGain 2.0 reference of -18 LUFS
+	 */
+	public double getReplayGain() {
+		return REPLAY_GAIN_REFERENCE - integratedLoudness;
+	}
+
+	/**
+	 * @param targetLoudness the loudness to normalise to in LUFS, for instance -23 for EBU R128 broadcast
+	 * @param maxTruePeak the highest true peak in dBTP the gain may push the audio to, for instance -1
+	 * @return the gain in dB reaching the target loudness, reduced where needed to keep the true peak below the limit
+	 */
+	public double getNormalizationGain(double targetLoudness, double maxTruePeak) {
+		return Math.min(targetLoudness - integratedLoudness, maxTruePeak - truePeak);
+	}
+
+	@Override
+	public String toString() {
+		return "DecodeStatistics [decodedSamples=" + decodedSamples + ", clippedSamples=" + clippedSamples + ", integratedLoudness="
+		        + integratedLoudness + ", truePeak=" + truePeak + ", samplePeak=" + samplePeak + ", joined=" + joined
+		        + ", joinSkippedBytes=" + joinSkippedBytes + ", firstAudioNanos=" + firstAudioNanos + ", peakNativeBytes="
+		        + peakNativeBytes + "]";
+	}
+}
@@ -0,0 +1,17 @@
+package org.xiph.vorbis.decoder;
+
+/**
+ * A {@link DecodeFeed} able to receive pcm data in any {@link PcmFormat}. Required when decoding with a format other than
+ * {@link PcmFormat#S16}.
+ */
+public interface FormattedDecodeFeed extends DecodeFeed {
+	/**
+	 * Triggered from the native {@link VorbisDecoder} that is requesting to write the next bit of interleaved pcm data in the
+	 * {@link PcmFormat} requested through {@link DecodeOptions}
+	 *
+	 * @param pcmData the raw pcm bytes in little-endian order
+	 * @param amountToRead the amount of bytes available to read in the buffer
+	 * @return <code>false</code> to stop the decoder
+	 */
+	public boolean writePCMData(byte[] pcmData, int amountToRead);
+}
@@ -0,0 +1,19 @@
+package org.xiph.vorbis.decoder;
+
+import java.io.IOException;
+
+import org.xiph.vorbis.remux.VorbisHeaders;
+
+/**
+ * Fetches the headers of a live stream that a {@link VorbisHeaderCache} does not know yet, for instance by reading the
+ * start of the stream from the server with {@link VorbisHeaders#read(java.io.InputStream, org.xiph.vorbis.ogg.OggPage)}.
+ * Called at most once per serial number at a time, from the decoding thread that needs the headers.
+ */
+public interface HeaderFetcher {
+	/**
+	 * @param serialNumber the serial number of the logical stream joined
+	 * @return its headers, <code>null</code> if they are not to be had
+	 * @throws IOException if fetching failed, a later join tries again
+	 */
+	VorbisHeaders fetch(int serialNumber) throws IOException;
+}
@@ -0,0 +1,54 @@
+package org.xiph.vorbis.decoder;
+
+/**
+ * The file layout written by {@link VorbisDecoder#decodeToFile(java.io.File, java.io.File, OutputFormat)}, a container plus
+ * the sample conversion options
+ */
+public class OutputFormat extends DecodeOptions {
+	/**
+	 * The file containers the native decoder can write. The ordinal of each constant is shared with the native code, do not
+	 * reorder.
+	 */
+	public enum Container {
+		/**
+		 * Headerless interleaved samples, exactly as {@link PcmFormat} describes them
+		 */
+		RAW,
+
+		/**
+		 * A RIFF WAVE file. {@link PcmFormat#S24_IN_32} samples are packed into three bytes, more than two channels are
+		 * written as <code>WAVE_FORMAT_EXTENSIBLE</code> in vorbis channel order.
+		 */
+		WAV
+	}
+
+	private Container container = Container.WAV;
+
+	public OutputFormat() {}
+
+	public OutputFormat(Container container) {
+		setContainer(container);
+	}
+
+	public OutputFormat(Container container, PcmFormat pcmFormat, boolean dither) {
+		super(pcmFormat, dither);
+		setContainer(container);
+	}
+
+	public Container getContainer() {
+		return container;
+	}
+
+	public void setContainer(Container container) {
+		if (container == null) {
+			throw new IllegalArgumentException("Container must not be null.");
+		}
+		this.container = container;
+	}
+
+	@Override
+	public String toString() {
+		return "OutputFormat [container=" + container + ", pcmFormat=" + getPcmFormat() + ", dither=" + isDither() + ", gain="
+		        + getGain() + ", measureLoudness=" + isMeasureLoudness() + "]";
+	}
+}
@@ -0,0 +1,50 @@
+package org.xiph.vorbis.decoder;
+
+/**
+ * The interleaved sample formats the native {@link VorbisDecoder} can convert decoded audio to. All multi-byte formats are
+ * written in little-endian (native) order. The ordinal of each constant is shared with the native conversion module, do not
+ * reorder.
+ */
+public enum PcmFormat {
+	/**
+	 * Signed 16 bit samples, delivered through {@link DecodeFeed#writePCMData(short[], int)}
+	 */
+	S16(2, 16),
+
+	/**
+	 * Signed 24 bit samples in the low three bytes of a sign extended 32 bit container
+	 */
+	S24_IN_32(4, 24),
+
+	/**
+	 * Signed 32 bit samples
+	 */
+	S32(4, 32),
+
+	/**
+	 * 32 bit IEEE float samples, nominally between -1.0 and 1.0. Values outside that range are passed through unclipped.
+	 */
+	F32(4, 32);
+
+	private final int bytesPerSample;
+	private final int validBits;
+
+	private PcmFormat(int bytesPerSample, int validBits) {
+		this.bytesPerSample = bytesPerSample;
+		this.validBits = validBits;
+	}
+
+	/**
+	 * @return the size of one sample of one channel in bytes
+	 */
+	public int getBytesPerSample() {
+		return bytesPerSample;
+	}
+
+	/**
+	 * @return the number of significant bits in each sample
+	 */
+	public int getValidBits() {
+		return validBits;
+	}
+}
@@ -0,0 +1,185 @@
+package org.xiph.vorbis.decoder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * A waveform peak pyramid written by {@link VorbisDecoder#generatePeaks(File, File, int[], DecodeStatistics)}. Each level
+ * holds, for every bin of a fixed number of sample frames and every channel, the minimum, maximum and rms value scaled so
+ * that full scale is 32767.
+ * <p>
+ * The file is little endian: the magic <code>VPKS</code>, u16 version, u16 channels, u32 sample rate, u64 total sample
+ * frames, u16 level count, u16 reserved, then per level u32 samples per bin and u64 bin count, then the peaks of each level in
+ * turn as s16 min, max, rms per channel per bin.
+ */
+public class PeakFile {
+	/**
+	 * The zoom levels used when none are given
+	 */
+	public static final int[] DEFAULT_SAMPLES_PER_BIN = { 256, 1024, 4096 };
+
+	/**
+	 * The most zoom levels a peak file can hold
+	 */
+	public static final int MAX_LEVELS = 16;
+
+	private static final int VERSION = 1;
+
+	private final int channels;
+	private final long sampleRate;
+	private final long totalSamples;
+	private final int[] samplesPerBin;
+	private final ShortBuffer[] peaks;
+
+	private PeakFile(int channels, long sampleRate, long totalSamples, int[] samplesPerBin, ShortBuffer[] peaks) {
+		this.channels = channels;
+		this.sampleRate = sampleRate;
+		this.totalSamples = totalSamples;
+		this.samplesPerBin = samplesPerBin;
+		this.peaks = peaks;
+	}
+
+	/**
+	 * Reads a whole peak file into memory
+	 *
+	 * @param file the peak file
+	 * @return the peaks
+	 * @throws IOException if the file cannot be read or is not a peak file
+	 */
+	public static PeakFile read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a peak file from a stream, the stream is not closed
+	 *
+	 * @param in the peak file contents
+	 * @return the peaks
+	 * @throws IOException if the stream cannot be read or is not a peak file
+	 */
+	public static PeakFile read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		ByteBuffer header = readFully(data, 24);
+		if (header.get() != 'V' || header.get() != 'P' || header.get() != 'K' || header.get() != 'S') {
+			throw new IOException("Not a peak file");
+		}
+		int version = header.getShort() & 0xffff;
+		if (version != VERSION) {
+			throw new IOException("Unsupported peak file version " + version);
+		}
+		int channels = header.getShort() & 0xffff;
+		long sampleRate = header.getInt() & 0xffffffffL;
+		long totalSamples = header.getLong();
+		int levels = header.getShort() & 0xffff;
+		if (levels < 1 || levels > MAX_LEVELS || channels < 1) {
+			throw new IOException("Corrupt peak file header");
+		}
+
+		ByteBuffer levelHeader = readFully(data, levels * 12);
+		int[] samplesPerBin = new int[levels];
+		long[] binCounts = new long[levels];
+		for (int i = 0; i < levels; i++) {
+			samplesPerBin[i] = levelHeader.getInt();
+			binCounts[i] = levelHeader.getLong();
+			if (binCounts[i] < 0 || binCounts[i] * channels * 3 * 2 > Integer.MAX_VALUE) {
+				throw new IOException("Peak level " + i + " is too large");
+			}
+		}
+
+		ShortBuffer[] peaks = new ShortBuffer[levels];
+		for (int i = 0; i < levels; i++) {
+			peaks[i] = readFully(data, (int) (binCounts[i] * channels * 3 * 2)).asShortBuffer();
+		}
+		return new PeakFile(channels, sampleRate, totalSamples, samplesPerBin, peaks);
+	}
+
+	private static ByteBuffer readFully(DataInputStream in, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	static void checkLevels(int[] samplesPerBin) {
+		if (samplesPerBin == null || samplesPerBin.length == 0 || samplesPerBin.length > MAX_LEVELS) {
+			throw new IllegalArgumentException("Between 1 and " + MAX_LEVELS + " peak levels are required.");
+		}
+		for (int i = 0; i < samplesPerBin.length; i++) {
+			if (samplesPerBin[i] < 1) {
+				throw new IllegalArgumentException("Samples per bin must be positive.");
+			}
+			if (i > 0 && samplesPerBin[i] % samplesPerBin[i - 1] != 0) {
+				throw new IllegalArgumentException("Samples per bin " + samplesPerBin[i] + " is not a multiple of the previous level "
+				        + samplesPerBin[i - 1] + ".");
+			}
+		}
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public long getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return the number of sample frames the peaks cover
+	 */
+	public long getTotalSamples() {
+		return totalSamples;
+	}
+
+	public int getLevelCount() {
+		return samplesPerBin.length;
+	}
+
+	public int getSamplesPerBin(int level) {
+		return samplesPerBin[level];
+	}
+
+	public int getBinCount(int level) {
+		return peaks[level].limit() / (channels * 3);
+	}
+
+	/**
+	 * @return the lowest sample of the bin, -32767 to 32767
+	 */
+	public short getMin(int level, int bin, int channel) {
+		return peaks[level].get((bin * channels + channel) * 3);
+	}
+
+	/**
+	 * @return the highest sample of the bin, -32767 to 32767
+	 */
+	public short getMax(int level, int bin, int channel) {
+		return peaks[level].get((bin * channels + channel) * 3 + 1);
+	}
+
+	/**
+	 * @return the root mean square of the bin, 0 to 32767
+	 */
+	public short getRms(int level, int bin, int channel) {
+		return peaks[level].get((bin * channels + channel) * 3 + 2);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder levels = new StringBuilder();
+		for (int i = 0; i < samplesPerBin.length; i++) {
+			levels.append(i == 0 ? "" : ", ").append(samplesPerBin[i]).append('x').append(getBinCount(i));
+		}
+		return "PeakFile [channels=" + channels + ", sampleRate=" + sampleRate + ", totalSamples=" + totalSamples + ", levels=["
+		        + levels + "]]";
+	}
+}
@@ -18,13 +18,132 @@ public class VorbisDecoder {
 
 	/**
 	 * Start decoding the data by way of a jni call
-	 * 
+	 *
 	 * @param decodeFeed the custom decode feed
 	 * @return the result code
 	 */
 	public static native int startDecoding(DecodeFeed decodeFeed);
-	
+
+	/**
+	 * Start decoding the data by way of a jni call
+	 *
+	 * @param decodeFeed the custom decode feed
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm
+	 * @param statistics filled in with the decode counters once finished, may be <code>null</code>
+	 * @return the result code
+	 */
+	public static int startDecoding(DecodeFeed decodeFeed, DecodeOptions options, DecodeStatistics statistics) {
+		options = checkOptions(decodeFeed, options);
+		return nativeStartDecoding(decodeFeed, options, statistics);
+	}
+
 	public static native int startDecodingFile(File file, DecodeFeed decodeFeed);
 
+	/**
+	 * Start decoding a file by way of a jni call, supports seeking through {@link DecodeFeed#seekToSeconds()}
+	 *
+	 * @param file the vorbis file to decode
+	 * @param decodeFeed the custom decode feed
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm
+	 * @param statistics filled in with the decode counters once finished, may be <code>null</code>
+	 * @return the result code
+	 */
+	public static int startDecodingFile(File file, DecodeFeed decodeFeed, DecodeOptions options, DecodeStatistics statistics) {
+		if (file == null) {
+			throw new IllegalArgumentException("File to decode must not be null.");
+		}
+		options = checkOptions(decodeFeed, options);
+		return nativeStartDecodingFile(file, decodeFeed, options, statistics);
+	}
+
 	public static native DecodeStreamInfo decodeFileMetadata(File file);
+
+	/**
+	 * Decodes a whole file to raw pcm or WAV entirely in native code, nothing crosses back into Java per chunk
+	 *
+	 * @param in the vorbis file to decode
+	 * @param out the file to write, replaced if it exists
+	 * @param format the container and sample format to write
+	 * @return the result code, one of the {@link DecodeFeed} constants, {@link DecodeFeed#CHAIN_LAYOUT_CHANGED} when the output
+	 *         stops short at a chained link it cannot describe
+	 */
+	public static int decodeToFile(File in, File out, OutputFormat format) {
+		return decodeToFile(in, out, format, null, null);
+	}
+
+	/**
+	 * Decodes a whole file to raw pcm or WAV entirely in native code, nothing crosses back into Java per chunk
+	 *
+	 * @param in the vorbis file to decode
+	 * @param out the file to write, replaced if it exists
+	 * @param format the container and sample format to write
+	 * @param listener notified of coarse progress, may be <code>null</code>
+	 * @param statistics filled in with the decode counters once finished, may be <code>null</code>
+	 * @return the result code, one of the {@link DecodeFeed} constants, {@link DecodeFeed#CHAIN_LAYOUT_CHANGED} when the output
+	 *         stops short at a chained link it cannot describe
+	 */
+	public static int decodeToFile(File in, File out, OutputFormat format, DecodeProgressListener listener,
+	        DecodeStatistics statistics) {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("Input and output files must not be null.");
+		}
+		if (format == null) {
+			throw new IllegalArgumentException("Output format must not be null.");
+		}
+		return nativeDecodeToFile(in.getAbsolutePath(), out.getAbsolutePath(), format.getContainer().ordinal(),
+		        format.getPcmFormat().ordinal(), format.isDither(), format.getGain(), format.isMeasureLoudness(), listener, statistics);
+	}
+
+	/**
+	 * Decodes a whole file natively and writes a {@link PeakFile} with min/max/rms waveform peaks at
+	 * {@link PeakFile#DEFAULT_SAMPLES_PER_BIN}, no pcm ever reaches Java
+	 *
+	 * @param in the vorbis file to analyse
+	 * @param peakFile the peak file to write, replaced if it exists
+	 * @return the result code, one of the {@link DecodeFeed} constants
+	 */
+	public static int generatePeaks(File in, File peakFile) {
+		return generatePeaks(in, peakFile, PeakFile.DEFAULT_SAMPLES_PER_BIN, null);
+	}
+
+	/**
+	 * Decodes a whole file natively and writes a {@link PeakFile} with min/max/rms waveform peaks, no pcm ever reaches
+	 * Java. Calls are independent of each other and may run on several threads at once.
+	 *
+	 * @param in the vorbis file to analyse
+	 * @param peakFile the peak file to write, replaced if it exists
+	 * @param samplesPerBin the zoom levels from finest to coarsest, each a multiple of the one before
+	 * @param statistics filled in with the decoded sample count once finished, may be <code>null</code>
+	 * @return the result code, one of the {@link DecodeFeed} constants
+	 */
+	public static int generatePeaks(File in, File peakFile, int[] samplesPerBin, DecodeStatistics statistics) {
+		if (in == null || peakFile == null) {
+			throw new IllegalArgumentException("Input and peak files must not be null.");
+		}
+		PeakFile.checkLevels(samplesPerBin);
+		return nativeGeneratePeaks(in.getAbsolutePath(), peakFile.getAbsolutePath(), samplesPerBin, statistics);
+	}
+
+	private static DecodeOptions checkOptions(DecodeFeed decodeFeed, DecodeOptions options) {
+		if (decodeFeed == null) {
+			throw new IllegalArgumentException("Decode feed must not be null.");
+		}
+		if (options == null) {
+			return new DecodeOptions();
+		}
+		if (options.getPcmFormat() != PcmFormat.S16 && ! (decodeFeed instanceof FormattedDecodeFeed)) {
+			throw new IllegalArgumentException("Pcm format " + options.getPcmFormat() + " requires a FormattedDecodeFeed");
+		}
+		return options;
+	}
+
+	private static native int nativeStartDecoding(DecodeFeed decodeFeed, DecodeOptions options, DecodeStatistics statistics);
+
+	private static native int nativeStartDecodingFile(File file, DecodeFeed decodeFeed, DecodeOptions options,
+	        DecodeStatistics statistics);
+
+	private static native int nativeDecodeToFile(String in, String out, int container, int pcmFormat, boolean dither, float gain,
+	        boolean measureLoudness, DecodeProgressListener listener, DecodeStatistics statistics);
+
+	private static native int nativeGeneratePeaks(String in, String peakFile, int[] samplesPerBin, DecodeStatistics statistics);
 }
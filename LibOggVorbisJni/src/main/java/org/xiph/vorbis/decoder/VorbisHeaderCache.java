@@ -0,0 +1,207 @@
+package org.xiph.vorbis.decoder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xiph.vorbis.remux.VorbisHeaders;
+
+/**
+ * The identification, comment and setup header packets of live streams by serial number, so a decoder can join a stream
+ * mid-way, see {@link DecodeOptions#setHeaderCache(VorbisHeaderCache)}. Headers are put in up front, fetched once per serial
+ * number by a {@link HeaderFetcher} the first time a listener joins, or learnt from any decode that started at the
+ * beginning of a stream. One cache is meant to be shared by all listeners and is safe to use from any thread.
+ */
+public class VorbisHeaderCache {
+	private static final Logger LOG = LoggerFactory.getLogger(VorbisHeaderCache.class);
+
+	/**
+	 * The default number of streams kept, the least recently joined are dropped beyond that
+	 */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final HeaderFetcher fetcher;
+	private final Map<Integer, FutureTask<byte[][]>> headers;
+	private volatile long hits;
+	private volatile long misses;
+	private volatile long fetches;
+
+	public VorbisHeaderCache() {
+		this(null, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param fetcher fetches the headers of streams not in the cache, <code>null</code> to only use what is put in or learnt
+	 * @param capacity the number of streams kept
+	 */
+	public VorbisHeaderCache(HeaderFetcher fetcher, final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive.");
+		}
+		this.fetcher = fetcher;
+		this.headers = new LinkedHashMap<Integer, FutureTask<byte[][]>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, FutureTask<byte[][]>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Adds the headers of a stream, replacing any the cache had for its serial number
+	 */
+	public void put(VorbisHeaders vorbisHeaders) {
+		put(vorbisHeaders.getSerialNumber(), vorbisHeaders.getIdentification(), vorbisHeaders.getComment(),
+		        vorbisHeaders.getSetup());
+	}
+
+	/**
+	 * Adds the header packets of a stream, replacing any the cache had for its serial number
+	 */
+	public void put(int serialNumber, byte[] identification, byte[] comment, byte[] setup) {
+		if (identification == null || comment == null || setup == null) {
+			throw new IllegalArgumentException("Header packets must not be null.");
+		}
+		FutureTask<byte[][]> known = done(new byte[][] { identification, comment, setup });
+		synchronized (headers) {
+			headers.put(serialNumber, known);
+		}
+	}
+
+	/**
+	 * Looks up the header packets of a stream, fetching them if the cache has a fetcher and does not know the stream yet.
+	 * Listeners joining the same stream at once wait for a single fetch.
+	 *
+	 * @param serialNumber the serial number of the logical stream
+	 * @return the identification, comment and setup packets, <code>null</code> if they are unknown
+	 */
+	public byte[][] get(final int serialNumber) {
+		FutureTask<byte[][]> entry;
+		boolean fetch = false;
+		synchronized (headers) {
+			entry = headers.get(serialNumber);
+			if (entry == null && fetcher != null) {
+				entry = new FutureTask<byte[][]>(new Callable<byte[][]>() {
+					@Override
+					public byte[][] call() throws Exception {
+						VorbisHeaders fetched = fetcher.fetch(serialNumber);
+						if (fetched != null && fetched.getSerialNumber() != serialNumber) {
+							LOG.warn("Fetched headers of stream {} for stream {}", fetched.getSerialNumber(), serialNumber);
+							return null;
+						}
+						return fetched == null ? null
+						        : new byte[][] { fetched.getIdentification(), fetched.getComment(), fetched.getSetup() };
+					}
+				});
+				headers.put(serialNumber, entry);
+				fetch = true;
+			}
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		if (fetch) {
+			fetches++;
+			entry.run();
+		}
+		byte[][] packets = null;
+		try {
+			packets = entry.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOG.warn("Failed to fetch the headers of stream " + serialNumber, e.getCause());
+		}
+		if (packets == null) {
+			// forget the failure so a later join fetches again
+			synchronized (headers) {
+				if (headers.get(serialNumber) == entry) {
+					headers.remove(serialNumber);
+				}
+			}
+			misses++;
+		} else if (!fetch) {
+			hits++;
+		}
+		return packets;
+	}
+
+	/**
+	 * @return whether the cache holds the headers of the stream, without fetching them
+	 */
+	public boolean contains(int serialNumber) {
+		FutureTask<byte[][]> entry;
+		synchronized (headers) {
+			entry = headers.get(serialNumber);
+		}
+		try {
+			return entry != null && entry.isDone() && entry.get() != null;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	public int size() {
+		synchronized (headers) {
+			return headers.size();
+		}
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that found no headers
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of times the fetcher was asked for headers
+	 */
+	public long getFetches() {
+		return fetches;
+	}
+
+	/* looked up by the native decoder when it joins a stream mid-way */
+	@SuppressWarnings("unused")
+	private byte[][] lookup(int serialNumber) {
+		return get(serialNumber);
+	}
+
+	/* handed the headers by the native decoder when it reads a stream from the start */
+	@SuppressWarnings("unused")
+	private void learn(int serialNumber, byte[] identification, byte[] comment, byte[] setup) {
+		if (!contains(serialNumber)) {
+			put(serialNumber, identification, comment, setup);
+		}
+	}
+
+	private static FutureTask<byte[][]> done(final byte[][] packets) {
+		FutureTask<byte[][]> task = new FutureTask<byte[][]>(new Callable<byte[][]>() {
+			@Override
+			public byte[][] call() {
+				return packets;
+			}
+		});
+		task.run();
+		return task;
+	}
+
+	@Override
+	public String toString() {
+		return "VorbisHeaderCache [size=" + size() + ", hits=" + hits + ", misses=" + misses + ", fetches=" + fetches + "]";
+	}
+}
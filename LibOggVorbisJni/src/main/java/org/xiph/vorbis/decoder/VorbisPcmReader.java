@@ -0,0 +1,267 @@
+package org.xiph.vorbis.decoder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.xiph.vorbis.helper.LoadNativeLibrary;
+
+/**
+ * Decodes a vorbis file or stream on demand: every {@link #read(ByteBuffer)} decodes just enough to fill the buffer with
+ * whole interleaved frames and returns, the native decoder state stays open in between for as long as the caller likes. A
+ * reader may be used from any thread but only by one at a time, {@link #close()} waits for a read in progress.
+ * <p>
+ * Streams are read from inside the native decoder a few kilobytes at a time, they cannot be sought and their length is
+ * unknown.
+ */
+public class VorbisPcmReader implements Closeable {
+	static {
+		LoadNativeLibrary.loadLibraryFiles();
+	}
+
+	private final PcmFormat pcmFormat;
+	private final int channels;
+	private final long sampleRate;
+	private final long totalSamples;
+	private final InputStream stream;
+	private long handle;
+
+	/**
+	 * Opens a file decoding to 16 bit pcm
+	 *
+	 * @param file the vorbis file to decode
+	 * @throws IOException if the file cannot be opened or is not vorbis
+	 */
+	public VorbisPcmReader(File file) throws IOException {
+		this(file, null);
+	}
+
+	/**
+	 * @param file the vorbis file to decode
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm, loudness is not measured
+	 * @throws IOException if the file cannot be opened or is not vorbis
+	 */
+	public VorbisPcmReader(File file, DecodeOptions options) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("File to decode must not be null.");
+		}
+		if (options == null) {
+			options = new DecodeOptions();
+		}
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+		long[] info = new long[3];
+		handle = nativeOpen(file.getAbsolutePath(), options.getPcmFormat().ordinal(), options.isDither(), options.getGain(), info);
+		if (handle == 0) {
+			throw new IOException(file + " is not an Ogg Vorbis file");
+		}
+		stream = null;
+		pcmFormat = options.getPcmFormat();
+		channels = (int) info[0];
+		sampleRate = info[1];
+		totalSamples = info[2];
+	}
+
+	/**
+	 * Opens a stream, positioned at the start of an Ogg Vorbis stream
+	 *
+	 * @param stream read as the decoder needs more data, closed with the reader
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm, loudness is not measured
+	 * @throws IOException if the stream cannot be read or is not vorbis
+	 */
+	public VorbisPcmReader(InputStream stream, DecodeOptions options) throws IOException {
+		if (stream == null) {
+			throw new IllegalArgumentException("Stream to decode must not be null.");
+		}
+		if (options == null) {
+			options = new DecodeOptions();
+		}
+		long[] info = new long[3];
+		handle = nativeOpenStream(stream, options.getPcmFormat().ordinal(), options.isDither(), options.getGain(), info);
+		if (handle == 0) {
+			throw new IOException("Not an Ogg Vorbis stream");
+		}
+		this.stream = stream;
+		pcmFormat = options.getPcmFormat();
+		channels = (int) info[0];
+		sampleRate = info[1];
+		totalSamples = info[2];
+	}
+
+	/**
+	 * Decodes into the buffer from its position up to its limit, advancing the position
+	 *
+	 * @param buffer a direct buffer, or one backed by an array, with room for at least one frame
+	 * @return the number of bytes decoded, always whole frames, -1 at the end of the stream
+	 * @throws IOException if the stream cannot be decoded
+	 */
+	public synchronized int read(ByteBuffer buffer) throws IOException {
+		checkOpen();
+		if (buffer.remaining() < getFrameLength()) {
+			throw new IllegalArgumentException("Buffer has no room for a " + getFrameLength() + " byte frame.");
+		}
+		int read;
+		if (buffer.isDirect()) {
+			read = result(nativeRead(handle, buffer, buffer.position(), buffer.remaining()));
+		} else if (buffer.hasArray()) {
+			read = result(nativeReadArray(handle, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+		} else {
+			throw new IllegalArgumentException("Buffer must be direct or writable and backed by an array.");
+		}
+		if (read > 0) {
+			buffer.position(buffer.position() + read);
+		}
+		return read;
+	}
+
+	/**
+	 * Decodes into part of an array in a single native call
+	 *
+	 * @param buffer the array to decode into
+	 * @param offset where to start in the array
+	 * @param length the room available, at least one frame
+	 * @return the number of bytes decoded, always whole frames, -1 at the end of the stream
+	 * @throws IOException if the stream cannot be decoded
+	 */
+	public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+		checkOpen();
+		if (offset < 0 || length < 0 || offset + length > buffer.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (length < getFrameLength()) {
+			throw new IllegalArgumentException("Buffer has no room for a " + getFrameLength() + " byte frame.");
+		}
+		return result(nativeReadArray(handle, buffer, offset, length));
+	}
+
+	private static int result(int read) throws IOException {
+		if (read < 0) {
+			throw new IOException("Decoding failed with " + read);
+		}
+		return read == 0 ? - 1 : read;
+	}
+
+	/**
+	 * @param sample the sample frame to continue decoding from
+	 * @throws IOException if the stream cannot be sought, it is positioned nowhere in particular if so
+	 */
+	public synchronized void seek(long sample) throws IOException {
+		checkOpen();
+		if (!isSeekable()) {
+			throw new IOException("Streams cannot be sought.");
+		}
+		if (sample < 0) {
+			throw new IllegalArgumentException("Sample must not be negative.");
+		}
+		int result = nativeSeek(handle, sample);
+		if (result != DecodeFeed.SUCCESS) {
+			throw new IOException("Seeking to " + sample + " failed with " + result);
+		}
+	}
+
+	/**
+	 * @return the sample frame the next read starts at
+	 */
+	public synchronized long getPosition() {
+		checkOpen();
+		return nativePosition(handle);
+	}
+
+	/**
+	 * @return the number of channel samples clipped so far
+	 */
+	public synchronized long getClippedSamples() {
+		checkOpen();
+		return nativeClippedSamples(handle);
+	}
+
+	/**
+	 * @return the native memory the decoder state takes up in bytes, see {@link org.xiph.vorbis.helper.NativeMemory} for the
+	 *         whole process
+	 */
+	public synchronized long getNativeBytes() {
+		checkOpen();
+		return nativeMemory(handle);
+	}
+
+	private void checkOpen() {
+		if (handle == 0) {
+			throw new IllegalStateException("Reader is closed.");
+		}
+	}
+
+	public synchronized boolean isOpen() {
+		return handle != 0;
+	}
+
+	/**
+	 * @return whether {@link #seek(long)} is possible, that is whether a file is being decoded
+	 */
+	public boolean isSeekable() {
+		return stream == null;
+	}
+
+	/**
+	 * Releases the native decoder and closes the stream if reading one, further calls are ignored
+	 *
+	 * @throws IOException if the stream cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (handle != 0) {
+			nativeClose(handle);
+			handle = 0;
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+	public PcmFormat getPcmFormat() {
+		return pcmFormat;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public long getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return the length of the stream in sample frames, -1 if it is unknown
+	 */
+	public long getTotalSamples() {
+		return totalSamples;
+	}
+
+	/**
+	 * @return the size of one interleaved frame in bytes
+	 */
+	public int getFrameLength() {
+		return channels * pcmFormat.getBytesPerSample();
+	}
+
+	private static native long nativeOpen(String path, int pcmFormat, boolean dither, float gain, long[] info);
+
+	private static native long nativeOpenStream(InputStream stream, int pcmFormat, boolean dither, float gain, long[] info);
+
+	private static native int nativeRead(long handle, ByteBuffer buffer, int offset, int length);
+
+	private static native int nativeReadArray(long handle, byte[] array, int offset, int length);
+
+	private static native int nativeSeek(long handle, long sample);
+
+	private static native long nativePosition(long handle);
+
+	private static native long nativeClippedSamples(long handle);
+
+	private static native long nativeMemory(long handle);
+
+	private static native void nativeClose(long handle);
+}
@@ -0,0 +1,143 @@
+package org.xiph.vorbis.encoder;
+
+/**
+ * Changes the bitrate of a managed encoding while it runs, for a live stream that has to lower its bitrate when the output
+ * backs up rather than buffer without bound, and raise it again once the output drains. Attached through
+ * {@link EncoderSettings#setBitrateControl(BitrateControl)}, it is polled by the native {@link VorbisEncoder} each time it
+ * reads pcm and a new request applies from the next block analysed. Adjustments may be made from any thread.
+ * <p>
+ * Only encodings started in managed mode can be adjusted, quality mode requests are rejected. A request stays in force for
+ * every encoding started with the control until the next one or {@link #reset()}, so a recorder that starts a new stream
+ * per segment carries on at the adjusted bitrate. The encoder picks the packets of each block out of a range around the
+ * bitrate it was set up with, so an average far from that one is only approached, while a maximum is always kept, if need
+ * be by truncating packets. The headers keep announcing the bitrates the stream was set up with.
+ */
+public class BitrateControl {
+	/* the kinds of request, as the native encoder reads them */
+	private static final long RESET = 0;
+	private static final long SCALE = 1;
+	private static final long EXACT = 2;
+
+	private long kind = RESET;
+	private long minBitrate = - 1;
+	private long bitrate = - 1;
+	private long maxBitrate = - 1;
+	private volatile int generation;
+
+	private volatile long appliedMinBitrate = - 1;
+	private volatile long appliedBitrate = - 1;
+	private volatile long appliedMaxBitrate = - 1;
+	private volatile int adjustments;
+	private volatile int rejectedAdjustments;
+
+	public BitrateControl() {}
+
+	/**
+	 * Moves the average and both limits by the same factor, so a hard CBR stream stays hard CBR at the new bitrate and an
+	 * average only stream stays unlimited
+	 *
+	 * @param bitrate the new average in bits per second, or the new middle of the limits when there is no average
+	 */
+	public synchronized void adjustBitrate(long bitrate) {
+		if (bitrate <= 0) {
+			throw new IllegalArgumentException("Bitrate must be positive.");
+		}
+		request(SCALE, - 1, bitrate, - 1);
+	}
+
+	/**
+	 * Replaces the limits and average
+	 *
+	 * @param minBitrate the lower limit in bits per second, <code>-1</code> for none
+	 * @param bitrate the average in bits per second, <code>-1</code> for none
+	 * @param maxBitrate the upper limit in bits per second, <code>-1</code> for none
+	 */
+	public synchronized void adjustBitrate(long minBitrate, long bitrate, long maxBitrate) {
+		EncoderSettings.checkManagedBitrate(minBitrate, bitrate, maxBitrate);
+		request(EXACT, minBitrate, bitrate, maxBitrate);
+	}
+
+	/**
+	 * Goes back to the bitrates the encoding was set up with
+	 */
+	public synchronized void reset() {
+		request(RESET, - 1, - 1, - 1);
+	}
+
+	private void request(long kind, long minBitrate, long bitrate, long maxBitrate) {
+		this.kind = kind;
+		this.minBitrate = minBitrate;
+		this.bitrate = bitrate;
+		this.maxBitrate = maxBitrate;
+		generation++;
+	}
+
+	/**
+	 * @return the average the encoder last applied in bits per second, <code>-1</code> if there is none or nothing was
+	 *         applied yet
+	 */
+	public long getBitrate() {
+		return appliedBitrate;
+	}
+
+	/**
+	 * @return the lower limit the encoder last applied, <code>-1</code> if there is none
+	 */
+	public long getMinBitrate() {
+		return appliedMinBitrate;
+	}
+
+	/**
+	 * @return the upper limit the encoder last applied, <code>-1</code> if there is none
+	 */
+	public long getMaxBitrate() {
+		return appliedMaxBitrate;
+	}
+
+	/**
+	 * @return the number of times the encoder took up the bitrates, once as each managed encoding starts and once for each
+	 *         request while it runs
+	 */
+	public int getAdjustments() {
+		return adjustments;
+	}
+
+	/**
+	 * @return the number of requests the encoder could not apply, because it was not started in managed mode
+	 */
+	public int getRejectedAdjustments() {
+		return rejectedAdjustments;
+	}
+
+	/* polled by the native encoder, which only fetches the request once this changed */
+	@SuppressWarnings("unused")
+	private int getGeneration() {
+		return generation;
+	}
+
+	/* the current request as generation, kind, minimum, average and maximum */
+	@SuppressWarnings("unused")
+	private synchronized long[] getRequest() {
+		return new long[] { generation, kind, minBitrate, bitrate, maxBitrate };
+	}
+
+	/* called by the native encoder once it took up a request, and as each managed encoding starts, with the bitrates now
+	   in force, 0 where there is none */
+	@SuppressWarnings("unused")
+	private void bitrateApplied(boolean accepted, long minBitrate, long bitrate, long maxBitrate) {
+		if (!accepted) {
+			rejectedAdjustments++;
+			return;
+		}
+		appliedMinBitrate = minBitrate > 0 ? minBitrate : - 1;
+		appliedBitrate = bitrate > 0 ? bitrate : - 1;
+		appliedMaxBitrate = maxBitrate > 0 ? maxBitrate : - 1;
+		adjustments++;
+	}
+
+	@Override
+	public String toString() {
+		return "BitrateControl [minBitrate=" + appliedMinBitrate + ", bitrate=" + appliedBitrate + ", maxBitrate="
+		        + appliedMaxBitrate + ", adjustments=" + adjustments + ", rejectedAdjustments=" + rejectedAdjustments + "]";
+	}
+}
@@ -18,6 +18,21 @@ public interface EncodeFeed {
      */
     public static final int ERROR_INITIALIZING = -44;
 
+    /**
+     * If the input file could not be opened or read
+     */
+    public static final int ERROR_READING_INPUT_FILE = -45;
+
+    /**
+     * If the input file is not a WAV layout the encoder can read
+     */
+    public static final int UNSUPPORTED_INPUT_FORMAT = -46;
+
+    /**
+     * If the output file could not be created or written
+     */
+    public static final int ERROR_WRITING_OUTPUT_FILE = -47;
+
     /**
      * Triggered by the native {@link VorbisEncoder} when it needs to read raw pcm data
      *
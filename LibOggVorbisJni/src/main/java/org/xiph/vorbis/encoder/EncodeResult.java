@@ -0,0 +1,107 @@
+package org.xiph.vorbis.encoder;
+
+import java.io.Serializable;
+
+/**
+ * Summary of a {@link VorbisEncoder#encodeFile(java.io.File, java.io.File, EncoderSettings)} run
+ */
+public class EncodeResult implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private int resultCode;
+	private long sampleRate;
+	private int channels;
+	private long samples;
+	private long bytes;
+	private long wallTimeNanos;
+	private long peakNativeBytes;
+
+	/**
+	 * @return {@link EncodeFeed#SUCCESS} or one of the {@link EncodeFeed} error codes
+	 */
+	public int getResultCode() {
+		return resultCode;
+	}
+
+	public void setResultCode(int resultCode) {
+		this.resultCode = resultCode;
+	}
+
+	public long getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(long sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	public void setChannels(int channels) {
+		this.channels = channels;
+	}
+
+	/**
+	 * @return the number of sample frames (one sample per channel) encoded
+	 */
+	public long getSamples() {
+		return samples;
+	}
+
+	public void setSamples(long samples) {
+		this.samples = samples;
+	}
+
+	/**
+	 * @return the size of the written ogg file in bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+	public long getWallTimeNanos() {
+		return wallTimeNanos;
+	}
+
+	public void setWallTimeNanos(long wallTimeNanos) {
+		this.wallTimeNanos = wallTimeNanos;
+	}
+
+	/**
+	 * @return the most native memory the encoder state took up at once, in bytes
+	 */
+	public long getPeakNativeBytes() {
+		return peakNativeBytes;
+	}
+
+	public void setPeakNativeBytes(long peakNativeBytes) {
+		this.peakNativeBytes = peakNativeBytes;
+	}
+
+	/**
+	 * @return the duration of the encoded audio in seconds
+	 */
+	public double getDurationSeconds() {
+		return sampleRate > 0 ? (double) samples / sampleRate : 0;
+	}
+
+	/**
+	 * @return the average bitrate of the output in bits per second, including the ogg framing
+	 */
+	public long getAverageBitrate() {
+		double duration = getDurationSeconds();
+		return duration > 0 ? (long) (bytes * 8 / duration) : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "EncodeResult [resultCode=" + resultCode + ", sampleRate=" + sampleRate + ", channels=" + channels + ", samples="
+		        + samples + ", bytes=" + bytes + ", averageBitrate=" + getAverageBitrate() + ", wallTimeMillis="
+		        + wallTimeNanos / 1000000 + ", peakNativeBytes=" + peakNativeBytes + "]";
+	}
+}
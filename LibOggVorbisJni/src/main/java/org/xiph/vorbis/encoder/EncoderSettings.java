@@ -0,0 +1,326 @@
+package org.xiph.vorbis.encoder;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.xiph.vorbis.remux.VorbisComments;
+
+/**
+ * Settings for the native {@link VorbisEncoder}. Encodes either in VBR quality mode or, once a bitrate is set, managed:
+ * at an average bitrate, within limits, or both, which with both limits at the average is CBR. The sample rate and
+ * channels only describe raw pcm input, WAV input carries its own. The comments end up in the comment header, by
+ * default just <code>ENCODER=JNIVorbisEncoder</code>.
+ */
+public class EncoderSettings {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private long sampleRate = 44100;
+	private int channels = 2;
+	private float quality = 0.4f;
+	private long bitrate = -1;
+	private long minBitrate = -1;
+	private long maxBitrate = -1;
+	private long reservoirBits = -1;
+	private double reservoirBias = -1;
+	private BitrateControl bitrateControl;
+	private EncoderSpeed speed = EncoderSpeed.BEST;
+	private long maxLatencyMillis;
+	private final Map<String, String> comments = new LinkedHashMap<String, String>();
+
+	{
+		comments.put("ENCODER", "JNIVorbisEncoder");
+	}
+
+	public EncoderSettings() {}
+
+	public long getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @param sampleRate the sample rate of raw pcm input
+	 */
+	public void setSampleRate(long sampleRate) {
+		if (sampleRate <= 0) {
+			throw new IllegalArgumentException("Sample rate must be positive.");
+		}
+		this.sampleRate = sampleRate;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @param channels the number of interleaved channels of raw pcm input
+	 */
+	public void setChannels(int channels) {
+		if (channels < 1 || channels > 255) {
+			throw new IllegalArgumentException("Channels must be between 1 and 255.");
+		}
+		this.channels = channels;
+	}
+
+	public float getQuality() {
+		return quality;
+	}
+
+	/**
+	 * Switches to VBR quality mode
+	 *
+	 * @param quality from -0.1 (smallest) to 1.0 (best)
+	 */
+	public void setQuality(float quality) {
+		if (quality < -0.1f || quality > 1.0f) {
+			throw new IllegalArgumentException("Quality must be between -0.1 and 1.0.");
+		}
+		this.quality = quality;
+		this.bitrate = -1;
+		this.minBitrate = -1;
+		this.maxBitrate = -1;
+	}
+
+	/**
+	 * @return whether encoding is managed rather than in VBR quality mode
+	 */
+	public boolean isManaged() {
+		return bitrate > 0 || minBitrate > 0 || maxBitrate > 0;
+	}
+
+	/**
+	 * @return the average bitrate in bits per second, <code>-1</code> if there is none
+	 */
+	public long getBitrate() {
+		return bitrate;
+	}
+
+	/**
+	 * Switches to managed mode at the given average bitrate, without limits
+	 *
+	 * @param bitrate the average bitrate in bits per second
+	 */
+	public void setBitrate(long bitrate) {
+		if (bitrate <= 0) {
+			throw new IllegalArgumentException("Bitrate must be positive.");
+		}
+		this.bitrate = bitrate;
+		this.minBitrate = -1;
+		this.maxBitrate = -1;
+	}
+
+	/**
+	 * @return the lower bitrate limit in bits per second, <code>-1</code> if there is none
+	 */
+	public long getMinBitrate() {
+		return minBitrate;
+	}
+
+	/**
+	 * @return the upper bitrate limit in bits per second, <code>-1</code> if there is none
+	 */
+	public long getMaxBitrate() {
+		return maxBitrate;
+	}
+
+	/**
+	 * Switches to managed mode with any of a lower limit, an average and an upper limit. The limits hold over the length of
+	 * the reservoir, the average is what the encoder steers towards; with only limits it encodes at the quality in between.
+	 *
+	 * @param minBitrate the lower limit in bits per second, <code>-1</code> for none
+	 * @param bitrate the average in bits per second, <code>-1</code> for none
+	 * @param maxBitrate the upper limit in bits per second, <code>-1</code> for none
+	 */
+	public void setManagedBitrate(long minBitrate, long bitrate, long maxBitrate) {
+		checkManagedBitrate(minBitrate, bitrate, maxBitrate);
+		this.minBitrate = minBitrate > 0 ? minBitrate : -1;
+		this.bitrate = bitrate > 0 ? bitrate : -1;
+		this.maxBitrate = maxBitrate > 0 ? maxBitrate : -1;
+	}
+
+	/**
+	 * Switches to CBR, managed with both limits at the average. Soft CBR keeps the default reservoir of two seconds, over
+	 * which the limits are held. Hard CBR shrinks the reservoir to an eighth of a second, so even short stretches stay at the
+	 * bitrate, for channels that cannot absorb a burst.
+	 *
+	 * @param bitrate the bitrate in bits per second
+	 * @param hard whether to hold the bitrate over short stretches too
+	 */
+	public void setConstantBitrate(long bitrate, boolean hard) {
+		if (bitrate <= 0) {
+			throw new IllegalArgumentException("Bitrate must be positive.");
+		}
+		this.minBitrate = bitrate;
+		this.bitrate = bitrate;
+		this.maxBitrate = bitrate;
+		this.reservoirBits = hard ? bitrate / 8 : -1;
+		this.reservoirBias = -1;
+	}
+
+	static void checkManagedBitrate(long minBitrate, long bitrate, long maxBitrate) {
+		if (minBitrate <= 0 && bitrate <= 0 && maxBitrate <= 0) {
+			throw new IllegalArgumentException("At least one of the bitrates must be positive.");
+		}
+		if (minBitrate > 0 && bitrate > 0 && minBitrate > bitrate) {
+			throw new IllegalArgumentException("Minimum bitrate must not be above the average.");
+		}
+		if (maxBitrate > 0 && bitrate > 0 && maxBitrate < bitrate) {
+			throw new IllegalArgumentException("Maximum bitrate must not be below the average.");
+		}
+		if (minBitrate > 0 && maxBitrate > 0 && minBitrate > maxBitrate) {
+			throw new IllegalArgumentException("Minimum bitrate must not be above the maximum.");
+		}
+	}
+
+	/**
+	 * @return the reservoir in bits, <code>-1</code> for the libvorbis default of two seconds at the average
+	 */
+	public long getReservoirBits() {
+		return reservoirBits;
+	}
+
+	/**
+	 * Sets how far managed encoding may stray from its limits and average before it is pulled back. A larger reservoir
+	 * lets the bitrate follow the audio longer, a smaller one holds it closer at the cost of quality.
+	 *
+	 * @param reservoirBits the reservoir in bits, <code>-1</code> for the libvorbis default
+	 */
+	public void setReservoirBits(long reservoirBits) {
+		if (reservoirBits < -1) {
+			throw new IllegalArgumentException("Reservoir must not be negative.");
+		}
+		this.reservoirBits = reservoirBits;
+	}
+
+	/**
+	 * @return the reservoir bias, <code>-1</code> for the libvorbis default of 0.1
+	 */
+	public double getReservoirBias() {
+		return reservoirBias;
+	}
+
+	/**
+	 * Sets how the reservoir is kept: near 0 it hoards bits in quiet passages to spend on loud ones, near 1 it spends them
+	 * as they come and leaves less for bursts.
+	 *
+	 * @param reservoirBias the bias between 0 and 1, <code>-1</code> for the libvorbis default
+	 */
+	public void setReservoirBias(double reservoirBias) {
+		if (reservoirBias != -1 && (reservoirBias < 0 || reservoirBias > 1)) {
+			throw new IllegalArgumentException("Reservoir bias must be between 0 and 1.");
+		}
+		this.reservoirBias = reservoirBias;
+	}
+
+	public BitrateControl getBitrateControl() {
+		return bitrateControl;
+	}
+
+	/**
+	 * Attaches a control to change the bitrate of a managed {@link EncodeFeed} encoding while it runs. Files encoded by
+	 * {@link VorbisEncoder#encodeFile} are not adjusted.
+	 *
+	 * @param bitrateControl the control, may be shared by successive encodings, <code>null</code> for none
+	 */
+	public void setBitrateControl(BitrateControl bitrateControl) {
+		this.bitrateControl = bitrateControl;
+	}
+
+	public EncoderSpeed getSpeed() {
+		return speed;
+	}
+
+	public void setSpeed(EncoderSpeed speed) {
+		if (speed == null) {
+			throw new IllegalArgumentException("Encoder speed must not be null.");
+		}
+		this.speed = speed;
+	}
+
+	public long getMaxLatencyMillis() {
+		return maxLatencyMillis;
+	}
+
+	/**
+	 * Bounds how much audio an {@link EncodeFeed} waits for before it is written. Pages are normally only written once they
+	 * are full, which at low bitrates holds seconds of audio; with a maximum latency a page is flushed as soon as it spans that
+	 * much, at a cost of around 30 bytes of page header per flush. The encoder itself still looks ahead a block or two. Files
+	 * encoded by {@link VorbisEncoder#encodeFile} always get full pages.
+	 *
+	 * @param maxLatencyMillis the most audio a page holds in milliseconds, <code>0</code> for full pages only
+	 */
+	public void setMaxLatencyMillis(long maxLatencyMillis) {
+		if (maxLatencyMillis < 0) {
+			throw new IllegalArgumentException("Maximum latency must not be negative.");
+		}
+		this.maxLatencyMillis = maxLatencyMillis;
+	}
+
+	/**
+	 * @return the comments in the order they are written, keys upper case
+	 */
+	public Map<String, String> getComments() {
+		return Collections.unmodifiableMap(comments);
+	}
+
+	/**
+	 * Replaces all comments, including the default encoder tag
+	 *
+	 * @param comments the comment keys and values, written in iteration order
+	 */
+	public void setComments(Map<String, String> comments) {
+		if (comments == null) {
+			throw new IllegalArgumentException("Comments must not be null.");
+		}
+		Map<String, String> checked = new LinkedHashMap<String, String>();
+		for (Map.Entry<String, String> entry : comments.entrySet()) {
+			if (entry.getValue() == null) {
+				throw new IllegalArgumentException("Comment value must not be null.");
+			}
+			checked.put(checkKey(entry.getKey()), entry.getValue());
+		}
+		this.comments.clear();
+		this.comments.putAll(checked);
+	}
+
+	/**
+	 * @param key the comment key, stored upper case
+	 * @param value the value, <code>null</code> removes the key
+	 */
+	public void setComment(String key, String value) {
+		key = checkKey(key);
+		if (value == null) {
+			comments.remove(key);
+		} else {
+			comments.put(key, value);
+		}
+	}
+
+	private static String checkKey(String key) {
+		if (!VorbisComments.isValidKey(key)) {
+			throw new IllegalArgumentException("Invalid comment key \"" + key + "\".");
+		}
+		return key.toUpperCase(Locale.ROOT);
+	}
+
+	/* the comments as utf-8 KEY=value entries, read by the native encoder */
+	@SuppressWarnings("unused")
+	private byte[][] getCommentEntries() {
+		byte[][] entries = new byte[comments.size()][];
+		int i = 0;
+		for (Map.Entry<String, String> entry : comments.entrySet()) {
+			entries[i++] = (entry.getKey() + "=" + entry.getValue()).getBytes(UTF_8);
+		}
+		return entries;
+	}
+
+	@Override
+	public String toString() {
+		return "EncoderSettings [sampleRate=" + sampleRate + ", channels=" + channels + ", quality=" + quality + ", bitrate="
+		        + bitrate + ", minBitrate=" + minBitrate + ", maxBitrate=" + maxBitrate + ", reservoirBits=" + reservoirBits
+		        + ", reservoirBias=" + reservoirBias + ", speed=" + speed + ", maxLatencyMillis=" + maxLatencyMillis + ", comments="
+		        + comments + "]";
+	}
+}
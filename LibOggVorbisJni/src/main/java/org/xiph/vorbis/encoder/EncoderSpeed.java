@@ -0,0 +1,36 @@
+package org.xiph.vorbis.encoder;
+
+/**
+ * How much analysis the native {@link VorbisEncoder} spends per block. Faster settings trade psychoacoustic precision for
+ * throughput, every setting produces a spec compliant stream any decoder can play.
+ */
+public enum EncoderSpeed {
+	/**
+	 * Simplified tone masking, no noise normalization and the coarsest bitrate management search. Meant for speech and
+	 * preview renditions, low bitrates lose the most detail.
+	 */
+	FAST(2),
+
+	/**
+	 * Simplified tone masking and a coarser bitrate management search, close to {@link #BEST} in quality
+	 */
+	BALANCED(1),
+
+	/**
+	 * The full psychoacoustic model, the default
+	 */
+	BEST(0);
+
+	private final int level;
+
+	private EncoderSpeed(int level) {
+		this.level = level;
+	}
+
+	/**
+	 * @return the matching <code>OV_ENCODE_SPEED_*</code> value of the native encoder
+	 */
+	public int getLevel() {
+		return level;
+	}
+}
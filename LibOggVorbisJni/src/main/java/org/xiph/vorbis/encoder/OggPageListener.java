@@ -0,0 +1,16 @@
+package org.xiph.vorbis.encoder;
+
+/**
+ * An {@link EncodeFeed} that also implements this hears about every audio page the native {@link VorbisEncoder} writes,
+ * straight after the page went to {@link EncodeFeed#writeVorbisData(byte[], int)}. The granule position tells how far into
+ * the stream the audio of the page reaches, which is what a live encoder needs to measure its latency by.
+ */
+public interface OggPageListener {
+    /**
+     * Triggered by the native {@link VorbisEncoder} once an audio page is written
+     *
+     * @param granulePosition the number of samples per channel up to the end of the page
+     * @param length the size of the page in bytes
+     */
+    public void pageWritten(long granulePosition, int length);
+}
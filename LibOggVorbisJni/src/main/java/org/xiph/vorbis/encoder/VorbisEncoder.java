@@ -1,5 +1,7 @@
 package org.xiph.vorbis.encoder;
 
+import java.io.File;
+
 import org.xiph.vorbis.helper.LoadNativeLibrary;
 
 /**
@@ -15,7 +17,7 @@ public class VorbisEncoder {
 
 	/**
 	 * The native JNI method call to the encoder to start encoding raw pcm data to encoded vorbis data
-	 * 
+	 *
 	 * @param sampleRate the sample rate which the incoming pcm data will arrive
 	 * @param numberOfChannels the number of channels
 	 * @param quality the quality to encode the output vorbis data
@@ -25,11 +27,98 @@ public class VorbisEncoder {
 
 	/**
 	 * The native JNI method call to the encoder to start encoding raw pcm data to encoded vorbis data
-	 * 
+	 *
+	 * @param sampleRate the sample rate which the incoming pcm data will arrive
+	 * @param numberOfChannels the number of channels
+	 * @param quality the quality to encode the output vorbis data
+	 * @param speed how much analysis to spend per block
+	 * @param encodeFeed the custom encoder feed
+	 */
+	public static int startEncodingWithQuality(long sampleRate, long numberOfChannels, float quality, EncoderSpeed speed,
+	        EncodeFeed encodeFeed) {
+		checkArguments(speed, encodeFeed);
+		return nativeStartEncodingWithQuality(sampleRate, numberOfChannels, quality, speed.getLevel(), encodeFeed);
+	}
+
+	/**
+	 * The native JNI method call to the encoder to start encoding raw pcm data to encoded vorbis data
+	 *
 	 * @param sampleRate the sample rate which the incoming pcm data will arrive
 	 * @param numberOfChannels the number of channels
 	 * @param bitrate the bitrate of the output vorbis data
 	 * @param encodeFeed the custom encoder feed
 	 */
 	public static native int startEncodingWithBitrate(long sampleRate, long numberOfChannels, long bitrate, EncodeFeed encodeFeed);
+
+	/**
+	 * The native JNI method call to the encoder to start encoding raw pcm data to encoded vorbis data
+	 *
+	 * @param sampleRate the sample rate which the incoming pcm data will arrive
+	 * @param numberOfChannels the number of channels
+	 * @param bitrate the bitrate of the output vorbis data
+	 * @param speed how much analysis to spend per block
+	 * @param encodeFeed the custom encoder feed
+	 */
+	public static int startEncodingWithBitrate(long sampleRate, long numberOfChannels, long bitrate, EncoderSpeed speed,
+	        EncodeFeed encodeFeed) {
+		checkArguments(speed, encodeFeed);
+		return nativeStartEncodingWithBitrate(sampleRate, numberOfChannels, bitrate, speed.getLevel(), encodeFeed);
+	}
+
+	/**
+	 * The native JNI method call to the encoder to start encoding raw pcm data to encoded vorbis data, with the sample rate,
+	 * channels, mode, speed and comments all taken from the settings
+	 *
+	 * @param settings the encoder settings
+	 * @param encodeFeed the custom encoder feed
+	 */
+	public static int startEncoding(EncoderSettings settings, EncodeFeed encodeFeed) {
+		if (settings == null) {
+			throw new IllegalArgumentException("Encoder settings must not be null.");
+		}
+		checkArguments(settings.getSpeed(), encodeFeed);
+		return nativeStartEncoding(settings, encodeFeed);
+	}
+
+	/**
+	 * Encodes a WAV or raw 16 bit little-endian pcm file to an ogg vorbis file entirely in native code, without any
+	 * {@link EncodeFeed} round trips. Calls are independent of each other and may run on several threads at once.
+	 *
+	 * @param in the WAV or raw pcm file, raw input is described by the sample rate and channels of the settings
+	 * @param out the ogg file to write, replaced if it exists
+	 * @param settings the encoder settings
+	 * @return the result summary, check {@link EncodeResult#getResultCode()}
+	 */
+	public static EncodeResult encodeFile(File in, File out, EncoderSettings settings) {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("Input and output files must not be null.");
+		}
+		if (settings == null) {
+			throw new IllegalArgumentException("Encoder settings must not be null.");
+		}
+		EncodeResult result = new EncodeResult();
+		long start = System.nanoTime();
+		result.setResultCode(nativeEncodeFile(in.getAbsolutePath(), out.getAbsolutePath(), settings, result));
+		result.setWallTimeNanos(System.nanoTime() - start);
+		return result;
+	}
+
+	private static void checkArguments(EncoderSpeed speed, EncodeFeed encodeFeed) {
+		if (speed == null) {
+			throw new IllegalArgumentException("Encoder speed must not be null.");
+		}
+		if (encodeFeed == null) {
+			throw new IllegalArgumentException("Encode feed must not be null.");
+		}
+	}
+
+	private static native int nativeStartEncodingWithQuality(long sampleRate, long numberOfChannels, float quality, int speed,
+	        EncodeFeed encodeFeed);
+
+	private static native int nativeStartEncodingWithBitrate(long sampleRate, long numberOfChannels, long bitrate, int speed,
+	        EncodeFeed encodeFeed);
+
+	private static native int nativeStartEncoding(EncoderSettings settings, EncodeFeed encodeFeed);
+
+	private static native int nativeEncodeFile(String in, String out, EncoderSettings settings, EncodeResult result);
 }
@@ -0,0 +1,242 @@
+package org.xiph.vorbis.helper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.TargetDataLine;
+
+/**
+ * Keeps a capture line read on a thread of its own, whatever the encoder is doing. The captured audio goes into a ring
+ * buffer that the encoder drains; the capture thread only ever writes to it and the encoder only ever reads from it, so
+ * neither takes a lock. When the encoder falls so far behind that the ring is full, the capture thread carries on reading the
+ * line, so the line itself never overruns, and drops what it reads instead. Those drops are counted rather than silent.
+ */
+public class CaptureBuffer {
+	/**
+	 * The line is read this many milliseconds at a time, also how quickly the capture thread notices it is finished
+	 */
+	private static final int CHUNK_MILLIS = 20;
+
+	/**
+	 * How long the encoder waits for the capture thread before looking again, should a wake up be missed
+	 */
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(CHUNK_MILLIS);
+
+	private final TargetDataLine line;
+	private final int frameLength;
+	private final float frameRate;
+	private final int chunkLength;
+	private final byte[] ring;
+
+	/**
+	 * When each chunk of the ring was captured
+	 */
+	private final long[] chunkNanos;
+	private final Thread capturer;
+	private volatile Thread encoder;
+
+	/**
+	 * Bytes ever written and read, only advanced by the capture and encoder thread respectively
+	 */
+	private volatile long written;
+	private volatile long read;
+	private volatile boolean finished;
+	private volatile boolean ended;
+
+	private long lastReadNanos;
+
+	private volatile long overrunCount;
+	private volatile long droppedFrames;
+	private volatile long highWaterFrames;
+
+	/**
+	 * @param line the opened line to capture from
+	 * @param bufferMillis how far the encoder may fall behind before audio is dropped
+	 */
+	CaptureBuffer(TargetDataLine line, int bufferMillis) {
+		this.line = line;
+		this.frameLength = line.getFormat().getFrameSize();
+		this.frameRate = line.getFormat().getFrameRate();
+		this.chunkLength = Math.max(1, (int) (frameRate * CHUNK_MILLIS / 1000)) * frameLength;
+		// Whole chunks, so full reads of the line line up with the end of the ring
+		this.ring = new byte[Math.max(2, (bufferMillis + CHUNK_MILLIS - 1) / CHUNK_MILLIS) * chunkLength];
+		this.chunkNanos = new long[ring.length / chunkLength];
+		capturer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				capture();
+			}
+		}, "vorbis-capture");
+		capturer.setDaemon(true);
+		capturer.setPriority(Thread.MAX_PRIORITY);
+	}
+
+	/**
+	 * Starts the line and the capture thread
+	 */
+	void start() {
+		line.start();
+		capturer.start();
+	}
+
+	private void capture() {
+		byte[] scratch = null;
+		boolean dropping = false;
+		while (!finished) {
+			long position = written;
+			int offset = (int) (position % ring.length);
+			// A short read leaves the position inside a chunk, so the next one only goes up to the end of the ring
+			int length = Math.min(chunkLength, ring.length - offset);
+			int n;
+			if (ring.length - (position - read) < length) {
+				if (scratch == null) {
+					scratch = new byte[chunkLength];
+				}
+				n = line.read(scratch, 0, chunkLength);
+				if (n > 0) {
+					if (!dropping) {
+						overrunCount++;
+						dropping = true;
+					}
+					droppedFrames += n / frameLength;
+				}
+			} else {
+				n = line.read(ring, offset, length);
+				if (n > 0) {
+					dropping = false;
+					long now = System.nanoTime();
+					chunkNanos[offset / chunkLength] = now;
+					chunkNanos[(offset + n - 1) / chunkLength] = now;
+					written = position + n;
+					highWaterFrames = Math.max(highWaterFrames, (written - read) / frameLength);
+					LockSupport.unpark(encoder);
+				}
+			}
+			if (n <= 0) {
+				// Only a line that was stopped or closed under us comes back empty handed
+				break;
+			}
+		}
+		ended = true;
+		LockSupport.unpark(encoder);
+	}
+
+	/**
+	 * Waits until there is captured audio to read. Only called from the encoder thread.
+	 *
+	 * @return <code>true</code> once there is, <code>false</code> if capture has finished and everything captured has been read
+	 */
+	private boolean await() {
+		encoder = Thread.currentThread();
+		while (written == read) {
+			if (ended) {
+				// Written may have moved on just before the end, so look once more
+				if (written == read) {
+					return false;
+				}
+			} else {
+				LockSupport.parkNanos(this, PARK_NANOS);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads captured audio, waiting for some when there is none yet. Only called from the encoder thread.
+	 *
+	 * @param buffer where to read to
+	 * @param amountToRead the most bytes to read
+	 * @return the number of bytes read, whole frames, 0 once capture has finished and everything captured has been read
+	 */
+	long read(byte[] buffer, int amountToRead) {
+		if (!await()) {
+			return 0;
+		}
+		long available = written - read;
+		int count = (int) Math.min(available, amountToRead - amountToRead % frameLength);
+		int offset = (int) (read % ring.length);
+		int first = Math.min(count, ring.length - offset);
+		System.arraycopy(ring, offset, buffer, 0, first);
+		System.arraycopy(ring, 0, buffer, first, count - first);
+		// Before moving on, after which the chunk may be captured again
+		lastReadNanos = chunkNanos[(int) ((read + count - 1) % ring.length / chunkLength)];
+		read += count;
+		return count;
+	}
+
+	/**
+	 * @return when the last audio read was captured, as {@link System#nanoTime()}, to within a chunk
+	 */
+	long getLastReadNanos() {
+		return lastReadNanos;
+	}
+
+	/**
+	 * Stops reading the line within a chunk, the audio already captured can still be read
+	 */
+	void finish() {
+		finished = true;
+	}
+
+	/**
+	 * Finishes, waits for the capture thread and closes the line
+	 */
+	void close() {
+		finish();
+		try {
+			capturer.join(CHUNK_MILLIS * 10);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		line.stop();
+		line.close();
+	}
+
+	/**
+	 * @return the number of times the encoder fell so far behind that captured audio had to be dropped
+	 */
+	public long getOverrunCount() {
+		return overrunCount;
+	}
+
+	/**
+	 * @return the frames dropped over all overruns
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * @return the most frames that were ever waiting for the encoder
+	 */
+	public long getHighWaterFrames() {
+		return highWaterFrames;
+	}
+
+	/**
+	 * @return the frames the buffer holds, beyond which audio is dropped
+	 */
+	public long getCapacityFrames() {
+		return ring.length / frameLength;
+	}
+
+	/**
+	 * @return the frames captured but not yet encoded
+	 */
+	public long getBufferedFrames() {
+		return (written - read) / frameLength;
+	}
+
+	/**
+	 * @return how far the encoder is behind the capture, in microseconds
+	 */
+	public long getEncoderLagMicros() {
+		return (long) (getBufferedFrames() * 1000000L / frameRate);
+	}
+
+	@Override
+	public String toString() {
+		return "CaptureBuffer [overrunCount=" + overrunCount + ", droppedFrames=" + droppedFrames + ", highWaterFrames="
+		        + highWaterFrames + ", capacityFrames=" + getCapacityFrames() + ", bufferedFrames=" + getBufferedFrames() + "]";
+	}
+}
@@ -15,6 +15,8 @@ import javax.sound.sampled.SourceDataLine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xiph.vorbis.decoder.DecodeFeed;
+import org.xiph.vorbis.decoder.DecodeOptions;
+import org.xiph.vorbis.decoder.DecodeStatistics;
 import org.xiph.vorbis.decoder.DecodeStreamInfo;
 import org.xiph.vorbis.decoder.VorbisDecoder;
 
@@ -46,6 +48,21 @@ public class JavaSoundVorbisPlayer implements Runnable {
 	 */
 	public static final int PLAYING_STARTED = 46316;
 
+	/**
+	 * Latency from {@link #start()} until the line starts playing the first decoded audio
+	 */
+	public static final int STARTUP_LATENCY = 46317;
+
+	/**
+	 * Latency from {@link #seekToSeconds(long)} until the line starts playing audio from the new position
+	 */
+	public static final int SEEK_LATENCY = 46318;
+
+	/**
+	 * Audio written to the line but not yet played, reported every elapsed second
+	 */
+	public static final int OUTPUT_LATENCY = 46319;
+
 	/**
 	 * Handler for sending status updates
 	 */
@@ -62,14 +79,81 @@ public class JavaSoundVorbisPlayer implements Runnable {
 	 */
 	private final DecodeFeed decodeFeed;
 
+	private final PlaybackOptions options;
+
+	/**
+	 * Measures the latencies of whichever feed is playing
+	 */
+	private final LatencyMeter latencyMeter = new LatencyMeter();
+
 	private volatile boolean paused = false;
 	private volatile long seekSeconds = - 1;
+	private volatile long seekRequestNanos;
 
 	/**
 	 * Current state of the vorbis player
 	 */
 	private final AtomicReference<PlayerState> currentState = new AtomicReference<PlayerState>(PlayerState.STOPPED);
 
+	/**
+	 * Works out latencies from the frame position of the line, which only moves once written audio is actually played. The
+	 * measurements are taken after each write, so they are as fine as the decoded blocks are long.
+	 */
+	private class LatencyMeter {
+		private long startNanos = - 1;
+		private long seekNanos = - 1;
+		private long seekFrame;
+		private long framesWritten;
+		private int channels;
+		private long sampleRate;
+
+		private synchronized void started() {
+			startNanos = System.nanoTime();
+			seekNanos = - 1;
+		}
+
+		private synchronized void open(DecodeStreamInfo decodeStreamInfo) {
+			channels = (int) decodeStreamInfo.getChannels();
+			sampleRate = decodeStreamInfo.getSampleRate();
+			framesWritten = 0;
+		}
+
+		/**
+		 * @param line the line that was written to
+		 * @param samples the number of samples, over all channels, just written
+		 */
+		private synchronized void written(SourceDataLine line, int samples) {
+			framesWritten += samples / channels;
+			long played = line.getLongFramePosition();
+			if (startNanos >= 0 && played > 0) {
+				handler.sendLatency(STARTUP_LATENCY, (System.nanoTime() - startNanos) / 1000);
+				startNanos = - 1;
+			}
+			if (seekNanos >= 0 && played > seekFrame) {
+				handler.sendLatency(SEEK_LATENCY, (System.nanoTime() - seekNanos) / 1000);
+				seekNanos = - 1;
+			}
+		}
+
+		/**
+		 * Called when the decoder moves to the requested position, any audio written from here on comes from there
+		 */
+		private synchronized void seeked(SourceDataLine line, long requestNanos) {
+			if (options.isFlushOnSeek()) {
+				line.flush();
+				/* flushed frames are never played, so playing catches up with writing */
+				framesWritten = line.getLongFramePosition();
+			}
+			seekNanos = requestNanos;
+			seekFrame = framesWritten;
+		}
+
+		private synchronized void reportOutputLatency(SourceDataLine line) {
+			long buffered = Math.max(0, framesWritten - line.getLongFramePosition());
+			handler.sendLatency(OUTPUT_LATENCY, buffered * 1000000 / sampleRate);
+		}
+	}
+
 	/**
 	 * Custom class to easily decode from a file and write to an {@link AudioTrack}
 	 */
@@ -77,10 +161,20 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		/**
 		 * The audio track to write the raw pcm bytes to
 		 */
-		private SourceDataLine audioTrack;
+		private volatile SourceDataLine audioTrack;
 
 		private byte[] convertBuffer = new byte[2];
 
+		/**
+		 * The frames to write before the audio track is started
+		 */
+		private long prebufferFrames;
+
+		/**
+		 * The seek position the decoder last moved to
+		 */
+		private long appliedSeekSeconds = - 1;
+
 		/**
 		 * Creates a decode feed that reads from a file and writes to an {@link AudioTrack}
 		 * 
@@ -98,9 +192,18 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		public synchronized boolean writePCMData(short[] pcmData, int amountToRead) {
 			LOG.trace("FileDecodeFeed writePCMData() for {}...", amountToRead);
 			// If we received data and are playing, write to the audio track
-			if (pcmData != null && amountToRead > 0 && audioTrack != null && isPlaying()) {
+			// Stopping clears the track from another thread
+			final SourceDataLine track = audioTrack;
+			if (pcmData != null && amountToRead > 0 && track != null && isPlaying()) {
 				final int byteSize = convertToBuffer(pcmData, amountToRead);
-				audioTrack.write(convertBuffer, 0, byteSize);
+				track.write(convertBuffer, 0, byteSize);
+				latencyMeter.written(track, amountToRead);
+				if (prebufferFrames > 0) {
+					prebufferFrames -= amountToRead / track.getFormat().getChannels();
+					if (prebufferFrames <= 0) {
+						track.start();
+					}
+				}
 				waitForResume();
 			}
 
@@ -125,11 +228,24 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		public void elapsedSeconds(long seconds) {
 			LOG.trace("FileDecodeFeed elapsed {} seconds...", seconds);
 			handler.sendPlayingProgress(seconds);
+			final SourceDataLine track = audioTrack;
+			if (track != null && isPlaying()) {
+				latencyMeter.reportOutputLatency(track);
+			}
 		}
 
 		@Override
 		public long seekToSeconds() {
-			return seekSeconds;
+			final long seconds = seekSeconds;
+			// The decoder seeks whenever the position changes, so this is where the audio jumps
+			if (seconds != appliedSeekSeconds) {
+				appliedSeekSeconds = seconds;
+				final SourceDataLine track = audioTrack;
+				if (seconds >= 0 && track != null) {
+					latencyMeter.seeked(track, seekRequestNanos);
+				}
+			}
+			return seconds;
 		}
 
 		@Override
@@ -164,7 +280,11 @@ public class JavaSoundVorbisPlayer implements Runnable {
 			handler.sendDecodeStreamInfo(decodeStreamInfo);
 			// Create the audio track
 			audioTrack = getAudioFormatFromInput(decodeStreamInfo);
-			audioTrack.start();
+			latencyMeter.open(decodeStreamInfo);
+			prebufferFrames = getPrebufferFrames(audioTrack, 0);
+			if (prebufferFrames == 0) {
+				audioTrack.start();
+			}
 			// We're starting to read actual content
 			currentState.set(PlayerState.PLAYING);
 			handler.sendEmptyMessage(PLAYING_STARTED);
@@ -185,12 +305,12 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		/**
 		 * The audio track to write the raw pcm bytes to
 		 */
-		private SourceDataLine audioTrack;
+		private volatile SourceDataLine audioTrack;
 
 		/**
-		 * The initial buffer size
+		 * The frames to write before the audio track is started
 		 */
-		private final long bufferSize;
+		private long bufferSize;
 
 		/**
 		 * The input stream to decode from
@@ -198,7 +318,7 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		private InputStream inputStream;
 
 		/**
-		 * The amount of written pcm data to the audio track
+		 * The amount of written pcm frames to the audio track
 		 */
 		private long writtenPCMData = 0;
 
@@ -209,12 +329,11 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		 * 
 		 * @param streamToDecode the stream to decode
 		 */
-		private BufferedDecodeFeed(InputStream streamToDecode, long bufferSize) {
+		private BufferedDecodeFeed(InputStream streamToDecode) {
 			if (streamToDecode == null) {
 				throw new IllegalArgumentException("Stream to decode must not be null.");
 			}
 			this.inputStream = streamToDecode;
-			this.bufferSize = bufferSize;
 		}
 
 		@Override
@@ -244,12 +363,15 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		public boolean writePCMData(short[] pcmData, int amountToRead) {
 			// If we received data and are playing, write to the audio track
 			LOG.trace("Writing data to track, pcmData.length:{} amountToRead:{}", pcmData.length, amountToRead);
-			if (pcmData != null && amountToRead > 0 && audioTrack != null && (isPlaying() || isBuffering())) {
+			// Stopping clears the track from another thread
+			final SourceDataLine track = audioTrack;
+			if (pcmData != null && amountToRead > 0 && track != null && (isPlaying() || isBuffering())) {
 				final int byteSize = convertToBuffer(pcmData, amountToRead);
-				audioTrack.write(convertBuffer, 0, byteSize);
-				writtenPCMData += amountToRead;
-				if (writtenPCMData >= bufferSize) {
-					audioTrack.start();
+				track.write(convertBuffer, 0, byteSize);
+				latencyMeter.written(track, amountToRead);
+				writtenPCMData += amountToRead / track.getFormat().getChannels();
+				if (isBuffering() && writtenPCMData >= bufferSize) {
+					track.start();
 					currentState.set(PlayerState.PLAYING);
 				}
 				waitForResume();
@@ -275,6 +397,10 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		public void elapsedSeconds(long seconds) {
 			LOG.trace("elapsed {} seconds...", seconds);
 			handler.sendPlayingProgress(seconds);
+			final SourceDataLine track = audioTrack;
+			if (track != null && isPlaying()) {
+				latencyMeter.reportOutputLatency(track);
+			}
 		}
 
 		@Override
@@ -294,6 +420,9 @@ public class JavaSoundVorbisPlayer implements Runnable {
 
 				// Closes the file input stream
 				if (inputStream != null) {
+					if (inputStream instanceof ReadAheadInputStream) {
+						LOG.debug("Read ahead finished: {}", inputStream);
+					}
 					try {
 						inputStream.close();
 					} catch (IOException e) {
@@ -329,10 +458,17 @@ public class JavaSoundVorbisPlayer implements Runnable {
 			handler.sendDecodeStreamInfo(decodeStreamInfo);
 			// Create the audio track
 			audioTrack = getAudioFormatFromInput(decodeStreamInfo);
-			audioTrack.start();
-
-			// We're starting to read actual content
-			currentState.set(PlayerState.BUFFERING);
+			latencyMeter.open(decodeStreamInfo);
+			writtenPCMData = 0;
+			bufferSize = getPrebufferFrames(audioTrack, PlaybackOptions.DEFAULT_STREAM_PREBUFFER_FRAMES);
+
+			// We're starting to read actual content, straight away without a prebuffer
+			if (bufferSize == 0) {
+				audioTrack.start();
+				currentState.set(PlayerState.PLAYING);
+			} else {
+				currentState.set(PlayerState.BUFFERING);
+			}
 		}
 
 		@Override
@@ -353,15 +489,31 @@ public class JavaSoundVorbisPlayer implements Runnable {
 	 * @throws FileNotFoundException thrown if the file could not be located/opened to playing
 	 */
 	public JavaSoundVorbisPlayer(File fileToPlay, PlayerListener handler) throws FileNotFoundException {
+		this(fileToPlay, handler, new PlaybackOptions());
+	}
+
+	/**
+	 * Constructs a player that will decode from a file
+	 * 
+	 * @param fileToPlay the file to play
+	 * @param handler handler to send player status updates to
+	 * @param options the line buffer and prebuffer to play with
+	 * @throws FileNotFoundException thrown if the file could not be located/opened to playing
+	 */
+	public JavaSoundVorbisPlayer(File fileToPlay, PlayerListener handler, PlaybackOptions options) throws FileNotFoundException {
 		if (fileToPlay == null) {
 			throw new IllegalArgumentException("File to play must not be null.");
 		}
 		if (handler == null) {
 			throw new IllegalArgumentException("Handler must not be null.");
 		}
+		if (options == null) {
+			throw new IllegalArgumentException("Playback options must not be null.");
+		}
 		this.decodeFile = fileToPlay;
 		this.decodeFeed = new AudioOutOnlyDecodeFeed();
 		this.handler = handler;
+		this.options = options;
 	}
 
 	/**
@@ -371,6 +523,17 @@ public class JavaSoundVorbisPlayer implements Runnable {
 	 * @param handler handler to send player status updates to
 	 */
 	public JavaSoundVorbisPlayer(InputStream audioDataStream, PlayerListener handler) {
+		this(audioDataStream, handler, new PlaybackOptions());
+	}
+
+	/**
+	 * Constructs a player that will read from an {@link InputStream} and write to an {@link AudioTrack}
+	 * 
+	 * @param audioDataStream the audio data stream to read from
+	 * @param handler handler to send player status updates to
+	 * @param options the line buffer and prebuffer to play with
+	 */
+	public JavaSoundVorbisPlayer(InputStream audioDataStream, PlayerListener handler, PlaybackOptions options) {
 		if (audioDataStream == null) {
 			throw new IllegalArgumentException("Input stream must not be null.");
 		}
@@ -378,9 +541,16 @@ public class JavaSoundVorbisPlayer implements Runnable {
 			throw new IllegalArgumentException("Handler must not be null.");
 		}
 
+		if (options == null) {
+			throw new IllegalArgumentException("Playback options must not be null.");
+		}
 		this.decodeFile = null;
-		this.decodeFeed = new BufferedDecodeFeed(audioDataStream, 24000);
+		if (options.getReadAheadBuffers() > 0) {
+			audioDataStream = new ReadAheadInputStream(audioDataStream, options.getReadAheadBufferSize(), options.getReadAheadBuffers());
+		}
+		this.decodeFeed = new BufferedDecodeFeed(audioDataStream);
 		this.handler = handler;
+		this.options = options;
 	}
 
 	/**
@@ -399,6 +569,7 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		this.decodeFile = null;
 		this.decodeFeed = decodeFeed;
 		this.handler = handler;
+		this.options = new PlaybackOptions();
 	}
 
 	public SourceDataLine getAudioFormatFromInput(DecodeStreamInfo decodeStreamInfo) {
@@ -408,7 +579,7 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		SourceDataLine dataLine = null;
 		try {
 			dataLine = (SourceDataLine) AudioSystem.getLine(info);
-			dataLine.open(format, 32768 * format.getChannels());
+			dataLine.open(format, options.getLineBufferFrames() * format.getFrameSize());
 			return dataLine;
 		} catch (LineUnavailableException e1) {
 			LOG.error("LineUnavailableException while attempting to get line out for " + decodeStreamInfo, e1);
@@ -416,12 +587,28 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		}
 	}
 
+	/**
+	 * The frames to write before starting a line, never more than fit in it
+	 */
+	private long getPrebufferFrames(SourceDataLine line, long defaultFrames) {
+		long frames = options.getPrebufferFrames() < 0 ? defaultFrames : options.getPrebufferFrames();
+		return Math.min(frames, line.getBufferSize() / line.getFormat().getFrameSize());
+	}
+
+	/**
+	 * @return the playback options
+	 */
+	public PlaybackOptions getOptions() {
+		return options;
+	}
+
 	/**
 	 * Starts the audio recorder with a given sample rate and channels
 	 */
 	@SuppressWarnings("all")
 	public synchronized void start() {
 		if (isStopped()) {
+			latencyMeter.started();
 			new Thread(this).start();
 		}
 	}
@@ -466,6 +653,7 @@ public class JavaSoundVorbisPlayer implements Runnable {
 	}
 
 	public synchronized void seekToSeconds(long seekSeconds) {
+		this.seekRequestNanos = System.nanoTime();
 		this.seekSeconds = seekSeconds;
 	}
 
@@ -475,6 +663,12 @@ public class JavaSoundVorbisPlayer implements Runnable {
 		int result;
 		if (decodeFile != null) {
 			result = VorbisDecoder.startDecodingFile(decodeFile, decodeFeed);
+		} else if (options.getHeaderCache() != null) {
+			DecodeOptions decodeOptions = new DecodeOptions();
+			decodeOptions.setHeaderCache(options.getHeaderCache());
+			DecodeStatistics statistics = new DecodeStatistics();
+			result = VorbisDecoder.startDecoding(decodeFeed, decodeOptions, statistics);
+			LOG.debug("Stream joined {}, first audio after {}us", statistics.isJoined(), statistics.getFirstAudioNanos() / 1000);
 		} else {
 			result = VorbisDecoder.startDecoding(decodeFeed);
 		}
@@ -507,6 +701,10 @@ public class JavaSoundVorbisPlayer implements Runnable {
 				handler.sendEmptyMessage(PLAYING_FAILED);
 				LOG.error("Premature end of file error received");
 				break;
+			case DecodeFeed.MISSING_HEADERS:
+				handler.sendEmptyMessage(PLAYING_FAILED);
+				LOG.error("No headers to join the stream with");
+				break;
 		}
 	}
 
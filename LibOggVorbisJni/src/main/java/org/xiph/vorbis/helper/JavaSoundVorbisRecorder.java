@@ -1,6 +1,7 @@
 package org.xiph.vorbis.helper;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -16,7 +17,10 @@ import javax.sound.sampled.TargetDataLine;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xiph.vorbis.encoder.BitrateControl;
 import org.xiph.vorbis.encoder.EncodeFeed;
+import org.xiph.vorbis.encoder.EncoderSettings;
+import org.xiph.vorbis.encoder.OggPageListener;
 import org.xiph.vorbis.encoder.VorbisEncoder;
 
 /**
@@ -59,6 +63,17 @@ public class JavaSoundVorbisRecorder {
 	 */
 	public static final int ERROR_INITIALIZING = - 1;
 
+	/**
+	 * Latency from capturing the first audio of a page until the page is written, the longest any of its audio waited,
+	 * reported for every audio page
+	 */
+	public static final int PAGE_LATENCY = 3;
+
+	/**
+	 * The default capture buffer, enough to ride out the encoder or the disk stalling for a couple of seconds
+	 */
+	public static final int DEFAULT_CAPTURE_BUFFER_MILLIS = 2000;
+
 	/**
 	 * Whether the recording will encode with a quality percent or average bitrate
 	 */
@@ -116,6 +131,41 @@ public class JavaSoundVorbisRecorder {
 	 */
 	private final EncodeFeed encodeFeed;
 
+	/**
+	 * How far the encoder may fall behind the capture before audio is dropped
+	 */
+	private volatile int captureBufferMillis = DEFAULT_CAPTURE_BUFFER_MILLIS;
+
+	/**
+	 * The capture of the current or last recording
+	 */
+	private volatile CaptureBuffer captureBuffer;
+
+	/**
+	 * The gate for silence, if any
+	 */
+	private volatile SilenceGate silenceGate;
+
+	/**
+	 * The most audio a page holds before it is written, 0 for full pages
+	 */
+	private volatile int maxLatencyMillis;
+
+	/**
+	 * Changes the bitrate of bitrate recordings while they run, only created once asked for
+	 */
+	private volatile BitrateControl bitrateControl;
+
+	/**
+	 * The size of a captured frame, in bytes
+	 */
+	private int frameLength;
+
+	/**
+	 * Matches the pages of the current encoder run to the capture
+	 */
+	private final PageLatency pageLatency = new PageLatency();
+
 	/**
 	 * The current state of the recorder
 	 */
@@ -125,7 +175,7 @@ public class JavaSoundVorbisRecorder {
 	 * Helper class that implements {@link EncodeFeed} that will write the processed vorbis data to a file and will read raw PCM
 	 * data from an {@link AudioRecord}
 	 */
-	private class FileEncodeFeed implements EncodeFeed {
+	private class FileEncodeFeed implements EncodeFeed, OggPageListener {
 		/**
 		 * The file to write to
 		 */
@@ -136,11 +186,6 @@ public class JavaSoundVorbisRecorder {
 		 */
 		private OutputStream outputStream;
 
-		/**
-		 * The audio recorder to pull raw pcm data from
-		 */
-		private TargetDataLine audioRecorder;
-
 		/**
 		 * Constructs a file encode feed to write the encoded vorbis output to
 		 * 
@@ -157,20 +202,14 @@ public class JavaSoundVorbisRecorder {
 		public long readPCMData(byte[] pcmDataBuffer, int amountToRead) {
 			// If we are no longer recording, return 0 to let the native encoder
 			// know
-			if (isStopped() || isStopping()) {
+			if (isStopped()) {
 				return 0;
 			}
 
-			// Otherwise read from the audio recorder
-			int read = audioRecorder.read(pcmDataBuffer, 0, amountToRead);
+			// Otherwise read what was captured, once stopping that drains until the end of the capture
+			long read = readCaptured(pcmDataBuffer, amountToRead);
 			LOG.trace("FileEncodeFeed readPCMData() for {} out of {}...", read, amountToRead);
-			switch (read) {
-				case - 1:
-					return 0;
-				default:
-					// Successfully read from audio recorder
-					return read;
-			}
+			return read;
 		}
 
 		@Override
@@ -210,37 +249,40 @@ public class JavaSoundVorbisRecorder {
 					outputStream = null;
 				}
 
-				// Stop and clean up the audio recorder
-				if (audioRecorder != null) {
-					audioRecorder.stop();
-					audioRecorder.close();
-					audioRecorder = null;
-				}
+				// Stop the capture thread and clean up the audio recorder
+				captureBuffer.close();
+				LOG.debug("Capture finished: {}", captureBuffer);
 				recordHandler.sendEmptyMessage(STOP_ENCODING);
 			}
 		}
 
+		@Override
+		public void pageWritten(long granulePosition, int length) {
+			pageLatency.pageWritten(granulePosition);
+		}
+
 		@Override
 		public void stopEncoding() {
 			LOG.trace("FileEncodeFeed stopEncoding() called...");
 			if (isRecording()) {
-				// Set our state to stopped
+				// Set our state to stopped, the encoder carries on with what was already captured
 				currentState.set(RecorderState.STOPPING);
+				captureBuffer.finish();
 			}
 		}
 
 		@Override
 		public void start() {
 			LOG.trace("FileEncodeFeed start() called...");
+			pageLatency.reset();
 			if (isStopped()) {
 				// Creates the audio recorder
-				audioRecorder = getAudioRecorder();
+				final TargetDataLine audioRecorder = getAudioRecorder();
 				if (audioRecorder == null) {
 					return;
 				}
 				// Start recording
-				currentState.set(RecorderState.RECORDING);
-				audioRecorder.start();
+				startCapture(audioRecorder);
 
 				// Create the output stream
 				if (outputStream == null) {
@@ -250,7 +292,6 @@ public class JavaSoundVorbisRecorder {
 						LOG.error("Failed to write to file", e);
 					}
 				}
-				recordHandler.sendEmptyMessage(START_ENCODING);
 			}
 		}
 
@@ -260,17 +301,12 @@ public class JavaSoundVorbisRecorder {
 	 * Helper class that implements {@link EncodeFeed} that will write the processed vorbis data to an output stream and will read
 	 * raw PCM data from an {@link AudioRecord}
 	 */
-	private class OutputStreamEncodeFeed implements EncodeFeed {
+	private class OutputStreamEncodeFeed implements EncodeFeed, OggPageListener {
 		/**
 		 * The output stream to write the vorbis data to
 		 */
 		private OutputStream outputStream;
 
-		/**
-		 * The audio recorder to pull raw pcm data from
-		 */
-		private TargetDataLine audioRecorder;
-
 		/**
 		 * Constructs a file encode feed to write the encoded vorbis output to
 		 * 
@@ -287,19 +323,12 @@ public class JavaSoundVorbisRecorder {
 		public long readPCMData(byte[] pcmDataBuffer, int amountToRead) {
 			// If we are no longer recording, return 0 to let the native encoder
 			// know
-			if (isStopped() || isStopping()) {
+			if (isStopped()) {
 				return 0;
 			}
 			LOG.trace("amount to read from pcm recorder " + amountToRead);
-			// Otherwise read from the audio recorder
-			int read = audioRecorder.read(pcmDataBuffer, 0, amountToRead);
-			switch (read) {
-				case - 1:
-					return 0;
-				default:
-					// Successfully read from audio recorder
-					return read;
-			}
+			// Otherwise read what was captured, once stopping that drains until the end of the capture
+			return readCaptured(pcmDataBuffer, amountToRead);
 		}
 
 		@Override
@@ -339,37 +368,332 @@ public class JavaSoundVorbisRecorder {
 					outputStream = null;
 				}
 
-				// Stop and clean up the audio recorder
-				if (audioRecorder != null) {
-					audioRecorder.stop();
-					audioRecorder.close();
-				}
+				// Stop the capture thread and clean up the audio recorder
+				captureBuffer.close();
+				LOG.debug("Capture finished: {}", captureBuffer);
 				recordHandler.sendEmptyMessage(STOP_ENCODING);
 			}
 		}
 
+		@Override
+		public void pageWritten(long granulePosition, int length) {
+			pageLatency.pageWritten(granulePosition);
+		}
+
 		@Override
 		public void stopEncoding() {
 			if (isRecording()) {
-				// Set our state to stopped
+				// Set our state to stopped, the encoder carries on with what was already captured
 				currentState.set(RecorderState.STOPPING);
+				captureBuffer.finish();
 			}
 		}
 
 		@Override
 		public void start() {
+			pageLatency.reset();
 			if (isStopped()) {
 				// Creates the audio recorder
-				audioRecorder = getAudioRecorder();
+				final TargetDataLine audioRecorder = getAudioRecorder();
 				if (audioRecorder == null) {
 					return;
 				}
 				// Start recording
-				currentState.set(RecorderState.RECORDING);
-				audioRecorder.start();
-				recordHandler.sendEmptyMessage(START_ENCODING);
+				startCapture(audioRecorder);
+			}
+		}
+	}
+
+	/**
+	 * Helper class that implements {@link EncodeFeed} that will write the processed vorbis data to a new segment whenever the
+	 * current one is long enough, and will read raw PCM data from an {@link AudioRecord}. Each segment is a run of the native
+	 * encoder of its own; capture carries on between them, so no frame is lost or repeated.
+	 */
+	private class SegmentEncodeFeed implements EncodeFeed, OggPageListener {
+		private final SegmentSink sink;
+		private final long segmentMillis;
+		private final long segmentBytes;
+
+		/**
+		 * The output stream of the current segment, only opened once it has audio
+		 */
+		private OutputStream outputStream;
+
+		/**
+		 * The headers of the current segment until it is opened
+		 */
+		private ByteArrayOutputStream headers;
+
+		private int index;
+		private long recordingFrames;
+		private long segmentStartFrame;
+		private long segmentFrames;
+		private long segmentWritten;
+		private long segmentLength;
+
+		/**
+		 * Set once the last segment has all its audio, after which the encoder is not run again
+		 */
+		private volatile boolean lastSegment;
+
+		/**
+		 * Set once the current segment has all its audio
+		 */
+		private boolean segmentFull;
+
+		private SegmentEncodeFeed(SegmentSink sink, long segmentMillis, long segmentBytes) {
+			if (sink == null) {
+				throw new IllegalArgumentException("Segment sink must not be null.");
+			}
+			if (segmentMillis < 0 || segmentBytes < 0 || (segmentMillis == 0 && segmentBytes == 0)) {
+				throw new IllegalArgumentException("Segments need a positive length, a positive size, or both.");
+			}
+			this.sink = sink;
+			this.segmentMillis = segmentMillis;
+			this.segmentBytes = segmentBytes;
+		}
+
+		@Override
+		public long readPCMData(byte[] pcmDataBuffer, int amountToRead) {
+			if (isStopped() || segmentFull || headers == null) {
+				return 0;
+			}
+			int amount = amountToRead;
+			// The headers alone may be over the size, so every segment gets some audio before the size counts
+			if (segmentBytes > 0 && segmentFrames > 0 && segmentWritten >= segmentBytes) {
+				amount = 0;
+			}
+			if (segmentLength > 0) {
+				amount = (int) Math.min(amount, (segmentLength - segmentFrames) * frameLength);
+			}
+			if (amount <= 0) {
+				segmentFull = true;
+				return 0;
+			}
+			while (true) {
+				long read = captureBuffer.read(pcmDataBuffer, amount);
+				if (read == 0) {
+					segmentFull = true;
+					lastSegment = true;
+					return 0;
+				}
+				long blockFrame = recordingFrames;
+				recordingFrames += read / frameLength;
+				if (silenceGate == null || silenceGate.process(pcmDataBuffer, (int) read)) {
+					if (outputStream == null && !openSegment(blockFrame)) {
+						return 0;
+					}
+					segmentFrames += read / frameLength;
+					pageLatency.read(read / frameLength);
+					LOG.trace("SegmentEncodeFeed readPCMData() for {} out of {}...", read, amountToRead);
+					return read;
+				}
+				if (outputStream != null) {
+					// Silence ends the segment, the next one starts where the sound comes back
+					segmentFull = true;
+					return 0;
+				}
+			}
+		}
+
+		/* opens the output once the segment has its first audio, so the last segment is never empty, nor one of silence */
+		private boolean openSegment(long startFrame) {
+			try {
+				outputStream = new BufferedOutputStream(sink.openSegment(index));
+				headers.writeTo(outputStream);
+				segmentWritten = headers.size();
+				segmentStartFrame = startFrame;
+				return true;
+			} catch (IOException e) {
+				LOG.error("Failed to open segment " + index + ", stopping recording", e);
+				outputStream = null;
+				endRecording();
+				return false;
+			}
+		}
+
+		@Override
+		public int writeVorbisData(byte[] vorbisData, int amountToWrite) {
+			if (vorbisData != null && amountToWrite > 0 && headers != null && ! isStopped()) {
+				if (outputStream == null) {
+					headers.write(vorbisData, 0, amountToWrite);
+					return amountToWrite;
+				}
+				try {
+					outputStream.write(vorbisData, 0, amountToWrite);
+					segmentWritten += amountToWrite;
+					return amountToWrite;
+				} catch (IOException e) {
+					LOG.error("Failed to write segment " + index + ", stopping recording", e);
+					endRecording();
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Closes the current segment, and the recording with it if that was the last
+		 */
+		@Override
+		public void stop() {
+			LOG.trace("SegmentEncodeFeed stop() called...");
+			if (headers == null) {
+				// The encoder failed before it started the segment
+				lastSegment = true;
+			}
+			if (outputStream != null) {
+				try {
+					outputStream.close();
+					sink.segmentClosed(index, segmentStartFrame, segmentFrames, segmentWritten);
+				} catch (IOException e) {
+					LOG.error("Failed to close segment " + index + ", stopping recording", e);
+					lastSegment = true;
+				}
+				outputStream = null;
+				index++;
+			}
+			headers = null;
+			if (lastSegment && (isRecording() || isStopping())) {
+				currentState.set(RecorderState.STOPPED);
+				captureBuffer.close();
+				LOG.debug("Capture finished: {}", captureBuffer);
+				recordHandler.sendEmptyMessage(STOP_ENCODING);
+			}
+		}
+
+		@Override
+		public void pageWritten(long granulePosition, int length) {
+			pageLatency.pageWritten(granulePosition);
+		}
+
+		@Override
+		public void stopEncoding() {
+			if (isRecording()) {
+				currentState.set(RecorderState.STOPPING);
+				captureBuffer.finish();
 			}
 		}
+
+		/**
+		 * Starts capturing for the first segment, and readies every segment for its headers
+		 */
+		@Override
+		public void start() {
+			LOG.trace("SegmentEncodeFeed start() called...");
+			pageLatency.reset();
+			if (isStopped()) {
+				final TargetDataLine audioRecorder = getAudioRecorder();
+				if (audioRecorder == null) {
+					lastSegment = true;
+					return;
+				}
+				segmentLength = segmentMillis * sampleRate / 1000;
+				index = 0;
+				recordingFrames = 0;
+				lastSegment = false;
+				startCapture(audioRecorder);
+			}
+			if (isStopped()) {
+				return;
+			}
+			segmentFrames = 0;
+			segmentWritten = 0;
+			segmentFull = false;
+			headers = new ByteArrayOutputStream();
+		}
+
+		/* stops capturing and lets the encoder finish what it has */
+		private void endRecording() {
+			lastSegment = true;
+			segmentFull = true;
+			stopEncoding();
+		}
+
+		/**
+		 * @return whether the encoder should be run for another segment
+		 */
+		private boolean hasNextSegment() {
+			return !lastSegment && !isStopped();
+		}
+	}
+
+	/**
+	 * Matches each page the encoder writes to when the audio it starts with was captured. Only used from the encoding thread.
+	 */
+	private class PageLatency {
+		private final long[] frames = new long[1024];
+		private final long[] nanos = new long[1024];
+		private int head;
+		private int count;
+		private long encodedFrames;
+		private long pageGranulePosition;
+
+		private void reset() {
+			head = 0;
+			count = 0;
+			encodedFrames = 0;
+			pageGranulePosition = 0;
+		}
+
+		/**
+		 * @param frameCount the frames just handed to the encoder, from the last read of the capture buffer
+		 */
+		private void read(long frameCount) {
+			if (frameCount == 0) {
+				return;
+			}
+			encodedFrames += frameCount;
+			if (count == frames.length) {
+				// Forget the oldest, the latency of the pages it is in is slightly underestimated
+				head = (head + 1) % frames.length;
+				count--;
+			}
+			int tail = (head + count) % frames.length;
+			frames[tail] = encodedFrames;
+			nanos[tail] = captureBuffer.getLastReadNanos();
+			count++;
+		}
+
+		private void pageWritten(long granulePosition) {
+			// The reads ending before the page starts belong to earlier pages
+			while (count > 1 && frames[head] <= pageGranulePosition) {
+				head = (head + 1) % frames.length;
+				count--;
+			}
+			if (count > 0) {
+				recordHandler.sendLatency(PAGE_LATENCY, (System.nanoTime() - nanos[head]) / 1000);
+			}
+			pageGranulePosition = granulePosition;
+		}
+	}
+
+	/**
+	 * Starts capturing from the opened line, resetting the silence gate if there is one
+	 */
+	private void startCapture(TargetDataLine audioRecorder) {
+		if (silenceGate != null) {
+			silenceGate.open((int) numberOfChannels, sampleRate);
+		}
+		frameLength = audioRecorder.getFormat().getFrameSize();
+		captureBuffer = new CaptureBuffer(audioRecorder, captureBufferMillis);
+		currentState.set(RecorderState.RECORDING);
+		captureBuffer.start();
+		recordHandler.sendEmptyMessage(START_ENCODING);
+	}
+
+	/**
+	 * Reads captured audio for the encoder, zeroing what the silence gate finds silent
+	 * 
+	 * @return the number of bytes read, 0 once the capture is finished
+	 */
+	private long readCaptured(byte[] pcmDataBuffer, int amountToRead) {
+		long read = captureBuffer.read(pcmDataBuffer, amountToRead);
+		if (read > 0 && silenceGate != null) {
+			// A single stream never skips, see setSilenceGate
+			silenceGate.process(pcmDataBuffer, (int) read);
+		}
+		pageLatency.read(read / frameLength);
+		return read;
 	}
 
 	protected TargetDataLine getAudioRecorder() {
@@ -438,6 +762,20 @@ public class JavaSoundVorbisRecorder {
 		this.recordHandler = recordHandler;
 	}
 
+	/**
+	 * Constructs a recorder that will record a series of ogg streams, starting the next once the current one is long enough.
+	 * A segment is closed at whichever limit it reaches first, the size limit at the first block after it is reached.
+	 * 
+	 * @param sink where to write the segments to
+	 * @param segmentMillis the length of each segment in milliseconds, <code>0</code> for no limit on length
+	 * @param segmentBytes the size of each segment in bytes, <code>0</code> for no limit on size
+	 * @param recordHandler the handler for receiving status updates about the recording process
+	 */
+	public JavaSoundVorbisRecorder(SegmentSink sink, long segmentMillis, long segmentBytes, RecorderListener recordHandler) {
+		this.encodeFeed = new SegmentEncodeFeed(sink, segmentMillis, segmentBytes);
+		this.recordHandler = recordHandler;
+	}
+
 	/**
 	 * Constructs a vorbis recorder with a custom {@link EncodeFeed}
 	 * 
@@ -513,6 +851,89 @@ public class JavaSoundVorbisRecorder {
 		}
 	}
 
+	/**
+	 * Sets how far the encoder may fall behind the capture before audio is dropped, taking effect from the next start
+	 * 
+	 * @param captureBufferMillis the capture buffer in milliseconds
+	 */
+	public void setCaptureBufferMillis(int captureBufferMillis) {
+		if (captureBufferMillis <= 0) {
+			throw new IllegalArgumentException("Capture buffer must be positive.");
+		}
+		this.captureBufferMillis = captureBufferMillis;
+	}
+
+	public int getCaptureBufferMillis() {
+		return captureBufferMillis;
+	}
+
+	/**
+	 * The capture of the current recording, or of the last one once stopped. Its counters tell whether the encoder keeps up:
+	 * overruns mean audio was dropped, a high water mark near the capacity that it nearly was.
+	 * 
+	 * @return the capture buffer, <code>null</code> before the first recording or when recording through a custom
+	 *         {@link EncodeFeed}
+	 */
+	public CaptureBuffer getCaptureBuffer() {
+		return captureBuffer;
+	}
+
+	/**
+	 * Sets the gate that finds silence in the captured audio, before recording starts. Its counters are reset each time
+	 * recording starts.
+	 * 
+	 * @param silenceGate the gate, <code>null</code> to encode everything as it is captured. Only a segmenting recorder can
+	 *            skip silence, a single stream would lose the time with nothing to mark it
+	 */
+	public void setSilenceGate(SilenceGate silenceGate) {
+		if (silenceGate != null && silenceGate.getMode() == SilenceGate.Mode.SKIP && ! (encodeFeed instanceof SegmentEncodeFeed)) {
+			throw new IllegalArgumentException("Skipping silence needs a segmenting recorder, encode it as silence instead.");
+		}
+		this.silenceGate = silenceGate;
+	}
+
+	/**
+	 * @return the silence gate, <code>null</code> if there is none. Custom {@link EncodeFeed}s are not gated.
+	 */
+	public SilenceGate getSilenceGate() {
+		return silenceGate;
+	}
+
+	/**
+	 * Bounds how long audio waits in the encoder for its page to fill up, for live streaming. See
+	 * {@link EncoderSettings#setMaxLatencyMillis(long)}, the latency of each page is reported as {@link #PAGE_LATENCY}.
+	 * 
+	 * @param maxLatencyMillis the most audio a page holds in milliseconds, <code>0</code> for full pages only
+	 */
+	public void setMaxLatencyMillis(int maxLatencyMillis) {
+		if (maxLatencyMillis < 0) {
+			throw new IllegalArgumentException("Maximum latency must not be negative.");
+		}
+		this.maxLatencyMillis = maxLatencyMillis;
+	}
+
+	public int getMaxLatencyMillis() {
+		return maxLatencyMillis;
+	}
+
+	/**
+	 * The control to lower the bitrate of a recording started with a bitrate while it runs, say when the output it is
+	 * streamed to backs up, and to raise it again once the output drains. Recordings started with a quality cannot be
+	 * adjusted. An adjustment carries over to the following segments and recordings until the control is reset.
+	 * <p>
+	 * The control is created by the first call, and attached to the recordings started from then on, so ask for it before
+	 * starting. Recordings without a control, a maximum latency or segments run on the original native entry points, which
+	 * every build of the native library has.
+	 * 
+	 * @return the bitrate control of this recorder
+	 */
+	public synchronized BitrateControl getBitrateControl() {
+		if (bitrateControl == null) {
+			bitrateControl = new BitrateControl();
+		}
+		return bitrateControl;
+	}
+
 	/**
 	 * Stops the audio recorder and notifies the {@link EncodeFeed}
 	 */
@@ -526,16 +947,26 @@ public class JavaSoundVorbisRecorder {
 	private class AsyncEncoding implements Runnable {
 		@Override
 		public void run() {
-			// Start the native encoder
-			int result = 0;
+			final EncoderSettings settings = new EncoderSettings();
+			settings.setSampleRate(sampleRate);
+			settings.setChannels((int) numberOfChannels);
 			switch (recordingType) {
 				case WITH_BITRATE:
-					result = VorbisEncoder.startEncodingWithBitrate(sampleRate, numberOfChannels, bitrate, encodeFeed);
+					settings.setBitrate(bitrate);
 					break;
 				case WITH_QUALITY:
-					result = VorbisEncoder.startEncodingWithQuality(sampleRate, numberOfChannels, quality, encodeFeed);
+					settings.setQuality(quality);
 					break;
 			}
+			settings.setMaxLatencyMillis(maxLatencyMillis);
+			settings.setBitrateControl(bitrateControl);
+
+			// Start the native encoder, once for each segment when segmenting
+			int result = 0;
+			do {
+				result = encode(settings, encodeFeed);
+			} while (result == EncodeFeed.SUCCESS && encodeFeed instanceof SegmentEncodeFeed
+			        && ((SegmentEncodeFeed) encodeFeed).hasNextSegment());
 			switch (result) {
 				case EncodeFeed.SUCCESS:
 					LOG.debug("Encoder successfully finished");
@@ -553,6 +984,25 @@ public class JavaSoundVorbisRecorder {
 		}
 	}
 
+	/**
+	 * Runs the native encoder over the feed, once for the whole recording or once for each segment. Only recordings that need
+	 * what the original entry points lack go through {@link VorbisEncoder#startEncoding(EncoderSettings, EncodeFeed)}, so
+	 * plain recordings also work with native libraries built before it.
+	 * 
+	 * @return the result of the encoder, one of the {@link EncodeFeed} codes
+	 */
+	int encode(EncoderSettings settings, EncodeFeed feed) {
+		if (settings.getMaxLatencyMillis() == 0 && settings.getBitrateControl() == null && !(feed instanceof SegmentEncodeFeed)) {
+			if (settings.isManaged()) {
+				return VorbisEncoder.startEncodingWithBitrate(settings.getSampleRate(), settings.getChannels(), settings.getBitrate(),
+				        feed);
+			}
+			return VorbisEncoder.startEncodingWithQuality(settings.getSampleRate(), settings.getChannels(), settings.getQuality(),
+			        feed);
+		}
+		return VorbisEncoder.startEncoding(settings, feed);
+	}
+
 	/**
 	 * Checks whether the recording is currently recording
 	 * 
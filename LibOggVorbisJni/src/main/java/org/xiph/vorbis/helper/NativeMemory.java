@@ -0,0 +1,66 @@
+package org.xiph.vorbis.helper;
+
+/**
+ * Process-wide counters of the native memory libogg and libvorbis allocate for decoding and encoding. Every decode, encode,
+ * {@link org.xiph.vorbis.decoder.VorbisPcmReader} and transcoder rendition allocates from an arena of its own, which keeps
+ * the blocks freed into it and is handed to the next session once its session ends, so short sessions with the same
+ * settings reuse the memory of those before them instead of going back to the system allocator. The live and peak figures of
+ * a single session are reported through {@link org.xiph.vorbis.decoder.DecodeStatistics#getPeakNativeBytes()},
+ * {@link org.xiph.vorbis.encoder.EncodeResult#getPeakNativeBytes()} and
+ * {@link org.xiph.vorbis.decoder.VorbisPcmReader#getNativeBytes()}.
+ * <p>
+ * The counters only cover the codec state, not the buffers of the JNI layer or the Java heap.
+ */
+public class NativeMemory {
+	static {
+		LoadNativeLibrary.loadLibraryFiles();
+	}
+
+	private NativeMemory() {}
+
+	/**
+	 * @return the bytes allocated by all sessions and not freed
+	 */
+	public static long getLiveBytes() {
+		return nativeLiveBytes();
+	}
+
+	/**
+	 * @return the most bytes allocated at once since the library was loaded
+	 */
+	public static long getPeakBytes() {
+		return nativePeakBytes();
+	}
+
+	/**
+	 * @return the bytes of freed blocks the arenas keep for later sessions, on top of the live bytes
+	 */
+	public static long getCachedBytes() {
+		return nativeCachedBytes();
+	}
+
+	/**
+	 * @return the bytes sessions left allocated when they ended, taken back with their arena. This only grows when the codec
+	 *         leaks, on the error paths of a decode for instance
+	 */
+	public static long getReclaimedBytes() {
+		return nativeReclaimedBytes();
+	}
+
+	/**
+	 * Hands the blocks kept by arenas not in use back to the system, the next sessions allocate afresh
+	 */
+	public static void trim() {
+		nativeTrim();
+	}
+
+	private static native long nativeLiveBytes();
+
+	private static native long nativePeakBytes();
+
+	private static native long nativeCachedBytes();
+
+	private static native long nativeReclaimedBytes();
+
+	private static native void nativeTrim();
+}
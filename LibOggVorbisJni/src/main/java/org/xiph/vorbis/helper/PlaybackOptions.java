@@ -0,0 +1,128 @@
+package org.xiph.vorbis.helper;
+
+import org.xiph.vorbis.decoder.VorbisHeaderCache;
+
+/**
+ * Buffering of the {@link JavaSoundVorbisPlayer}. The defaults favour uninterrupted playback, {@link #lowLatency()} favours
+ * getting sound out quickly after starting and seeking, at the risk of dropouts on a busy machine.
+ */
+public class PlaybackOptions {
+	/**
+	 * The default line buffer, 32768 bytes per channel of 16 bit audio
+	 */
+	public static final int DEFAULT_LINE_BUFFER_FRAMES = 16384;
+
+	/**
+	 * The default number of frames a stream is buffered before it starts playing
+	 */
+	public static final int DEFAULT_STREAM_PREBUFFER_FRAMES = 12000;
+
+	private int lineBufferFrames = DEFAULT_LINE_BUFFER_FRAMES;
+	private int prebufferFrames = - 1;
+	private boolean flushOnSeek;
+	private int readAheadBufferSize = ReadAheadInputStream.DEFAULT_BUFFER_SIZE;
+	private int readAheadBuffers = ReadAheadInputStream.DEFAULT_BUFFER_COUNT;
+	private VorbisHeaderCache headerCache;
+
+	public PlaybackOptions() {}
+
+	public PlaybackOptions(int lineBufferFrames, int prebufferFrames, boolean flushOnSeek) {
+		setLineBufferFrames(lineBufferFrames);
+		setPrebufferFrames(prebufferFrames);
+		this.flushOnSeek = flushOnSeek;
+	}
+
+	/**
+	 * @return options for interactive use: a line buffer of 2048 frames, around 45 ms at 44.1 kHz, playback that starts with
+	 *         the first decoded block and seeks that drop whatever was still buffered
+	 */
+	public static PlaybackOptions lowLatency() {
+		return new PlaybackOptions(2048, 0, true);
+	}
+
+	public int getLineBufferFrames() {
+		return lineBufferFrames;
+	}
+
+	/**
+	 * @param lineBufferFrames the size of the line buffer in frames, the audio written ahead of what is heard
+	 */
+	public void setLineBufferFrames(int lineBufferFrames) {
+		if (lineBufferFrames <= 0) {
+			throw new IllegalArgumentException("Line buffer must hold at least one frame.");
+		}
+		this.lineBufferFrames = lineBufferFrames;
+	}
+
+	public int getPrebufferFrames() {
+		return prebufferFrames;
+	}
+
+	/**
+	 * @param prebufferFrames the frames written before the line starts playing, at most the line buffer, 0 to play the
+	 *            first decoded block straight away, -1 for the default of starting files at once and buffering
+	 *            {@link #DEFAULT_STREAM_PREBUFFER_FRAMES} of streams
+	 */
+	public void setPrebufferFrames(int prebufferFrames) {
+		if (prebufferFrames < - 1) {
+			throw new IllegalArgumentException("Prebuffer must be -1 or at least 0 frames.");
+		}
+		this.prebufferFrames = prebufferFrames;
+	}
+
+	public boolean isFlushOnSeek() {
+		return flushOnSeek;
+	}
+
+	/**
+	 * @param flushOnSeek whether a seek drops the audio still in the line buffer, rather than letting it play out first
+	 */
+	public void setFlushOnSeek(boolean flushOnSeek) {
+		this.flushOnSeek = flushOnSeek;
+	}
+
+	public int getReadAheadBufferSize() {
+		return readAheadBufferSize;
+	}
+
+	public int getReadAheadBuffers() {
+		return readAheadBuffers;
+	}
+
+	/**
+	 * Streams are read ahead on a thread of their own so the decoder never waits on the source, see
+	 * {@link ReadAheadInputStream}
+	 *
+	 * @param bufferSize the size of each read ahead buffer
+	 * @param buffers the number of buffers, 0 to read the stream directly from the decoder
+	 */
+	public void setReadAhead(int bufferSize, int buffers) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive.");
+		}
+		if (buffers < 0 || buffers == 1) {
+			throw new IllegalArgumentException("Read ahead needs 0 buffers, or at least two.");
+		}
+		this.readAheadBufferSize = bufferSize;
+		this.readAheadBuffers = buffers;
+	}
+
+	public VorbisHeaderCache getHeaderCache() {
+		return headerCache;
+	}
+
+	/**
+	 * @param headerCache lets a stream be tuned into mid-way, see
+	 *            {@link org.xiph.vorbis.decoder.DecodeOptions#setHeaderCache(VorbisHeaderCache)}, ignored for files
+	 */
+	public void setHeaderCache(VorbisHeaderCache headerCache) {
+		this.headerCache = headerCache;
+	}
+
+	@Override
+	public String toString() {
+		return "PlaybackOptions [lineBufferFrames=" + lineBufferFrames + ", prebufferFrames=" + prebufferFrames + ", flushOnSeek="
+		        + flushOnSeek + ", readAheadBufferSize=" + readAheadBufferSize + ", readAheadBuffers=" + readAheadBuffers
+		        + ", headerCache=" + headerCache + "]";
+	}
+}
@@ -8,4 +8,13 @@ public interface PlayerListener {
 	void sendDecodeStreamInfo(DecodeStreamInfo streamInfo);
 
 	void sendPlayingProgress(long progressSeconds);
+
+	/**
+	 * Ignored unless overridden
+	 *
+	 * @param latency {@link JavaSoundVorbisPlayer#STARTUP_LATENCY}, {@link JavaSoundVorbisPlayer#SEEK_LATENCY} or
+	 *            {@link JavaSoundVorbisPlayer#OUTPUT_LATENCY}
+	 * @param latencyMicros the measured latency in microseconds
+	 */
+	default void sendLatency(int latency, long latencyMicros) {}
 }
@@ -0,0 +1,253 @@
+package org.xiph.vorbis.helper;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a stream ahead on a thread of its own into a pool of direct buffers, so that whoever reads from it, typically the
+ * native decoder through a {@link org.xiph.vorbis.decoder.DecodeFeed}, only ever copies from memory. While one buffer is
+ * being read the others are being filled; the window is the size of all of them together.
+ * <p>
+ * Each time a read finds nothing fetched yet it has to wait for the source, which is counted in {@link #getStallCount()}.
+ * Stalls after the start mean the window is too small to ride out the source's hiccups, or the source is simply too slow.
+ */
+public class ReadAheadInputStream extends InputStream {
+	/**
+	 * The default size of each buffer
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The default number of buffers
+	 */
+	public static final int DEFAULT_BUFFER_COUNT = 4;
+
+	/**
+	 * Queued after the last buffer
+	 */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final ReadableByteChannel channel;
+	private final BlockingQueue<ByteBuffer> free;
+	private final BlockingQueue<ByteBuffer> filled;
+	private final Thread fetcher;
+	private final byte[] single = new byte[1];
+	private ByteBuffer current;
+	private boolean ended;
+	private volatile boolean closed;
+	private volatile IOException failure;
+
+	private volatile long stallCount;
+	private volatile long stallNanos;
+	private volatile long fullCount;
+	private volatile long bytesFetched;
+
+	/**
+	 * @param in the stream to read ahead of, closed with this one
+	 */
+	public ReadAheadInputStream(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+	}
+
+	/**
+	 * @param in the stream to read ahead of, closed with this one. File streams are read straight into the direct buffers.
+	 * @param bufferSize the size of each buffer
+	 * @param bufferCount the number of buffers, at least two so one can be filled while another is read
+	 */
+	public ReadAheadInputStream(InputStream in, int bufferSize, int bufferCount) {
+		this(channel(in), bufferSize, bufferCount);
+	}
+
+	/**
+	 * @param channel the channel to read ahead of, closed with this stream
+	 * @param bufferSize the size of each buffer
+	 * @param bufferCount the number of buffers, at least two so one can be filled while another is read
+	 */
+	public ReadAheadInputStream(ReadableByteChannel channel, int bufferSize, int bufferCount) {
+		if (channel == null) {
+			throw new IllegalArgumentException("Channel must not be null.");
+		}
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive.");
+		}
+		if (bufferCount < 2) {
+			throw new IllegalArgumentException("Read ahead needs at least two buffers.");
+		}
+		this.channel = channel;
+		this.free = new ArrayBlockingQueue<ByteBuffer>(bufferCount);
+		// One more for the end marker
+		this.filled = new ArrayBlockingQueue<ByteBuffer>(bufferCount + 1);
+		for (int i = 0; i < bufferCount; i++) {
+			free.add(ByteBuffer.allocateDirect(bufferSize));
+		}
+		fetcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				fetch();
+			}
+		}, "vorbis-read-ahead");
+		fetcher.setDaemon(true);
+		fetcher.start();
+	}
+
+	private static ReadableByteChannel channel(InputStream in) {
+		if (in == null) {
+			throw new IllegalArgumentException("Input stream must not be null.");
+		}
+		if (in instanceof FileInputStream) {
+			return ((FileInputStream) in).getChannel();
+		}
+		return Channels.newChannel(in);
+	}
+
+	private void fetch() {
+		try {
+			while (!closed) {
+				ByteBuffer buffer = free.poll();
+				if (buffer == null) {
+					fullCount++;
+					buffer = free.take();
+				}
+				buffer.clear();
+				// Hand over whatever one read brings rather than waiting for a full buffer, a slow source then still flows
+				int read = channel.read(buffer);
+				if (read < 0) {
+					break;
+				}
+				bytesFetched += read;
+				buffer.flip();
+				filled.put(buffer);
+			}
+		} catch (InterruptedException e) {
+			// Closed while waiting for a free buffer
+		} catch (IOException e) {
+			if (!closed) {
+				failure = e;
+			}
+		}
+		filled.offer(END);
+	}
+
+	/* moves on to the next fetched buffer, false at the end of the stream */
+	private boolean next() throws IOException {
+		if (current != null) {
+			free.offer(current);
+			current = null;
+		}
+		ByteBuffer buffer = filled.poll();
+		if (buffer == null) {
+			long start = System.nanoTime();
+			stallCount++;
+			try {
+				buffer = filled.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for read ahead");
+			} finally {
+				stallNanos += System.nanoTime() - start;
+			}
+		}
+		if (buffer == END) {
+			ended = true;
+			if (failure != null) {
+				throw failure;
+			}
+			return false;
+		}
+		current = buffer;
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return read(single, 0, 1) < 0 ? - 1 : single[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		int count = 0;
+		// Fill the request from whatever is already fetched, only waiting when there is nothing at all to return
+		while (count < len && !ended) {
+			if (current == null || !current.hasRemaining()) {
+				if (count > 0 && filled.isEmpty()) {
+					break;
+				}
+				if (!next()) {
+					break;
+				}
+				continue;
+			}
+			int chunk = Math.min(len - count, current.remaining());
+			current.get(b, off + count, chunk);
+			count += chunk;
+		}
+		return count == 0 ? - 1 : count;
+	}
+
+	@Override
+	public int available() {
+		return current == null ? 0 : current.remaining();
+	}
+
+	/**
+	 * Stops fetching and closes the source
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			fetcher.interrupt();
+			channel.close();
+		}
+	}
+
+	/**
+	 * @return the number of reads that had to wait for the source
+	 */
+	public long getStallCount() {
+		return stallCount;
+	}
+
+	/**
+	 * @return the total time reads spent waiting for the source, in nanoseconds
+	 */
+	public long getStallNanos() {
+		return stallNanos;
+	}
+
+	/**
+	 * @return the number of times the whole window was fetched and waiting to be read, a window often full is big enough
+	 */
+	public long getFullCount() {
+		return fullCount;
+	}
+
+	/**
+	 * @return the number of bytes fetched from the source so far
+	 */
+	public long getBytesFetched() {
+		return bytesFetched;
+	}
+
+	@Override
+	public String toString() {
+		return "ReadAheadInputStream [stallCount=" + stallCount + ", stallNanos=" + stallNanos + ", fullCount=" + fullCount
+		        + ", bytesFetched=" + bytesFetched + "]";
+	}
+}
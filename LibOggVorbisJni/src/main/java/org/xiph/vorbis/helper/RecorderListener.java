@@ -2,4 +2,12 @@ package org.xiph.vorbis.helper;
 
 public interface RecorderListener {
 	void sendEmptyMessage(int message);
+
+	/**
+	 * Ignored unless overridden
+	 *
+	 * @param latency {@link JavaSoundVorbisRecorder#PAGE_LATENCY}
+	 * @param latencyMicros the measured latency in microseconds
+	 */
+	default void sendLatency(int latency, long latencyMicros) {}
 }
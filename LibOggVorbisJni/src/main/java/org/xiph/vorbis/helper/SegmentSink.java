@@ -0,0 +1,32 @@
+package org.xiph.vorbis.helper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Where a segmenting {@link JavaSoundVorbisRecorder} writes its segments. Each segment is a complete Ogg Vorbis stream of its
+ * own, with its own headers and serial number and granule positions starting from 0, so it can be played, uploaded or
+ * processed on its own while recording carries on. Played back to back the segments hold every captured frame exactly once.
+ * <p>
+ * Both methods are called from the encoding thread, so a slow {@link #segmentClosed} holds up encoding, though not capture.
+ */
+public interface SegmentSink {
+	/**
+	 * Opens the output for the next segment
+	 *
+	 * @param index the number of the segment, counting from 0
+	 * @return the stream to write it to, closed by the recorder
+	 * @throws IOException if the output cannot be opened, which stops the recording
+	 */
+	OutputStream openSegment(int index) throws IOException;
+
+	/**
+	 * Called once a segment is complete and its stream closed
+	 *
+	 * @param index the number of the segment
+	 * @param startFrame the frame of the recording the segment starts at
+	 * @param frames the length of the segment in frames
+	 * @param bytes the size of the segment
+	 */
+	void segmentClosed(int index, long startFrame, long frames, long bytes);
+}
@@ -0,0 +1,233 @@
+package org.xiph.vorbis.helper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Finds the silent stretches of a recording before they reach the encoder. A block of 16 bit pcm is quiet when its peak is
+ * below the threshold, and silent once the quiet has lasted longer than the hangover, so pauses between words and the tails
+ * of sounds are still encoded as they are.
+ * <p>
+ * Silent blocks are either encoded as digital silence, which vorbis analyses at a fraction of the cost of room noise, or not
+ * encoded at all. Only a segmenting recorder skips: it ends the segment at the silence and starts the next one where the
+ * sound comes back, its start frame marking where it belongs. A single stream has no way to mark the gap, so it always
+ * encodes silence.
+ * <p>
+ * The counters are kept from the encoding thread and may be read from any other.
+ */
+public class SilenceGate {
+	/**
+	 * What happens to silent blocks
+	 */
+	public static enum Mode {
+		/**
+		 * Encode them as digital silence
+		 */
+		ENCODE_SILENCE,
+
+		/**
+		 * Leave them out, only for a segmenting {@link JavaSoundVorbisRecorder}
+		 */
+		SKIP
+	}
+
+	/**
+	 * The default threshold, well below speech but above the noise of a quiet line
+	 */
+	public static final float DEFAULT_THRESHOLD_DB = - 50f;
+
+	/**
+	 * The default hangover, long enough to keep the pauses within sentences
+	 */
+	public static final int DEFAULT_HANGOVER_MILLIS = 500;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final float thresholdDb;
+	private final int hangoverMillis;
+	private final Mode mode;
+	private final int threshold;
+
+	private int channels;
+	private long hangoverFrames;
+	private long quietFrames;
+	private boolean silent;
+	private boolean lastSilent;
+	private long lastCpuNanos = - 1;
+
+	private volatile long totalFrames;
+	private volatile long silentFrames;
+	private volatile long silentStretches;
+	private volatile long activeCpuNanos;
+	private volatile long silentCpuNanos;
+	private volatile long activeEncodedFrames;
+
+	public SilenceGate() {
+		this(DEFAULT_THRESHOLD_DB, DEFAULT_HANGOVER_MILLIS, Mode.ENCODE_SILENCE);
+	}
+
+	/**
+	 * @param thresholdDb the peak level, in dB below full scale, under which a block is quiet
+	 * @param hangoverMillis how long it has to stay quiet before it is silent
+	 * @param mode what to do with silent blocks
+	 */
+	public SilenceGate(float thresholdDb, int hangoverMillis, Mode mode) {
+		if (thresholdDb >= 0) {
+			throw new IllegalArgumentException("Threshold must be below full scale.");
+		}
+		if (hangoverMillis < 0) {
+			throw new IllegalArgumentException("Hangover must not be negative.");
+		}
+		if (mode == null) {
+			throw new IllegalArgumentException("Mode must not be null.");
+		}
+		this.thresholdDb = thresholdDb;
+		this.hangoverMillis = hangoverMillis;
+		this.mode = mode;
+		this.threshold = (int) Math.ceil(32768 * Math.pow(10, thresholdDb / 20));
+	}
+
+	/**
+	 * Resets the gate for a new recording
+	 */
+	void open(int channels, long sampleRate) {
+		this.channels = channels;
+		this.hangoverFrames = hangoverMillis * sampleRate / 1000;
+		quietFrames = 0;
+		silent = false;
+		lastCpuNanos = - 1;
+		totalFrames = 0;
+		silentFrames = 0;
+		silentStretches = 0;
+		activeCpuNanos = 0;
+		silentCpuNanos = 0;
+		activeEncodedFrames = 0;
+	}
+
+	/**
+	 * Gates a block about to be encoded, and charges the processor time since the last block to that one. Only called from
+	 * the encoding thread.
+	 *
+	 * @param pcm interleaved 16 bit little-endian pcm, zeroed when silent and encoded as silence
+	 * @param length the length of the block in bytes
+	 * @return <code>false</code> if the block is silent and should be left out
+	 */
+	boolean process(byte[] pcm, int length) {
+		chargeLastBlock();
+		int frames = length / (2 * channels);
+		int peak = 0;
+		for (int i = 0; i + 1 < length && peak < threshold; i += 2) {
+			peak = Math.max(peak, Math.abs((short) ((pcm[i] & 0xff) | (pcm[i + 1] << 8))));
+		}
+		if (peak >= threshold) {
+			quietFrames = 0;
+			silent = false;
+		} else {
+			quietFrames += frames;
+			if (!silent && quietFrames > hangoverFrames) {
+				silent = true;
+				silentStretches++;
+			}
+		}
+		totalFrames += frames;
+		lastSilent = silent;
+		if (!silent) {
+			activeEncodedFrames += frames;
+			return true;
+		}
+		silentFrames += frames;
+		if (mode == Mode.SKIP) {
+			return false;
+		}
+		Arrays.fill(pcm, 0, length, (byte) 0);
+		return true;
+	}
+
+	/* the encoder works on a block between handing it over and asking for the next */
+	private void chargeLastBlock() {
+		long now = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : - 1;
+		if (lastCpuNanos >= 0 && now >= 0) {
+			if (lastSilent) {
+				silentCpuNanos += now - lastCpuNanos;
+			} else {
+				activeCpuNanos += now - lastCpuNanos;
+			}
+		}
+		lastCpuNanos = now;
+	}
+
+	public float getThresholdDb() {
+		return thresholdDb;
+	}
+
+	public int getHangoverMillis() {
+		return hangoverMillis;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return the frames gated so far
+	 */
+	public long getTotalFrames() {
+		return totalFrames;
+	}
+
+	/**
+	 * @return the frames found silent
+	 */
+	public long getSilentFrames() {
+		return silentFrames;
+	}
+
+	/**
+	 * @return the number of silent stretches
+	 */
+	public long getSilentStretches() {
+		return silentStretches;
+	}
+
+	/**
+	 * @return the share of the recording that was silent, between 0 and 1
+	 */
+	public double getSilenceRatio() {
+		long total = totalFrames;
+		return total == 0 ? 0 : (double) silentFrames / total;
+	}
+
+	/**
+	 * @return the processor time the encoder spent on silence
+	 */
+	public long getSilentCpuNanos() {
+		return silentCpuNanos;
+	}
+
+	/**
+	 * @return the processor time the encoder spent on sound
+	 */
+	public long getActiveCpuNanos() {
+		return activeCpuNanos;
+	}
+
+	/**
+	 * @return an estimate of the processor time saved, what the silence would have cost at the rate sound did less what it
+	 *         did cost
+	 */
+	public long getCpuNanosSaved() {
+		long active = activeEncodedFrames;
+		if (active == 0) {
+			return 0;
+		}
+		return Math.max(0, (long) ((double) activeCpuNanos / active * silentFrames) - silentCpuNanos);
+	}
+
+	@Override
+	public String toString() {
+		return "SilenceGate [thresholdDb=" + thresholdDb + ", hangoverMillis=" + hangoverMillis + ", mode=" + mode + ", totalFrames="
+		        + totalFrames + ", silentFrames=" + silentFrames + ", silentStretches=" + silentStretches + ", cpuNanosSaved="
+		        + getCpuNanosSaved() + "]";
+	}
+}
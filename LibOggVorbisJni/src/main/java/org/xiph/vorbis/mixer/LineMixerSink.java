@@ -0,0 +1,53 @@
+package org.xiph.vorbis.mixer;
+
+import java.io.Closeable;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays the mix through a Java Sound line
+ */
+public class LineMixerSink implements MixerSink, Closeable {
+	private final SourceDataLine line;
+
+	/**
+	 * Opens and starts a line on the default mixer
+	 *
+	 * @param format the format of the mixer, see {@link VorbisMixer#getFormat()}
+	 * @param bufferFrames the size of the line buffer in frames, the audio written ahead of what is heard
+	 * @throws LineUnavailableException if there is no line for the format
+	 */
+	public LineMixerSink(AudioFormat format, int bufferFrames) throws LineUnavailableException {
+		if (format == null) {
+			throw new IllegalArgumentException("Format must not be null.");
+		}
+		if (bufferFrames <= 0) {
+			throw new IllegalArgumentException("Line buffer must hold at least one frame.");
+		}
+		line = AudioSystem.getSourceDataLine(format);
+		line.open(format, bufferFrames * format.getFrameSize());
+		line.start();
+	}
+
+	public SourceDataLine getLine() {
+		return line;
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) {
+		line.write(data, offset, length);
+	}
+
+	/**
+	 * Plays out what is still buffered and closes the line
+	 */
+	@Override
+	public void close() {
+		line.drain();
+		line.stop();
+		line.close();
+	}
+}
@@ -0,0 +1,126 @@
+package org.xiph.vorbis.mixer;
+
+import org.xiph.vorbis.decoder.PcmFormat;
+
+/**
+ * Output format and threading of a {@link VorbisMixer}
+ */
+public class MixerSettings {
+	private long sampleRate = 44100;
+	private int channels = 2;
+	private PcmFormat pcmFormat = PcmFormat.S16;
+	private boolean dither;
+	private float gain = 1f;
+	private int blockFrames = 512;
+	private int workers = Runtime.getRuntime().availableProcessors();
+
+	public MixerSettings() {}
+
+	public MixerSettings(long sampleRate, int channels) {
+		setSampleRate(sampleRate);
+		setChannels(channels);
+	}
+
+	public long getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @param sampleRate the output sample rate, every voice has to have the same
+	 */
+	public void setSampleRate(long sampleRate) {
+		if (sampleRate <= 0) {
+			throw new IllegalArgumentException("Sample rate must be positive.");
+		}
+		this.sampleRate = sampleRate;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @param channels the output channels. Voices are panned into stereo and averaged into mono, other layouts take the voice
+	 *            channels in order.
+	 */
+	public void setChannels(int channels) {
+		if (channels < 1 || channels > 255) {
+			throw new IllegalArgumentException("Channels must be between 1 and 255.");
+		}
+		this.channels = channels;
+	}
+
+	public PcmFormat getPcmFormat() {
+		return pcmFormat;
+	}
+
+	/**
+	 * @param pcmFormat the format the mix is converted to, once per block
+	 */
+	public void setPcmFormat(PcmFormat pcmFormat) {
+		if (pcmFormat == null) {
+			throw new IllegalArgumentException("Pcm format must not be null.");
+		}
+		this.pcmFormat = pcmFormat;
+	}
+
+	public boolean isDither() {
+		return dither;
+	}
+
+	/**
+	 * @param dither whether to add triangular (TPDF) dither when converting the mix to {@link PcmFormat#S16}
+	 */
+	public void setDither(boolean dither) {
+		this.dither = dither;
+	}
+
+	public float getGain() {
+		return gain;
+	}
+
+	/**
+	 * @param gain the master gain applied to the mix, samples pushed past full scale are clipped
+	 */
+	public void setGain(float gain) {
+		if (gain < 0f || Float.isNaN(gain) || Float.isInfinite(gain)) {
+			throw new IllegalArgumentException("Gain must be a finite, non negative number.");
+		}
+		this.gain = gain;
+	}
+
+	public int getBlockFrames() {
+		return blockFrames;
+	}
+
+	/**
+	 * @param blockFrames the frames mixed at a time, changes made to voices take effect at the next block unless they are
+	 *            scheduled for an exact frame
+	 */
+	public void setBlockFrames(int blockFrames) {
+		if (blockFrames <= 0) {
+			throw new IllegalArgumentException("Block must hold at least one frame.");
+		}
+		this.blockFrames = blockFrames;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * @param workers the threads decoding voices in parallel, including the one mixing, by default one per processor
+	 */
+	public void setWorkers(int workers) {
+		if (workers <= 0) {
+			throw new IllegalArgumentException("Workers must be at least 1.");
+		}
+		this.workers = workers;
+	}
+
+	@Override
+	public String toString() {
+		return "MixerSettings [sampleRate=" + sampleRate + ", channels=" + channels + ", pcmFormat=" + pcmFormat + ", dither=" + dither
+		        + ", gain=" + gain + ", blockFrames=" + blockFrames + ", workers=" + workers + "]";
+	}
+}
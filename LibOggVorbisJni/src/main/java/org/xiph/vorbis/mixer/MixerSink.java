@@ -0,0 +1,17 @@
+package org.xiph.vorbis.mixer;
+
+import java.io.IOException;
+
+/**
+ * Where a running {@link VorbisMixer} writes its output. A blocking write is what paces the mixer, a sink that accepts data
+ * faster than it plays makes the mixer run ahead.
+ */
+public interface MixerSink {
+	/**
+	 * @param data interleaved frames in the format of the mixer
+	 * @param offset the offset of the first frame
+	 * @param length the number of bytes, always whole frames
+	 * @throws IOException if the output fails, which stops the mixer
+	 */
+	void write(byte[] data, int offset, int length) throws IOException;
+}
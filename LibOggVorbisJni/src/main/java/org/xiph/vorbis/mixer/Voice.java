@@ -0,0 +1,107 @@
+package org.xiph.vorbis.mixer;
+
+/**
+ * A file playing in a {@link VorbisMixer}. Voices start out silent and unscheduled; frames given to schedule them are output
+ * frames of the mixer, see {@link VorbisMixer#getPosition()}, and take effect on exactly that frame. Frames already mixed
+ * count as the next one to be mixed. Once a voice has finished or been stopped it is released, and further calls are
+ * ignored.
+ */
+public class Voice {
+	private final VorbisMixer mixer;
+	private final int channels;
+	private final long totalSamples;
+	long handle;
+	long startFrame = - 1;
+
+	Voice(VorbisMixer mixer, long handle, int channels, long totalSamples) {
+		this.mixer = mixer;
+		this.handle = handle;
+		this.channels = channels;
+		this.totalSamples = totalSamples;
+	}
+
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @return the length of the file in sample frames
+	 */
+	public long getTotalSamples() {
+		return totalSamples;
+	}
+
+	/**
+	 * Starts playing with the next block
+	 */
+	public void play() {
+		playAt(0);
+	}
+
+	/**
+	 * @param frame the output frame to start playing on
+	 */
+	public void playAt(long frame) {
+		mixer.play(this, frame);
+	}
+
+	/**
+	 * Stops playing with the next block
+	 */
+	public void stop() {
+		stopAt(0, 0);
+	}
+
+	/**
+	 * @param frame the output frame to stop playing on, or to start fading out on
+	 * @param fadeFrames the length of the fade out, 0 to cut off straight away
+	 */
+	public void stopAt(long frame, int fadeFrames) {
+		if (fadeFrames < 0) {
+			throw new IllegalArgumentException("Fade must not be negative.");
+		}
+		mixer.stop(this, frame, fadeFrames);
+	}
+
+	/**
+	 * @param gain the linear gain, from the next block
+	 */
+	public void setGain(float gain) {
+		fadeTo(gain, 0, 0);
+	}
+
+	/**
+	 * Ramps the gain linearly from wherever it is when the fade starts
+	 *
+	 * @param gain the linear gain to end up at
+	 * @param frame the output frame to start the fade on
+	 * @param fadeFrames the length of the fade
+	 */
+	public void fadeTo(float gain, long frame, int fadeFrames) {
+		if (gain < 0f || Float.isNaN(gain) || Float.isInfinite(gain)) {
+			throw new IllegalArgumentException("Gain must be a finite, non negative number.");
+		}
+		if (fadeFrames < 0) {
+			throw new IllegalArgumentException("Fade must not be negative.");
+		}
+		mixer.fade(this, gain, frame, fadeFrames);
+	}
+
+	/**
+	 * @param pan from -1 for left to 1 for right. Mono voices are panned at constant power, 3 dB down on both sides in the
+	 *            centre, stereo voices are balanced, full level on both sides in the centre.
+	 */
+	public void setPan(float pan) {
+		if (!(pan >= - 1f && pan <= 1f)) {
+			throw new IllegalArgumentException("Pan must be between -1 and 1.");
+		}
+		mixer.pan(this, pan);
+	}
+
+	/**
+	 * @return whether the voice has played to its end or been stopped, and released
+	 */
+	public boolean isFinished() {
+		return mixer.isFinished(this);
+	}
+}
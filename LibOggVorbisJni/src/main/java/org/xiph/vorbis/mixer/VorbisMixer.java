@@ -0,0 +1,376 @@
+package org.xiph.vorbis.mixer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xiph.vorbis.helper.LoadNativeLibrary;
+import org.xiph.vorbis.sampled.VorbisPcmInputStream;
+
+/**
+ * Plays any number of vorbis files through one output. Each {@link Voice} decodes natively straight into a float mix with
+ * its own gain, pan and fades; the mix is converted to the output format once per block. With more than one worker the
+ * voices are split between them, each decoding its share into a bus of its own, so the number of voices that keep up scales
+ * with the processors.
+ * <p>
+ * Blocks are either pulled with {@link #render(byte[], int)} or pushed to a {@link MixerSink} by a thread of the mixer's
+ * own, see {@link #start(MixerSink)}. Voices may be controlled from any thread.
+ */
+public class VorbisMixer implements Closeable {
+	static {
+		LoadNativeLibrary.loadLibraryFiles();
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(VorbisMixer.class);
+
+	/**
+	 * Fewer voices than this per worker are not worth handing to another thread
+	 */
+	private static final int MIN_VOICES_PER_WORKER = 4;
+
+	private final long sampleRate;
+	private final int channels;
+	private final AudioFormat format;
+	private final int blockFrames;
+	private final int frameLength;
+	private final int workers;
+	private final ExecutorService executor;
+	private final List<Voice> voices = new ArrayList<Voice>();
+	private long[] handles = new long[16];
+	private boolean[] playing = new boolean[16];
+	private final List<Future<?>> pending = new ArrayList<Future<?>>();
+	private long handle;
+	private long position;
+	private long clippedSamples;
+
+	private Thread thread;
+	private volatile boolean running;
+
+	public VorbisMixer(MixerSettings settings) {
+		if (settings == null) {
+			throw new IllegalArgumentException("Mixer settings must not be null.");
+		}
+		sampleRate = settings.getSampleRate();
+		channels = settings.getChannels();
+		format = VorbisPcmInputStream.toAudioFormat(settings.getPcmFormat(), sampleRate, channels);
+		blockFrames = settings.getBlockFrames();
+		frameLength = channels * settings.getPcmFormat().getBytesPerSample();
+		workers = settings.getWorkers();
+		handle = nativeNew(channels, blockFrames, workers, settings.getPcmFormat().ordinal(), settings.isDither(), settings.getGain());
+		if (handle == 0) {
+			throw new OutOfMemoryError("Cannot allocate " + workers + " mix buses of " + blockFrames + " frames.");
+		}
+		executor = workers > 1 ? Executors.newFixedThreadPool(workers - 1, new WorkerFactory()) : null;
+	}
+
+	/**
+	 * @return the format of the mixed output
+	 */
+	public AudioFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return the size of a block in bytes
+	 */
+	public int getBlockLength() {
+		return blockFrames * frameLength;
+	}
+
+	/**
+	 * @return the output frame the next block starts on
+	 */
+	public synchronized long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the voices still playing or waiting to
+	 */
+	public synchronized int getVoiceCount() {
+		return voices.size();
+	}
+
+	/**
+	 * @return the samples of the mix clipped at full scale so far
+	 */
+	public synchronized long getClippedSamples() {
+		return clippedSamples;
+	}
+
+	/**
+	 * Opens a file as a voice, which stays silent until it is played
+	 *
+	 * @param file a vorbis file at the sample rate of the mixer
+	 * @return the voice
+	 * @throws IOException if the file cannot be opened or is not vorbis
+	 */
+	public synchronized Voice addVoice(File file) throws IOException {
+		checkOpen();
+		if (file == null) {
+			throw new IllegalArgumentException("File to play must not be null.");
+		}
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+		long[] info = new long[3];
+		long voiceHandle = nativeOpenVoice(file.getAbsolutePath(), info);
+		if (voiceHandle == 0) {
+			throw new IOException(file + " is not an Ogg Vorbis file");
+		}
+		if (info[1] != sampleRate) {
+			nativeCloseVoice(voiceHandle);
+			throw new IllegalArgumentException(file + " has a sample rate of " + info[1] + " rather than " + sampleRate + ".");
+		}
+		Voice voice = new Voice(this, voiceHandle, (int) info[0], info[2]);
+		voices.add(voice);
+		return voice;
+	}
+
+	/**
+	 * Mixes the next block
+	 *
+	 * @param out where to put the block
+	 * @param offset the offset to put it at, with {@link #getBlockLength()} bytes of room
+	 * @return the number of bytes mixed, always {@link #getBlockLength()}
+	 */
+	public synchronized int render(byte[] out, int offset) {
+		checkOpen();
+		if (offset < 0 || offset + getBlockLength() > out.length) {
+			throw new IllegalArgumentException("Output has no room for a " + getBlockLength() + " byte block at " + offset + ".");
+		}
+		int count = voices.size();
+		if (handles.length < count) {
+			handles = new long[Math.max(count, handles.length * 2)];
+			playing = new boolean[handles.length];
+		}
+		for (int i = 0; i < count; i++) {
+			handles[i] = voices.get(i).handle;
+		}
+		int buses = Math.max(1, Math.min(workers, count / MIN_VOICES_PER_WORKER));
+		for (int bus = 1; bus < buses; bus++) {
+			final int busIndex = bus, from = count * bus / buses, to = count * (bus + 1) / buses;
+			final long[] busHandles = handles;
+			final boolean[] busPlaying = playing;
+			final long busPosition = position;
+			pending.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					nativeRender(handle, busIndex, busHandles, from, to, blockFrames, busPosition, busPlaying);
+				}
+			}));
+		}
+		nativeRender(handle, 0, handles, 0, count / buses, blockFrames, position, playing);
+		awaitWorkers();
+		clippedSamples += nativeMixdown(handle, buses, blockFrames, out, offset);
+		position += blockFrames;
+
+		for (int i = count - 1; i >= 0; i--) {
+			if (!playing[i]) {
+				release(voices.remove(i));
+			}
+		}
+		return getBlockLength();
+	}
+
+	/* the buses have to be complete before they are mixed, whatever happens to this thread */
+	private void awaitWorkers() {
+		boolean interrupted = false;
+		for (Future<?> future : pending) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Mixing worker failed", e.getCause());
+				}
+			}
+		}
+		pending.clear();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Starts a thread mixing block after block into the sink, paced by its writes, until {@link #stop()}
+	 *
+	 * @param sink where to write the mix, it is not closed when the mixer stops
+	 */
+	public synchronized void start(final MixerSink sink) {
+		checkOpen();
+		if (sink == null) {
+			throw new IllegalArgumentException("Sink must not be null.");
+		}
+		if (thread != null) {
+			throw new IllegalStateException("Mixer is already running.");
+		}
+		running = true;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				byte[] block = new byte[getBlockLength()];
+				try {
+					while (running) {
+						// Mix under the lock but write outside it, so voices can be changed while the sink blocks
+						sink.write(block, 0, render(block, 0));
+					}
+				} catch (IOException e) {
+					LOG.error("Failed to write mix to sink.  Stopping.", e);
+				}
+				running = false;
+			}
+		}, "vorbis-mixer");
+		thread.start();
+	}
+
+	/**
+	 * Stops the thread started by {@link #start(MixerSink)} and waits for it to finish its current block
+	 */
+	public void stop() {
+		Thread stopping;
+		synchronized (this) {
+			stopping = thread;
+			thread = null;
+			running = false;
+		}
+		if (stopping != null && stopping != Thread.currentThread()) {
+			try {
+				stopping.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return whether the thread started by {@link #start(MixerSink)} is mixing
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Stops mixing and releases all voices
+	 */
+	@Override
+	public void close() {
+		stop();
+		synchronized (this) {
+			if (handle == 0) {
+				return;
+			}
+			for (Voice voice : voices) {
+				release(voice);
+			}
+			voices.clear();
+			Arrays.fill(handles, 0);
+			if (executor != null) {
+				executor.shutdown();
+			}
+			nativeFree(handle);
+			handle = 0;
+		}
+	}
+
+	private void checkOpen() {
+		if (handle == 0) {
+			throw new IllegalStateException("Mixer is closed.");
+		}
+	}
+
+	private void release(Voice voice) {
+		nativeCloseVoice(voice.handle);
+		voice.handle = 0;
+	}
+
+	/* frames that have already been mixed mean as soon as possible */
+	private long frame(long frame) {
+		return Math.max(frame, position);
+	}
+
+	synchronized void play(Voice voice, long frame) {
+		if (voice.handle != 0) {
+			voice.startFrame = frame(frame);
+			nativeSchedule(voice.handle, voice.startFrame, - 1);
+		}
+	}
+
+	synchronized void stop(Voice voice, long frame, int fadeFrames) {
+		if (voice.handle == 0) {
+			return;
+		}
+		if (voice.startFrame < 0) {
+			// Never going to play, so there is nothing to wait for
+			voices.remove(voice);
+			release(voice);
+			return;
+		}
+		if (fadeFrames > 0) {
+			nativeFade(voice.handle, 0f, frame(frame), fadeFrames);
+		}
+		nativeSchedule(voice.handle, voice.startFrame, frame(frame) + fadeFrames);
+	}
+
+	synchronized void fade(Voice voice, float gain, long frame, int fadeFrames) {
+		if (voice.handle != 0) {
+			nativeFade(voice.handle, gain, frame(frame), fadeFrames);
+		}
+	}
+
+	synchronized void pan(Voice voice, float pan) {
+		if (voice.handle != 0) {
+			nativePan(voice.handle, pan);
+		}
+	}
+
+	synchronized boolean isFinished(Voice voice) {
+		return voice.handle == 0;
+	}
+
+	private static class WorkerFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "vorbis-mixer-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private static native long nativeNew(int channels, int blockFrames, int buses, int pcmFormat, boolean dither, float gain);
+
+	private static native void nativeFree(long handle);
+
+	private static native long nativeOpenVoice(String path, long[] info);
+
+	private static native void nativeSchedule(long voice, long start, long stop);
+
+	private static native void nativeFade(long voice, float gain, long at, long frames);
+
+	private static native void nativePan(long voice, float pan);
+
+	private static native void nativeRender(long handle, int bus, long[] voices, int from, int to, int frames, long position,
+	        boolean[] playing);
+
+	private static native long nativeMixdown(long handle, int buses, int frames, byte[] out, int offset);
+
+	private static native void nativeCloseVoice(long voice);
+}
@@ -0,0 +1,104 @@
+package org.xiph.vorbis.ogg;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The CRC-32 Ogg pages are checksummed with: polynomial 0x04c11db7, no reflection, zero initial value and no final xor.
+ * The checksum of a page is computed with its own checksum field set to zero.
+ * <p>
+ * Eight bytes are folded in per step with the slicing-by-8 tables, <code>TABLE_k</code> advancing a byte through <code>k</code>
+ * further zero bytes, which takes the byte at a time loop from one table lookup per byte with a dependency on the previous
+ * one to eight independent lookups per eight bytes.
+ */
+public final class OggCrc {
+	private static final int[] TABLE = new int[256];
+	private static final int[] TABLE_1 = new int[256];
+	private static final int[] TABLE_2 = new int[256];
+	private static final int[] TABLE_3 = new int[256];
+	private static final int[] TABLE_4 = new int[256];
+	private static final int[] TABLE_5 = new int[256];
+	private static final int[] TABLE_6 = new int[256];
+	private static final int[] TABLE_7 = new int[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			int r = i << 24;
+			for (int j = 0; j < 8; j++) {
+				r = (r & 0x80000000) != 0 ? (r << 1) ^ 0x04c11db7 : r << 1;
+			}
+			TABLE[i] = r;
+		}
+		int[][] tables = { TABLE, TABLE_1, TABLE_2, TABLE_3, TABLE_4, TABLE_5, TABLE_6, TABLE_7 };
+		for (int k = 1; k < tables.length; k++) {
+			for (int i = 0; i < 256; i++) {
+				int previous = tables[k - 1][i];
+				tables[k][i] = (previous << 8) ^ TABLE[previous >>> 24];
+			}
+		}
+	}
+
+	private OggCrc() {}
+
+	/**
+	 * Continues a checksum over part of an array
+	 *
+	 * @param crc the checksum so far, 0 to start
+	 * @param data the bytes to add
+	 * @param offset where to start in the array
+	 * @param length how many bytes to add
+	 * @return the updated checksum
+	 */
+	public static int update(int crc, byte[] data, int offset, int length) {
+		int i = offset, end = offset + length;
+		for (; i + 8 <= end; i += 8) {
+			crc ^= (data[i] & 0xff) << 24 | (data[i + 1] & 0xff) << 16 | (data[i + 2] & 0xff) << 8 | (data[i + 3] & 0xff);
+			crc = TABLE_7[crc >>> 24] ^ TABLE_6[(crc >>> 16) & 0xff] ^ TABLE_5[(crc >>> 8) & 0xff] ^ TABLE_4[crc & 0xff]
+			        ^ TABLE_3[data[i + 4] & 0xff] ^ TABLE_2[data[i + 5] & 0xff] ^ TABLE_1[data[i + 6] & 0xff]
+			        ^ TABLE[data[i + 7] & 0xff];
+		}
+		for (; i < end; i++) {
+			crc = (crc << 8) ^ TABLE[((crc >>> 24) ^ data[i]) & 0xff];
+		}
+		return crc;
+	}
+
+	/**
+	 * Continues a checksum over the remaining bytes of a buffer without moving its position
+	 *
+	 * @param crc the checksum so far, 0 to start
+	 * @param buffer the bytes from position to limit are added
+	 * @return the updated checksum
+	 */
+	public static int update(int crc, ByteBuffer buffer) {
+		return update(crc, buffer, buffer.position(), buffer.remaining());
+	}
+
+	/**
+	 * Continues a checksum over part of a buffer, ignoring its position and limit
+	 *
+	 * @param crc the checksum so far, 0 to start
+	 * @param buffer the bytes to add
+	 * @param offset the absolute index to start at
+	 * @param length how many bytes to add
+	 * @return the updated checksum
+	 */
+	public static int update(int crc, ByteBuffer buffer, int offset, int length) {
+		if (buffer.hasArray()) {
+			return update(crc, buffer.array(), buffer.arrayOffset() + offset, length);
+		}
+		int i = offset, end = offset + length;
+		boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+		for (; i + 8 <= end; i += 8) {
+			long word = bigEndian ? buffer.getLong(i) : Long.reverseBytes(buffer.getLong(i));
+			crc ^= (int) (word >>> 32);
+			int low = (int) word;
+			crc = TABLE_7[crc >>> 24] ^ TABLE_6[(crc >>> 16) & 0xff] ^ TABLE_5[(crc >>> 8) & 0xff] ^ TABLE_4[crc & 0xff]
+			        ^ TABLE_3[low >>> 24] ^ TABLE_2[(low >>> 16) & 0xff] ^ TABLE_1[(low >>> 8) & 0xff] ^ TABLE[low & 0xff];
+		}
+		for (; i < end; i++) {
+			crc = (crc << 8) ^ TABLE[((crc >>> 24) ^ buffer.get(i)) & 0xff];
+		}
+		return crc;
+	}
+}
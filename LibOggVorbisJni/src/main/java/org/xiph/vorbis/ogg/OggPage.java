@@ -0,0 +1,270 @@
+package org.xiph.vorbis.ogg;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A single Ogg page held in a reusable buffer. The header fields can be changed in place, {@link #updateChecksum()} has to
+ * be called afterwards before the page is written out again.
+ * <p>
+ * Header layout: capture pattern <code>OggS</code>, version, header type flags, 64 bit granule position, serial number,
+ * sequence number, checksum, segment count, then the segment table and the body, all little endian.
+ */
+public class OggPage {
+	/**
+	 * The page starts with the continuation of a packet from the previous page
+	 */
+	public static final int FLAG_CONTINUED = 0x01;
+
+	/**
+	 * The first page of a logical stream
+	 */
+	public static final int FLAG_BEGINNING_OF_STREAM = 0x02;
+
+	/**
+	 * The last page of a logical stream
+	 */
+	public static final int FLAG_END_OF_STREAM = 0x04;
+
+	public static final int HEADER_LENGTH = 27;
+	public static final int MAX_SEGMENTS = 255;
+	public static final int MAX_LENGTH = HEADER_LENGTH + MAX_SEGMENTS + MAX_SEGMENTS * 255;
+
+	private static final int GRANULE_POSITION = 6;
+	private static final int SERIAL_NUMBER = 14;
+	private static final int SEQUENCE_NUMBER = 18;
+	private static final int CHECKSUM = 22;
+	private static final int SEGMENT_COUNT = 26;
+	private static final byte[] ZERO_CHECKSUM = new byte[4];
+
+	private final byte[] data = new byte[MAX_LENGTH];
+	private int length;
+
+	/**
+	 * Reads the next page
+	 *
+	 * @param in positioned at the start of a page
+	 * @return <code>false</code> if the stream ended cleanly before the page
+	 * @throws IOException if the stream cannot be read, ends inside the page or is not positioned at a page
+	 */
+	public boolean read(InputStream in) throws IOException {
+		int first = in.read();
+		if (first < 0) {
+			return false;
+		}
+		data[0] = (byte) first;
+		readFully(in, 1, HEADER_LENGTH - 1);
+		if (data[0] != 'O' || data[1] != 'g' || data[2] != 'g' || data[3] != 'S') {
+			throw new IOException("Missing Ogg capture pattern");
+		}
+		if (data[4] != 0) {
+			throw new IOException("Unsupported Ogg version " + data[4]);
+		}
+		int segments = getSegmentCount();
+		readFully(in, HEADER_LENGTH, segments);
+		int bodyLength = 0;
+		for (int i = 0; i < segments; i++) {
+			bodyLength += data[HEADER_LENGTH + i] & 0xff;
+		}
+		readFully(in, HEADER_LENGTH + segments, bodyLength);
+		length = HEADER_LENGTH + segments + bodyLength;
+		return true;
+	}
+
+	private void readFully(InputStream in, int offset, int count) throws IOException {
+		while (count > 0) {
+			int read = in.read(data, offset, count);
+			if (read < 0) {
+				throw new EOFException("Ogg page is truncated");
+			}
+			offset += read;
+			count -= read;
+		}
+	}
+
+	/**
+	 * Builds a page from its parts and computes its checksum
+	 *
+	 * @param headerType the <code>FLAG_*</code> bits
+	 * @param granulePosition the granule position of the last packet ending on the page, -1 if none does
+	 * @param serialNumber the logical stream the page belongs to
+	 * @param sequenceNumber the position of the page within its logical stream
+	 * @param lacing the segment table
+	 * @param lacingOffset where the segments of this page start in the table
+	 * @param segments the number of segments, at most {@link #MAX_SEGMENTS}
+	 * @param body the packet data
+	 * @param bodyOffset where the data of this page starts
+	 */
+	public void set(int headerType, long granulePosition, int serialNumber, int sequenceNumber, byte[] lacing, int lacingOffset,
+	        int segments, byte[] body, int bodyOffset) {
+		if (segments < 0 || segments > MAX_SEGMENTS) {
+			throw new IllegalArgumentException("A page holds at most " + MAX_SEGMENTS + " segments.");
+		}
+		data[0] = 'O';
+		data[1] = 'g';
+		data[2] = 'g';
+		data[3] = 'S';
+		data[4] = 0;
+		data[SEGMENT_COUNT] = (byte) segments;
+		System.arraycopy(lacing, lacingOffset, data, HEADER_LENGTH, segments);
+		int bodyLength = 0;
+		for (int i = 0; i < segments; i++) {
+			bodyLength += lacing[lacingOffset + i] & 0xff;
+		}
+		System.arraycopy(body, bodyOffset, data, HEADER_LENGTH + segments, bodyLength);
+		length = HEADER_LENGTH + segments + bodyLength;
+		setHeaderType(headerType);
+		setGranulePosition(granulePosition);
+		setSerialNumber(serialNumber);
+		setSequenceNumber(sequenceNumber);
+		updateChecksum();
+	}
+
+	public void write(OutputStream out) throws IOException {
+		out.write(data, 0, length);
+	}
+
+	/**
+	 * @return the buffer holding the page, valid up to {@link #getLength()} until the page is read or set again
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the length of the fixed header plus the segment table, which is also where the body starts
+	 */
+	public int getHeaderLength() {
+		return HEADER_LENGTH + getSegmentCount();
+	}
+
+	public int getBodyLength() {
+		return length - getHeaderLength();
+	}
+
+	public int getHeaderType() {
+		return data[5] & 0xff;
+	}
+
+	public void setHeaderType(int headerType) {
+		data[5] = (byte) headerType;
+	}
+
+	public boolean isContinued() {
+		return (getHeaderType() & FLAG_CONTINUED) != 0;
+	}
+
+	public boolean isBeginningOfStream() {
+		return (getHeaderType() & FLAG_BEGINNING_OF_STREAM) != 0;
+	}
+
+	public boolean isEndOfStream() {
+		return (getHeaderType() & FLAG_END_OF_STREAM) != 0;
+	}
+
+	/**
+	 * @return the granule position of the last packet that ends on this page, -1 if none does
+	 */
+	public long getGranulePosition() {
+		return getLong(GRANULE_POSITION);
+	}
+
+	public void setGranulePosition(long granulePosition) {
+		putInt(GRANULE_POSITION, (int) granulePosition);
+		putInt(GRANULE_POSITION + 4, (int) (granulePosition >>> 32));
+	}
+
+	public int getSerialNumber() {
+		return getInt(SERIAL_NUMBER);
+	}
+
+	public void setSerialNumber(int serialNumber) {
+		putInt(SERIAL_NUMBER, serialNumber);
+	}
+
+	public int getSequenceNumber() {
+		return getInt(SEQUENCE_NUMBER);
+	}
+
+	public void setSequenceNumber(int sequenceNumber) {
+		putInt(SEQUENCE_NUMBER, sequenceNumber);
+	}
+
+	public int getChecksum() {
+		return getInt(CHECKSUM);
+	}
+
+	public int getSegmentCount() {
+		return data[SEGMENT_COUNT] & 0xff;
+	}
+
+	public int getSegmentLength(int segment) {
+		return data[HEADER_LENGTH + segment] & 0xff;
+	}
+
+	/**
+	 * @return the number of packets that end on this page
+	 */
+	public int getPacketCount() {
+		int packets = 0;
+		for (int i = 0, segments = getSegmentCount(); i < segments; i++) {
+			if (getSegmentLength(i) < 255) {
+				packets++;
+			}
+		}
+		return packets;
+	}
+
+	/**
+	 * @return whether the last packet on the page carries on into the next page
+	 */
+	public boolean isLastPacketContinued() {
+		int segments = getSegmentCount();
+		return segments > 0 && getSegmentLength(segments - 1) == 255;
+	}
+
+	private int computeChecksum() {
+		int crc = OggCrc.update(0, data, 0, CHECKSUM);
+		crc = OggCrc.update(crc, ZERO_CHECKSUM, 0, 4);
+		return OggCrc.update(crc, data, CHECKSUM + 4, length - CHECKSUM - 4);
+	}
+
+	public boolean isChecksumValid() {
+		return computeChecksum() == getChecksum();
+	}
+
+	/**
+	 * Recomputes the checksum after the header or body has been changed
+	 */
+	public void updateChecksum() {
+		putInt(CHECKSUM, computeChecksum());
+	}
+
+	private int getInt(int offset) {
+		return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8 | (data[offset + 2] & 0xff) << 16 | (data[offset + 3] & 0xff) << 24;
+	}
+
+	private long getLong(int offset) {
+		return (getInt(offset) & 0xffffffffL) | (long) getInt(offset + 4) << 32;
+	}
+
+	private void putInt(int offset, int value) {
+		data[offset] = (byte) value;
+		data[offset + 1] = (byte) (value >>> 8);
+		data[offset + 2] = (byte) (value >>> 16);
+		data[offset + 3] = (byte) (value >>> 24);
+	}
+
+	@Override
+	public String toString() {
+		return "OggPage [serialNumber=" + getSerialNumber() + ", sequenceNumber=" + getSequenceNumber() + ", granulePosition="
+		        + getGranulePosition() + ", headerType=" + getHeaderType() + ", segments=" + getSegmentCount() + ", length=" + length
+		        + "]";
+	}
+}
@@ -0,0 +1,330 @@
+package org.xiph.vorbis.ogg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Walks the pages of an Ogg stream held in a {@link ByteBuffer} or a file, without copying or allocating anything per
+ * page: the reader itself is a view of the current page and, through {@link #nextPacket()}, of the packet data on it.
+ * Files are memory mapped a window at a time.
+ * <p>
+ * Anything between pages that is not a page, or with checksum verification on, a page whose checksum does not match, is
+ * skipped up to the next capture pattern and counted, so damaged files can be scanned through to the end.
+ */
+public class OggPageReader {
+	private static final int CAPTURE_PATTERN = 'O' | 'g' << 8 | 'g' << 16 | 'S' << 24;
+	private static final int GRANULE_POSITION = 6;
+	private static final int SERIAL_NUMBER = 14;
+	private static final int SEQUENCE_NUMBER = 18;
+	private static final int CHECKSUM = 22;
+	private static final int SEGMENT_COUNT = 26;
+	private static final byte[] ZERO_CHECKSUM = new byte[4];
+	private static final int WINDOW = 1 << 30;
+
+	private final FileChannel channel;
+	private ByteBuffer buffer;
+	private long base;
+	private int position;
+	private boolean verifyChecksums;
+
+	private int page = - 1;
+	private int segments;
+	private int length;
+	private long pageCount;
+	private long skippedBytes;
+	private long corruptPageCount;
+
+	private int segment;
+	private int packetOffset;
+	private int packetLength;
+	private boolean packetContinued;
+	private boolean packetComplete;
+
+	/**
+	 * Reads the pages between the position and the limit of a buffer, the buffer itself is left as it is
+	 *
+	 * @param buffer the stream data
+	 */
+	public OggPageReader(ByteBuffer buffer) {
+		if (buffer == null) {
+			throw new IllegalArgumentException("Buffer must not be null.");
+		}
+		this.channel = null;
+		this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		this.position = buffer.position();
+	}
+
+	/**
+	 * Reads the pages of a file from its current position, mapping it a window at a time
+	 *
+	 * @param channel an open file, it is not closed by the reader
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public OggPageReader(FileChannel channel) throws IOException {
+		if (channel == null) {
+			throw new IllegalArgumentException("Channel must not be null.");
+		}
+		this.channel = channel;
+		map(channel.position());
+	}
+
+	private void map(long offset) throws IOException {
+		long size = Math.min(WINDOW, channel.size() - offset);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+		base = offset;
+		position = 0;
+	}
+
+	/* whether count bytes from the position are available, moving the window along a file if need be */
+	private boolean available(int count) throws IOException {
+		if (position + count <= buffer.limit()) {
+			return true;
+		}
+		if (channel == null || base + buffer.limit() >= channel.size()) {
+			return false;
+		}
+		map(base + position);
+		return position + count <= buffer.limit();
+	}
+
+	/**
+	 * @param verifyChecksums whether pages have to have a matching checksum, off by default
+	 */
+	public void setVerifyChecksums(boolean verifyChecksums) {
+		this.verifyChecksums = verifyChecksums;
+	}
+
+	public boolean isVerifyChecksums() {
+		return verifyChecksums;
+	}
+
+	/**
+	 * Moves to the next page
+	 *
+	 * @return <code>false</code> at the end of the data, any incomplete page there counts as skipped
+	 * @throws IOException if a file window cannot be mapped
+	 */
+	public boolean next() throws IOException {
+		page = - 1;
+		while (true) {
+			if (!available(OggPage.HEADER_LENGTH)) {
+				skippedBytes += buffer.limit() - position;
+				position = buffer.limit();
+				return false;
+			}
+			if (buffer.getInt(position) != CAPTURE_PATTERN || buffer.get(position + 4) != 0) {
+				position++;
+				skippedBytes++;
+				continue;
+			}
+			int count = buffer.get(position + SEGMENT_COUNT) & 0xff;
+			if (!available(OggPage.HEADER_LENGTH + count)) {
+				position++;
+				skippedBytes++;
+				continue;
+			}
+			int bodyLength = 0;
+			for (int i = 0; i < count; i++) {
+				bodyLength += buffer.get(position + OggPage.HEADER_LENGTH + i) & 0xff;
+			}
+			int pageLength = OggPage.HEADER_LENGTH + count + bodyLength;
+			if (!available(pageLength) || (verifyChecksums && computeChecksum(position, pageLength) != buffer.getInt(position + CHECKSUM))) {
+				if (verifyChecksums && position + pageLength <= buffer.limit()) {
+					corruptPageCount++;
+				}
+				position++;
+				skippedBytes++;
+				continue;
+			}
+			page = position;
+			segments = count;
+			length = pageLength;
+			position += pageLength;
+			pageCount++;
+			segment = 0;
+			packetOffset = page + OggPage.HEADER_LENGTH + segments;
+			packetLength = 0;
+			return true;
+		}
+	}
+
+	private int computeChecksum(int offset, int pageLength) {
+		int crc = OggCrc.update(0, buffer, offset, CHECKSUM);
+		crc = OggCrc.update(crc, ZERO_CHECKSUM, 0, 4);
+		return OggCrc.update(crc, buffer, offset + CHECKSUM + 4, pageLength - CHECKSUM - 4);
+	}
+
+	private void checkPage() {
+		if (page < 0) {
+			throw new IllegalStateException("There is no current page.");
+		}
+	}
+
+	/**
+	 * @return the buffer the page and packet offsets index into, for a file it changes as the window moves
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return the offset of the page in the buffer
+	 */
+	public int getPageOffset() {
+		checkPage();
+		return page;
+	}
+
+	/**
+	 * @return the offset of the page in the file, or the buffer when reading a buffer
+	 */
+	public long getPosition() {
+		checkPage();
+		return base + page;
+	}
+
+	public int getLength() {
+		checkPage();
+		return length;
+	}
+
+	public int getHeaderLength() {
+		checkPage();
+		return OggPage.HEADER_LENGTH + segments;
+	}
+
+	public int getBodyLength() {
+		return getLength() - getHeaderLength();
+	}
+
+	public int getHeaderType() {
+		checkPage();
+		return buffer.get(page + 5) & 0xff;
+	}
+
+	public boolean isContinued() {
+		return (getHeaderType() & OggPage.FLAG_CONTINUED) != 0;
+	}
+
+	public boolean isBeginningOfStream() {
+		return (getHeaderType() & OggPage.FLAG_BEGINNING_OF_STREAM) != 0;
+	}
+
+	public boolean isEndOfStream() {
+		return (getHeaderType() & OggPage.FLAG_END_OF_STREAM) != 0;
+	}
+
+	/**
+	 * @return the granule position of the last packet that ends on this page, -1 if none does
+	 */
+	public long getGranulePosition() {
+		checkPage();
+		return buffer.getLong(page + GRANULE_POSITION);
+	}
+
+	public int getSerialNumber() {
+		checkPage();
+		return buffer.getInt(page + SERIAL_NUMBER);
+	}
+
+	public int getSequenceNumber() {
+		checkPage();
+		return buffer.getInt(page + SEQUENCE_NUMBER);
+	}
+
+	public int getChecksum() {
+		checkPage();
+		return buffer.getInt(page + CHECKSUM);
+	}
+
+	/**
+	 * @return whether the checksum matches, always computed regardless of {@link #isVerifyChecksums()}
+	 */
+	public boolean isChecksumValid() {
+		checkPage();
+		return computeChecksum(page, length) == buffer.getInt(page + CHECKSUM);
+	}
+
+	public int getSegmentCount() {
+		checkPage();
+		return segments;
+	}
+
+	public int getSegmentLength(int segment) {
+		checkPage();
+		if (segment < 0 || segment >= segments) {
+			throw new IllegalArgumentException("Segment " + segment + " is not on a page of " + segments + " segments.");
+		}
+		return buffer.get(page + OggPage.HEADER_LENGTH + segment) & 0xff;
+	}
+
+	/**
+	 * Moves to the next packet, or part of a packet, on the current page
+	 *
+	 * @return <code>false</code> once all segments of the page have been gone through
+	 */
+	public boolean nextPacket() {
+		checkPage();
+		if (segment >= segments) {
+			return false;
+		}
+		packetContinued = segment == 0 && isContinued();
+		packetOffset += packetLength;
+		packetLength = 0;
+		packetComplete = false;
+		while (segment < segments && !packetComplete) {
+			int segmentLength = buffer.get(page + OggPage.HEADER_LENGTH + segment++) & 0xff;
+			packetLength += segmentLength;
+			packetComplete = segmentLength < 255;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the offset of the packet data in the buffer
+	 */
+	public int getPacketOffset() {
+		return packetOffset;
+	}
+
+	public int getPacketLength() {
+		return packetLength;
+	}
+
+	/**
+	 * @return whether the packet started on an earlier page, the data is then only its remainder
+	 */
+	public boolean isPacketContinued() {
+		return packetContinued;
+	}
+
+	/**
+	 * @return whether the packet ends on this page rather than carrying on into the next
+	 */
+	public boolean isPacketComplete() {
+		return packetComplete;
+	}
+
+	/**
+	 * @return the number of pages read so far
+	 */
+	public long getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * @return the number of bytes that were not part of a good page
+	 */
+	public long getSkippedBytes() {
+		return skippedBytes;
+	}
+
+	/**
+	 * @return the number of complete pages dropped for a checksum mismatch
+	 */
+	public long getCorruptPageCount() {
+		return corruptPageCount;
+	}
+}
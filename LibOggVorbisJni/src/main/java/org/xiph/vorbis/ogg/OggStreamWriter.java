@@ -0,0 +1,203 @@
+package org.xiph.vorbis.ogg;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Lays out the packets of one logical stream over Ogg pages, much like libogg's <code>ogg_stream_pageout</code>: a page
+ * is written once about 4 KiB or 255 segments have been queued, {@link #flush()} forces out whatever is left.
+ * <p>
+ * Packets are queued with their granule position, pages get the granule position of the last packet ending on them or -1
+ * when none does. The first page is marked as the beginning of the stream when its sequence number is 0.
+ */
+public class OggStreamWriter {
+	private static final int PAGE_FILL = 4096;
+
+	private final OutputStream out;
+	private final int serialNumber;
+	private final OggPage page = new OggPage();
+	private int sequenceNumber;
+	private boolean firstPage = true;
+	private long bytesWritten;
+
+	private byte[] body = new byte[PAGE_FILL * 2];
+	private int bodyLength;
+	private byte[] lacing = new byte[OggPage.MAX_SEGMENTS * 2];
+	private long[] granules = new long[OggPage.MAX_SEGMENTS * 2];
+	private int segments;
+	private boolean continued;
+	private boolean endOfStream;
+
+	/**
+	 * @param out where the pages go
+	 * @param serialNumber the serial number of the logical stream
+	 * @param sequenceNumber the sequence number of the first page written
+	 */
+	public OggStreamWriter(OutputStream out, int serialNumber, int sequenceNumber) {
+		if (out == null) {
+			throw new IllegalArgumentException("Output stream must not be null.");
+		}
+		this.out = out;
+		this.serialNumber = serialNumber;
+		this.sequenceNumber = sequenceNumber;
+	}
+
+	/**
+	 * @param packetLength the length of a packet in bytes
+	 * @return how many segments the packet takes up in the segment table
+	 */
+	public static int segmentCount(int packetLength) {
+		return packetLength / 255 + 1;
+	}
+
+	/**
+	 * Queues a packet and writes any pages that have filled up
+	 *
+	 * @param packet the packet data
+	 * @param offset where the packet starts
+	 * @param length the packet length
+	 * @param granulePosition the granule position at the end of the packet
+	 * @param endOfStream whether this is the last packet of the stream, all queued data is flushed if so
+	 * @throws IOException if a page cannot be written
+	 */
+	public void writePacket(byte[] packet, int offset, int length, long granulePosition, boolean endOfStream) throws IOException {
+		addPacket(packet, offset, length, granulePosition, endOfStream);
+		if (endOfStream) {
+			flush();
+			return;
+		}
+		while (true) {
+			int fill = 0, bytes = 0;
+			while (fill < segments && fill < OggPage.MAX_SEGMENTS && bytes < PAGE_FILL) {
+				bytes += lacing[fill++] & 0xff;
+			}
+			if (fill < OggPage.MAX_SEGMENTS && bytes < PAGE_FILL) {
+				return;
+			}
+			writePage(fill);
+		}
+	}
+
+	/**
+	 * Queues a packet without writing anything, so that {@link #flush(int)} can decide the page layout
+	 *
+	 * @param packet the packet data
+	 * @param offset where the packet starts
+	 * @param length the packet length
+	 * @param granulePosition the granule position at the end of the packet
+	 * @param endOfStream whether this is the last packet of the stream
+	 */
+	public void addPacket(byte[] packet, int offset, int length, long granulePosition, boolean endOfStream) {
+		if (this.endOfStream) {
+			throw new IllegalStateException("The stream has already ended.");
+		}
+		int count = segmentCount(length);
+		ensureCapacity(count, length);
+		System.arraycopy(packet, offset, body, bodyLength, length);
+		bodyLength += length;
+		for (int i = 0; i < count; i++) {
+			boolean last = i == count - 1;
+			lacing[segments] = (byte) (last ? length - i * 255 : 255);
+			granules[segments] = last ? granulePosition : - 1;
+			segments++;
+		}
+		this.endOfStream = endOfStream;
+	}
+
+	private void ensureCapacity(int moreSegments, int moreBytes) {
+		if (segments + moreSegments > lacing.length) {
+			int capacity = Math.max(lacing.length * 2, segments + moreSegments);
+			byte[] newLacing = new byte[capacity];
+			long[] newGranules = new long[capacity];
+			System.arraycopy(lacing, 0, newLacing, 0, segments);
+			System.arraycopy(granules, 0, newGranules, 0, segments);
+			lacing = newLacing;
+			granules = newGranules;
+		}
+		if (bodyLength + moreBytes > body.length) {
+			byte[] newBody = new byte[Math.max(body.length * 2, bodyLength + moreBytes)];
+			System.arraycopy(body, 0, newBody, 0, bodyLength);
+			body = newBody;
+		}
+	}
+
+	/**
+	 * Writes everything queued in as few pages as possible
+	 *
+	 * @throws IOException if a page cannot be written
+	 */
+	public void flush() throws IOException {
+		while (segments > 0) {
+			writePage(Math.min(segments, OggPage.MAX_SEGMENTS));
+		}
+	}
+
+	/**
+	 * Writes everything queued spread evenly over exactly the given number of pages
+	 *
+	 * @param pages the number of pages to write
+	 * @throws IOException if a page cannot be written
+	 * @throws IllegalArgumentException if the queued segments do not fit, or are too few, for that many pages
+	 */
+	public void flush(int pages) throws IOException {
+		if (!canFlush(pages)) {
+			throw new IllegalArgumentException(segments + " queued segments cannot be laid out over " + pages + " pages.");
+		}
+		for (; pages > 0; pages--) {
+			writePage((segments + pages - 1) / pages);
+		}
+	}
+
+	/**
+	 * @param pages a number of pages
+	 * @return whether {@link #flush(int)} can lay out the queued data over exactly that many pages
+	 */
+	public boolean canFlush(int pages) {
+		return pages >= (segments + OggPage.MAX_SEGMENTS - 1) / OggPage.MAX_SEGMENTS && pages <= segments;
+	}
+
+	private void writePage(int count) throws IOException {
+		int bytes = 0;
+		long granulePosition = - 1;
+		for (int i = 0; i < count; i++) {
+			bytes += lacing[i] & 0xff;
+			if (granules[i] != - 1) {
+				granulePosition = granules[i];
+			}
+		}
+
+		int headerType = continued ? OggPage.FLAG_CONTINUED : 0;
+		if (firstPage && sequenceNumber == 0) {
+			headerType |= OggPage.FLAG_BEGINNING_OF_STREAM;
+		}
+		if (endOfStream && count == segments) {
+			headerType |= OggPage.FLAG_END_OF_STREAM;
+		}
+		page.set(headerType, granulePosition, serialNumber, sequenceNumber++, lacing, 0, count, body, 0);
+		page.write(out);
+		bytesWritten += page.getLength();
+		firstPage = false;
+
+		continued = (lacing[count - 1] & 0xff) == 255;
+		segments -= count;
+		bodyLength -= bytes;
+		System.arraycopy(lacing, count, lacing, 0, segments);
+		System.arraycopy(granules, count, granules, 0, segments);
+		System.arraycopy(body, bytes, body, 0, bodyLength);
+	}
+
+	/**
+	 * @return the sequence number the next page will get
+	 */
+	public int getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	public int getSerialNumber() {
+		return serialNumber;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+}
@@ -0,0 +1,241 @@
+package org.xiph.vorbis.remux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The vendor string and the <code>KEY=value</code> user comments of a vorbis comment header. Keys are compared without
+ * regard to case as the specification demands, keys can repeat and the order of the entries is kept.
+ */
+public class VorbisComments {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final byte[] MAGIC = { 'v', 'o', 'r', 'b', 'i', 's' };
+
+	/**
+	 * The packet type of the comment header
+	 */
+	public static final int PACKET_TYPE = 3;
+
+	private String vendor = "";
+	private final List<String> entries = new ArrayList<String>();
+
+	public VorbisComments() {}
+
+	/**
+	 * Parses a comment header packet
+	 *
+	 * @param packet the packet data
+	 * @param offset where the packet starts
+	 * @param length the packet length
+	 * @return the comments
+	 * @throws IOException if the packet is not a vorbis comment header
+	 */
+	public static VorbisComments parse(byte[] packet, int offset, int length) throws IOException {
+		int end = offset + length;
+		if (length < 7 || packet[offset] != PACKET_TYPE || !hasMagic(packet, offset + 1)) {
+			throw new IOException("Not a vorbis comment header");
+		}
+		int position = offset + 7;
+		VorbisComments comments = new VorbisComments();
+
+		int vendorLength = readLength(packet, position, end);
+		comments.vendor = new String(packet, position + 4, vendorLength, UTF_8);
+		position += 4 + vendorLength;
+
+		int count = readLength(packet, position, end);
+		position += 4;
+		for (int i = 0; i < count; i++) {
+			int entryLength = readLength(packet, position, end);
+			comments.entries.add(new String(packet, position + 4, entryLength, UTF_8));
+			position += 4 + entryLength;
+		}
+		if (position >= end || (packet[position] & 1) == 0) {
+			throw new IOException("Vorbis comment header is missing its framing bit");
+		}
+		return comments;
+	}
+
+	private static boolean hasMagic(byte[] packet, int offset) {
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (packet[offset + i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* a length field, checked to leave room for what it counts */
+	private static int readLength(byte[] packet, int position, int end) throws IOException {
+		if (position + 4 > end) {
+			throw new IOException("Vorbis comment header is truncated");
+		}
+		long value = (packet[position] & 0xff) | (packet[position + 1] & 0xff) << 8 | (packet[position + 2] & 0xff) << 16
+		        | (packet[position + 3] & 0xffL) << 24;
+		if (value > end - position - 4) {
+			throw new IOException("Vorbis comment header is truncated");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * @return the comments as a comment header packet
+	 */
+	public byte[] toPacket() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(PACKET_TYPE);
+		out.write(MAGIC, 0, MAGIC.length);
+		writeString(out, vendor);
+		writeLength(out, entries.size());
+		for (String entry : entries) {
+			writeString(out, entry);
+		}
+		out.write(1);
+		return out.toByteArray();
+	}
+
+	private static void writeString(ByteArrayOutputStream out, String value) {
+		byte[] bytes = value.getBytes(UTF_8);
+		writeLength(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeLength(ByteArrayOutputStream out, int length) {
+		out.write(length);
+		out.write(length >>> 8);
+		out.write(length >>> 16);
+		out.write(length >>> 24);
+	}
+
+	/**
+	 * @param key a comment key
+	 * @return whether the key only holds the printable ASCII characters the specification allows, without <code>=</code>
+	 */
+	public static boolean isValidKey(String key) {
+		if (key == null || key.length() == 0) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c < 0x20 || c > 0x7d || c == '=') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void checkKey(String key) {
+		if (!isValidKey(key)) {
+			throw new IllegalArgumentException("Invalid comment key \"" + key + "\".");
+		}
+	}
+
+	private static boolean hasKey(String entry, String key) {
+		return entry.length() > key.length() && entry.charAt(key.length()) == '=' && entry.regionMatches(true, 0, key, 0, key.length());
+	}
+
+	public String getVendor() {
+		return vendor;
+	}
+
+	public void setVendor(String vendor) {
+		if (vendor == null) {
+			throw new IllegalArgumentException("Vendor must not be null.");
+		}
+		this.vendor = vendor;
+	}
+
+	/**
+	 * @param key the comment key, any case
+	 * @return all values for the key in order, empty if there are none
+	 */
+	public List<String> get(String key) {
+		List<String> values = new ArrayList<String>();
+		for (String entry : entries) {
+			if (hasKey(entry, key)) {
+				values.add(entry.substring(key.length() + 1));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @param key the comment key, any case
+	 * @return the first value for the key, <code>null</code> if there is none
+	 */
+	public String getFirst(String key) {
+		for (String entry : entries) {
+			if (hasKey(entry, key)) {
+				return entry.substring(key.length() + 1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a value, keeping any the key already has
+	 *
+	 * @param key the comment key, stored upper case
+	 * @param value the value
+	 */
+	public void add(String key, String value) {
+		checkKey(key);
+		if (value == null) {
+			throw new IllegalArgumentException("Comment value must not be null.");
+		}
+		entries.add(key.toUpperCase(Locale.ROOT) + "=" + value);
+	}
+
+	/**
+	 * Replaces all values of a key with a single one
+	 *
+	 * @param key the comment key
+	 * @param value the value, <code>null</code> removes the key
+	 */
+	public void set(String key, String value) {
+		remove(key);
+		if (value != null) {
+			add(key, value);
+		}
+	}
+
+	/**
+	 * @param key the comment key, any case
+	 * @return whether anything was removed
+	 */
+	public boolean remove(String key) {
+		checkKey(key);
+		boolean removed = false;
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			if (hasKey(entries.get(i), key)) {
+				entries.remove(i);
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * @return the raw <code>KEY=value</code> entries in order
+	 */
+	public List<String> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		return "VorbisComments [vendor=" + vendor + ", entries=" + entries + "]";
+	}
+}
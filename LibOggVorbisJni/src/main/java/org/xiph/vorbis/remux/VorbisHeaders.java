@@ -0,0 +1,234 @@
+package org.xiph.vorbis.remux;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xiph.vorbis.ogg.OggPage;
+
+/**
+ * The three header packets at the start of an Ogg Vorbis file together with where they sit, so that tools can rewrite the
+ * headers and copy the audio pages behind them. Only the first logical stream of a chained file is looked at, streams
+ * multiplexed with other logical streams are not supported.
+ */
+public class VorbisHeaders {
+	private int serialNumber;
+	private byte[] identificationPage;
+	private byte[] identification;
+	private byte[] comment;
+	private byte[] setup;
+	private int headerPageCount;
+	private int nextSequenceNumber;
+	private long audioOffset;
+	private boolean[] longBlockModes;
+	private int modeBits;
+
+	private VorbisHeaders() {}
+
+	/**
+	 * Reads the headers of a file
+	 *
+	 * @param file an Ogg Vorbis file
+	 * @return the headers
+	 * @throws IOException if the file cannot be read or does not start with vorbis headers
+	 */
+	public static VorbisHeaders read(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+		try {
+			return read(in, new OggPage());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the headers from the start of a stream, leaving it at the first audio page
+	 *
+	 * @param in positioned at the start of the first page
+	 * @param page the page buffer to read with
+	 * @return the headers
+	 * @throws IOException if the stream cannot be read or does not start with vorbis headers
+	 */
+	public static VorbisHeaders read(InputStream in, OggPage page) throws IOException {
+		VorbisHeaders headers = new VorbisHeaders();
+		if (!page.read(in) || !page.isBeginningOfStream() || page.getSegmentCount() != 1 || page.isLastPacketContinued()) {
+			throw new IOException("Not an Ogg Vorbis stream");
+		}
+		headers.serialNumber = page.getSerialNumber();
+		headers.identificationPage = copy(page.getData(), 0, page.getLength());
+		headers.identification = copy(page.getData(), page.getHeaderLength(), page.getBodyLength());
+		if (headers.identification.length < 30 || headers.identification[0] != 1) {
+			throw new IOException("Not an Ogg Vorbis stream");
+		}
+		long offset = page.getLength();
+
+		ByteArrayOutputStream packet = new ByteArrayOutputStream();
+		while (headers.setup == null) {
+			if (!page.read(in)) {
+				throw new IOException("Ogg Vorbis stream ends inside its headers");
+			}
+			if (page.getSerialNumber() != headers.serialNumber) {
+				throw new IOException("Multiplexed Ogg streams are not supported");
+			}
+			offset += page.getLength();
+			headers.headerPageCount++;
+			headers.nextSequenceNumber = page.getSequenceNumber() + 1;
+
+			int position = page.getHeaderLength();
+			for (int i = 0, segments = page.getSegmentCount(); i < segments; i++) {
+				int length = page.getSegmentLength(i);
+				packet.write(page.getData(), position, length);
+				position += length;
+				if (length < 255) {
+					if (headers.comment == null) {
+						headers.comment = packet.toByteArray();
+					} else if (headers.setup == null) {
+						headers.setup = packet.toByteArray();
+					} else {
+						throw new IOException("Audio data shares a page with the vorbis headers");
+					}
+					packet.reset();
+				}
+			}
+		}
+		if (headers.comment[0] != VorbisComments.PACKET_TYPE || headers.setup[0] != 5) {
+			throw new IOException("Vorbis headers are out of order");
+		}
+		headers.audioOffset = offset;
+		headers.readModes();
+		return headers;
+	}
+
+	/* The block flags of the modes sit at the very end of the setup header, just before the framing bit. Every mode is a
+	   block flag, 32 zero bits and a mapping number, with the 6 bit mode count in front of the first, so rather than
+	   decoding the codebooks, floors and residues ahead of them they are found by walking back from the framing bit for as
+	   long as the zero bits hold and taking the longest run the mode count agrees with. */
+	private void readModes() throws IOException {
+		int end = setup.length * 8 - 1;
+		while (end >= 0 && bit(end) == 0) {
+			end--;
+		}
+		int count = 0;
+		for (int modes = 1; modes <= 64 && end - 41 * modes - 6 >= 56; modes++) {
+			int mode = end - 41 * modes;
+			if (bits(mode + 1, 16) != 0 || bits(mode + 17, 16) != 0) {
+				break;
+			}
+			if (bits(mode - 6, 6) + 1 == modes) {
+				count = modes;
+			}
+		}
+		if (count == 0) {
+			throw new IOException("Vorbis setup header has no readable modes");
+		}
+		longBlockModes = new boolean[count];
+		for (int i = 0; i < count; i++) {
+			longBlockModes[i] = bit(end - 41 * (count - i)) != 0;
+		}
+		modeBits = 32 - Integer.numberOfLeadingZeros(count - 1);
+	}
+
+	private int bit(int position) {
+		return setup[position >> 3] >> (position & 7) & 1;
+	}
+
+	private int bits(int position, int count) {
+		int value = 0;
+		for (int i = 0; i < count; i++) {
+			value |= bit(position + i) << i;
+		}
+		return value;
+	}
+
+	private static byte[] copy(byte[] data, int offset, int length) {
+		byte[] copy = new byte[length];
+		System.arraycopy(data, offset, copy, 0, length);
+		return copy;
+	}
+
+	public int getSerialNumber() {
+		return serialNumber;
+	}
+
+	/**
+	 * @return the first page of the stream exactly as it was read, it holds nothing but the identification header
+	 */
+	public byte[] getIdentificationPage() {
+		return identificationPage;
+	}
+
+	public byte[] getIdentification() {
+		return identification;
+	}
+
+	public byte[] getComment() {
+		return comment;
+	}
+
+	public byte[] getSetup() {
+		return setup;
+	}
+
+	public VorbisComments getComments() throws IOException {
+		return VorbisComments.parse(comment, 0, comment.length);
+	}
+
+	public int getChannels() {
+		return identification[11] & 0xff;
+	}
+
+	public long getSampleRate() {
+		return (identification[12] & 0xff) | (identification[13] & 0xff) << 8 | (identification[14] & 0xff) << 16
+		        | (identification[15] & 0xffL) << 24;
+	}
+
+	/**
+	 * @param longBlock whether to get the long or the short block size
+	 * @return the block size in samples
+	 */
+	public int getBlockSize(boolean longBlock) {
+		int exponent = identification[28] >> (longBlock ? 4 : 0) & 0x0f;
+		return 1 << exponent;
+	}
+
+	/**
+	 * @param packet an audio packet of this stream
+	 * @param offset where the packet starts
+	 * @param length the packet length
+	 * @return the block size the packet was coded with, 0 if it is not an audio packet
+	 */
+	public int getBlockSize(byte[] packet, int offset, int length) {
+		if (length == 0 || (packet[offset] & 1) != 0) {
+			return 0;
+		}
+		int mode = (packet[offset] & 0xff) >> 1 & ((1 << modeBits) - 1);
+		if (mode >= longBlockModes.length) {
+			return 0;
+		}
+		return getBlockSize(longBlockModes[mode]);
+	}
+
+	/**
+	 * @return the number of pages after the first that carry the comment and setup headers
+	 */
+	public int getHeaderPageCount() {
+		return headerPageCount;
+	}
+
+	/**
+	 * @return the sequence number of the first audio page
+	 */
+	public int getNextSequenceNumber() {
+		return nextSequenceNumber;
+	}
+
+	/**
+	 * @return the file offset of the first audio page
+	 */
+	public long getAudioOffset() {
+		return audioOffset;
+	}
+}
@@ -0,0 +1,129 @@
+package org.xiph.vorbis.remux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+
+import org.xiph.vorbis.ogg.OggPage;
+
+/**
+ * Reads the audio packets of the first logical stream that follow its headers, each with the granule position of its last
+ * sample. Pages only carry the granule position of the last packet ending on them, the others are worked out from the
+ * block sizes: backwards from the page granule position, except on the last page whose granule position may cut the final
+ * packet short.
+ */
+class VorbisPacketReader {
+	private final InputStream in;
+	private final VorbisHeaders headers;
+	private final OggPage page;
+	private final ByteArrayOutputStream packet = new ByteArrayOutputStream();
+	private final ArrayDeque<Packet> pending = new ArrayDeque<Packet>();
+	private int previousBlockSize;
+	private long lastGranulePosition = - 1;
+	private boolean ended;
+	private Packet current;
+
+	static class Packet {
+		byte[] data;
+		int duration;
+		long granulePosition;
+		boolean endOfStream;
+	}
+
+	/**
+	 * @param in positioned at the first audio page, as {@link VorbisHeaders#read(InputStream, OggPage)} leaves it
+	 * @param headers the headers of the stream
+	 * @param page the page buffer to read with
+	 */
+	VorbisPacketReader(InputStream in, VorbisHeaders headers, OggPage page) {
+		this.in = in;
+		this.headers = headers;
+		this.page = page;
+	}
+
+	/**
+	 * @return whether there is another packet
+	 * @throws IOException if the stream cannot be read
+	 */
+	boolean next() throws IOException {
+		while (pending.isEmpty()) {
+			if (ended || !page.read(in)) {
+				current = null;
+				return false;
+			}
+			if (page.getSerialNumber() == headers.getSerialNumber()) {
+				readPage();
+			}
+		}
+		current = pending.poll();
+		return true;
+	}
+
+	private void readPage() {
+		int position = page.getHeaderLength();
+		for (int i = 0, segments = page.getSegmentCount(); i < segments; i++) {
+			int length = page.getSegmentLength(i);
+			packet.write(page.getData(), position, length);
+			position += length;
+			if (length < 255) {
+				Packet done = new Packet();
+				done.data = packet.toByteArray();
+				int blockSize = headers.getBlockSize(done.data, 0, done.data.length);
+				if (blockSize > 0) {
+					done.duration = previousBlockSize == 0 ? 0 : previousBlockSize / 4 + blockSize / 4;
+					previousBlockSize = blockSize;
+				}
+				pending.add(done);
+				packet.reset();
+			}
+		}
+		ended = page.isEndOfStream();
+		long granulePosition = page.getGranulePosition();
+		if (pending.isEmpty() || granulePosition == - 1) {
+			return;
+		}
+		Packet[] packets = pending.toArray(new Packet[pending.size()]);
+		if (ended && lastGranulePosition != - 1) {
+			long end = lastGranulePosition;
+			for (int i = 0; i < packets.length; i++) {
+				end += packets[i].duration;
+				packets[i].granulePosition = Math.min(end, granulePosition);
+			}
+			packets[packets.length - 1].granulePosition = granulePosition;
+		} else {
+			long end = granulePosition;
+			for (int i = packets.length - 1; i >= 0; i--) {
+				packets[i].granulePosition = end;
+				end -= packets[i].duration;
+			}
+		}
+		packets[packets.length - 1].endOfStream = ended;
+		lastGranulePosition = granulePosition;
+	}
+
+	byte[] getData() {
+		return current.data;
+	}
+
+	/**
+	 * @return the number of samples the packet decodes to, the first packet of a stream decodes to none
+	 */
+	int getDuration() {
+		return current.duration;
+	}
+
+	/**
+	 * @return the granule position of the last sample of the packet
+	 */
+	long getGranulePosition() {
+		return current.granulePosition;
+	}
+
+	/**
+	 * @return whether the packet is the last of the stream
+	 */
+	boolean isEndOfStream() {
+		return current.endOfStream;
+	}
+}
@@ -0,0 +1,218 @@
+package org.xiph.vorbis.remux;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.xiph.vorbis.ogg.OggPage;
+import org.xiph.vorbis.ogg.OggStreamWriter;
+
+/**
+ * Cuts and joins Ogg Vorbis files by copying packets, without decoding or encoding anything.
+ * <p>
+ * A clip keeps the original headers and the packets covering the range, plus the packet just before it which the decoder
+ * needs to overlap with. The granule positions are moved so that the range starts at 0: the first page ends up with a
+ * granule position below the samples it decodes to, which makes the decoder drop the samples before the range, and the
+ * granule position of the last page cuts the final packet short. Both ends are therefore sample accurate, except for ranges
+ * shorter than a single block, where only the end is.
+ */
+public class VorbisRemuxer {
+	private static final int BUFFER_LENGTH = 1 << 16;
+
+	private VorbisRemuxer() {}
+
+	/**
+	 * Copies a range of the first logical stream of a file
+	 *
+	 * @param in an Ogg Vorbis file
+	 * @param out the file to write, replaced if it exists, must not be the input
+	 * @param startSample the first sample to keep, counted from the start of the stream
+	 * @param endSample the sample after the last one to keep, {@link Long#MAX_VALUE} to keep everything up to the end
+	 * @return the number of samples in the clip
+	 * @throws IOException if the input cannot be read or the output written
+	 */
+	public static long clip(File in, File out, long startSample, long endSample) throws IOException {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("Input and output files must not be null.");
+		}
+		if (startSample < 0 || endSample <= startSample) {
+			throw new IllegalArgumentException("Clip range must start at or after 0 and end after it starts.");
+		}
+		InputStream input = new BufferedInputStream(new FileInputStream(in), BUFFER_LENGTH);
+		try {
+			OggPage page = new OggPage();
+			VorbisHeaders headers = VorbisHeaders.read(input, page);
+			OutputStream output = new BufferedOutputStream(new FileOutputStream(out), BUFFER_LENGTH);
+			try {
+				return clip(new VorbisPacketReader(input, headers, page), headers, startSample, endSample, output);
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Copies a range of the first logical stream of a file
+	 *
+	 * @param in an Ogg Vorbis file
+	 * @param out the file to write, replaced if it exists, must not be the input
+	 * @param startSeconds where the clip starts
+	 * @param endSeconds where the clip ends, {@link Double#POSITIVE_INFINITY} to keep everything up to the end
+	 * @return the number of samples in the clip
+	 * @throws IOException if the input cannot be read or the output written
+	 */
+	public static long clipSeconds(File in, File out, double startSeconds, double endSeconds) throws IOException {
+		if (in == null) {
+			throw new IllegalArgumentException("Input file must not be null.");
+		}
+		if (!(startSeconds >= 0) || !(endSeconds > startSeconds)) {
+			throw new IllegalArgumentException("Clip range must start at or after 0 and end after it starts.");
+		}
+		long sampleRate = VorbisHeaders.read(in).getSampleRate();
+		long startSample = Math.round(startSeconds * sampleRate);
+		/* Math.round saturates, so an infinite end becomes Long.MAX_VALUE */
+		return clip(in, out, startSample, Math.max(startSample + 1, Math.round(endSeconds * sampleRate)));
+	}
+
+	private static long clip(VorbisPacketReader packets, VorbisHeaders headers, long startSample, long endSample,
+	        OutputStream out) throws IOException {
+		out.write(headers.getIdentificationPage());
+		OggStreamWriter writer = new OggStreamWriter(out, headers.getSerialNumber(), 1);
+		writer.addPacket(headers.getComment(), 0, headers.getComment().length, 0, false);
+		writer.addPacket(headers.getSetup(), 0, headers.getSetup().length, 0, false);
+		writer.flush();
+
+		long start = - 1, end = 0;
+		byte[] preroll = null;
+		long prerollGranule = 0;
+		byte[] held = null;
+		long heldGranule = 0;
+		boolean trimmed = false;
+		while (packets.next()) {
+			if (start == - 1) {
+				/* positions count from the end of the first packet, or from 0 if the stream trims its own start */
+				long origin = Math.max(0, packets.getGranulePosition());
+				start = origin + startSample;
+				end = endSample == Long.MAX_VALUE ? Long.MAX_VALUE : origin + endSample;
+			}
+			long granulePosition = packets.getGranulePosition();
+			if (granulePosition <= start) {
+				preroll = packets.getData();
+				prerollGranule = granulePosition;
+				continue;
+			}
+			if (held != null && granulePosition - packets.getDuration() >= end) {
+				break;
+			}
+			if (held == null) {
+				if (preroll != null) {
+					writer.writePacket(preroll, 0, preroll.length, prerollGranule - start, false);
+				}
+				trimmed = preroll != null && prerollGranule < start;
+			} else {
+				writer.writePacket(held, 0, held.length, heldGranule - start, false);
+				if (trimmed) {
+					/* the granule position of the first audio page has to land before the last one */
+					writer.flush();
+					trimmed = false;
+				}
+			}
+			held = packets.getData();
+			heldGranule = granulePosition;
+			if (packets.isEndOfStream()) {
+				break;
+			}
+		}
+		if (held == null) {
+			throw new IllegalArgumentException("Clip starts after the end of the stream.");
+		}
+		long length = Math.min(heldGranule, end) - start;
+		writer.writePacket(held, 0, held.length, length, true);
+		return length;
+	}
+
+	/**
+	 * Chains the first logical stream of several files one after another. The files have to share channels and sample rate;
+	 * each keeps its own headers, streams whose serial number has already been used get a new one.
+	 *
+	 * @param inputs the Ogg Vorbis files in order
+	 * @param out the file to write, replaced if it exists, must not be one of the inputs
+	 * @throws IOException if an input cannot be read or the output written
+	 */
+	public static void concatenate(List<File> inputs, File out) throws IOException {
+		if (inputs == null || inputs.isEmpty() || out == null) {
+			throw new IllegalArgumentException("Inputs and output file must not be null or empty.");
+		}
+		VorbisHeaders first = null;
+		for (File input : inputs) {
+			if (input == null) {
+				throw new IllegalArgumentException("Input files must not be null.");
+			}
+			VorbisHeaders headers = VorbisHeaders.read(input);
+			if (first == null) {
+				first = headers;
+			} else if (headers.getChannels() != first.getChannels() || headers.getSampleRate() != first.getSampleRate()) {
+				throw new IllegalArgumentException(input + " does not have the channels and sample rate of " + inputs.get(0) + ".");
+			}
+		}
+
+		Set<Integer> serialNumbers = new HashSet<Integer>();
+		Random random = new Random();
+		OggPage page = new OggPage();
+		OggPage previous = new OggPage();
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(out), BUFFER_LENGTH);
+		try {
+			for (File input : inputs) {
+				InputStream in = new BufferedInputStream(new FileInputStream(input), BUFFER_LENGTH);
+				try {
+					if (!previous.read(in)) {
+						throw new IOException(input + " is empty");
+					}
+					int serialNumber = previous.getSerialNumber();
+					while (!serialNumbers.add(serialNumber)) {
+						serialNumber = random.nextInt();
+					}
+					boolean ended = previous.isEndOfStream();
+					while (!ended && page.read(in)) {
+						if (page.getSerialNumber() != previous.getSerialNumber()) {
+							continue;
+						}
+						writePage(previous, serialNumber, false, output);
+						ended = page.isEndOfStream();
+						OggPage swap = previous;
+						previous = page;
+						page = swap;
+					}
+					/* a stream cut off before its last page still has to end before the next one begins */
+					writePage(previous, serialNumber, true, output);
+				} finally {
+					in.close();
+				}
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	private static void writePage(OggPage page, int serialNumber, boolean last, OutputStream out) throws IOException {
+		if (page.getSerialNumber() != serialNumber || (last && !page.isEndOfStream())) {
+			page.setSerialNumber(serialNumber);
+			if (last) {
+				page.setHeaderType(page.getHeaderType() | OggPage.FLAG_END_OF_STREAM);
+			}
+			page.updateChecksum();
+		}
+		page.write(out);
+	}
+}
@@ -0,0 +1,154 @@
+package org.xiph.vorbis.remux;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.xiph.vorbis.ogg.OggPage;
+import org.xiph.vorbis.ogg.OggStreamWriter;
+
+/**
+ * Rewrites the comment header of an Ogg Vorbis file without touching the audio. Only the comment and setup header pages are
+ * rebuilt; whenever they fit in the same number of pages as before, which they do unless the comments grow by tens of
+ * kilobytes, the audio pages are copied with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * Otherwise the audio pages of the first logical stream are renumbered and get a fresh checksum on the way through.
+ */
+public class VorbisTagEditor {
+	private static final int COPY_BUFFER_LENGTH = 1 << 16;
+
+	private VorbisTagEditor() {}
+
+	/**
+	 * @param file an Ogg Vorbis file
+	 * @return the comments of its first logical stream
+	 * @throws IOException if the file cannot be read or is not Ogg Vorbis
+	 */
+	public static VorbisComments readComments(File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("File must not be null.");
+		}
+		return VorbisHeaders.read(file).getComments();
+	}
+
+	/**
+	 * Replaces the comments of a file, the file is written next to the original and then moved over it
+	 *
+	 * @param file an Ogg Vorbis file
+	 * @param comments the new comments, including the vendor string
+	 * @throws IOException if the file cannot be read or written, it is left untouched if so
+	 */
+	public static void writeComments(File file, VorbisComments comments) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("File must not be null.");
+		}
+		/* the prefix needs at least three characters, which a short name alone may not have */
+		File temporary = File.createTempFile(file.getName() + "-tags", ".tmp", file.getAbsoluteFile().getParentFile());
+		boolean moved = false;
+		try {
+			writeComments(file, temporary, comments);
+			try {
+				Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			moved = true;
+		} finally {
+			if (!moved) {
+				temporary.delete();
+			}
+		}
+	}
+
+	/**
+	 * Copies a file with its comments replaced
+	 *
+	 * @param in an Ogg Vorbis file
+	 * @param out the file to write, replaced if it exists, must not be the input, which
+	 *            {@link #writeComments(File, VorbisComments)} edits in place
+	 * @param comments the new comments, including the vendor string
+	 * @throws IOException if the input cannot be read or the output written
+	 */
+	public static void writeComments(File in, File out, VorbisComments comments) throws IOException {
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("Input and output files must not be null.");
+		}
+		if (comments == null) {
+			throw new IllegalArgumentException("Comments must not be null.");
+		}
+		/* opening the output would truncate the input before it is read, whatever path or link it is reached by */
+		if (out.exists() && Files.isSameFile(in.toPath(), out.toPath())) {
+			throw new IllegalArgumentException("Output file must not be the input file " + in + ".");
+		}
+		VorbisHeaders headers = VorbisHeaders.read(in);
+
+		FileInputStream input = new FileInputStream(in);
+		FileOutputStream output = new FileOutputStream(out);
+		try {
+			FileChannel source = input.getChannel();
+			FileChannel target = output.getChannel();
+			OutputStream pages = new BufferedOutputStream(Channels.newOutputStream(target), COPY_BUFFER_LENGTH);
+
+			pages.write(headers.getIdentificationPage());
+			OggStreamWriter writer = new OggStreamWriter(pages, headers.getSerialNumber(), headers.getNextSequenceNumber()
+			        - headers.getHeaderPageCount());
+			byte[] comment = comments.toPacket();
+			writer.addPacket(comment, 0, comment.length, 0, false);
+			writer.addPacket(headers.getSetup(), 0, headers.getSetup().length, 0, false);
+			if (writer.canFlush(headers.getHeaderPageCount())) {
+				writer.flush(headers.getHeaderPageCount());
+			} else {
+				writer.flush();
+			}
+
+			int shift = writer.getSequenceNumber() - headers.getNextSequenceNumber();
+			if (shift == 0) {
+				pages.flush();
+				transfer(source, headers.getAudioOffset(), target);
+			} else {
+				renumber(source, headers, shift, pages);
+				pages.flush();
+			}
+		} finally {
+			input.close();
+			output.close();
+		}
+	}
+
+	private static void transfer(FileChannel source, long position, FileChannel target) throws IOException {
+		long size = source.size();
+		while (position < size) {
+			long transferred = source.transferTo(position, size - position, target);
+			if (transferred <= 0) {
+				throw new IOException("Could not copy the audio pages");
+			}
+			position += transferred;
+		}
+	}
+
+	/* shifts the sequence numbers of the audio pages of the first logical
+	   stream, later links of a chained file are copied as they are */
+	private static void renumber(FileChannel source, VorbisHeaders headers, int shift, OutputStream out) throws IOException {
+		InputStream in = new BufferedInputStream(Channels.newInputStream(source.position(headers.getAudioOffset())),
+		        COPY_BUFFER_LENGTH);
+		OggPage page = new OggPage();
+		boolean ended = false;
+		while (page.read(in)) {
+			if (!ended && page.getSerialNumber() == headers.getSerialNumber()) {
+				page.setSequenceNumber(page.getSequenceNumber() + shift);
+				page.updateChecksum();
+				ended = page.isEndOfStream();
+			}
+			page.write(out);
+		}
+	}
+}
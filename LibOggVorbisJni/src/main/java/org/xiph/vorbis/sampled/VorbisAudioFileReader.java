@@ -0,0 +1,184 @@
+package org.xiph.vorbis.sampled;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import javax.sound.sampled.spi.AudioFileReader;
+
+import org.xiph.vorbis.decoder.VorbisPcmReader;
+import org.xiph.vorbis.ogg.OggPage;
+
+/**
+ * Lets Java Sound open Ogg Vorbis. Files are decoded straight to 16 bit pcm, so
+ * <code>AudioSystem.getAudioInputStream(file)</code> is all it takes. Streams and URLs come back still encoded, as
+ * {@link #VORBIS}, for {@link VorbisFormatConversionProvider} to decode through
+ * <code>AudioSystem.getAudioInputStream(targetFormat, stream)</code>.
+ * <p>
+ * Only the first page is looked at to recognise a file, in Java, the native library is not loaded for anything that is not
+ * Ogg Vorbis.
+ */
+public class VorbisAudioFileReader extends AudioFileReader {
+	/**
+	 * The encoding of vorbis compressed audio
+	 */
+	public static final AudioFormat.Encoding VORBIS = new AudioFormat.Encoding("VORBIS");
+
+	/**
+	 * The Ogg file type
+	 */
+	public static final AudioFileFormat.Type OGG = new AudioFileFormat.Type("OGG", "ogg");
+
+	private static final int IDENTIFICATION_LENGTH = 30;
+	private static final int CAPTURE_LENGTH = 5;
+
+	@Override
+	public AudioFileFormat getAudioFileFormat(InputStream stream) throws UnsupportedAudioFileException, IOException {
+		return fileFormat(readIdentification(stream, true), AudioSystem.NOT_SPECIFIED);
+	}
+
+	@Override
+	public AudioFileFormat getAudioFileFormat(URL url) throws UnsupportedAudioFileException, IOException {
+		InputStream stream = url.openStream();
+		try {
+			return fileFormat(readIdentification(stream, false), AudioSystem.NOT_SPECIFIED);
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Override
+	public AudioFileFormat getAudioFileFormat(File file) throws UnsupportedAudioFileException, IOException {
+		byte[] identification = readIdentification(file);
+		VorbisPcmReader reader = new VorbisPcmReader(file);
+		try {
+			return fileFormat(identification, reader.getTotalSamples());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Override
+	public AudioInputStream getAudioInputStream(InputStream stream) throws UnsupportedAudioFileException, IOException {
+		byte[] identification = readIdentification(stream, true);
+		return new AudioInputStream(stream, encodedFormat(identification), AudioSystem.NOT_SPECIFIED);
+	}
+
+	@Override
+	public AudioInputStream getAudioInputStream(URL url) throws UnsupportedAudioFileException, IOException {
+		InputStream stream = new BufferedInputStream(url.openStream());
+		try {
+			return getAudioInputStream(stream);
+		} catch (UnsupportedAudioFileException e) {
+			stream.close();
+			throw e;
+		} catch (IOException e) {
+			stream.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public AudioInputStream getAudioInputStream(File file) throws UnsupportedAudioFileException, IOException {
+		readIdentification(file);
+		VorbisPcmInputStream pcm = new VorbisPcmInputStream(file);
+		return new AudioInputStream(pcm, pcm.getFormat(), pcm.getFrameLength());
+	}
+
+	private static byte[] readIdentification(File file) throws UnsupportedAudioFileException, IOException {
+		InputStream stream = new FileInputStream(file);
+		try {
+			return readIdentification(stream, false);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/* the identification header, alone on the first page of the stream */
+	private static byte[] readIdentification(InputStream stream, boolean reset) throws UnsupportedAudioFileException, IOException {
+		if (reset) {
+			if (!stream.markSupported()) {
+				throw new IOException("Stream does not support mark and reset.");
+			}
+			stream.mark(OggPage.MAX_LENGTH);
+		}
+		try {
+			/* the capture pattern and version are checked before the page is read, so that of the errors reading it only
+			   running out of data means some other kind of file, anything else is the stream failing */
+			byte[] start = new byte[CAPTURE_LENGTH];
+			for (int offset = 0; offset < CAPTURE_LENGTH;) {
+				int read = stream.read(start, offset, CAPTURE_LENGTH - offset);
+				if (read < 0) {
+					throw new UnsupportedAudioFileException("Not an Ogg Vorbis stream");
+				}
+				offset += read;
+			}
+			if (start[0] != 'O' || start[1] != 'g' || start[2] != 'g' || start[3] != 'S' || start[4] != 0) {
+				throw new UnsupportedAudioFileException("Not an Ogg Vorbis stream");
+			}
+			OggPage page = new OggPage();
+			try {
+				page.read(new SequenceInputStream(new ByteArrayInputStream(start), stream));
+			} catch (EOFException e) {
+				throw new UnsupportedAudioFileException("Not an Ogg Vorbis stream");
+			}
+			if (!page.isBeginningOfStream() || page.getBodyLength() < IDENTIFICATION_LENGTH) {
+				throw new UnsupportedAudioFileException("Not an Ogg Vorbis stream");
+			}
+			byte[] data = page.getData();
+			int body = page.getHeaderLength();
+			if (data[body] != 1 || data[body + 1] != 'v' || data[body + 2] != 'o' || data[body + 3] != 'r' || data[body + 4] != 'b'
+			        || data[body + 5] != 'i' || data[body + 6] != 's') {
+				throw new UnsupportedAudioFileException("Not an Ogg Vorbis stream");
+			}
+			byte[] identification = new byte[IDENTIFICATION_LENGTH];
+			System.arraycopy(data, body, identification, 0, IDENTIFICATION_LENGTH);
+			return identification;
+		} finally {
+			if (reset) {
+				stream.reset();
+			}
+		}
+	}
+
+	private static int readInt(byte[] data, int offset) {
+		return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8 | (data[offset + 2] & 0xff) << 16 | (data[offset + 3] & 0xff) << 24;
+	}
+
+	private static AudioFormat encodedFormat(byte[] identification) {
+		int channels = identification[11] & 0xff;
+		float sampleRate = readInt(identification, 12) & 0xffffffffL;
+		Map<String, Object> properties = new HashMap<String, Object>();
+		int nominalBitrate = readInt(identification, 20);
+		if (nominalBitrate > 0) {
+			properties.put("bitrate", Integer.valueOf(nominalBitrate));
+		}
+		properties.put("vbr", Boolean.TRUE);
+		return new AudioFormat(VORBIS, sampleRate, AudioSystem.NOT_SPECIFIED, channels, AudioSystem.NOT_SPECIFIED,
+		        AudioSystem.NOT_SPECIFIED, false, properties);
+	}
+
+	private static AudioFileFormat fileFormat(byte[] identification, long frames) {
+		AudioFormat format = encodedFormat(identification);
+		Map<String, Object> properties = new HashMap<String, Object>();
+		int frameLength = AudioSystem.NOT_SPECIFIED;
+		if (frames >= 0) {
+			properties.put("duration", Long.valueOf(frames * 1000000L / (long) format.getSampleRate()));
+			frameLength = frames > Integer.MAX_VALUE ? AudioSystem.NOT_SPECIFIED : (int) frames;
+		}
+		return new AudioFileFormat(OGG, format, frameLength, properties);
+	}
+}
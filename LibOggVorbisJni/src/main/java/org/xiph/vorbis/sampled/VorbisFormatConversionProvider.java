@@ -0,0 +1,104 @@
+package org.xiph.vorbis.sampled;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.spi.FormatConversionProvider;
+
+import org.xiph.vorbis.decoder.DecodeOptions;
+import org.xiph.vorbis.decoder.PcmFormat;
+
+/**
+ * Decodes the {@link VorbisAudioFileReader#VORBIS} streams Java Sound hands out for Ogg Vorbis streams and URLs to
+ * little-endian 16 or 32 bit signed or 32 bit float pcm.
+ */
+public class VorbisFormatConversionProvider extends FormatConversionProvider {
+	private static final AudioFormat.Encoding[] SOURCE_ENCODINGS = { VorbisAudioFileReader.VORBIS };
+	private static final AudioFormat.Encoding[] TARGET_ENCODINGS = { AudioFormat.Encoding.PCM_SIGNED, AudioFormat.Encoding.PCM_FLOAT };
+	private static final PcmFormat[] PCM_FORMATS = { PcmFormat.S16, PcmFormat.S32, PcmFormat.F32 };
+
+	@Override
+	public AudioFormat.Encoding[] getSourceEncodings() {
+		return SOURCE_ENCODINGS.clone();
+	}
+
+	@Override
+	public AudioFormat.Encoding[] getTargetEncodings() {
+		return TARGET_ENCODINGS.clone();
+	}
+
+	@Override
+	public AudioFormat.Encoding[] getTargetEncodings(AudioFormat sourceFormat) {
+		return isVorbis(sourceFormat) ? getTargetEncodings() : new AudioFormat.Encoding[0];
+	}
+
+	@Override
+	public AudioFormat[] getTargetFormats(AudioFormat.Encoding targetEncoding, AudioFormat sourceFormat) {
+		if (!isVorbis(sourceFormat)) {
+			return new AudioFormat[0];
+		}
+		int count = 0;
+		AudioFormat[] formats = new AudioFormat[PCM_FORMATS.length];
+		for (PcmFormat pcmFormat : PCM_FORMATS) {
+			AudioFormat format = VorbisPcmInputStream.toAudioFormat(pcmFormat, sourceFormat.getSampleRate(), sourceFormat.getChannels());
+			if (format.getEncoding().equals(targetEncoding)) {
+				formats[count++] = format;
+			}
+		}
+		AudioFormat[] matching = new AudioFormat[count];
+		System.arraycopy(formats, 0, matching, 0, count);
+		return matching;
+	}
+
+	@Override
+	public AudioInputStream getAudioInputStream(AudioFormat.Encoding targetEncoding, AudioInputStream sourceStream) {
+		AudioFormat[] formats = getTargetFormats(targetEncoding, sourceStream.getFormat());
+		if (formats.length == 0) {
+			throw new IllegalArgumentException("Cannot convert " + sourceStream.getFormat() + " to " + targetEncoding + ".");
+		}
+		return getAudioInputStream(formats[0], sourceStream);
+	}
+
+	@Override
+	public AudioInputStream getAudioInputStream(AudioFormat targetFormat, AudioInputStream sourceStream) {
+		AudioFormat sourceFormat = sourceStream.getFormat();
+		PcmFormat pcmFormat = isVorbis(sourceFormat) ? findPcmFormat(targetFormat, sourceFormat) : null;
+		if (pcmFormat == null) {
+			throw new IllegalArgumentException("Cannot convert " + sourceFormat + " to " + targetFormat + ".");
+		}
+		try {
+			VorbisPcmInputStream pcm = new VorbisPcmInputStream(sourceStream, new DecodeOptions(pcmFormat, false));
+			return new AudioInputStream(pcm, pcm.getFormat(), pcm.getFrameLength());
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot decode " + sourceFormat + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static boolean isVorbis(AudioFormat format) {
+		return VorbisAudioFileReader.VORBIS.equals(format.getEncoding());
+	}
+
+	private static PcmFormat findPcmFormat(AudioFormat target, AudioFormat source) {
+		if (!matches(target.getChannels(), source.getChannels()) || !matches(target.getSampleRate(), source.getSampleRate())) {
+			return null;
+		}
+		for (PcmFormat pcmFormat : PCM_FORMATS) {
+			AudioFormat format = VorbisPcmInputStream.toAudioFormat(pcmFormat, source.getSampleRate(), source.getChannels());
+			if (format.getEncoding().equals(target.getEncoding()) && format.getSampleSizeInBits() == target.getSampleSizeInBits()
+			        && (target.getSampleSizeInBits() == 8 || !target.isBigEndian())) {
+				return pcmFormat;
+			}
+		}
+		return null;
+	}
+
+	private static boolean matches(int target, int source) {
+		return target == AudioSystem.NOT_SPECIFIED || source == AudioSystem.NOT_SPECIFIED || target == source;
+	}
+
+	private static boolean matches(float target, float source) {
+		return target == AudioSystem.NOT_SPECIFIED || source == AudioSystem.NOT_SPECIFIED || target == source;
+	}
+}
@@ -0,0 +1,159 @@
+package org.xiph.vorbis.sampled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+import org.xiph.vorbis.decoder.DecodeOptions;
+import org.xiph.vorbis.decoder.PcmFormat;
+import org.xiph.vorbis.decoder.VorbisPcmReader;
+
+/**
+ * The decoded pcm of a vorbis file or stream as interleaved little-endian bytes. Reads of at least a frame go straight
+ * from the native decoder into the caller's array in one call, smaller ones are served from an internal buffer that is
+ * refilled a few thousand frames at a time.
+ */
+public class VorbisPcmInputStream extends InputStream {
+	private static final int BUFFER_FRAMES = 4096;
+
+	private final VorbisPcmReader reader;
+	private final byte[] buffer;
+	private final byte[] single = new byte[1];
+	private int bufferPosition;
+	private int bufferLength;
+	private boolean ended;
+
+	/**
+	 * @param file the vorbis file to decode to 16 bit pcm
+	 * @throws IOException if the file cannot be opened or is not vorbis
+	 */
+	public VorbisPcmInputStream(File file) throws IOException {
+		this(new VorbisPcmReader(file));
+	}
+
+	/**
+	 * @param file the vorbis file to decode
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm
+	 * @throws IOException if the file cannot be opened or is not vorbis
+	 */
+	public VorbisPcmInputStream(File file, DecodeOptions options) throws IOException {
+		this(new VorbisPcmReader(file, options));
+	}
+
+	/**
+	 * @param stream an Ogg Vorbis stream, closed with this one
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm
+	 * @throws IOException if the stream cannot be read or is not vorbis
+	 */
+	public VorbisPcmInputStream(InputStream stream, DecodeOptions options) throws IOException {
+		this(new VorbisPcmReader(stream, options));
+	}
+
+	/**
+	 * @param reader the open reader to read from, closed with this stream
+	 */
+	public VorbisPcmInputStream(VorbisPcmReader reader) {
+		if (reader == null) {
+			throw new IllegalArgumentException("Reader must not be null.");
+		}
+		this.reader = reader;
+		this.buffer = new byte[BUFFER_FRAMES * reader.getFrameLength()];
+	}
+
+	/**
+	 * @param pcmFormat a sample format
+	 * @param sampleRate the sample rate, or {@link AudioSystem#NOT_SPECIFIED}
+	 * @param channels the number of channels, or {@link AudioSystem#NOT_SPECIFIED}
+	 * @return the Java Sound description of interleaved little-endian frames in that format
+	 */
+	public static AudioFormat toAudioFormat(PcmFormat pcmFormat, float sampleRate, int channels) {
+		AudioFormat.Encoding encoding = pcmFormat == PcmFormat.F32 ? AudioFormat.Encoding.PCM_FLOAT : AudioFormat.Encoding.PCM_SIGNED;
+		int frameSize = channels == AudioSystem.NOT_SPECIFIED ? AudioSystem.NOT_SPECIFIED : channels * pcmFormat.getBytesPerSample();
+		return new AudioFormat(encoding, sampleRate, pcmFormat.getValidBits(), channels, frameSize, sampleRate, false);
+	}
+
+	/**
+	 * @return the format of the bytes read
+	 */
+	public AudioFormat getFormat() {
+		return toAudioFormat(reader.getPcmFormat(), reader.getSampleRate(), reader.getChannels());
+	}
+
+	/**
+	 * @return the length in frames, {@link AudioSystem#NOT_SPECIFIED} for streams
+	 */
+	public long getFrameLength() {
+		return reader.getTotalSamples() < 0 ? AudioSystem.NOT_SPECIFIED : reader.getTotalSamples();
+	}
+
+	@Override
+	public int read() throws IOException {
+		return read(single, 0, 1) < 0 ? - 1 : single[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (bufferPosition == bufferLength) {
+			if (ended) {
+				return - 1;
+			}
+			if (len >= reader.getFrameLength()) {
+				int read = reader.read(b, off, len);
+				ended = read < 0;
+				return read;
+			}
+			bufferPosition = 0;
+			bufferLength = Math.max(0, reader.read(buffer, 0, buffer.length));
+			if (bufferLength == 0) {
+				ended = true;
+				return - 1;
+			}
+		}
+		int count = Math.min(len, bufferLength - bufferPosition);
+		System.arraycopy(buffer, bufferPosition, b, off, count);
+		bufferPosition += count;
+		return count;
+	}
+
+	/**
+	 * Skips whole frames by seeking when decoding a file, anything else is read and dropped
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		long skipped = Math.min(n, bufferLength - bufferPosition);
+		bufferPosition += skipped;
+		long frames = (n - skipped) / reader.getFrameLength();
+		if (frames > 0 && reader.isSeekable() && !ended) {
+			long position = reader.getPosition();
+			long target = Math.min(position + frames, reader.getTotalSamples());
+			reader.seek(target);
+			skipped += (target - position) * reader.getFrameLength();
+		}
+		if (skipped < n) {
+			skipped += super.skip(n - skipped);
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return bufferLength - bufferPosition;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,101 @@
+package org.xiph.vorbis.transcode;
+
+import java.io.File;
+import java.nio.channels.WritableByteChannel;
+
+import org.xiph.vorbis.encoder.EncoderSettings;
+
+/**
+ * One rung of a {@link VorbisTranscoder} ladder: the encoder settings, the sample rate and where the Ogg Vorbis output goes.
+ * The quality or bitrate, speed and comments come from the settings, their sample rate and channels do not apply, the
+ * rendition keeps the channels of the source.
+ */
+public class Rendition {
+	private final EncoderSettings settings;
+	private final File file;
+	private final WritableByteChannel channel;
+	private long sampleRate;
+	private boolean sourceComments = true;
+
+	/**
+	 * @param settings the encoder settings
+	 * @param file the file to write, replaced if it exists
+	 */
+	public Rendition(EncoderSettings settings, File file) {
+		this(settings, file, null);
+		if (file == null) {
+			throw new IllegalArgumentException("Output file must not be null.");
+		}
+	}
+
+	/**
+	 * @param settings the encoder settings
+	 * @param channel where to write the pages, from one of the transcoder's threads, it is not closed when the rendition is
+	 *        done
+	 */
+	public Rendition(EncoderSettings settings, WritableByteChannel channel) {
+		this(settings, null, channel);
+		if (channel == null) {
+			throw new IllegalArgumentException("Output channel must not be null.");
+		}
+	}
+
+	private Rendition(EncoderSettings settings, File file, WritableByteChannel channel) {
+		if (settings == null) {
+			throw new IllegalArgumentException("Encoder settings must not be null.");
+		}
+		this.settings = settings;
+		this.file = file;
+		this.channel = channel;
+	}
+
+	public EncoderSettings getSettings() {
+		return settings;
+	}
+
+	/**
+	 * @return the output file, <code>null</code> when writing to a channel
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the output channel, <code>null</code> when writing to a file
+	 */
+	public WritableByteChannel getChannel() {
+		return channel;
+	}
+
+	public long getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @param sampleRate the sample rate to resample to, 0, the default, keeps that of the source
+	 */
+	public void setSampleRate(long sampleRate) {
+		if (sampleRate < 0) {
+			throw new IllegalArgumentException("Sample rate must be 0 or positive.");
+		}
+		this.sampleRate = sampleRate;
+	}
+
+	public boolean isSourceComments() {
+		return sourceComments;
+	}
+
+	/**
+	 * @param sourceComments whether the comments of the source follow those of the settings, by default they do, all but
+	 *        the source's encoder tag
+	 */
+	public void setSourceComments(boolean sourceComments) {
+		this.sourceComments = sourceComments;
+	}
+
+	@Override
+	public String toString() {
+		return "Rendition [settings=" + settings + ", file=" + file + ", channel=" + channel + ", sampleRate=" + sampleRate
+		        + ", sourceComments=" + sourceComments + "]";
+	}
+}
@@ -0,0 +1,278 @@
+package org.xiph.vorbis.transcode;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xiph.vorbis.encoder.EncodeFeed;
+import org.xiph.vorbis.encoder.EncodeResult;
+import org.xiph.vorbis.encoder.EncoderSettings;
+import org.xiph.vorbis.helper.LoadNativeLibrary;
+
+/**
+ * Transcodes one Ogg Vorbis file into a whole ladder of {@link Rendition}s in a single pass. The source is decoded once, a
+ * block at a time, and the float audio goes natively straight into every rendition's encoder, through a resampler of its
+ * own where the rendition asks for another sample rate. With more than one worker the renditions are split between them and
+ * encoded in parallel, while the next block is decoded.
+ * <p>
+ * A transcoder may be reused for any number of ladders, one at a time.
+ */
+public class VorbisTranscoder implements Closeable {
+	static {
+		LoadNativeLibrary.loadLibraryFiles();
+	}
+
+	private static final Logger LOG = LoggerFactory.getLogger(VorbisTranscoder.class);
+
+	/**
+	 * The default number of frames decoded at a time
+	 */
+	public static final int DEFAULT_BLOCK_FRAMES = 16384;
+
+	private static final int DRAIN_LENGTH = 65536;
+
+	private final int workers;
+	private final int blockFrames;
+	private final ExecutorService executor;
+	private final List<Future<?>> pending = new ArrayList<Future<?>>();
+
+	/**
+	 * A transcoder with a worker per processor
+	 */
+	public VorbisTranscoder() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_FRAMES);
+	}
+
+	/**
+	 * @param workers the threads encoding in parallel, including the one decoding
+	 * @param blockFrames the frames decoded at a time and handed to all renditions at once
+	 */
+	public VorbisTranscoder(int workers, int blockFrames) {
+		if (workers <= 0) {
+			throw new IllegalArgumentException("Workers must be at least 1.");
+		}
+		if (blockFrames <= 0) {
+			throw new IllegalArgumentException("Block must hold at least one frame.");
+		}
+		this.workers = workers;
+		this.blockFrames = blockFrames;
+		this.executor = workers > 1 ? Executors.newFixedThreadPool(workers - 1, new WorkerFactory()) : null;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public int getBlockFrames() {
+		return blockFrames;
+	}
+
+	/**
+	 * Decodes the source once and encodes it into every rendition
+	 *
+	 * @param source the Ogg Vorbis file, chained files are transcoded up to the first link with other channels
+	 * @param renditions the ladder
+	 * @return the result of each rendition, in the order of the ladder, a rendition that failed does not hold up the others
+	 * @throws IOException if the source cannot be opened or decoded
+	 */
+	public synchronized List<EncodeResult> transcode(File source, List<Rendition> renditions) throws IOException {
+		if (source == null) {
+			throw new IllegalArgumentException("Source file must not be null.");
+		}
+		if (renditions == null || renditions.isEmpty()) {
+			throw new IllegalArgumentException("At least one rendition is needed.");
+		}
+		if (executor != null && executor.isShutdown()) {
+			throw new IllegalStateException("Transcoder is closed.");
+		}
+		if (!source.isFile()) {
+			throw new FileNotFoundException(source.getPath());
+		}
+		long start = System.nanoTime();
+		long[] info = new long[3];
+		long handle = nativeOpen(source.getAbsolutePath(), blockFrames, info);
+		if (handle == 0) {
+			throw new IOException(source + " is not an Ogg Vorbis file");
+		}
+		LOG.debug("Transcoding {} of {} channels at {} Hz into {} renditions", source, info[0], info[1], renditions.size());
+		int count = renditions.size();
+		Rung[] rungs = new Rung[count];
+		List<EncodeResult> results = new ArrayList<EncodeResult>(count);
+		try {
+			int[] error = new int[1];
+			for (int i = 0; i < count; i++) {
+				Rendition rendition = renditions.get(i);
+				File file = rendition.getFile();
+				rungs[i] = new Rung(rendition);
+				rungs[i].handle = nativeNewRung(handle, rendition.getSettings(), rendition.getSampleRate(),
+				        rendition.isSourceComments(), file != null ? file.getAbsolutePath() : null, error);
+				rungs[i].resultCode = error[0];
+				if (rungs[i].handle == 0) {
+					LOG.warn("Cannot set up {}: {}", rendition, error[0]);
+				}
+			}
+			transcode(source, handle, rungs);
+		} finally {
+			for (Rung rung : rungs) {
+				EncodeResult result = new EncodeResult();
+				if (rung != null && rung.handle != 0) {
+					int closed = nativeFreeRung(rung.handle, result);
+					if (rung.resultCode == EncodeFeed.SUCCESS) {
+						rung.resultCode = closed;
+					}
+				}
+				result.setResultCode(rung != null ? rung.resultCode : EncodeFeed.ERROR_INITIALIZING);
+				result.setWallTimeNanos(System.nanoTime() - start);
+				results.add(result);
+			}
+			nativeClose(handle);
+		}
+		return results;
+	}
+
+	/* decodes a block ahead of the one the workers encode, an empty block ends the renditions */
+	private void transcode(File source, final long handle, final Rung[] rungs) throws IOException {
+		int shares = Math.max(1, Math.min(workers, rungs.length));
+		int buffer = 0;
+		int frames = nativeDecode(handle, buffer);
+		while (true) {
+			if (frames < 0) {
+				throw new IOException("Failed to decode " + source + ": " + frames);
+			}
+			for (int share = 1; share < shares; share++) {
+				final int first = share, step = shares, shareBuffer = buffer, shareFrames = frames;
+				pending.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						encode(handle, rungs, first, step, shareBuffer, shareFrames);
+					}
+				}));
+			}
+			int next;
+			try {
+				next = frames > 0 ? nativeDecode(handle, 1 - buffer) : 0;
+				encode(handle, rungs, 0, shares, buffer, frames);
+			} finally {
+				awaitWorkers();
+			}
+			if (frames == 0) {
+				return;
+			}
+			frames = next;
+			buffer = 1 - buffer;
+		}
+	}
+
+	/* encodes every step-th rendition from first, each only ever on one thread at a time */
+	private static void encode(long handle, Rung[] rungs, int first, int step, int buffer, int frames) {
+		for (int i = first; i < rungs.length; i += step) {
+			Rung rung = rungs[i];
+			if (rung.handle == 0 || rung.resultCode != EncodeFeed.SUCCESS) {
+				continue;
+			}
+			rung.resultCode = nativeEncode(rung.handle, handle, buffer, frames);
+			if (rung.rendition.getChannel() != null) {
+				drain(rung);
+			}
+		}
+	}
+
+	/* hands the pages encoded to memory on to the channel of the rendition */
+	private static void drain(Rung rung) {
+		if (rung.drain == null) {
+			rung.drain = new byte[DRAIN_LENGTH];
+		}
+		try {
+			int length;
+			while ((length = nativeDrain(rung.handle, rung.drain)) > 0) {
+				ByteBuffer pages = ByteBuffer.wrap(rung.drain, 0, length);
+				while (pages.hasRemaining()) {
+					rung.rendition.getChannel().write(pages);
+				}
+			}
+		} catch (IOException e) {
+			LOG.warn("Failed to write " + rung.rendition, e);
+			rung.resultCode = EncodeFeed.ERROR_WRITING_OUTPUT_FILE;
+		}
+	}
+
+	/* the workers read the block being encoded, so they have to be done before it is decoded into again */
+	private void awaitWorkers() {
+		boolean interrupted = false;
+		for (Future<?> future : pending) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Encoding worker failed", e.getCause());
+				}
+			}
+		}
+		pending.clear();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stops the workers, the transcoder cannot be used any more
+	 */
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	private static class Rung {
+		final Rendition rendition;
+		long handle;
+		int resultCode;
+		byte[] drain;
+
+		Rung(Rendition rendition) {
+			this.rendition = rendition;
+		}
+	}
+
+	private static class WorkerFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "vorbis-transcoder-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private static native long nativeOpen(String path, int blockFrames, long[] info);
+
+	private static native int nativeDecode(long handle, int buffer);
+
+	private static native void nativeClose(long handle);
+
+	private static native long nativeNewRung(long handle, EncoderSettings settings, long sampleRate, boolean sourceComments,
+	        String outPath, int[] error);
+
+	private static native int nativeEncode(long rung, long handle, int buffer, int frames);
+
+	private static native int nativeDrain(long rung, byte[] out);
+
+	private static native int nativeFreeRung(long rung, EncodeResult result);
+}
@@ -0,0 +1,258 @@
+package org.xiph.vorbis.foreign;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_DOUBLE;
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.Charset;
+import java.util.Optional;
+
+import org.xiph.vorbis.helper.LoadNativeLibrary;
+
+/**
+ * The downcalls into the push decoder and encoder of the vorbis-jni library. Pcm and pages go through off-heap buffers
+ * the callers copy to and from their arrays, one chunk at a time.
+ * <p>
+ * Only the part of <code>java.lang.foreign</code> that JDK 21 already had as a preview is used, no heap segments in
+ * downcalls, no critical linker option and no string helpers, so the same sources also build and run on JDK 21 with
+ * <code>--enable-preview</code>.
+ */
+final class ForeignVorbis {
+	static {
+		LoadNativeLibrary.loadLibraryFiles();
+	}
+
+	/* what push_decoder_read returns besides pcm and the result codes */
+	static final int NEED_INPUT = 0;
+	static final int STREAM = - 1;
+	static final int END = - 2;
+
+	/* the largest page there is, header and body */
+	static final int MAX_PAGE = 65307;
+
+	private static final Linker LINKER = Linker.nativeLinker();
+	private static final SymbolLookup LOOKUP = SymbolLookup.loaderLookup();
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final MethodHandle PUSH_DECODER_NEW = downcall("push_decoder_new",
+	        FunctionDescriptor.of(ADDRESS, JAVA_INT, JAVA_INT, JAVA_FLOAT));
+	private static final MethodHandle PUSH_DECODER_BUFFER = downcall("push_decoder_buffer",
+	        FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_INT));
+	private static final MethodHandle PUSH_DECODER_WROTE = downcall("push_decoder_wrote",
+	        FunctionDescriptor.ofVoid(ADDRESS, JAVA_INT));
+	private static final MethodHandle PUSH_DECODER_READ = downcall("push_decoder_read",
+	        FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT));
+	private static final MethodHandle PUSH_DECODER_CHANNELS = downcall("push_decoder_channels",
+	        FunctionDescriptor.of(JAVA_INT, ADDRESS));
+	private static final MethodHandle PUSH_DECODER_RATE = downcall("push_decoder_rate", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+	private static final MethodHandle PUSH_DECODER_VENDOR = downcall("push_decoder_vendor",
+	        FunctionDescriptor.of(ADDRESS, ADDRESS));
+	private static final MethodHandle PUSH_DECODER_DECODED = downcall("push_decoder_decoded",
+	        FunctionDescriptor.of(JAVA_LONG, ADDRESS));
+	private static final MethodHandle PUSH_DECODER_CLIPPED = downcall("push_decoder_clipped",
+	        FunctionDescriptor.of(JAVA_LONG, ADDRESS));
+	private static final MethodHandle PUSH_DECODER_PEAK_BYTES = downcall("push_decoder_peak_bytes",
+	        FunctionDescriptor.of(JAVA_LONG, ADDRESS));
+	private static final MethodHandle PUSH_DECODER_FREE = downcall("push_decoder_free", FunctionDescriptor.ofVoid(ADDRESS));
+
+	private static final MethodHandle PUSH_ENCODER_NEW = downcall("push_encoder_new", FunctionDescriptor.of(ADDRESS, JAVA_INT,
+	        JAVA_INT, JAVA_FLOAT, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_DOUBLE, JAVA_INT, JAVA_INT));
+	private static final MethodHandle PUSH_ENCODER_COMMENT = downcall("push_encoder_comment",
+	        FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+	private static final MethodHandle PUSH_ENCODER_WRITE = downcall("push_encoder_write",
+	        FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, JAVA_INT));
+	private static final MethodHandle PUSH_ENCODER_PAGE = downcall("push_encoder_page",
+	        FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+	private static final MethodHandle PUSH_ENCODER_GRANULEPOS = downcall("push_encoder_granulepos",
+	        FunctionDescriptor.of(JAVA_LONG, ADDRESS));
+	private static final MethodHandle PUSH_ENCODER_FREE = downcall("push_encoder_free", FunctionDescriptor.ofVoid(ADDRESS));
+
+	private ForeignVorbis() {}
+
+	private static MethodHandle downcall(String name, FunctionDescriptor descriptor, Linker.Option... options) {
+		Optional<MemorySegment> symbol = LOOKUP.find(name);
+		if (!symbol.isPresent()) {
+			throw new UnsatisfiedLinkError("vorbis-jni library has no " + name);
+		}
+		return LINKER.downcallHandle(symbol.get(), descriptor, options);
+	}
+
+	/* downcalls only throw what the native side cannot, errors and runtime exceptions */
+	private static RuntimeException rethrow(Throwable t) {
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		if (t instanceof RuntimeException) {
+			return (RuntimeException) t;
+		}
+		return new IllegalStateException(t);
+	}
+
+	/* a nul terminated UTF-8 copy of a string */
+	static MemorySegment toCString(Arena arena, String value) {
+		byte[] bytes = value.getBytes(UTF_8);
+		MemorySegment string = arena.allocate(bytes.length + 1);
+		MemorySegment.copy(bytes, 0, string, JAVA_BYTE, 0, bytes.length);
+		string.set(JAVA_BYTE, bytes.length, (byte) 0);
+		return string;
+	}
+
+	private static String fromCString(MemorySegment string) {
+		int length = 0;
+		while (string.get(JAVA_BYTE, length) != 0) {
+			length++;
+		}
+		byte[] bytes = new byte[length];
+		MemorySegment.copy(string, JAVA_BYTE, 0, bytes, 0, length);
+		return new String(bytes, UTF_8);
+	}
+
+	static MemorySegment decoderNew(int format, boolean dither, float gain) {
+		try {
+			return (MemorySegment) PUSH_DECODER_NEW.invokeExact(format, dither ? 1 : 0, gain);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	/* the buffer comes back without a size, it is as long as asked for */
+	static MemorySegment decoderBuffer(MemorySegment decoder, int size) {
+		try {
+			return ((MemorySegment) PUSH_DECODER_BUFFER.invokeExact(decoder, size)).reinterpret(size);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static void decoderWrote(MemorySegment decoder, int bytes) {
+		try {
+			PUSH_DECODER_WROTE.invokeExact(decoder, bytes);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static int decoderRead(MemorySegment decoder, MemorySegment out, int capacity) {
+		try {
+			return (int) PUSH_DECODER_READ.invokeExact(decoder, out, capacity);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static int decoderChannels(MemorySegment decoder) {
+		try {
+			return (int) PUSH_DECODER_CHANNELS.invokeExact(decoder);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static int decoderRate(MemorySegment decoder) {
+		try {
+			return (int) PUSH_DECODER_RATE.invokeExact(decoder);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static String decoderVendor(MemorySegment decoder) {
+		try {
+			MemorySegment vendor = (MemorySegment) PUSH_DECODER_VENDOR.invokeExact(decoder);
+			return vendor.equals(MemorySegment.NULL) ? null : fromCString(vendor.reinterpret(Long.MAX_VALUE));
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static long decoderDecoded(MemorySegment decoder) {
+		try {
+			return (long) PUSH_DECODER_DECODED.invokeExact(decoder);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static long decoderClipped(MemorySegment decoder) {
+		try {
+			return (long) PUSH_DECODER_CLIPPED.invokeExact(decoder);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static long decoderPeakBytes(MemorySegment decoder) {
+		try {
+			return (long) PUSH_DECODER_PEAK_BYTES.invokeExact(decoder);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static void decoderFree(MemorySegment decoder) {
+		try {
+			PUSH_DECODER_FREE.invokeExact(decoder);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static MemorySegment encoderNew(int channels, int rate, float quality, int bitrate, int minBitrate, int maxBitrate,
+	        int reservoirBits, double reservoirBias, int speed, int maxLatencyMillis) {
+		try {
+			return (MemorySegment) PUSH_ENCODER_NEW.invokeExact(channels, rate, quality, bitrate, minBitrate, maxBitrate,
+			        reservoirBits, reservoirBias, speed, maxLatencyMillis);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static int encoderComment(MemorySegment encoder, MemorySegment comment) {
+		try {
+			return (int) PUSH_ENCODER_COMMENT.invokeExact(encoder, comment);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static void encoderWrite(MemorySegment encoder, MemorySegment pcm, int bytes) {
+		try {
+			PUSH_ENCODER_WRITE.invokeExact(encoder, pcm, bytes);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static int encoderPage(MemorySegment encoder, MemorySegment out) {
+		try {
+			return (int) PUSH_ENCODER_PAGE.invokeExact(encoder, out);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static long encoderGranulePosition(MemorySegment encoder) {
+		try {
+			return (long) PUSH_ENCODER_GRANULEPOS.invokeExact(encoder);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+
+	static void encoderFree(MemorySegment encoder) {
+		try {
+			PUSH_ENCODER_FREE.invokeExact(encoder);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+}
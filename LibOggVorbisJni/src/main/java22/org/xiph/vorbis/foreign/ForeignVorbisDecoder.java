@@ -0,0 +1,157 @@
+package org.xiph.vorbis.foreign;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+
+import org.xiph.vorbis.decoder.DecodeFeed;
+import org.xiph.vorbis.decoder.DecodeOptions;
+import org.xiph.vorbis.decoder.DecodeStatistics;
+import org.xiph.vorbis.decoder.DecodeStreamInfo;
+import org.xiph.vorbis.decoder.FormattedDecodeFeed;
+import org.xiph.vorbis.decoder.PcmFormat;
+import org.xiph.vorbis.decoder.VorbisDecoder;
+
+/**
+ * The feed driven decoder of {@link VorbisDecoder#startDecoding(DecodeFeed, DecodeOptions, DecodeStatistics)} bound through
+ * <code>java.lang.foreign</code> instead of JNI. The decode loop runs in Java and calls down into the native decoder, which
+ * never calls back: the feed is called straight from Java, the vorbis data it reads is copied once into the decoder's own
+ * buffer and the pcm is converted into an off-heap buffer and copied once into the array handed to the feed. The feed sees
+ * the same calls in the same order as with {@link VorbisDecoder}.
+ * <p>
+ * Needs JDK 22 or later, or JDK 21 with <code>--enable-preview</code>, and <code>--enable-native-access=ALL-UNNAMED</code>
+ * to run without warnings. Joining streams through a header cache and measuring loudness are only supported by
+ * {@link VorbisDecoder}.
+ */
+public class ForeignVorbisDecoder {
+	/* the read and write sizes of the native feed driven decoder */
+	private static final int BUFFER_LENGTH = 4096;
+
+	private ForeignVorbisDecoder() {}
+
+	/**
+	 * Start decoding the data by way of foreign downcalls
+	 *
+	 * @param decodeFeed the custom decode feed
+	 * @return the result code
+	 */
+	public static int startDecoding(DecodeFeed decodeFeed) {
+		return startDecoding(decodeFeed, null, null);
+	}
+
+	/**
+	 * Start decoding the data by way of foreign downcalls
+	 *
+	 * @param decodeFeed the custom decode feed
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm
+	 * @param statistics filled in with the decode counters once finished, may be <code>null</code>
+	 * @return the result code
+	 */
+	public static int startDecoding(DecodeFeed decodeFeed, DecodeOptions options, DecodeStatistics statistics) {
+		if (decodeFeed == null) {
+			throw new IllegalArgumentException("Decode feed must not be null.");
+		}
+		if (options == null) {
+			options = new DecodeOptions();
+		}
+		if (options.getPcmFormat() != PcmFormat.S16 && ! (decodeFeed instanceof FormattedDecodeFeed)) {
+			throw new IllegalArgumentException("Pcm format " + options.getPcmFormat() + " requires a FormattedDecodeFeed");
+		}
+		if (options.getHeaderCache() != null || options.isMeasureLoudness()) {
+			throw new IllegalArgumentException("Header cache and loudness measurement need the JNI VorbisDecoder.");
+		}
+
+		MemorySegment decoder = ForeignVorbis.decoderNew(options.getPcmFormat().ordinal(), options.isDither(), options.getGain());
+		if (decoder.equals(MemorySegment.NULL)) {
+			throw new OutOfMemoryError("Cannot allocate a native decoder");
+		}
+		try (Arena arena = Arena.ofConfined()) {
+			return decode(decoder, arena, decodeFeed, options.getPcmFormat(), statistics);
+		} finally {
+			ForeignVorbis.decoderFree(decoder);
+		}
+	}
+
+	private static int decode(MemorySegment decoder, Arena arena, DecodeFeed decodeFeed, PcmFormat format,
+	        DecodeStatistics statistics) {
+		long startNanos = System.nanoTime();
+		boolean firstAudio = false;
+		byte[] input = new byte[BUFFER_LENGTH];
+		short[] shorts = null;
+		byte[] bytes = null;
+		if (format == PcmFormat.S16) {
+			shorts = new short[BUFFER_LENGTH];
+		} else {
+			bytes = new byte[BUFFER_LENGTH * format.getBytesPerSample()];
+		}
+		int capacity = BUFFER_LENGTH * format.getBytesPerSample();
+		MemorySegment pcm = arena.allocate(capacity, 8);
+		int frameBytes = 0;
+		int rate = 0;
+		long countSamples = 0;
+		long elapsedSeconds = 0;
+
+		decodeFeed.startReadingHeader();
+		while (true) {
+			int result = ForeignVorbis.decoderRead(decoder, pcm, capacity);
+			if (result > 0) {
+				int frames = result / frameBytes;
+				countSamples += frames;
+				if (countSamples > rate) {
+					elapsedSeconds += countSamples / rate;
+					countSamples %= rate;
+					decodeFeed.elapsedSeconds(elapsedSeconds);
+				}
+				if (!firstAudio) {
+					firstAudio = true;
+					if (statistics != null) {
+						statistics.setFirstAudioNanos(System.nanoTime() - startNanos);
+					}
+				}
+				int samples = result / format.getBytesPerSample();
+				boolean accepted;
+				if (shorts != null) {
+					MemorySegment.copy(pcm, JAVA_SHORT, 0, shorts, 0, samples);
+					accepted = decodeFeed.writePCMData(shorts, samples);
+				} else {
+					MemorySegment.copy(pcm, JAVA_BYTE, 0, bytes, 0, result);
+					accepted = ((FormattedDecodeFeed) decodeFeed).writePCMData(bytes, result);
+				}
+				if (!accepted) {
+					/* the feed wants no more, like the end of the input */
+					break;
+				}
+			} else if (result == ForeignVorbis.NEED_INPUT) {
+				int read = decodeFeed.readVorbisData(input, BUFFER_LENGTH);
+				if (read > 0) {
+					MemorySegment.copy(input, 0, ForeignVorbis.decoderBuffer(decoder, read), JAVA_BYTE, 0, read);
+					ForeignVorbis.decoderWrote(decoder, read);
+				} else {
+					ForeignVorbis.decoderWrote(decoder, 0);
+				}
+			} else if (result == ForeignVorbis.STREAM) {
+				int channels = ForeignVorbis.decoderChannels(decoder);
+				rate = ForeignVorbis.decoderRate(decoder);
+				frameBytes = channels * format.getBytesPerSample();
+				countSamples = 0;
+				elapsedSeconds = 0;
+				decodeFeed.start(new DecodeStreamInfo(rate, channels, ForeignVorbis.decoderVendor(decoder), - 1));
+			} else if (result == ForeignVorbis.END) {
+				break;
+			} else {
+				decodeFeed.stop();
+				return result;
+			}
+		}
+
+		if (statistics != null) {
+			statistics.setDecodedSamples(ForeignVorbis.decoderDecoded(decoder));
+			statistics.setClippedSamples(ForeignVorbis.decoderClipped(decoder));
+			statistics.setPeakNativeBytes(ForeignVorbis.decoderPeakBytes(decoder));
+		}
+		decodeFeed.stop();
+		return DecodeFeed.SUCCESS;
+	}
+}
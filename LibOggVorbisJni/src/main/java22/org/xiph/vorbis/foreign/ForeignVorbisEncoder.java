@@ -0,0 +1,171 @@
+package org.xiph.vorbis.foreign;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.Map;
+
+import org.xiph.vorbis.encoder.EncodeFeed;
+import org.xiph.vorbis.encoder.EncoderSettings;
+import org.xiph.vorbis.encoder.EncoderSpeed;
+import org.xiph.vorbis.encoder.OggPageListener;
+import org.xiph.vorbis.encoder.VorbisEncoder;
+
+/**
+ * The feed driven encoder of {@link VorbisEncoder} bound through <code>java.lang.foreign</code> instead of JNI. The encode
+ * loop runs in Java and calls down into the native encoder, which never calls back: the pcm the feed reads is copied once
+ * into an off-heap buffer and every page once out of one into the array handed to the feed, whole, in one
+ * {@link EncodeFeed#writeVorbisData(byte[], int)} call. The pages are the same as those of {@link VorbisEncoder}.
+ * <p>
+ * Needs JDK 22 or later, or JDK 21 with <code>--enable-preview</code>, and <code>--enable-native-access=ALL-UNNAMED</code>
+ * to run without warnings. A {@link EncoderSettings#getBitrateControl() bitrate control} is only supported by
+ * {@link VorbisEncoder}.
+ */
+public class ForeignVorbisEncoder {
+	/* the read size of the native feed driven encoder */
+	private static final int READ_LENGTH = 4096;
+
+	private ForeignVorbisEncoder() {}
+
+	/**
+	 * Encodes raw pcm data to vorbis data by way of foreign downcalls
+	 *
+	 * @param sampleRate the sample rate which the incoming pcm data will arrive
+	 * @param numberOfChannels the number of channels
+	 * @param quality the quality to encode the output vorbis data
+	 * @param encodeFeed the custom encoder feed
+	 */
+	public static int startEncodingWithQuality(long sampleRate, long numberOfChannels, float quality, EncodeFeed encodeFeed) {
+		return startEncodingWithQuality(sampleRate, numberOfChannels, quality, EncoderSpeed.BEST, encodeFeed);
+	}
+
+	/**
+	 * Encodes raw pcm data to vorbis data by way of foreign downcalls
+	 *
+	 * @param sampleRate the sample rate which the incoming pcm data will arrive
+	 * @param numberOfChannels the number of channels
+	 * @param quality the quality to encode the output vorbis data
+	 * @param speed how much analysis to spend per block
+	 * @param encodeFeed the custom encoder feed
+	 */
+	public static int startEncodingWithQuality(long sampleRate, long numberOfChannels, float quality, EncoderSpeed speed,
+	        EncodeFeed encodeFeed) {
+		checkArguments(speed, encodeFeed);
+		MemorySegment encoder = ForeignVorbis.encoderNew((int) numberOfChannels, (int) sampleRate, quality, - 1, - 1, - 1, - 1,
+		        - 1, speed.getLevel(), 0);
+		return encode(encoder, new EncoderSettings().getComments(), encodeFeed);
+	}
+
+	/**
+	 * Encodes raw pcm data to vorbis data by way of foreign downcalls
+	 *
+	 * @param sampleRate the sample rate which the incoming pcm data will arrive
+	 * @param numberOfChannels the number of channels
+	 * @param bitrate the bitrate of the output vorbis data
+	 * @param encodeFeed the custom encoder feed
+	 */
+	public static int startEncodingWithBitrate(long sampleRate, long numberOfChannels, long bitrate, EncodeFeed encodeFeed) {
+		return startEncodingWithBitrate(sampleRate, numberOfChannels, bitrate, EncoderSpeed.BEST, encodeFeed);
+	}
+
+	/**
+	 * Encodes raw pcm data to vorbis data by way of foreign downcalls
+	 *
+	 * @param sampleRate the sample rate which the incoming pcm data will arrive
+	 * @param numberOfChannels the number of channels
+	 * @param bitrate the bitrate of the output vorbis data
+	 * @param speed how much analysis to spend per block
+	 * @param encodeFeed the custom encoder feed
+	 */
+	public static int startEncodingWithBitrate(long sampleRate, long numberOfChannels, long bitrate, EncoderSpeed speed,
+	        EncodeFeed encodeFeed) {
+		checkArguments(speed, encodeFeed);
+		MemorySegment encoder = ForeignVorbis.encoderNew((int) numberOfChannels, (int) sampleRate, - 1, (int) bitrate, - 1, - 1,
+		        - 1, - 1, speed.getLevel(), 0);
+		return encode(encoder, new EncoderSettings().getComments(), encodeFeed);
+	}
+
+	/**
+	 * Encodes raw pcm data to vorbis data by way of foreign downcalls, with the sample rate, channels, mode, speed and comments
+	 * all taken from the settings
+	 *
+	 * @param settings the encoder settings
+	 * @param encodeFeed the custom encoder feed
+	 */
+	public static int startEncoding(EncoderSettings settings, EncodeFeed encodeFeed) {
+		if (settings == null) {
+			throw new IllegalArgumentException("Encoder settings must not be null.");
+		}
+		if (settings.getBitrateControl() != null) {
+			throw new IllegalArgumentException("Bitrate control needs the JNI VorbisEncoder.");
+		}
+		checkArguments(settings.getSpeed(), encodeFeed);
+		MemorySegment encoder = ForeignVorbis.encoderNew(settings.getChannels(), (int) settings.getSampleRate(),
+		        settings.getQuality(), (int) settings.getBitrate(), (int) settings.getMinBitrate(), (int) settings.getMaxBitrate(),
+		        (int) settings.getReservoirBits(), settings.getReservoirBias(), settings.getSpeed().getLevel(),
+		        (int) Math.min(settings.getMaxLatencyMillis(), Integer.MAX_VALUE));
+		return encode(encoder, settings.getComments(), encodeFeed);
+	}
+
+	private static void checkArguments(EncoderSpeed speed, EncodeFeed encodeFeed) {
+		if (speed == null) {
+			throw new IllegalArgumentException("Encoder speed must not be null.");
+		}
+		if (encodeFeed == null) {
+			throw new IllegalArgumentException("Encode feed must not be null.");
+		}
+	}
+
+	private static int encode(MemorySegment encoder, Map<String, String> comments, EncodeFeed encodeFeed) {
+		if (encoder.equals(MemorySegment.NULL)) {
+			encodeFeed.stop();
+			return EncodeFeed.ERROR_INITIALIZING;
+		}
+		try {
+			encodeFeed.start();
+			try (Arena arena = Arena.ofConfined()) {
+				for (Map.Entry<String, String> comment : comments.entrySet()) {
+					ForeignVorbis.encoderComment(encoder, ForeignVorbis.toCString(arena, comment.getKey() + "=" + comment.getValue()));
+				}
+				encode(encoder, arena, encodeFeed);
+			}
+		} finally {
+			ForeignVorbis.encoderFree(encoder);
+		}
+		encodeFeed.stop();
+		return EncodeFeed.SUCCESS;
+	}
+
+	private static void encode(MemorySegment encoder, Arena arena, EncodeFeed encodeFeed) {
+		OggPageListener pageListener = encodeFeed instanceof OggPageListener ? (OggPageListener) encodeFeed : null;
+		byte[] pcm = new byte[READ_LENGTH];
+		byte[] page = new byte[ForeignVorbis.MAX_PAGE];
+		MemorySegment pcmSegment = arena.allocate(READ_LENGTH);
+		MemorySegment pageSegment = arena.allocate(ForeignVorbis.MAX_PAGE);
+
+		/* the headers go out before the first read */
+		boolean finished = false;
+		while (true) {
+			int length;
+			while ((length = ForeignVorbis.encoderPage(encoder, pageSegment)) > 0) {
+				MemorySegment.copy(pageSegment, JAVA_BYTE, 0, page, 0, length);
+				encodeFeed.writeVorbisData(page, length);
+				/* header pages leave the granule position at 0, only audio pages are reported */
+				long granulePosition = ForeignVorbis.encoderGranulePosition(encoder);
+				if (pageListener != null && granulePosition != 0) {
+					pageListener.pageWritten(granulePosition, length);
+				}
+			}
+			if (finished) {
+				return;
+			}
+			long bytes = encodeFeed.readPCMData(pcm, READ_LENGTH);
+			finished = bytes <= 0;
+			if (!finished) {
+				MemorySegment.copy(pcm, 0, pcmSegment, JAVA_BYTE, 0, (int) bytes);
+			}
+			ForeignVorbis.encoderWrite(encoder, pcmSegment, finished ? 0 : (int) bytes);
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package org.xiph.vorbis.decoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the decoded pcm of a file as chunks of interleaved little-endian frames. Every subscriber gets its own
+ * {@link VorbisPcmReader}, opened on the executor once the subscriber first asks for data, and a chunk is only decoded
+ * for each one requested, so nothing waits on a slow subscriber: decoding simply stops until more is requested.
+ * Cancelling closes the native decoder as soon as a chunk in progress is done.
+ * <p>
+ * Chunks come from a pool, hand them back with {@link #recycle(ByteBuffer)} once consumed to decode without allocating.
+ * Chunks that are not handed back are left to the garbage collector.
+ * <p>
+ * Needs {@link java.util.concurrent.Flow}, that is Java 9 or Android API level 30, so it lives in <code>src/main/java9</code>
+ * and is only built with <code>-Pflow</code>, the rest of the jar stays Java 8.
+ */
+public class DecodePublisher implements Flow.Publisher<ByteBuffer> {
+	/**
+	 * The number of frames in a chunk unless set otherwise
+	 */
+	public static final int DEFAULT_CHUNK_FRAMES = 4096;
+
+	private static final int MAX_POOLED_CHUNKS = 16;
+
+	private final File file;
+	private final DecodeOptions options;
+	private final Executor executor;
+	private final int chunkFrames;
+	private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * @param file the vorbis file to decode
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm
+	 * @param executor runs the decoding, one task at a time per subscriber
+	 * @param chunkFrames the number of frames per chunk, the last chunk may hold fewer
+	 */
+	public DecodePublisher(File file, DecodeOptions options, Executor executor, int chunkFrames) {
+		if (file == null) {
+			throw new IllegalArgumentException("File to decode must not be null.");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor must not be null.");
+		}
+		if (chunkFrames <= 0) {
+			throw new IllegalArgumentException("Chunk frames must be positive.");
+		}
+		this.file = file;
+		this.options = options == null ? new DecodeOptions() : options;
+		this.executor = executor;
+		this.chunkFrames = chunkFrames;
+	}
+
+	/**
+	 * Publishes the decoded pcm of a file in chunks of {@link #DEFAULT_CHUNK_FRAMES}, decoding on the common fork join pool
+	 * only as far as subscribers request
+	 *
+	 * @param source the vorbis file to decode
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm
+	 * @return a publisher that decodes the file anew for every subscriber
+	 */
+	public static DecodePublisher of(File source, DecodeOptions options) {
+		return of(source, options, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Publishes the decoded pcm of a file in chunks of {@link #DEFAULT_CHUNK_FRAMES}, decoding only as far as subscribers
+	 * request
+	 *
+	 * @param source the vorbis file to decode
+	 * @param options the output conversion options, <code>null</code> for 16 bit pcm
+	 * @param executor runs the decoding
+	 * @return a publisher that decodes the file anew for every subscriber
+	 */
+	public static DecodePublisher of(File source, DecodeOptions options, Executor executor) {
+		return new DecodePublisher(source, options, executor, DEFAULT_CHUNK_FRAMES);
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Subscriber must not be null.");
+		}
+		DecodeSubscription subscription = new DecodeSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * Hands a chunk back for reuse, it must not be touched afterwards
+	 *
+	 * @param chunk a chunk received from this publisher
+	 */
+	public void recycle(ByteBuffer chunk) {
+		if (chunk == null || !chunk.isDirect()) {
+			return;
+		}
+		if (pooled.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+			pool.offer(chunk);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+
+	private ByteBuffer takeChunk(int capacity) {
+		ByteBuffer chunk;
+		while ((chunk = pool.poll()) != null) {
+			pooled.decrementAndGet();
+			if (chunk.capacity() >= capacity) {
+				chunk.clear();
+				chunk.limit(capacity);
+				return chunk;
+			}
+		}
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getChunkFrames() {
+		return chunkFrames;
+	}
+
+	/* Signals to the subscriber are serialized by the work in progress counter: whoever raises it from 0 schedules the
+	   drain, everyone else just leaves a note that there is more to do. */
+	private class DecodeSubscription implements Flow.Subscription, Runnable {
+		private final Flow.Subscriber<? super ByteBuffer> subscriber;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger work = new AtomicInteger();
+		private volatile boolean cancelled;
+		private volatile IllegalArgumentException badRequest;
+		private VorbisPcmReader reader;
+		private boolean done;
+
+		DecodeSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				badRequest = new IllegalArgumentException("Requested " + n + " chunks, requests must be positive.");
+			} else {
+				long current, next;
+				do {
+					current = requested.get();
+					next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				} while (!requested.compareAndSet(current, next));
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if (work.getAndIncrement() == 0) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					work.set(0);
+					cancelled = true;
+					closeReader();
+					subscriber.onError(e);
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = work.addAndGet(- missed);
+			} while (missed != 0);
+		}
+
+		private void drain() {
+			if (done) {
+				return;
+			}
+			if (cancelled) {
+				finish();
+				return;
+			}
+			if (badRequest != null) {
+				finish();
+				subscriber.onError(badRequest);
+				return;
+			}
+			try {
+				if (reader == null) {
+					reader = new VorbisPcmReader(file, options);
+				}
+				while (requested.get() > 0 && !cancelled) {
+					ByteBuffer chunk = takeChunk(chunkFrames * reader.getFrameLength());
+					if (reader.read(chunk) < 0) {
+						recycle(chunk);
+						finish();
+						subscriber.onComplete();
+						return;
+					}
+					chunk.flip();
+					requested.decrementAndGet();
+					subscriber.onNext(chunk);
+				}
+			} catch (IOException e) {
+				finish();
+				subscriber.onError(e);
+				return;
+			} catch (RuntimeException e) {
+				/* a subscriber throwing from onNext ends the subscription like a failing decode, rethrowing would leave the
+				   work counter raised and every later signal unscheduled */
+				finish();
+				subscriber.onError(e);
+				return;
+			}
+			if (cancelled) {
+				finish();
+			}
+		}
+
+		private void finish() {
+			done = true;
+			closeReader();
+		}
+
+		private void closeReader() {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					/* only a stream can fail closing, files cannot */
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package org.xiph.vorbis.broadcast;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.xiph.vorbis.ogg.OggPage;
+
+import junit.framework.TestCase;
+
+public class OggBroadcasterTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+
+	/* the identification page and the page with the comment and setup headers */
+	private static final int HEADER_PAGES = 2;
+
+	private List<byte[]> pages;
+
+	@Override
+	protected void setUp() throws Exception {
+		pages = new ArrayList<byte[]>();
+		InputStream in = new ByteArrayInputStream(Files.readAllBytes(SAMPLE.toPath()));
+		OggPage page = new OggPage();
+		while (page.read(in)) {
+			pages.add(Arrays.copyOf(page.getData(), page.getLength()));
+		}
+	}
+
+	/* writes the pages in pieces that do not line up with them, as an encoder would */
+	private void write(OggBroadcaster broadcaster, int from, int to) throws IOException {
+		for (int i = from; i < to; i++) {
+			byte[] page = pages.get(i);
+			int split = page.length / 3;
+			broadcaster.write(page, 0, split);
+			broadcaster.write(page[split]);
+			broadcaster.write(page, split + 1, page.length - split - 1);
+		}
+	}
+
+	private static List<byte[]> drain(Subscriber subscriber) {
+		List<byte[]> taken = new ArrayList<byte[]>();
+		ByteBuffer page;
+		while ((page = subscriber.poll()) != null) {
+			assertTrue(page.isReadOnly());
+			byte[] data = new byte[page.remaining()];
+			page.get(data);
+			taken.add(data);
+		}
+		return taken;
+	}
+
+	private static class Listener implements SubscriberListener {
+		int queued;
+		int ended;
+
+		@Override
+		public void pagesQueued(Subscriber subscriber) {
+			queued++;
+		}
+
+		@Override
+		public void subscriptionEnded(Subscriber subscriber) {
+			ended++;
+		}
+	}
+
+	public void testSubscriberFromTheStartGetsTheWholeStream() throws Exception {
+		OggBroadcaster broadcaster = new OggBroadcaster(pages.size());
+		Subscriber subscriber = broadcaster.subscribe();
+		assertTrue(subscriber.isWaitingToJoin());
+		write(broadcaster, 0, pages.size());
+		broadcaster.close();
+
+		assertFalse(subscriber.isWaitingToJoin());
+		assertTrue(subscriber.isFinished());
+		assertFalse(subscriber.isEvicted());
+		List<byte[]> taken = drain(subscriber);
+		assertEquals(pages.size(), taken.size());
+		for (int i = 0; i < pages.size(); i++) {
+			assertTrue(Arrays.equals(pages.get(i), taken.get(i)));
+		}
+		assertEquals(pages.size(), subscriber.getPagesTaken());
+		assertEquals(SAMPLE.length(), subscriber.getBytesTaken());
+		assertEquals(pages.size(), broadcaster.getPages());
+		assertEquals(SAMPLE.length(), broadcaster.getBytes());
+	}
+
+	public void testLateJoinerStartsWithTheHeaders() throws Exception {
+		OggBroadcaster broadcaster = new OggBroadcaster();
+		int half = pages.size() / 2;
+		write(broadcaster, 0, half);
+		Subscriber subscriber = broadcaster.subscribe();
+		write(broadcaster, half, pages.size());
+
+		List<byte[]> taken = drain(subscriber);
+		for (int i = 0; i < HEADER_PAGES; i++) {
+			assertTrue(Arrays.equals(pages.get(i), taken.get(i)));
+		}
+		/* the first audio page it gets starts with a whole packet */
+		byte[] first = taken.get(HEADER_PAGES);
+		assertEquals(0, first[5] & OggPage.FLAG_CONTINUED);
+		int joined = indexOf(first);
+		assertTrue(joined >= half);
+		assertEquals(HEADER_PAGES + pages.size() - joined, taken.size());
+		for (int i = HEADER_PAGES; i < taken.size(); i++) {
+			assertTrue(Arrays.equals(pages.get(joined - HEADER_PAGES + i), taken.get(i)));
+		}
+	}
+
+	private int indexOf(byte[] page) {
+		for (int i = 0; i < pages.size(); i++) {
+			if (Arrays.equals(pages.get(i), page)) {
+				return i;
+			}
+		}
+		return - 1;
+	}
+
+	public void testNoJoinBeforeTheHeadersAreComplete() throws Exception {
+		OggBroadcaster broadcaster = new OggBroadcaster();
+		Subscriber subscriber = broadcaster.subscribe();
+		write(broadcaster, 0, 1);
+		assertTrue(subscriber.isWaitingToJoin());
+		assertEquals(0, subscriber.getQueuedPages());
+		write(broadcaster, 1, HEADER_PAGES);
+		assertTrue(subscriber.isWaitingToJoin());
+		write(broadcaster, HEADER_PAGES, HEADER_PAGES + 1);
+		assertFalse(subscriber.isWaitingToJoin());
+		assertEquals(HEADER_PAGES + 1, subscriber.getQueuedPages());
+	}
+
+	public void testChainedStreamReachesEveryone() throws Exception {
+		OggBroadcaster broadcaster = new OggBroadcaster(2 * pages.size());
+		Subscriber early = broadcaster.subscribe();
+		write(broadcaster, 0, pages.size());
+		int before = early.getQueuedPages();
+		/* the second link's headers are passed on to those already listening */
+		write(broadcaster, 0, HEADER_PAGES);
+		assertEquals(before + HEADER_PAGES, early.getQueuedPages());
+
+		Subscriber late = broadcaster.subscribe();
+		write(broadcaster, HEADER_PAGES, HEADER_PAGES + 1);
+		assertEquals(before + HEADER_PAGES + 1, early.getQueuedPages());
+		List<byte[]> taken = drain(late);
+		assertEquals(HEADER_PAGES + 1, taken.size());
+		for (int i = 0; i < taken.size(); i++) {
+			assertTrue(Arrays.equals(pages.get(i), taken.get(i)));
+		}
+	}
+
+	public void testSlowSubscriberIsEvicted() throws Exception {
+		OggBroadcaster broadcaster = new OggBroadcaster(4);
+		Listener slowListener = new Listener();
+		Subscriber slow = broadcaster.subscribe(slowListener);
+		Listener fastListener = new Listener();
+		Subscriber fast = broadcaster.subscribe(fastListener);
+		int taken = 0;
+		for (int i = 0; i < 20; i++) {
+			write(broadcaster, i, i + 1);
+			taken += drain(fast).size();
+		}
+		assertTrue(slow.isEvicted());
+		assertTrue(slow.isFinished());
+		assertNull(slow.poll());
+		assertEquals(1, slowListener.ended);
+		assertEquals(1, broadcaster.getEvictions());
+		assertEquals(1, broadcaster.getSubscriberCount());
+		assertEquals(2, broadcaster.getPeakSubscribers());
+		/* the headers it joined with do not count against the limit */
+		assertEquals(HEADER_PAGES + 4, slow.getHighWaterPages());
+
+		assertFalse(fast.isEvicted());
+		assertEquals(20, taken);
+		assertEquals(0, fastListener.ended);
+		assertTrue(fastListener.queued > 0);
+
+		/* once they are read the limit is the queue itself */
+		fast.close();
+		Subscriber reading = broadcaster.subscribe();
+		write(broadcaster, 20, 21);
+		assertEquals(HEADER_PAGES + 1, drain(reading).size());
+		write(broadcaster, 21, 25);
+		assertFalse(reading.isEvicted());
+		write(broadcaster, 25, 26);
+		assertTrue(reading.isEvicted());
+	}
+
+	public void testCloseFinishesSubscribers() throws Exception {
+		OggBroadcaster broadcaster = new OggBroadcaster();
+		Listener listener = new Listener();
+		Subscriber subscriber = broadcaster.subscribe(listener);
+		write(broadcaster, 0, HEADER_PAGES + 2);
+		broadcaster.close();
+		broadcaster.close();
+		assertTrue(broadcaster.isClosed());
+		assertEquals(1, listener.ended);
+		assertEquals(0, broadcaster.getSubscriberCount());
+		/* what was queued can still be read, then there is no more */
+		assertEquals(HEADER_PAGES + 2, drain(subscriber).size());
+		assertNull(subscriber.take(10, TimeUnit.SECONDS));
+
+		try {
+			write(broadcaster, 0, 1);
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		Subscriber late = broadcaster.subscribe();
+		assertTrue(late.isFinished());
+		assertEquals(0, broadcaster.getSubscriberCount());
+	}
+
+	public void testClosedSubscriberLeaves() throws Exception {
+		OggBroadcaster broadcaster = new OggBroadcaster();
+		Listener listener = new Listener();
+		Subscriber subscriber = broadcaster.subscribe(listener);
+		write(broadcaster, 0, HEADER_PAGES + 2);
+		subscriber.close();
+		assertTrue(subscriber.isFinished());
+		assertFalse(subscriber.isEvicted());
+		assertEquals(0, subscriber.getQueuedPages());
+		assertEquals(0, broadcaster.getSubscriberCount());
+		write(broadcaster, HEADER_PAGES + 2, HEADER_PAGES + 3);
+		assertNull(subscriber.poll());
+		/* closing is not an eviction */
+		assertEquals(0, broadcaster.getEvictions());
+		assertEquals(0, listener.ended);
+	}
+
+	public void testTakeWaitsForAPage() throws Exception {
+		final OggBroadcaster broadcaster = new OggBroadcaster();
+		Subscriber subscriber = broadcaster.subscribe();
+		assertNull(subscriber.take(1, TimeUnit.MILLISECONDS));
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+					write(broadcaster, 0, HEADER_PAGES + 1);
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		writer.start();
+		ByteBuffer page = subscriber.take(10, TimeUnit.SECONDS);
+		writer.join();
+		assertNotNull(page);
+		assertEquals(pages.get(0).length, page.remaining());
+	}
+
+	public void testRejectsOtherData() throws Exception {
+		OggBroadcaster broadcaster = new OggBroadcaster();
+		try {
+			broadcaster.write(new byte[OggPage.HEADER_LENGTH]);
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			new OggBroadcaster(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package org.xiph.vorbis.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xiph.vorbis.decoder.DecodeOptions;
+import org.xiph.vorbis.decoder.PcmFormat;
+
+import junit.framework.TestCase;
+
+/* The cache bookkeeping, with the decode replaced by buffers as long as the files are. */
+public class PcmCacheTest extends TestCase {
+	private File directory;
+	private ExecutorService executor;
+
+	private static class TestCache extends PcmCache {
+		final AtomicInteger decodes = new AtomicInteger();
+		volatile CountDownLatch started;
+		volatile CountDownLatch release;
+
+		TestCache(long budget, EvictionPolicy policy) {
+			super(budget, policy);
+		}
+
+		@Override
+		CachedPcm load(File file, DecodeOptions options) throws IOException {
+			decodes.incrementAndGet();
+			if (started != null) {
+				started.countDown();
+			}
+			if (release != null) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			if (file.getName().startsWith("bad")) {
+				throw new IOException("not vorbis");
+			}
+			return new CachedPcm(ByteBuffer.allocateDirect((int) file.length()), options.getPcmFormat(), 2, 44100);
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("cache").toFile();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdownNow();
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private File file(String name, int length) throws IOException {
+		File file = new File(directory, name);
+		Files.write(file.toPath(), new byte[length]);
+		return file;
+	}
+
+	public void testHitsAndFormats() throws Exception {
+		TestCache cache = new TestCache(1000, EvictionPolicy.LEAST_RECENTLY_USED);
+		File a = file("a.ogg", 100);
+		CachedPcm pcm = cache.get(a);
+		assertSame(pcm, cache.get(a));
+		DecodeOptions floats = new DecodeOptions();
+		floats.setPcmFormat(PcmFormat.F32);
+		assertNotSame(pcm, cache.get(a, floats));
+
+		assertEquals(2, cache.decodes.get());
+		assertEquals(2, cache.getLoads());
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.getEntryCount());
+		assertEquals(200, cache.getSize());
+	}
+
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		TestCache cache = new TestCache(300, EvictionPolicy.LEAST_RECENTLY_USED);
+		File a = file("a.ogg", 100), b = file("b.ogg", 100), c = file("c.ogg", 100), d = file("d.ogg", 100);
+		CachedPcm first = cache.get(a);
+		cache.get(b);
+		cache.get(c);
+		cache.get(a);
+		cache.get(d);
+		/* b went unused the longest */
+		assertEquals(3, cache.getEntryCount());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(300, cache.getSize());
+		assertSame(first, cache.get(a));
+		cache.get(b);
+		assertEquals(5, cache.decodes.get());
+		/* an evicted clip stays readable */
+		assertEquals(100, first.getData().remaining());
+	}
+
+	public void testLeastFrequentlyUsedEviction() throws Exception {
+		TestCache cache = new TestCache(300, EvictionPolicy.LEAST_FREQUENTLY_USED);
+		File a = file("a.ogg", 100), b = file("b.ogg", 100), c = file("c.ogg", 100), d = file("d.ogg", 100);
+		cache.get(a);
+		cache.get(a);
+		cache.get(b);
+		cache.get(b);
+		cache.get(c);
+		cache.get(a);
+		cache.get(d);
+		/* c was used once, the others more often */
+		cache.get(a);
+		cache.get(b);
+		assertEquals(4, cache.decodes.get());
+		cache.get(c);
+		assertEquals(5, cache.decodes.get());
+	}
+
+	public void testTooLargeIsNotKept() throws Exception {
+		TestCache cache = new TestCache(100, EvictionPolicy.LEAST_RECENTLY_USED);
+		File small = file("small.ogg", 50), large = file("large.ogg", 150);
+		cache.get(small);
+		assertEquals(150, cache.get(large).getLength());
+		assertEquals(1, cache.getEntryCount());
+		assertEquals(50, cache.getSize());
+		assertEquals(0, cache.getEvictions());
+	}
+
+	public void testFailuresAreNotCached() throws Exception {
+		TestCache cache = new TestCache(1000, EvictionPolicy.LEAST_RECENTLY_USED);
+		File bad = file("bad.ogg", 100);
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.get(bad);
+				fail();
+			} catch (IOException e) {
+				// expected
+			}
+		}
+		assertEquals(2, cache.decodes.get());
+		assertEquals(0, cache.getEntryCount());
+	}
+
+	public void testConcurrentMissesShareOneDecode() throws Exception {
+		final TestCache cache = new TestCache(1000, EvictionPolicy.LEAST_RECENTLY_USED);
+		final File a = file("a.ogg", 100);
+		cache.started = new CountDownLatch(1);
+		cache.release = new CountDownLatch(1);
+		Callable<CachedPcm> get = new Callable<CachedPcm>() {
+			@Override
+			public CachedPcm call() throws IOException {
+				return cache.get(a);
+			}
+		};
+		Future<CachedPcm> first = executor.submit(get);
+		assertTrue(cache.started.await(5, TimeUnit.SECONDS));
+		Future<CachedPcm> second = executor.submit(get);
+		/* the second lookup has missed and waits on the first decode once the miss is counted */
+		while (cache.getMisses() < 2) {
+			Thread.sleep(1);
+		}
+		cache.release.countDown();
+		assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+		assertEquals(1, cache.decodes.get());
+		assertEquals(1, cache.getLoads());
+		assertEquals(1, cache.getEntryCount());
+	}
+
+	public void testInvalidateDropsLoadInProgress() throws Exception {
+		final TestCache cache = new TestCache(1000, EvictionPolicy.LEAST_RECENTLY_USED);
+		final File a = file("a.ogg", 100);
+		cache.started = new CountDownLatch(1);
+		cache.release = new CountDownLatch(1);
+		Future<CachedPcm> stale = executor.submit(new Callable<CachedPcm>() {
+			@Override
+			public CachedPcm call() throws IOException {
+				return cache.get(a);
+			}
+		});
+		assertTrue(cache.started.await(5, TimeUnit.SECONDS));
+		cache.invalidate(a);
+		cache.release.countDown();
+		/* the caller still gets its decode, the cache does not keep it */
+		assertNotNull(stale.get(5, TimeUnit.SECONDS));
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getSize());
+
+		cache.started = null;
+		cache.release = null;
+		CachedPcm fresh = cache.get(a);
+		assertNotSame(stale.get(), fresh);
+		assertEquals(2, cache.decodes.get());
+		assertSame(fresh, cache.get(a));
+	}
+
+	public void testInvalidateAndClear() throws Exception {
+		TestCache cache = new TestCache(1000, EvictionPolicy.LEAST_RECENTLY_USED);
+		File a = file("a.ogg", 100), b = file("b.ogg", 200);
+		DecodeOptions floats = new DecodeOptions();
+		floats.setPcmFormat(PcmFormat.F32);
+		cache.get(a);
+		cache.get(a, floats);
+		cache.get(b);
+		cache.invalidate(a);
+		assertEquals(1, cache.getEntryCount());
+		assertEquals(200, cache.getSize());
+		cache.clear();
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getSize());
+		assertEquals(3, cache.getLoads());
+	}
+}
@@ -0,0 +1,62 @@
+package org.xiph.vorbis.decoder;
+
+import junit.framework.TestCase;
+
+public class DecodeStatisticsTest extends TestCase {
+	private static final double DELTA = 1e-9;
+
+	public void testNotMeasured() {
+		DecodeStatistics statistics = new DecodeStatistics();
+		assertTrue(Double.isNaN(statistics.getIntegratedLoudness()));
+		assertTrue(Double.isNaN(statistics.getTruePeak()));
+		assertTrue(Double.isNaN(statistics.getReplayGain()));
+	}
+
+	public void testReplayGain() {
+		DecodeStatistics statistics = new DecodeStatistics();
+		statistics.setIntegratedLoudness(- 23.5);
+		assertEquals(5.5, statistics.getReplayGain(), DELTA);
+		statistics.setIntegratedLoudness(- 9);
+		assertEquals(- 9, statistics.getReplayGain(), DELTA);
+		statistics.setIntegratedLoudness(Double.NEGATIVE_INFINITY);
+		assertEquals(Double.POSITIVE_INFINITY, statistics.getReplayGain());
+	}
+
+	public void testNormalizationGainKeepsTruePeakBelowLimit() {
+		DecodeStatistics statistics = new DecodeStatistics();
+		statistics.setIntegratedLoudness(- 30);
+		statistics.setTruePeak(- 12);
+		/* the loudness decides while the peak has room */
+		assertEquals(7, statistics.getNormalizationGain(- 23, - 1), DELTA);
+		/* the peak limits the gain once it has not */
+		statistics.setTruePeak(- 4);
+		assertEquals(3, statistics.getNormalizationGain(- 23, - 1), DELTA);
+		/* loud audio is turned down whatever the peak */
+		statistics.setIntegratedLoudness(- 8);
+		assertEquals(- 15, statistics.getNormalizationGain(- 23, - 1), DELTA);
+	}
+
+	public void testGainDecibels() {
+		DecodeOptions options = new DecodeOptions();
+		assertEquals(1f, options.getGain());
+		options.setGainDecibels(- 6.0206);
+		assertEquals(0.5f, options.getGain(), 1e-4f);
+		options.setGainDecibels(20);
+		assertEquals(10f, options.getGain(), 1e-4f);
+		options.setGainDecibels(Double.NEGATIVE_INFINITY);
+		assertEquals(0f, options.getGain());
+		try {
+			options.setGainDecibels(Double.POSITIVE_INFINITY);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			options.setGain(Float.NaN);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(0f, options.getGain());
+	}
+}
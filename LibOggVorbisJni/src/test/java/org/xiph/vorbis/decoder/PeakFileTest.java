@@ -0,0 +1,111 @@
+package org.xiph.vorbis.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+
+public class PeakFileTest extends TestCase {
+
+	/* two channels, levels of 4 and 8 frames per bin over 20 frames, laid out as the native writer does */
+	private static ByteBuffer peakFile() {
+		ByteBuffer file = ByteBuffer.allocate(24 + 2 * 12 + (5 + 3) * 2 * 3 * 2).order(ByteOrder.LITTLE_ENDIAN);
+		file.put(new byte[] { 'V', 'P', 'K', 'S' });
+		file.putShort((short) 1).putShort((short) 2).putInt(48000).putLong(20).putShort((short) 2).putShort((short) 0);
+		file.putInt(4).putLong(5);
+		file.putInt(8).putLong(3);
+		for (int level = 0; level < 2; level++) {
+			for (int bin = 0; bin < (level == 0 ? 5 : 3); bin++) {
+				for (int channel = 0; channel < 2; channel++) {
+					int value = level * 1000 + bin * 10 + channel;
+					file.putShort((short) - value).putShort((short) value).putShort((short) (value / 2));
+				}
+			}
+		}
+		file.flip();
+		return file;
+	}
+
+	private static ByteArrayInputStream stream(ByteBuffer file) {
+		return new ByteArrayInputStream(file.array(), 0, file.limit());
+	}
+
+	public void testRead() throws Exception {
+		PeakFile peaks = PeakFile.read(stream(peakFile()));
+		assertEquals(2, peaks.getChannels());
+		assertEquals(48000, peaks.getSampleRate());
+		assertEquals(20, peaks.getTotalSamples());
+		assertEquals(2, peaks.getLevelCount());
+		assertEquals(4, peaks.getSamplesPerBin(0));
+		assertEquals(8, peaks.getSamplesPerBin(1));
+		assertEquals(5, peaks.getBinCount(0));
+		assertEquals(3, peaks.getBinCount(1));
+		assertEquals(- 31, peaks.getMin(0, 3, 1));
+		assertEquals(31, peaks.getMax(0, 3, 1));
+		assertEquals(15, peaks.getRms(0, 3, 1));
+		assertEquals(1020, peaks.getMax(1, 2, 0));
+		assertEquals(- 1021, peaks.getMin(1, 2, 1));
+	}
+
+	public void testRejectsBadFiles() throws Exception {
+		ByteBuffer magic = peakFile();
+		magic.put(3, (byte) 'X');
+		assertNotRead(magic);
+
+		ByteBuffer version = peakFile();
+		version.putShort(4, (short) 2);
+		assertNotRead(version);
+
+		ByteBuffer noLevels = peakFile();
+		noLevels.putShort(20, (short) 0);
+		assertNotRead(noLevels);
+
+		ByteBuffer tooManyLevels = peakFile();
+		tooManyLevels.putShort(20, (short) (PeakFile.MAX_LEVELS + 1));
+		assertNotRead(tooManyLevels);
+
+		ByteBuffer hugeLevel = peakFile();
+		hugeLevel.putLong(24 + 4, Integer.MAX_VALUE);
+		assertNotRead(hugeLevel);
+
+		ByteBuffer truncated = peakFile();
+		truncated.limit(truncated.limit() - 1);
+		try {
+			PeakFile.read(stream(truncated));
+			fail();
+		} catch (EOFException e) {
+			// expected
+		}
+	}
+
+	private static void assertNotRead(ByteBuffer file) {
+		try {
+			PeakFile.read(stream(file));
+			fail("Read a bad peak file");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testCheckLevels() {
+		PeakFile.checkLevels(PeakFile.DEFAULT_SAMPLES_PER_BIN);
+		PeakFile.checkLevels(new int[] { 1 });
+		assertBadLevels(null);
+		assertBadLevels(new int[0]);
+		assertBadLevels(new int[PeakFile.MAX_LEVELS + 1]);
+		assertBadLevels(new int[] { 0 });
+		assertBadLevels(new int[] { 256, 1000 });
+	}
+
+	private static void assertBadLevels(int[] samplesPerBin) {
+		try {
+			PeakFile.checkLevels(samplesPerBin);
+			fail("Accepted bad peak levels");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
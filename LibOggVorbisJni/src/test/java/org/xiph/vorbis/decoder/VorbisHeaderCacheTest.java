@@ -0,0 +1,172 @@
+package org.xiph.vorbis.decoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xiph.vorbis.remux.VorbisHeaders;
+
+import junit.framework.TestCase;
+
+public class VorbisHeaderCacheTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+
+	private static byte[][] packets(int tag) {
+		return new byte[][] { { 1, (byte) tag }, { 3, (byte) tag }, { 5, (byte) tag } };
+	}
+
+	private static void put(VorbisHeaderCache cache, int serialNumber) {
+		byte[][] packets = packets(serialNumber);
+		cache.put(serialNumber, packets[0], packets[1], packets[2]);
+	}
+
+	public void testPutAndGet() throws Exception {
+		VorbisHeaderCache cache = new VorbisHeaderCache();
+		VorbisHeaders headers = VorbisHeaders.read(SAMPLE);
+		cache.put(headers);
+		assertTrue(cache.contains(headers.getSerialNumber()));
+		byte[][] packets = cache.get(headers.getSerialNumber());
+		assertSame(headers.getIdentification(), packets[0]);
+		assertSame(headers.getComment(), packets[1]);
+		assertSame(headers.getSetup(), packets[2]);
+		assertEquals(1, cache.getHits());
+
+		assertFalse(cache.contains(headers.getSerialNumber() + 1));
+		assertNull(cache.get(headers.getSerialNumber() + 1));
+		assertEquals(1, cache.getMisses());
+		assertEquals(0, cache.getFetches());
+		assertEquals(1, cache.size());
+	}
+
+	public void testLeastRecentlyJoinedAreDropped() {
+		VorbisHeaderCache cache = new VorbisHeaderCache(null, 2);
+		put(cache, 1);
+		put(cache, 2);
+		assertNotNull(cache.get(1));
+		put(cache, 3);
+		assertEquals(2, cache.size());
+		assertTrue(cache.contains(1));
+		assertFalse(cache.contains(2));
+		assertTrue(cache.contains(3));
+	}
+
+	public void testFetchesOnce() throws Exception {
+		final VorbisHeaders headers = VorbisHeaders.read(SAMPLE);
+		final AtomicInteger fetched = new AtomicInteger();
+		final CountDownLatch fetching = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final VorbisHeaderCache cache = new VorbisHeaderCache(new HeaderFetcher() {
+			@Override
+			public VorbisHeaders fetch(int serialNumber) throws IOException {
+				fetched.incrementAndGet();
+				fetching.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return headers;
+			}
+		}, VorbisHeaderCache.DEFAULT_CAPACITY);
+
+		final byte[][][] joined = new byte[2][][];
+		Thread first = new Thread() {
+			@Override
+			public void run() {
+				joined[0] = cache.get(headers.getSerialNumber());
+			}
+		};
+		first.start();
+		fetching.await();
+		/* a second listener joining while the fetch runs waits for it */
+		Thread second = new Thread() {
+			@Override
+			public void run() {
+				joined[1] = cache.get(headers.getSerialNumber());
+			}
+		};
+		second.start();
+		assertFalse(cache.contains(headers.getSerialNumber()));
+		release.countDown();
+		first.join();
+		second.join();
+
+		assertEquals(1, fetched.get());
+		assertEquals(1, cache.getFetches());
+		assertSame(headers.getSetup(), joined[0][2]);
+		assertSame(joined[0], joined[1]);
+		assertTrue(cache.contains(headers.getSerialNumber()));
+		assertNotNull(cache.get(headers.getSerialNumber()));
+		assertEquals(1, fetched.get());
+	}
+
+	public void testFailedFetchIsForgotten() throws Exception {
+		final VorbisHeaders headers = VorbisHeaders.read(SAMPLE);
+		final AtomicInteger attempts = new AtomicInteger();
+		VorbisHeaderCache cache = new VorbisHeaderCache(new HeaderFetcher() {
+			@Override
+			public VorbisHeaders fetch(int serialNumber) throws IOException {
+				switch (attempts.incrementAndGet()) {
+				case 1:
+					throw new IOException("Server is away");
+				case 2:
+					return null;
+				default:
+					return headers;
+				}
+			}
+		}, VorbisHeaderCache.DEFAULT_CAPACITY);
+		int serialNumber = headers.getSerialNumber();
+		assertNull(cache.get(serialNumber));
+		assertEquals(0, cache.size());
+		assertNull(cache.get(serialNumber));
+		assertNotNull(cache.get(serialNumber));
+		assertEquals(3, cache.getFetches());
+		assertEquals(2, cache.getMisses());
+	}
+
+	public void testRejectsHeadersOfAnotherStream() throws Exception {
+		final VorbisHeaders headers = VorbisHeaders.read(SAMPLE);
+		VorbisHeaderCache cache = new VorbisHeaderCache(new HeaderFetcher() {
+			@Override
+			public VorbisHeaders fetch(int serialNumber) {
+				return headers;
+			}
+		}, VorbisHeaderCache.DEFAULT_CAPACITY);
+		assertNull(cache.get(headers.getSerialNumber() + 1));
+		assertFalse(cache.contains(headers.getSerialNumber() + 1));
+	}
+
+	public void testLearningKeepsKnownHeaders() throws Exception {
+		VorbisHeaderCache cache = new VorbisHeaderCache();
+		Method learn = VorbisHeaderCache.class.getDeclaredMethod("learn", int.class, byte[].class, byte[].class,
+		        byte[].class);
+		learn.setAccessible(true);
+		byte[][] first = packets(1);
+		learn.invoke(cache, 7, first[0], first[1], first[2]);
+		byte[][] second = packets(2);
+		learn.invoke(cache, 7, second[0], second[1], second[2]);
+		assertSame(first[1], cache.get(7)[1]);
+
+		/* putting them replaces what was learnt */
+		cache.put(7, second[0], second[1], second[2]);
+		assertSame(second[1], cache.get(7)[1]);
+	}
+
+	public void testRejectsBadArguments() {
+		try {
+			new VorbisHeaderCache(null, 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new VorbisHeaderCache().put(1, new byte[1], null, new byte[1]);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
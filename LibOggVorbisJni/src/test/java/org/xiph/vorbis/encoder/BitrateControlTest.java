@@ -0,0 +1,92 @@
+package org.xiph.vorbis.encoder;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/* Plays the part of the native encoder through the private methods it calls. */
+public class BitrateControlTest extends TestCase {
+
+	private static Object call(BitrateControl control, String name, Class<?>[] types, Object... args) throws Exception {
+		Method method = BitrateControl.class.getDeclaredMethod(name, types);
+		method.setAccessible(true);
+		return method.invoke(control, args);
+	}
+
+	private static int generation(BitrateControl control) throws Exception {
+		return ((Integer) call(control, "getGeneration", new Class<?>[0])).intValue();
+	}
+
+	private static long[] request(BitrateControl control) throws Exception {
+		return (long[]) call(control, "getRequest", new Class<?>[0]);
+	}
+
+	private static void applied(BitrateControl control, boolean accepted, long minBitrate, long bitrate, long maxBitrate)
+	        throws Exception {
+		call(control, "bitrateApplied", new Class<?>[] { boolean.class, long.class, long.class, long.class },
+		        Boolean.valueOf(accepted), Long.valueOf(minBitrate), Long.valueOf(bitrate), Long.valueOf(maxBitrate));
+	}
+
+	public void testEveryRequestMovesTheGeneration() throws Exception {
+		BitrateControl control = new BitrateControl();
+		assertEquals(0, generation(control));
+		assertTrue(Arrays.equals(new long[] { 0, 0, - 1, - 1, - 1 }, request(control)));
+
+		control.adjustBitrate(96000);
+		assertEquals(1, generation(control));
+		assertTrue(Arrays.equals(new long[] { 1, 1, - 1, 96000, - 1 }, request(control)));
+
+		control.adjustBitrate(64000, - 1, 128000);
+		assertEquals(2, generation(control));
+		assertTrue(Arrays.equals(new long[] { 2, 2, 64000, - 1, 128000 }, request(control)));
+
+		/* the same request again is still a new one */
+		control.adjustBitrate(64000, - 1, 128000);
+		assertEquals(3, generation(control));
+
+		control.reset();
+		assertTrue(Arrays.equals(new long[] { 4, 0, - 1, - 1, - 1 }, request(control)));
+	}
+
+	public void testRejectedRequestsLeaveTheGeneration() throws Exception {
+		BitrateControl control = new BitrateControl();
+		try {
+			control.adjustBitrate(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			control.adjustBitrate(128000, 96000, - 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(0, generation(control));
+	}
+
+	public void testAppliedBitrates() throws Exception {
+		BitrateControl control = new BitrateControl();
+		assertEquals(- 1, control.getBitrate());
+		assertEquals(0, control.getAdjustments());
+
+		/* as a managed encoding starts, 0 where there is no limit */
+		applied(control, true, 0, 128000, 0);
+		assertEquals(- 1, control.getMinBitrate());
+		assertEquals(128000, control.getBitrate());
+		assertEquals(- 1, control.getMaxBitrate());
+		assertEquals(1, control.getAdjustments());
+
+		applied(control, true, 96000, 96000, 96000);
+		assertEquals(96000, control.getMinBitrate());
+		assertEquals(96000, control.getMaxBitrate());
+		assertEquals(2, control.getAdjustments());
+
+		/* a quality encoding turns requests down and keeps what was in force */
+		applied(control, false, 0, 0, 0);
+		assertEquals(96000, control.getBitrate());
+		assertEquals(2, control.getAdjustments());
+		assertEquals(1, control.getRejectedAdjustments());
+	}
+}
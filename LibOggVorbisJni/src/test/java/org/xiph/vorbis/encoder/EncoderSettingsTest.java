@@ -0,0 +1,186 @@
+package org.xiph.vorbis.encoder;
+
+import junit.framework.TestCase;
+
+public class EncoderSettingsTest extends TestCase {
+
+	public void testDefaults() {
+		EncoderSettings settings = new EncoderSettings();
+		assertEquals(44100, settings.getSampleRate());
+		assertEquals(2, settings.getChannels());
+		assertEquals(0.4f, settings.getQuality());
+		assertEquals(- 1, settings.getBitrate());
+		assertFalse(settings.isManaged());
+		assertEquals(EncoderSpeed.BEST, settings.getSpeed());
+	}
+
+	public void testQualityAndBitrateReplaceEachOther() {
+		EncoderSettings settings = new EncoderSettings();
+		settings.setBitrate(128000);
+		assertTrue(settings.isManaged());
+		assertEquals(128000, settings.getBitrate());
+
+		settings.setQuality(0.8f);
+		assertFalse(settings.isManaged());
+		assertEquals(- 1, settings.getBitrate());
+		assertEquals(0.8f, settings.getQuality());
+	}
+
+	public void testRejectsOutOfRange() {
+		final EncoderSettings settings = new EncoderSettings();
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setSampleRate(0);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setChannels(0);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setChannels(256);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setQuality(- 0.2f);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setQuality(1.1f);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setBitrate(0);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setSpeed(null);
+			}
+		});
+
+		/* nothing was taken over from the rejected calls */
+		assertEquals(44100, settings.getSampleRate());
+		assertEquals(2, settings.getChannels());
+		assertEquals(0.4f, settings.getQuality());
+		assertFalse(settings.isManaged());
+	}
+
+	public void testLimits() {
+		EncoderSettings settings = new EncoderSettings();
+		settings.setSampleRate(8000);
+		settings.setChannels(255);
+		settings.setQuality(- 0.1f);
+		settings.setQuality(1.0f);
+		settings.setSpeed(EncoderSpeed.FAST);
+		assertEquals(8000, settings.getSampleRate());
+		assertEquals(255, settings.getChannels());
+		assertEquals(EncoderSpeed.FAST, settings.getSpeed());
+	}
+
+	public void testManagedBitrate() {
+		EncoderSettings settings = new EncoderSettings();
+		settings.setManagedBitrate(64000, - 1, 192000);
+		assertTrue(settings.isManaged());
+		assertEquals(64000, settings.getMinBitrate());
+		assertEquals(- 1, settings.getBitrate());
+		assertEquals(192000, settings.getMaxBitrate());
+
+		/* 0 counts as none, like -1 */
+		settings.setManagedBitrate(0, 128000, 0);
+		assertEquals(- 1, settings.getMinBitrate());
+		assertEquals(128000, settings.getBitrate());
+		assertEquals(- 1, settings.getMaxBitrate());
+
+		settings.setBitrate(96000);
+		assertEquals(- 1, settings.getMinBitrate());
+		assertEquals(- 1, settings.getMaxBitrate());
+
+		settings.setManagedBitrate(- 1, - 1, 160000);
+		settings.setQuality(0.5f);
+		assertFalse(settings.isManaged());
+		assertEquals(- 1, settings.getMaxBitrate());
+	}
+
+	public void testRejectsInconsistentBitrates() {
+		final EncoderSettings settings = new EncoderSettings();
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setManagedBitrate(- 1, - 1, - 1);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setManagedBitrate(128000, 96000, - 1);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setManagedBitrate(- 1, 128000, 96000);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setManagedBitrate(192000, - 1, 64000);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setConstantBitrate(0, true);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setReservoirBits(- 2);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setReservoirBias(1.5);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setReservoirBias(- 0.5);
+			}
+		});
+		assertFalse(settings.isManaged());
+		assertEquals(- 1, settings.getReservoirBits());
+		assertEquals(- 1.0, settings.getReservoirBias());
+	}
+
+	public void testConstantBitrate() {
+		EncoderSettings settings = new EncoderSettings();
+		settings.setReservoirBias(0.5);
+		settings.setConstantBitrate(128000, true);
+		assertEquals(128000, settings.getMinBitrate());
+		assertEquals(128000, settings.getBitrate());
+		assertEquals(128000, settings.getMaxBitrate());
+		/* an eighth of a second, and the default bias */
+		assertEquals(16000, settings.getReservoirBits());
+		assertEquals(- 1.0, settings.getReservoirBias());
+
+		settings.setConstantBitrate(96000, false);
+		assertEquals(96000, settings.getMaxBitrate());
+		assertEquals(- 1, settings.getReservoirBits());
+
+		settings.setReservoirBits(0);
+		settings.setReservoirBias(0);
+		assertEquals(0, settings.getReservoirBits());
+		assertEquals(0.0, settings.getReservoirBias());
+	}
+
+	static void assertRejected(Runnable call) {
+		try {
+			call.run();
+			fail("Accepted an invalid setting");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
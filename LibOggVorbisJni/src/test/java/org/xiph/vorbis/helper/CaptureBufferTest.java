@@ -0,0 +1,65 @@
+package org.xiph.vorbis.helper;
+
+import javax.sound.sampled.AudioFormat;
+
+import junit.framework.TestCase;
+
+/* Drives the ring with a fake line at 8 kHz 16 bit mono: chunks of 320 bytes and, with 40 ms of buffer, a ring of two. */
+public class CaptureBufferTest extends TestCase {
+	private static final AudioFormat FORMAT = new AudioFormat(8000f, 16, 1, true, false);
+	private static final int RING_LENGTH = 640;
+
+	public void testShortReadsWrapAround() throws Exception {
+		FakeLine fake = new FakeLine(FORMAT, 20000, new int[] { 0, 37, 160, 3, 101, 0, 159 }, true);
+		CaptureBuffer buffer = new CaptureBuffer(fake.line(), 40);
+		assertEquals(RING_LENGTH / 2, buffer.getCapacityFrames());
+		fake.buffer = buffer;
+		buffer.start();
+
+		byte[] chunk = new byte[1000];
+		long position = 0;
+		long deadline = System.currentTimeMillis() + 5000;
+		/* only read what is there, a capture thread that died would otherwise leave the read waiting for good */
+		while (position < 20000 && System.currentTimeMillis() < deadline) {
+			if (buffer.getBufferedFrames() == 0) {
+				Thread.sleep(0, 100000);
+				continue;
+			}
+			long count = buffer.read(chunk, 999);
+			assertEquals(0, count % 2);
+			for (int i = 0; i < count; i++) {
+				assertEquals(FakeLine.expected(position++), chunk[i]);
+			}
+			assertTrue(buffer.getLastReadNanos() > 0);
+		}
+		assertEquals(20000, position);
+		assertEquals(0, buffer.read(chunk, 999));
+		assertEquals(0, buffer.getOverrunCount());
+		assertEquals(0, buffer.getDroppedFrames());
+		buffer.close();
+	}
+
+	public void testOverrunDropsAndCounts() throws Exception {
+		FakeLine fake = new FakeLine(FORMAT, 10 * 320, new int[] { 0 }, false);
+		CaptureBuffer buffer = new CaptureBuffer(fake.line(), 40);
+		buffer.start();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (buffer.getDroppedFrames() < 8 * 160 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		/* the ring filled with the first two chunks, the other eight were read off the line and dropped in one overrun */
+		assertEquals(8 * 160, buffer.getDroppedFrames());
+		assertEquals(1, buffer.getOverrunCount());
+		assertEquals(320, buffer.getHighWaterFrames());
+		assertEquals(320, buffer.getBufferedFrames());
+		assertEquals(40000, buffer.getEncoderLagMicros());
+
+		byte[] chunk = new byte[RING_LENGTH];
+		assertEquals(RING_LENGTH, buffer.read(chunk, RING_LENGTH));
+		for (int i = 0; i < RING_LENGTH; i++) {
+			assertEquals(FakeLine.expected(i), chunk[i]);
+		}
+		assertEquals(0, buffer.read(chunk, RING_LENGTH));
+		buffer.close();
+	}
+}
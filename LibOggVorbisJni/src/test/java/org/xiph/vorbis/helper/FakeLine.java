@@ -0,0 +1,96 @@
+package org.xiph.vorbis.helper;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.TargetDataLine;
+
+/**
+ * A capture line that hands out a byte pattern, counting <code>position % 251</code> unless overridden, and then comes back
+ * empty handed like a stopped line
+ */
+class FakeLine implements InvocationHandler {
+	private final AudioFormat format;
+	private final long total;
+	private final int[] frameCounts;
+	private final boolean waitForReader;
+	volatile CaptureBuffer buffer;
+	private long produced;
+	private int reads;
+
+	/**
+	 * @param format the format of the line
+	 * @param total the bytes to produce
+	 * @param frameCounts the most frames handed out by successive reads, in turn, 0 for as many as asked
+	 * @param waitForReader whether to wait until everything captured has been read before each read, so nothing is dropped
+	 */
+	FakeLine(AudioFormat format, long total, int[] frameCounts, boolean waitForReader) {
+		this.format = format;
+		this.total = total;
+		this.frameCounts = frameCounts;
+		this.waitForReader = waitForReader;
+	}
+
+	static byte expected(long position) {
+		return (byte) (position % 251);
+	}
+
+	TargetDataLine line() {
+		return (TargetDataLine) Proxy.newProxyInstance(TargetDataLine.class.getClassLoader(),
+		        new Class<?>[] { TargetDataLine.class }, this);
+	}
+
+	/**
+	 * @return the byte the line hands out at a position, the counting pattern by default
+	 */
+	byte at(long position) {
+		return expected(position);
+	}
+
+	/**
+	 * @return the buffer to wait on, the one set by default
+	 */
+	CaptureBuffer buffer() {
+		return buffer;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getName().equals("getFormat")) {
+			return format;
+		}
+		if (method.getName().equals("read")) {
+			return Integer.valueOf(read((byte[]) args[0], ((Integer) args[1]).intValue(), ((Integer) args[2]).intValue()));
+		}
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return Boolean.FALSE;
+		}
+		if (type == int.class) {
+			return Integer.valueOf(0);
+		}
+		if (type == long.class) {
+			return Long.valueOf(0);
+		}
+		if (type == float.class) {
+			return Float.valueOf(0);
+		}
+		return null;
+	}
+
+	private int read(byte[] b, int off, int len) throws InterruptedException {
+		while (waitForReader && produced < total && (buffer() == null || buffer().getBufferedFrames() > 0)) {
+			Thread.sleep(0, 100000);
+		}
+		int frames = frameCounts[reads++ % frameCounts.length];
+		int frameSize = format.getFrameSize();
+		int length = (int) Math.min(total - produced, frames == 0 ? len : Math.min(len, frames * frameSize));
+		for (int i = 0; i < length; i++) {
+			/* writes past the end of b throw, as a real line would */
+			b[off + i] = at(produced++);
+		}
+		return length;
+	}
+}
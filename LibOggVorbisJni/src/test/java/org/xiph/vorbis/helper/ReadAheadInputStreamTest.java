@@ -0,0 +1,195 @@
+package org.xiph.vorbis.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ReadAheadInputStreamTest extends TestCase {
+
+	private static byte[] data(int length) {
+		byte[] data = new byte[length];
+		new Random(length).nextBytes(data);
+		return data;
+	}
+
+	/* hands out at most a few bytes per read, like a socket */
+	private static class TrickleInputStream extends ByteArrayInputStream {
+		private final int most;
+
+		TrickleInputStream(byte[] data, int most) {
+			super(data);
+			this.most = most;
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(len, most));
+		}
+	}
+
+	public void testCopiesEverything() throws Exception {
+		byte[] data = data(100000);
+		ReadAheadInputStream in = new ReadAheadInputStream(new TrickleInputStream(data, 333), 1000, 2);
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1500];
+		Random lengths = new Random(1);
+		int read;
+		while ((read = in.read(buffer, 0, 1 + lengths.nextInt(buffer.length))) >= 0) {
+			assertTrue(read > 0);
+			copy.write(buffer, 0, read);
+		}
+		assertTrue(Arrays.equals(data, copy.toByteArray()));
+		assertEquals(- 1, in.read(buffer, 0, buffer.length));
+		assertEquals(- 1, in.read());
+		assertEquals(0, in.read(buffer, 0, 0));
+		assertEquals(data.length, in.getBytesFetched());
+		in.close();
+	}
+
+	public void testSingleBytes() throws Exception {
+		byte[] data = data(300);
+		ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 64, 3);
+		for (int i = 0; i < data.length; i++) {
+			assertEquals(data[i] & 0xff, in.read());
+		}
+		assertEquals(- 1, in.read());
+		in.close();
+	}
+
+	public void testReadsFilesThroughTheirChannel() throws Exception {
+		File file = Files.createTempFile("read-ahead", ".bin").toFile();
+		try {
+			byte[] data = data(200000);
+			Files.write(file.toPath(), data);
+			ReadAheadInputStream in = new ReadAheadInputStream(new FileInputStream(file));
+			byte[] copy = new byte[data.length];
+			int count = 0, read;
+			while (count < copy.length && (read = in.read(copy, count, copy.length - count)) > 0) {
+				count += read;
+			}
+			assertEquals(data.length, count);
+			assertTrue(Arrays.equals(data, copy));
+			assertEquals(- 1, in.read());
+			in.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testSourceFailureReachesTheReader() throws Exception {
+		final byte[] data = data(100);
+		final IOException failure = new IOException("connection reset");
+		InputStream source = new InputStream() {
+			private int position;
+
+			@Override
+			public int read() throws IOException {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (position == data.length) {
+					throw failure;
+				}
+				int length = Math.min(len, data.length - position);
+				System.arraycopy(data, position, b, off, length);
+				position += length;
+				return length;
+			}
+		};
+		ReadAheadInputStream in = new ReadAheadInputStream(source, 64, 2);
+		byte[] copy = new byte[data.length];
+		int count = 0;
+		try {
+			while (true) {
+				int read = in.read(copy, count, Math.min(10, copy.length - count));
+				count += read;
+				if (count == copy.length) {
+					in.read();
+					fail("Read past a failing source");
+				}
+			}
+		} catch (IOException e) {
+			assertSame(failure, e);
+		}
+		assertTrue(Arrays.equals(data, copy));
+		in.close();
+	}
+
+	public void testSlowSourceStalls() throws Exception {
+		InputStream source = new ByteArrayInputStream(data(10)) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					return - 1;
+				}
+				return super.read(b, off, len);
+			}
+		};
+		ReadAheadInputStream in = new ReadAheadInputStream(source, 64, 2);
+		assertEquals(10, in.read(new byte[64], 0, 64));
+		assertTrue(in.getStallCount() >= 1);
+		assertTrue(in.getStallNanos() > 0);
+		in.close();
+	}
+
+	public void testFullWindowAndClose() throws Exception {
+		final boolean[] closed = new boolean[1];
+		InputStream source = new ByteArrayInputStream(data(10000)) {
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		ReadAheadInputStream in = new ReadAheadInputStream(source, 100, 2);
+		/* nothing is read, so the fetcher fills both buffers and waits for one to come back */
+		long deadline = System.currentTimeMillis() + 5000;
+		while (in.getFullCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(1, in.getFullCount());
+		assertEquals(200, in.getBytesFetched());
+
+		in.close();
+		assertTrue(closed[0]);
+		try {
+			in.read();
+			fail("Read from a closed stream");
+		} catch (IOException e) {
+			// expected
+		}
+		in.close();
+	}
+
+	public void testRejectsBadArguments() {
+		try {
+			new ReadAheadInputStream((InputStream) null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new ReadAheadInputStream(new ByteArrayInputStream(new byte[0]), 0, 2);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new ReadAheadInputStream(new ByteArrayInputStream(new byte[0]), 100, 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package org.xiph.vorbis.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.TargetDataLine;
+
+import org.xiph.vorbis.encoder.EncodeFeed;
+import org.xiph.vorbis.encoder.EncoderSettings;
+
+import junit.framework.TestCase;
+
+/* Segments a recording from a fake line at 8 kHz 16 bit mono, with the native encoder replaced by one that writes a three
+   byte header and then the pcm as it is, so every segment can be checked frame by frame. */
+public class SegmentedRecordingTest extends TestCase {
+	private static final byte[] HEADER = { 'H', 'D', 'R' };
+
+	static class Segment {
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		int index = - 1;
+		long startFrame;
+		long frames;
+		long bytes;
+	}
+
+	static class Sink implements SegmentSink {
+		final List<Segment> segments = Collections.synchronizedList(new ArrayList<Segment>());
+
+		@Override
+		public OutputStream openSegment(int index) {
+			assertEquals(segments.size(), index);
+			Segment segment = new Segment();
+			segments.add(segment);
+			return segment.data;
+		}
+
+		@Override
+		public void segmentClosed(int index, long startFrame, long frames, long bytes) {
+			Segment segment = segments.get(index);
+			segment.index = index;
+			segment.startFrame = startFrame;
+			segment.frames = frames;
+			segment.bytes = bytes;
+		}
+	}
+
+	static class Listener implements RecorderListener {
+		final List<Integer> messages = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch finished = new CountDownLatch(1);
+
+		@Override
+		public void sendEmptyMessage(int message) {
+			messages.add(Integer.valueOf(message));
+			if (message <= JavaSoundVorbisRecorder.FINISHED_SUCCESSFULLY) {
+				finished.countDown();
+			}
+		}
+	}
+
+	static class TestRecorder extends JavaSoundVorbisRecorder {
+		private final long totalBytes;
+		int encoderRuns;
+
+		TestRecorder(SegmentSink sink, long segmentMillis, long segmentBytes, long totalBytes, RecorderListener listener) {
+			super(sink, segmentMillis, segmentBytes, listener);
+			this.totalBytes = totalBytes;
+		}
+
+		@Override
+		protected TargetDataLine getAudioRecorder() {
+			return new FakeLine(getRecordAudioFormat(), totalBytes, new int[] { 0, 77, 13 }, true) {
+				@Override
+				byte at(long position) {
+					return TestRecorder.this.at(position);
+				}
+
+				@Override
+				CaptureBuffer buffer() {
+					return getCaptureBuffer();
+				}
+			}.line();
+		}
+
+		byte at(long position) {
+			return FakeLine.expected(position);
+		}
+
+		@Override
+		int encode(EncoderSettings settings, EncodeFeed feed) {
+			encoderRuns++;
+			feed.start();
+			feed.writeVorbisData(HEADER.clone(), HEADER.length);
+			byte[] pcm = new byte[1024];
+			long read;
+			while ((read = feed.readPCMData(pcm, pcm.length)) > 0) {
+				feed.writeVorbisData(pcm, (int) read);
+			}
+			feed.stop();
+			return EncodeFeed.SUCCESS;
+		}
+	}
+
+	private static void record(TestRecorder recorder, Listener listener) throws InterruptedException {
+		recorder.start(8000, 1, 0.4f);
+		assertTrue(listener.finished.await(10, TimeUnit.SECONDS));
+		assertTrue(recorder.isStopped());
+		assertEquals(JavaSoundVorbisRecorder.START_ENCODING, listener.messages.get(0).intValue());
+		assertEquals(JavaSoundVorbisRecorder.STOP_ENCODING, listener.messages.get(1).intValue());
+		assertEquals(JavaSoundVorbisRecorder.FINISHED_SUCCESSFULLY, listener.messages.get(2).intValue());
+	}
+
+	/* every segment is a header and the pcm following on from the segment before, returns the frames in all of them */
+	private static long assertContiguous(List<Segment> segments) {
+		long frame = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			Segment segment = segments.get(i);
+			byte[] data = segment.data.toByteArray();
+			assertEquals(i, segment.index);
+			assertEquals(frame, segment.startFrame);
+			assertEquals(data.length, segment.bytes);
+			assertEquals(HEADER.length + 2 * segment.frames, data.length);
+			for (int j = 0; j < HEADER.length; j++) {
+				assertEquals(HEADER[j], data[j]);
+			}
+			for (int j = HEADER.length; j < data.length; j++) {
+				assertEquals(FakeLine.expected(2 * frame + j - HEADER.length), data[j]);
+			}
+			frame += segment.frames;
+		}
+		return frame;
+	}
+
+	public void testSegmentsOfExactLength() throws Exception {
+		Sink sink = new Sink();
+		Listener listener = new Listener();
+		TestRecorder recorder = new TestRecorder(sink, 100, 0, 8000, listener);
+		record(recorder, listener);
+
+		assertEquals(5, sink.segments.size());
+		assertEquals(4000, assertContiguous(sink.segments));
+		for (Segment segment : sink.segments) {
+			assertEquals(800, segment.frames);
+		}
+		/* the run after the last audio opens no segment */
+		assertEquals(6, recorder.encoderRuns);
+		assertEquals(0, recorder.getCaptureBuffer().getDroppedFrames());
+	}
+
+	public void testSegmentsBySize() throws Exception {
+		Sink sink = new Sink();
+		Listener listener = new Listener();
+		TestRecorder recorder = new TestRecorder(sink, 0, 1000, 8001 * 2, listener);
+		record(recorder, listener);
+
+		assertEquals(8001, assertContiguous(sink.segments));
+		for (int i = 0; i < sink.segments.size(); i++) {
+			long bytes = sink.segments.get(i).bytes;
+			/* the limit applies at the first block after it is reached */
+			assertTrue(bytes < 1000 + 1024);
+			assertTrue(i == sink.segments.size() - 1 || bytes >= 1000);
+		}
+	}
+
+	public void testStopEndsTheLastSegment() throws Exception {
+		final Listener listener = new Listener();
+		final TestRecorder[] recorder = new TestRecorder[1];
+		Sink sink = new Sink() {
+			@Override
+			public void segmentClosed(int index, long startFrame, long frames, long bytes) {
+				super.segmentClosed(index, startFrame, frames, bytes);
+				if (index == 1) {
+					recorder[0].stop();
+				}
+			}
+		};
+		recorder[0] = new TestRecorder(sink, 50, 0, 1000000, listener);
+		record(recorder[0], listener);
+
+		/* what was captured before the stop lands in one last segment, or none if the stop came between reads */
+		assertTrue(sink.segments.size() == 2 || sink.segments.size() == 3);
+		long frames = assertContiguous(sink.segments);
+		assertTrue(frames >= 800 && frames < 500000);
+	}
+
+	/* sound for 200 ms, silence for 600 ms and sound again for 200 ms, gated with a hangover of 100 ms */
+	public void testSkippedSilenceSplitsSegments() throws Exception {
+		Sink sink = new Sink();
+		Listener listener = new Listener();
+		TestRecorder recorder = new TestRecorder(sink, 60000, 0, 16000, listener) {
+			@Override
+			byte at(long position) {
+				return position >= 3200 && position < 12800 ? 0 : FakeLine.expected(position);
+			}
+		};
+		SilenceGate gate = new SilenceGate(- 50f, 100, SilenceGate.Mode.SKIP);
+		recorder.setSilenceGate(gate);
+		record(recorder, listener);
+
+		assertEquals(2, sink.segments.size());
+		Segment sound = sink.segments.get(0), resumed = sink.segments.get(1);
+		/* the first segment holds the sound and the quiet of the hangover, the second starts with the block the sound comes
+		   back in, its start frame marking the gap */
+		assertEquals(0, sound.startFrame);
+		assertTrue(sound.frames > 1600 + 800 && sound.frames < 1600 + 800 + 512);
+		assertTrue(resumed.startFrame > 6400 - 512 && resumed.startFrame <= 6400);
+		assertEquals(8000, resumed.startFrame + resumed.frames);
+		for (Segment segment : sink.segments) {
+			byte[] data = segment.data.toByteArray();
+			assertEquals(HEADER.length + 2 * segment.frames, data.length);
+			for (int j = HEADER.length; j < data.length; j++) {
+				assertEquals(recorder.at(2 * segment.startFrame + j - HEADER.length), data[j]);
+			}
+		}
+		assertEquals(1, gate.getSilentStretches());
+		assertEquals(8000, gate.getTotalFrames());
+		assertEquals(8000 - sound.frames - resumed.frames, gate.getSilentFrames());
+	}
+
+	public void testRejectsBadSegments() {
+		Sink sink = new Sink();
+		Listener listener = new Listener();
+		try {
+			new JavaSoundVorbisRecorder(sink, 0, 0, listener);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new JavaSoundVorbisRecorder(sink, - 1, 1000, listener);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new JavaSoundVorbisRecorder((SegmentSink) null, 1000, 0, listener);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package org.xiph.vorbis.helper;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/* 1 kHz mono blocks of 50 frames, a threshold of -50 dB, a peak of 104, and a hangover of 100 frames */
+public class SilenceGateTest extends TestCase {
+
+	private static byte[] block(int sample) {
+		byte[] pcm = new byte[100];
+		for (int i = 0; i < pcm.length; i += 2) {
+			int value = i % 4 == 0 ? sample : - sample;
+			pcm[i] = (byte) value;
+			pcm[i + 1] = (byte) (value >> 8);
+		}
+		return pcm;
+	}
+
+	private static SilenceGate open(SilenceGate.Mode mode) {
+		SilenceGate gate = new SilenceGate(- 50f, 100, mode);
+		gate.open(1, 1000);
+		return gate;
+	}
+
+	public void testHangoverBeforeSilence() {
+		SilenceGate gate = open(SilenceGate.Mode.ENCODE_SILENCE);
+		assertTrue(gate.process(block(1000), 100));
+
+		/* quiet, but only silent once the quiet has lasted longer than the hangover */
+		byte[] quiet = block(103);
+		assertTrue(gate.process(quiet, 100));
+		assertTrue(Arrays.equals(block(103), quiet));
+		assertTrue(gate.process(quiet, 100));
+		assertTrue(Arrays.equals(block(103), quiet));
+		assertEquals(0, gate.getSilentStretches());
+
+		assertTrue(gate.process(quiet, 100));
+		assertTrue(Arrays.equals(new byte[100], quiet));
+		assertEquals(1, gate.getSilentStretches());
+
+		/* a peak at the threshold is sound again, and a new quiet waits out the hangover again */
+		byte[] sound = block(104);
+		assertTrue(gate.process(sound, 100));
+		assertTrue(Arrays.equals(block(104), sound));
+		assertTrue(gate.process(block(0), 100));
+		assertTrue(gate.process(block(0), 100));
+		assertTrue(gate.process(block(0), 100));
+		assertEquals(2, gate.getSilentStretches());
+
+		assertEquals(400, gate.getTotalFrames());
+		assertEquals(100, gate.getSilentFrames());
+		assertEquals(0.25, gate.getSilenceRatio(), 1e-9);
+	}
+
+	public void testNegativePeaks() {
+		SilenceGate gate = open(SilenceGate.Mode.ENCODE_SILENCE);
+		for (int i = 0; i < 10; i++) {
+			/* full scale negative in the last frame only */
+			byte[] block = new byte[100];
+			block[99] = (byte) 0x80;
+			assertTrue(gate.process(block, block.length));
+		}
+		assertEquals(0, gate.getSilentFrames());
+	}
+
+	public void testSkipLeavesSilenceOut() {
+		SilenceGate gate = open(SilenceGate.Mode.SKIP);
+		for (int i = 0; i < 2; i++) {
+			assertTrue(gate.process(block(50), 100));
+		}
+		byte[] quiet = block(50);
+		assertFalse(gate.process(quiet, 100));
+		/* skipped blocks are left as they are */
+		assertTrue(Arrays.equals(block(50), quiet));
+		assertFalse(gate.process(quiet, 100));
+		assertTrue(gate.process(block(5000), 100));
+		assertEquals(1, gate.getSilentStretches());
+		assertEquals(100, gate.getSilentFrames());
+	}
+
+	public void testOpenResets() {
+		SilenceGate gate = open(SilenceGate.Mode.SKIP);
+		for (int i = 0; i < 5; i++) {
+			gate.process(block(0), 100);
+		}
+		assertEquals(3 * 50, gate.getSilentFrames());
+		gate.open(2, 1000);
+		assertEquals(0, gate.getTotalFrames());
+		assertEquals(0, gate.getSilentFrames());
+		assertEquals(0, gate.getSilentStretches());
+		/* stereo halves the frames in a block, so the hangover takes twice the blocks */
+		for (int i = 0; i < 4; i++) {
+			assertTrue(gate.process(block(0), 100));
+		}
+		assertFalse(gate.process(block(0), 100));
+	}
+
+	public void testRejectsBadSettings() {
+		try {
+			new SilenceGate(0f, 100, SilenceGate.Mode.SKIP);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new SilenceGate(- 40f, - 1, SilenceGate.Mode.SKIP);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new SilenceGate(- 40f, 100, null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testOnlySegmentingRecordersSkip() {
+		JavaSoundVorbisRecorder stream = new JavaSoundVorbisRecorder(new ByteArrayOutputStream(), null);
+		try {
+			stream.setSilenceGate(new SilenceGate(- 50f, 100, SilenceGate.Mode.SKIP));
+			fail("A single stream skipped silence");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		stream.setSilenceGate(new SilenceGate());
+		assertEquals(SilenceGate.Mode.ENCODE_SILENCE, stream.getSilenceGate().getMode());
+
+		JavaSoundVorbisRecorder segments = new JavaSoundVorbisRecorder(new SegmentedRecordingTest.Sink(), 1000, 0, null);
+		segments.setSilenceGate(new SilenceGate(- 50f, 100, SilenceGate.Mode.SKIP));
+		assertEquals(SilenceGate.Mode.SKIP, segments.getSilenceGate().getMode());
+	}
+}
@@ -0,0 +1,128 @@
+package org.xiph.vorbis.mixer;
+
+import org.xiph.vorbis.decoder.PcmFormat;
+
+import junit.framework.TestCase;
+
+public class MixerSettingsTest extends TestCase {
+
+	public void testDefaults() {
+		MixerSettings settings = new MixerSettings();
+		assertEquals(44100, settings.getSampleRate());
+		assertEquals(2, settings.getChannels());
+		assertEquals(PcmFormat.S16, settings.getPcmFormat());
+		assertFalse(settings.isDither());
+		assertEquals(1f, settings.getGain());
+		assertEquals(512, settings.getBlockFrames());
+		assertEquals(Runtime.getRuntime().availableProcessors(), settings.getWorkers());
+
+		settings = new MixerSettings(48000, 1);
+		assertEquals(48000, settings.getSampleRate());
+		assertEquals(1, settings.getChannels());
+	}
+
+	public void testRejectsOutOfRange() {
+		final MixerSettings settings = new MixerSettings();
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setSampleRate(0);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setChannels(0);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setChannels(256);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setPcmFormat(null);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setGain(- 0.5f);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setGain(Float.NaN);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setGain(Float.POSITIVE_INFINITY);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setBlockFrames(0);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				settings.setWorkers(0);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				new MixerSettings(44100, 0);
+			}
+		});
+
+		assertEquals(44100, settings.getSampleRate());
+		assertEquals(2, settings.getChannels());
+		assertEquals(1f, settings.getGain());
+		assertEquals(512, settings.getBlockFrames());
+	}
+
+	/* the voice checks its arguments before handing them to the mixer, there is none here to reach */
+	public void testVoiceRejectsBadArguments() {
+		final Voice voice = new Voice(null, 0, 2, 1000);
+		assertEquals(2, voice.getChannels());
+		assertEquals(1000, voice.getTotalSamples());
+		assertRejected(new Runnable() {
+			public void run() {
+				voice.setPan(1.5f);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				voice.setPan(Float.NaN);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				voice.setGain(- 1f);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				voice.fadeTo(Float.POSITIVE_INFINITY, 0, 10);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				voice.fadeTo(0.5f, 0, - 1);
+			}
+		});
+		assertRejected(new Runnable() {
+			public void run() {
+				voice.stopAt(0, - 1);
+			}
+		});
+	}
+
+	static void assertRejected(Runnable call) {
+		try {
+			call.run();
+			fail("Accepted an invalid setting");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
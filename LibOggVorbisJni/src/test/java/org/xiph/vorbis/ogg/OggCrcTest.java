@@ -0,0 +1,70 @@
+package org.xiph.vorbis.ogg;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class OggCrcTest extends TestCase {
+
+	/* the byte and bit at a time definition the tables are built from */
+	private static int reference(byte[] data, int offset, int length) {
+		int crc = 0;
+		for (int i = offset; i < offset + length; i++) {
+			crc ^= (data[i] & 0xff) << 24;
+			for (int j = 0; j < 8; j++) {
+				crc = (crc & 0x80000000) != 0 ? (crc << 1) ^ 0x04c11db7 : crc << 1;
+			}
+		}
+		return crc;
+	}
+
+	public void testCheckValue() {
+		byte[] check = "123456789".getBytes();
+		assertEquals(0x89a1897f, OggCrc.update(0, check, 0, check.length));
+		assertEquals(0, OggCrc.update(0, new byte[0], 0, 0));
+	}
+
+	public void testMatchesReference() {
+		byte[] data = new byte[100];
+		new Random(1).nextBytes(data);
+		for (int offset = 0; offset < 9; offset++) {
+			for (int length = 0; offset + length <= data.length; length++) {
+				assertEquals(offset + "+" + length, reference(data, offset, length), OggCrc.update(0, data, offset, length));
+			}
+		}
+	}
+
+	public void testContinues() {
+		byte[] data = new byte[1000];
+		new Random(2).nextBytes(data);
+		int whole = OggCrc.update(0, data, 0, data.length);
+		for (int split = 0; split <= data.length; split += 37) {
+			assertEquals(whole, OggCrc.update(OggCrc.update(0, data, 0, split), data, split, data.length - split));
+		}
+	}
+
+	public void testBuffers() {
+		byte[] data = new byte[300];
+		new Random(3).nextBytes(data);
+		ByteBuffer heap = ByteBuffer.wrap(new byte[data.length + 16], 16, data.length).slice();
+		heap.put(data).flip();
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+		direct.put(data).flip();
+		for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+			heap.order(order);
+			direct.order(order);
+			for (int offset = 0; offset < 9; offset++) {
+				for (int length = 0; offset + length <= data.length; length += 13) {
+					int expected = reference(data, offset, length);
+					assertEquals(expected, OggCrc.update(0, heap, offset, length));
+					assertEquals(expected, OggCrc.update(0, direct, offset, length));
+				}
+			}
+		}
+		direct.position(5);
+		assertEquals(reference(data, 5, data.length - 5), OggCrc.update(0, direct));
+		assertEquals(5, direct.position());
+	}
+}
@@ -0,0 +1,147 @@
+package org.xiph.vorbis.ogg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class OggPageReaderTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+
+	/* a 600 byte packet over two pages followed by two short ones */
+	private static byte[] twoPages() throws Exception {
+		byte[] body = new byte[700];
+		for (int i = 0; i < body.length; i++) {
+			body[i] = (byte) i;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OggPage page = new OggPage();
+		page.set(OggPage.FLAG_BEGINNING_OF_STREAM, - 1, 9, 0, new byte[] { (byte) 255, (byte) 255 }, 0, 2, body, 0);
+		page.write(out);
+		page.set(OggPage.FLAG_CONTINUED, 1234, 9, 1, new byte[] { 90, 40, 60 }, 0, 3, body, 510);
+		page.write(out);
+		return out.toByteArray();
+	}
+
+	public void testPagesAndPackets() throws Exception {
+		byte[] data = twoPages();
+		OggPageReader reader = new OggPageReader(ByteBuffer.wrap(data));
+		reader.setVerifyChecksums(true);
+
+		assertTrue(reader.next());
+		assertEquals(0, reader.getPageOffset());
+		assertTrue(reader.isBeginningOfStream());
+		assertEquals(- 1, reader.getGranulePosition());
+		assertEquals(9, reader.getSerialNumber());
+		assertEquals(2, reader.getSegmentCount());
+		assertTrue(reader.isChecksumValid());
+		assertTrue(reader.nextPacket());
+		assertEquals(510, reader.getPacketLength());
+		assertEquals(OggPage.HEADER_LENGTH + 2, reader.getPacketOffset());
+		assertFalse(reader.isPacketContinued());
+		assertFalse(reader.isPacketComplete());
+		assertFalse(reader.nextPacket());
+
+		assertTrue(reader.next());
+		assertTrue(reader.isContinued());
+		assertEquals(1234, reader.getGranulePosition());
+		assertEquals(1, reader.getSequenceNumber());
+		int[] lengths = { 90, 40, 60 };
+		int bodyIndex = 510;
+		for (int i = 0; i < lengths.length; i++) {
+			assertTrue(reader.nextPacket());
+			assertEquals(lengths[i], reader.getPacketLength());
+			assertEquals(i == 0, reader.isPacketContinued());
+			assertTrue(reader.isPacketComplete());
+			assertEquals((byte) bodyIndex, data[reader.getPacketOffset()]);
+			bodyIndex += lengths[i];
+		}
+		assertFalse(reader.nextPacket());
+
+		assertFalse(reader.next());
+		assertEquals(2, reader.getPageCount());
+		assertEquals(0, reader.getSkippedBytes());
+		try {
+			reader.getSerialNumber();
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	public void testSkipsJunkAndTruncation() throws Exception {
+		byte[] pages = twoPages();
+		byte[] data = new byte[7 + pages.length + 20];
+		Arrays.fill(data, (byte) 'O');
+		System.arraycopy(pages, 0, data, 7, pages.length);
+		System.arraycopy(pages, 0, data, 7 + pages.length, 20);
+
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		buffer.position(2);
+		OggPageReader reader = new OggPageReader(buffer);
+		assertTrue(reader.next());
+		assertEquals(7, reader.getPageOffset());
+		assertTrue(reader.next());
+		assertFalse(reader.next());
+		assertEquals(2, reader.getPageCount());
+		assertEquals(5 + 20, reader.getSkippedBytes());
+		assertEquals(2, buffer.position());
+	}
+
+	public void testChecksums() throws Exception {
+		byte[] data = twoPages();
+		data[OggPage.HEADER_LENGTH + 2 + 100] ^= 1;
+
+		OggPageReader reader = new OggPageReader(ByteBuffer.wrap(data));
+		assertTrue(reader.next());
+		assertFalse(reader.isChecksumValid());
+
+		reader = new OggPageReader(ByteBuffer.wrap(data));
+		reader.setVerifyChecksums(true);
+		assertTrue(reader.next());
+		assertEquals(1, reader.getSequenceNumber());
+		assertFalse(reader.next());
+		assertEquals(1, reader.getCorruptPageCount());
+		assertEquals(1, reader.getPageCount());
+	}
+
+	public void testMatchesPageOnSample() throws Exception {
+		List<Long> granulePositions = new ArrayList<Long>();
+		InputStream in = new FileInputStream(SAMPLE);
+		try {
+			OggPage page = new OggPage();
+			while (page.read(in)) {
+				granulePositions.add(page.getGranulePosition());
+			}
+		} finally {
+			in.close();
+		}
+
+		RandomAccessFile file = new RandomAccessFile(SAMPLE, "r");
+		try {
+			OggPageReader reader = new OggPageReader(file.getChannel());
+			reader.setVerifyChecksums(true);
+			int pages = 0;
+			long position = 0;
+			while (reader.next()) {
+				assertEquals(granulePositions.get(pages).longValue(), reader.getGranulePosition());
+				assertEquals(position, reader.getPosition());
+				position += reader.getLength();
+				pages++;
+			}
+			assertEquals(granulePositions.size(), pages);
+			assertEquals(file.length(), position);
+			assertEquals(0, reader.getSkippedBytes());
+			assertEquals(0, reader.getCorruptPageCount());
+		} finally {
+			file.close();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package org.xiph.vorbis.ogg;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class OggPageTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+
+	public void testSetWriteRead() throws Exception {
+		byte[] lacing = { (byte) 255, 45, 0, 10 };
+		byte[] body = new byte[310];
+		for (int i = 0; i < body.length; i++) {
+			body[i] = (byte) (i * 7);
+		}
+		OggPage page = new OggPage();
+		page.set(OggPage.FLAG_BEGINNING_OF_STREAM, 0x123456789abcL, 0x7e57, 3, lacing, 0, lacing.length, body, 0);
+		assertEquals(OggPage.HEADER_LENGTH + 4 + 310, page.getLength());
+		assertEquals(310, page.getBodyLength());
+		assertEquals(3, page.getPacketCount());
+		assertFalse(page.isLastPacketContinued());
+		assertTrue(page.isChecksumValid());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		page.write(out);
+		page.write(out);
+		InputStream in = new ByteArrayInputStream(out.toByteArray());
+
+		OggPage read = new OggPage();
+		for (int i = 0; i < 2; i++) {
+			assertTrue(read.read(in));
+			assertTrue(read.isChecksumValid());
+			assertEquals(page.getChecksum(), read.getChecksum());
+			assertTrue(read.isBeginningOfStream());
+			assertFalse(read.isContinued());
+			assertEquals(0x123456789abcL, read.getGranulePosition());
+			assertEquals(0x7e57, read.getSerialNumber());
+			assertEquals(3, read.getSequenceNumber());
+			assertEquals(4, read.getSegmentCount());
+			assertEquals(255, read.getSegmentLength(0));
+			byte[] readBody = Arrays.copyOfRange(read.getData(), read.getHeaderLength(), read.getLength());
+			assertTrue(Arrays.equals(body, readBody));
+		}
+		assertFalse(read.read(in));
+	}
+
+	public void testChangedPageNeedsNewChecksum() {
+		OggPage page = new OggPage();
+		page.set(0, - 1, 1, 0, new byte[] { 1 }, 0, 1, new byte[] { 42 }, 0);
+		page.setSequenceNumber(1);
+		assertFalse(page.isChecksumValid());
+		page.updateChecksum();
+		assertTrue(page.isChecksumValid());
+		page.getData()[page.getLength() - 1] ^= 1;
+		assertFalse(page.isChecksumValid());
+	}
+
+	public void testContinuedPacket() {
+		byte[] lacing = new byte[OggPage.MAX_SEGMENTS];
+		Arrays.fill(lacing, (byte) 255);
+		OggPage page = new OggPage();
+		page.set(OggPage.FLAG_CONTINUED, - 1, 1, 5, lacing, 0, lacing.length, new byte[OggPage.MAX_LENGTH], 0);
+		assertEquals(OggPage.MAX_LENGTH, page.getLength());
+		assertEquals(0, page.getPacketCount());
+		assertTrue(page.isLastPacketContinued());
+		assertTrue(page.isContinued());
+		assertTrue(page.isChecksumValid());
+	}
+
+	public void testRejectsBadStreams() throws Exception {
+		OggPage page = new OggPage();
+		page.set(0, 0, 1, 0, new byte[] { 4 }, 0, 1, new byte[4], 0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		page.write(out);
+		byte[] data = out.toByteArray();
+
+		try {
+			new OggPage().read(new ByteArrayInputStream(data, 0, data.length - 1));
+			fail();
+		} catch (EOFException e) {
+			// expected
+		}
+		data[0] = 'o';
+		try {
+			new OggPage().read(new ByteArrayInputStream(data));
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			page.set(0, 0, 1, 0, new byte[256], 0, 256, new byte[0], 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testSampleChecksums() throws Exception {
+		InputStream in = new FileInputStream(SAMPLE);
+		try {
+			OggPage page = new OggPage();
+			int pages = 0;
+			long granulePosition = 0;
+			while (page.read(in)) {
+				assertTrue("Page " + pages, page.isChecksumValid());
+				assertEquals(pages, page.getSequenceNumber());
+				assertEquals(pages == 0, page.isBeginningOfStream());
+				if (page.getGranulePosition() != - 1) {
+					assertTrue(page.getGranulePosition() >= granulePosition);
+					granulePosition = page.getGranulePosition();
+				}
+				pages++;
+			}
+			assertTrue(page.isEndOfStream());
+			assertTrue(pages > 2);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.xiph.vorbis.playback;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xiph.vorbis.broadcast.OggBroadcaster;
+import org.xiph.vorbis.broadcast.Subscriber;
+import org.xiph.vorbis.helper.JavaSoundVorbisRecorder;
+import org.xiph.vorbis.helper.RecorderListener;
+
+/**
+ * Records from the default line and serves the encode on a local port, listen with e.g.
+ * <code>nc localhost 8000 | ogg123 -</code>
+ */
+public class OggBroadcast {
+	private static final Logger LOG = LoggerFactory.getLogger(OggBroadcast.class);
+
+	public static void main(String[] args) throws Exception {
+		final OggBroadcaster broadcaster = new OggBroadcaster();
+		final ServerSocket server = new ServerSocket(args.length > 0 ? Integer.parseInt(args[0]) : 8000);
+		final JavaSoundVorbisRecorder recorder = new JavaSoundVorbisRecorder(broadcaster, new RecorderListener() {
+			@Override
+			public void sendEmptyMessage(int message) {
+				LOG.debug("EmptyMessage " + message);
+			}
+
+			@Override
+			public void sendLatency(int latency, long latencyMicros) {
+				LOG.debug("sendLatency " + latency + " " + latencyMicros + "us");
+			}
+		});
+		recorder.setMaxLatencyMillis(100);
+		recorder.start(44100, 2l, 64000l);
+
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!server.isClosed()) {
+					try {
+						serve(server.accept(), broadcaster.subscribe());
+					} catch (IOException e) {
+						LOG.debug("Stopped accepting listeners", e);
+					}
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+		String line = null;
+
+		while (! "quit".equals(line)) {
+			System.out.println("Enter \"quit\" to stop broadcasting, " + broadcaster);
+			line = reader.readLine();
+		}
+		recorder.stop();
+		server.close();
+	}
+
+	private static void serve(final Socket socket, final Subscriber subscriber) {
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					WritableByteChannel out = Channels.newChannel(socket.getOutputStream());
+					while (!subscriber.isFinished() || subscriber.getQueuedPages() > 0) {
+						ByteBuffer page = subscriber.take(1, TimeUnit.SECONDS);
+						while (page != null && page.hasRemaining()) {
+							out.write(page);
+						}
+					}
+				} catch (Exception e) {
+					LOG.debug("Listener left", e);
+				} finally {
+					subscriber.close();
+					try {
+						socket.close();
+					} catch (IOException e) {
+						LOG.debug("Failed to close listener", e);
+					}
+				}
+			}
+		}).start();
+	}
+}
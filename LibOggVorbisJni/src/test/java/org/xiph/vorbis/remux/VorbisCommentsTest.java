@@ -0,0 +1,107 @@
+package org.xiph.vorbis.remux;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class VorbisCommentsTest extends TestCase {
+
+	public void testRoundTrip() throws Exception {
+		VorbisComments comments = new VorbisComments();
+		comments.setVendor("Xiph.Org libVorbis I 20150105 (\u26c4\u26c4\u26c4\u26c4)");
+		comments.add("title", "Back In Black");
+		comments.add("ARTIST", "AC/DC");
+		comments.add("artist", "Brian Johnson");
+		comments.add("COMMENT", "caf\u00e9 = \u00fcber");
+
+		byte[] packet = comments.toPacket();
+		assertEquals(VorbisComments.PACKET_TYPE, packet[0]);
+		assertEquals(1, packet[packet.length - 1]);
+
+		VorbisComments parsed = VorbisComments.parse(packet, 0, packet.length);
+		assertEquals(comments.getVendor(), parsed.getVendor());
+		assertEquals(comments.getEntries(), parsed.getEntries());
+		assertEquals(Arrays.asList("AC/DC", "Brian Johnson"), parsed.get("Artist"));
+		assertEquals("Back In Black", parsed.getFirst("TITLE"));
+		assertEquals("caf\u00e9 = \u00fcber", parsed.getFirst("comment"));
+		assertTrue(Arrays.equals(packet, parsed.toPacket()));
+	}
+
+	public void testParseAtOffset() throws Exception {
+		VorbisComments comments = new VorbisComments();
+		comments.add("TITLE", "");
+		byte[] packet = comments.toPacket();
+		byte[] padded = new byte[packet.length + 10];
+		System.arraycopy(packet, 0, padded, 5, packet.length);
+
+		VorbisComments parsed = VorbisComments.parse(padded, 5, packet.length);
+		assertEquals("", parsed.getVendor());
+		assertEquals(Arrays.asList("TITLE="), parsed.getEntries());
+		assertEquals("", parsed.getFirst("title"));
+	}
+
+	public void testSetAndRemove() {
+		VorbisComments comments = new VorbisComments();
+		comments.add("ARTIST", "one");
+		comments.add("ARTIST", "two");
+		comments.add("ARTISTS", "kept");
+		comments.set("artist", "three");
+		assertEquals(Arrays.asList("three"), comments.get("ARTIST"));
+		assertEquals("kept", comments.getFirst("ARTISTS"));
+
+		comments.set("Artist", null);
+		assertTrue(comments.get("ARTIST").isEmpty());
+		assertFalse(comments.remove("ARTIST"));
+		assertEquals(1, comments.size());
+	}
+
+	public void testInvalidKeys() {
+		assertFalse(VorbisComments.isValidKey(null));
+		assertFalse(VorbisComments.isValidKey(""));
+		assertFalse(VorbisComments.isValidKey("A=B"));
+		assertFalse(VorbisComments.isValidKey("~"));
+		assertFalse(VorbisComments.isValidKey("\u00e9"));
+		assertTrue(VorbisComments.isValidKey("REPLAYGAIN_TRACK_GAIN"));
+		try {
+			new VorbisComments().add("A=B", "value");
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testRejectsBadPackets() {
+		VorbisComments comments = new VorbisComments();
+		comments.add("TITLE", "title");
+		byte[] packet = comments.toPacket();
+
+		assertNotParsed(packet, 0, 6);
+		assertNotParsed(packet, 0, packet.length - 1);
+
+		byte[] wrongType = packet.clone();
+		wrongType[0] = 1;
+		assertNotParsed(wrongType, 0, wrongType.length);
+
+		byte[] noFraming = packet.clone();
+		noFraming[noFraming.length - 1] = 0;
+		assertNotParsed(noFraming, 0, noFraming.length);
+
+		byte[] hugeCount = packet.clone();
+		hugeCount[7 + 4 + comments.getVendor().length() + 3] = (byte) 0x7f;
+		assertNotParsed(hugeCount, 0, hugeCount.length);
+
+		byte[] hugeVendor = packet.clone();
+		hugeVendor[10] = (byte) 0xff;
+		assertNotParsed(hugeVendor, 0, hugeVendor.length);
+	}
+
+	private static void assertNotParsed(byte[] packet, int offset, int length) {
+		try {
+			VorbisComments.parse(packet, offset, length);
+			fail("Parsed a bad comment header");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
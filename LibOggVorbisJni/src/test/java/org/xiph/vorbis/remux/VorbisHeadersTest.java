@@ -0,0 +1,98 @@
+package org.xiph.vorbis.remux;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.xiph.vorbis.ogg.OggPage;
+import org.xiph.vorbis.ogg.OggPageReader;
+
+import junit.framework.TestCase;
+
+public class VorbisHeadersTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+
+	public void testRead() throws Exception {
+		VorbisHeaders headers = VorbisHeaders.read(SAMPLE);
+		assertEquals(2, headers.getChannels());
+		assertEquals(48000, headers.getSampleRate());
+		assertEquals(256, headers.getBlockSize(false));
+		assertEquals(2048, headers.getBlockSize(true));
+		assertEquals(1, headers.getHeaderPageCount());
+		assertEquals(2, headers.getNextSequenceNumber());
+		assertNotNull(headers.getComments().getVendor());
+
+		RandomAccessFile in = new RandomAccessFile(SAMPLE, "r");
+		try {
+			OggPageReader reader = new OggPageReader(in.getChannel());
+			long offset = 0;
+			for (int i = 0; i <= headers.getHeaderPageCount(); i++) {
+				assertTrue(reader.next());
+				offset += reader.getLength();
+			}
+			assertEquals(offset, headers.getAudioOffset());
+		} finally {
+			in.close();
+		}
+	}
+
+	/* the modes read back from the setup header give every audio packet one of the two block sizes */
+	public void testAudioPacketBlockSizes() throws Exception {
+		VorbisHeaders headers = VorbisHeaders.read(SAMPLE);
+		RandomAccessFile in = new RandomAccessFile(SAMPLE, "r");
+		try {
+			OggPageReader reader = new OggPageReader(in.getChannel());
+			int shortBlocks = 0, longBlocks = 0;
+			while (reader.next()) {
+				if (reader.getSequenceNumber() < headers.getNextSequenceNumber()) {
+					continue;
+				}
+				while (reader.nextPacket()) {
+					if (reader.isPacketContinued() || !reader.isPacketComplete()) {
+						continue;
+					}
+					byte[] packet = new byte[reader.getPacketLength()];
+					ByteBuffer buffer = reader.getBuffer().duplicate();
+					buffer.position(reader.getPacketOffset());
+					buffer.get(packet);
+					int blockSize = headers.getBlockSize(packet, 0, packet.length);
+					if (blockSize == 256) {
+						shortBlocks++;
+					} else if (blockSize == 2048) {
+						longBlocks++;
+					} else {
+						fail("Audio packet with a block size of " + blockSize);
+					}
+				}
+			}
+			assertTrue(shortBlocks > 0);
+			assertTrue(longBlocks > shortBlocks);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testRejectsOtherStreams() throws Exception {
+		assertNotRead(new byte[0]);
+		assertNotRead("RIFF\0\0\0\0WAVEfmt ".getBytes("US-ASCII"));
+
+		byte[] data = Files.readAllBytes(SAMPLE.toPath());
+		OggPage page = new OggPage();
+		assertTrue(page.read(new ByteArrayInputStream(data)));
+		/* cut off inside the comment and setup headers */
+		assertNotRead(Arrays.copyOf(data, page.getLength() + 100));
+	}
+
+	private static void assertNotRead(byte[] data) {
+		try {
+			VorbisHeaders.read(new ByteArrayInputStream(data), new OggPage());
+			fail("Read headers from a stream that has none");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
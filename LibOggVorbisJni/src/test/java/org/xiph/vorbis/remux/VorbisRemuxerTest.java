@@ -0,0 +1,139 @@
+package org.xiph.vorbis.remux;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.xiph.vorbis.ogg.OggPageReader;
+
+import junit.framework.TestCase;
+
+public class VorbisRemuxerTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+	private static final long SAMPLE_LENGTH = 1200033;
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("remux").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/* the granule position of the last page of each logical stream, in order, after checking every page */
+	private static List<Long> streamLengths(File file) throws Exception {
+		List<Long> lengths = new ArrayList<Long>();
+		List<Integer> serialNumbers = new ArrayList<Integer>();
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			OggPageReader reader = new OggPageReader(in.getChannel());
+			reader.setVerifyChecksums(true);
+			int sequence = 0;
+			boolean open = false;
+			while (reader.next()) {
+				if (reader.isBeginningOfStream()) {
+					assertFalse(open);
+					assertFalse(serialNumbers.contains(reader.getSerialNumber()));
+					serialNumbers.add(reader.getSerialNumber());
+					sequence = 0;
+					open = true;
+				}
+				assertTrue(open);
+				assertEquals(serialNumbers.get(serialNumbers.size() - 1).intValue(), reader.getSerialNumber());
+				assertEquals(sequence++, reader.getSequenceNumber());
+				if (reader.isEndOfStream()) {
+					lengths.add(reader.getGranulePosition());
+					open = false;
+				}
+			}
+			assertFalse(open);
+			assertEquals(0, reader.getSkippedBytes());
+			assertEquals(0, reader.getCorruptPageCount());
+		} finally {
+			in.close();
+		}
+		return lengths;
+	}
+
+	public void testClip() throws Exception {
+		File out = new File(directory, "clip.ogg");
+		assertEquals(48000, VorbisRemuxer.clip(SAMPLE, out, 96000, 144000));
+		assertEquals(Collections.singletonList(48000L), streamLengths(out));
+
+		VorbisHeaders original = VorbisHeaders.read(SAMPLE);
+		VorbisHeaders clipped = VorbisHeaders.read(out);
+		assertTrue(Arrays.equals(original.getIdentificationPage(), clipped.getIdentificationPage()));
+		assertTrue(Arrays.equals(original.getComment(), clipped.getComment()));
+		assertTrue(Arrays.equals(original.getSetup(), clipped.getSetup()));
+		assertTrue(out.length() < SAMPLE.length() / 10);
+	}
+
+	public void testClipShorterThanABlock() throws Exception {
+		File out = new File(directory, "short.ogg");
+		assertEquals(100, VorbisRemuxer.clip(SAMPLE, out, 50000, 50100));
+		assertEquals(Collections.singletonList(100L), streamLengths(out));
+	}
+
+	public void testClipToTheEnd() throws Exception {
+		File out = new File(directory, "tail.ogg");
+		assertEquals(SAMPLE_LENGTH, VorbisRemuxer.clip(SAMPLE, out, 0, Long.MAX_VALUE));
+		assertEquals(Collections.singletonList(SAMPLE_LENGTH), streamLengths(out));
+
+		assertEquals(SAMPLE_LENGTH - 480000, VorbisRemuxer.clipSeconds(SAMPLE, out, 10, Double.POSITIVE_INFINITY));
+		assertEquals(Collections.singletonList(SAMPLE_LENGTH - 480000), streamLengths(out));
+	}
+
+	public void testClipRejectsBadRanges() throws Exception {
+		File out = new File(directory, "bad.ogg");
+		assertRejectedClip(out, - 1, 100);
+		assertRejectedClip(out, 100, 100);
+		assertRejectedClip(out, SAMPLE_LENGTH + 1000, SAMPLE_LENGTH + 2000);
+	}
+
+	private static void assertRejectedClip(File out, long startSample, long endSample) throws Exception {
+		try {
+			VorbisRemuxer.clip(SAMPLE, out, startSample, endSample);
+			fail("Clipped " + startSample + " to " + endSample);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testConcatenate() throws Exception {
+		File clip = new File(directory, "clip.ogg");
+		VorbisRemuxer.clip(SAMPLE, clip, 0, 48000);
+		File out = new File(directory, "chain.ogg");
+		VorbisRemuxer.concatenate(Arrays.asList(SAMPLE, clip, SAMPLE), out);
+
+		/* every link keeps its pages and gets a serial number of its own */
+		assertEquals(Arrays.asList(SAMPLE_LENGTH, 48000L, SAMPLE_LENGTH), streamLengths(out));
+		assertEquals(2 * SAMPLE.length() + clip.length(), out.length());
+	}
+
+	public void testConcatenateRejectsMissingInputs() throws Exception {
+		File out = new File(directory, "chain.ogg");
+		try {
+			VorbisRemuxer.concatenate(new ArrayList<File>(), out);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			VorbisRemuxer.concatenate(Arrays.asList(SAMPLE, null), out);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.xiph.vorbis.remux;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.xiph.vorbis.ogg.OggPageReader;
+
+import junit.framework.TestCase;
+
+public class VorbisTagEditorTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("tags").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private File copySample(String name) throws Exception {
+		File file = new File(directory, name);
+		Files.copy(SAMPLE.toPath(), file.toPath());
+		return file;
+	}
+
+	private static byte[] audio(File file) throws Exception {
+		byte[] data = Files.readAllBytes(file.toPath());
+		int offset = (int) VorbisHeaders.read(file).getAudioOffset();
+		return Arrays.copyOfRange(data, offset, data.length);
+	}
+
+	/* every page has a good checksum and the first stream is numbered without gaps */
+	private static void assertPagesValid(File file) throws Exception {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			OggPageReader reader = new OggPageReader(in.getChannel());
+			reader.setVerifyChecksums(true);
+			int sequence = 0;
+			while (reader.next()) {
+				assertEquals(sequence++, reader.getSequenceNumber());
+			}
+			assertEquals(0, reader.getSkippedBytes());
+			assertEquals(0, reader.getCorruptPageCount());
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testRewriteInPlaceWithShortName() throws Exception {
+		File file = copySample("a");
+		VorbisComments comments = VorbisTagEditor.readComments(file);
+		comments.set("TITLE", "Hells Bells");
+		VorbisTagEditor.writeComments(file, comments);
+
+		VorbisComments written = VorbisTagEditor.readComments(file);
+		assertEquals("Hells Bells", written.getFirst("TITLE"));
+		assertEquals(comments.getVendor(), written.getVendor());
+		assertTrue(Arrays.equals(audio(SAMPLE), audio(file)));
+		assertPagesValid(file);
+		assertEquals(1, directory.list().length);
+	}
+
+	public void testRenumbersWhenHeadersGrow() throws Exception {
+		File file = copySample("grow.ogg");
+		VorbisComments comments = VorbisTagEditor.readComments(file);
+		char[] large = new char[200000];
+		Arrays.fill(large, 'x');
+		comments.add("COMMENT", new String(large));
+		File out = new File(directory, "grown.ogg");
+		VorbisTagEditor.writeComments(file, out, comments);
+
+		assertEquals(new String(large), VorbisTagEditor.readComments(out).getFirst("COMMENT"));
+		assertTrue(VorbisHeaders.read(out).getHeaderPageCount() > VorbisHeaders.read(file).getHeaderPageCount());
+		assertPagesValid(out);
+	}
+
+	public void testRejectsOutputThatIsTheInput() throws Exception {
+		File file = copySample("same.ogg");
+		byte[] before = Files.readAllBytes(file.toPath());
+		File samePath = new File(new File(directory, "."), "same.ogg");
+		try {
+			VorbisTagEditor.writeComments(file, samePath, new VorbisComments());
+			fail("Wrote over the input");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertTrue(Arrays.equals(before, Files.readAllBytes(file.toPath())));
+	}
+}
@@ -0,0 +1,100 @@
+package org.xiph.vorbis.sampled;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import junit.framework.TestCase;
+
+/* Only the paths that recognise a stream from its first page, which stay in Java. */
+public class VorbisAudioFileReaderTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+
+	public void testReadsFormatAndResets() throws Exception {
+		InputStream stream = new BufferedInputStream(new FileInputStream(SAMPLE));
+		try {
+			AudioFileFormat format = new VorbisAudioFileReader().getAudioFileFormat(stream);
+			assertEquals(VorbisAudioFileReader.OGG, format.getType());
+			assertEquals(VorbisAudioFileReader.VORBIS, format.getFormat().getEncoding());
+			assertEquals(2, format.getFormat().getChannels());
+			assertEquals(48000f, format.getFormat().getSampleRate());
+
+			byte[] start = new byte[4];
+			assertEquals(4, stream.read(start));
+			assertTrue(Arrays.equals("OggS".getBytes("US-ASCII"), start));
+		} finally {
+			stream.close();
+		}
+	}
+
+	public void testOtherFilesAreUnsupported() throws Exception {
+		byte[] vorbis = Files.readAllBytes(SAMPLE.toPath());
+		assertUnsupported(new byte[0]);
+		assertUnsupported("RIFF\0\0\0\0WAVEfmt ".getBytes("US-ASCII"));
+		assertUnsupported(Arrays.copyOf(vorbis, 3));
+		assertUnsupported(Arrays.copyOf(vorbis, 40));
+
+		/* an Ogg stream, but the second page holds no identification header */
+		byte[] second = Arrays.copyOfRange(vorbis, 58, vorbis.length);
+		assertEquals('O', second[0]);
+		assertUnsupported(second);
+	}
+
+	private static void assertUnsupported(byte[] data) throws IOException {
+		InputStream stream = new ByteArrayInputStream(data);
+		try {
+			new VorbisAudioFileReader().getAudioFileFormat(stream);
+			fail("Recognised " + data.length + " bytes that are not Ogg Vorbis");
+		} catch (UnsupportedAudioFileException e) {
+			// expected
+		}
+		assertEquals(data.length, stream.available());
+	}
+
+	public void testReadErrorsAreNotUnsupported() throws Exception {
+		final IOException failure = new IOException("device gone");
+		/* fails once the capture pattern has been read, inside the page */
+		InputStream stream = new FilterInputStream(new BufferedInputStream(new FileInputStream(SAMPLE))) {
+			private int position;
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (position >= 10) {
+					throw failure;
+				}
+				int read = super.read(b, off, Math.min(len, 10 - position));
+				position += Math.max(read, 0);
+				return read;
+			}
+		};
+		try {
+			new VorbisAudioFileReader().getAudioFileFormat(stream);
+			fail("Read the format of a failing stream");
+		} catch (IOException e) {
+			assertSame(failure, e);
+		} finally {
+			stream.close();
+		}
+	}
+
+	public void testNeedsMarkSupport() throws Exception {
+		InputStream stream = new FileInputStream(SAMPLE);
+		try {
+			new VorbisAudioFileReader().getAudioFileFormat(stream);
+			fail("Read from a stream that cannot be reset");
+		} catch (IOException e) {
+			// expected
+		} finally {
+			stream.close();
+		}
+	}
+}
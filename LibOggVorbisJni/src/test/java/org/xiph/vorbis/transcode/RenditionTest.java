@@ -0,0 +1,69 @@
+package org.xiph.vorbis.transcode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import org.xiph.vorbis.encoder.EncoderSettings;
+
+import junit.framework.TestCase;
+
+public class RenditionTest extends TestCase {
+
+	public void testFileRendition() {
+		EncoderSettings settings = new EncoderSettings();
+		File file = new File("rung.ogg");
+		Rendition rendition = new Rendition(settings, file);
+		assertSame(settings, rendition.getSettings());
+		assertSame(file, rendition.getFile());
+		assertNull(rendition.getChannel());
+		/* the source's rate and comments unless asked otherwise */
+		assertEquals(0, rendition.getSampleRate());
+		assertTrue(rendition.isSourceComments());
+	}
+
+	public void testChannelRendition() {
+		WritableByteChannel channel = Channels.newChannel(new ByteArrayOutputStream());
+		Rendition rendition = new Rendition(new EncoderSettings(), channel);
+		assertSame(channel, rendition.getChannel());
+		assertNull(rendition.getFile());
+
+		rendition.setSampleRate(22050);
+		rendition.setSourceComments(false);
+		assertEquals(22050, rendition.getSampleRate());
+		assertFalse(rendition.isSourceComments());
+		rendition.setSampleRate(0);
+		assertEquals(0, rendition.getSampleRate());
+	}
+
+	public void testRejectsBadArguments() {
+		try {
+			new Rendition(null, new File("rung.ogg"));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new Rendition(new EncoderSettings(), (File) null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new Rendition(new EncoderSettings(), (WritableByteChannel) null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Rendition rendition = new Rendition(new EncoderSettings(), new File("rung.ogg"));
+		rendition.setSampleRate(48000);
+		try {
+			rendition.setSampleRate(- 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		assertEquals(48000, rendition.getSampleRate());
+	}
+}
@@ -0,0 +1,146 @@
+package org.xiph.vorbis.playback;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+
+import org.xiph.vorbis.decoder.DecodeFeed;
+import org.xiph.vorbis.decoder.DecodeStreamInfo;
+import org.xiph.vorbis.decoder.VorbisDecoder;
+import org.xiph.vorbis.encoder.EncodeFeed;
+import org.xiph.vorbis.encoder.EncoderSettings;
+import org.xiph.vorbis.encoder.VorbisEncoder;
+import org.xiph.vorbis.foreign.ForeignVorbisDecoder;
+import org.xiph.vorbis.foreign.ForeignVorbisEncoder;
+
+/**
+ * Decodes and re-encodes an Ogg Vorbis file from memory through both the JNI and the foreign binding and prints the time each
+ * took, to pick the faster one for a deployment. Run with <code>-Pforeign</code> on JDK 22 or later, or compiled with
+ * <code>--enable-preview --release 21</code> on JDK 21, the arguments are the file and optionally the rounds, e.g.
+ * <code>--enable-native-access=ALL-UNNAMED OggForeignBenchmark music.ogg 10</code>
+ */
+public class OggForeignBenchmark {
+	public static void main(String[] args) throws Exception {
+		byte[] vorbis = Files.readAllBytes(new File(args[0]).toPath());
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		for (int round = 0; round < rounds; round++) {
+			MemoryDecodeFeed jniDecode = new MemoryDecodeFeed(vorbis);
+			long start = System.nanoTime();
+			int jniResult = VorbisDecoder.startDecoding(jniDecode);
+			long jniDecodeNanos = System.nanoTime() - start;
+
+			MemoryDecodeFeed foreignDecode = new MemoryDecodeFeed(vorbis);
+			start = System.nanoTime();
+			int foreignResult = ForeignVorbisDecoder.startDecoding(foreignDecode);
+			long foreignDecodeNanos = System.nanoTime() - start;
+
+			byte[] pcm = jniDecode.pcm.toByteArray();
+			EncoderSettings settings = new EncoderSettings();
+			settings.setSampleRate(jniDecode.info.getSampleRate());
+			settings.setChannels((int) jniDecode.info.getChannels());
+
+			MemoryEncodeFeed jniEncode = new MemoryEncodeFeed(pcm);
+			start = System.nanoTime();
+			VorbisEncoder.startEncoding(settings, jniEncode);
+			long jniEncodeNanos = System.nanoTime() - start;
+
+			MemoryEncodeFeed foreignEncode = new MemoryEncodeFeed(pcm);
+			start = System.nanoTime();
+			ForeignVorbisEncoder.startEncoding(settings, foreignEncode);
+			long foreignEncodeNanos = System.nanoTime() - start;
+
+			System.out.println("round " + round + ": decode jni " + jniDecodeNanos / 1000000 + " ms, foreign "
+			        + foreignDecodeNanos / 1000000 + " ms, results " + jniResult + "/" + foreignResult + ", same pcm "
+			        + (jniDecode.crc() == foreignDecode.crc()) + "; encode jni " + jniEncodeNanos / 1000000 + " ms, foreign "
+			        + foreignEncodeNanos / 1000000 + " ms, same length " + (jniEncode.vorbis.size() == foreignEncode.vorbis.size()));
+		}
+	}
+
+	private static class MemoryDecodeFeed implements DecodeFeed {
+		private final byte[] vorbis;
+		private final ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+		private int position;
+		private DecodeStreamInfo info;
+
+		MemoryDecodeFeed(byte[] vorbis) {
+			this.vorbis = vorbis;
+		}
+
+		long crc() {
+			CRC32 crc = new CRC32();
+			crc.update(pcm.toByteArray());
+			return crc.getValue();
+		}
+
+		@Override
+		public int readVorbisData(byte[] buffer, int amountToWrite) {
+			int length = Math.min(amountToWrite, vorbis.length - position);
+			System.arraycopy(vorbis, position, buffer, 0, length);
+			position += length;
+			return length;
+		}
+
+		@Override
+		public boolean writePCMData(short[] pcmData, int amountToRead) {
+			for (int i = 0; i < amountToRead; i++) {
+				pcm.write(pcmData[i]);
+				pcm.write(pcmData[i] >> 8);
+			}
+			return true;
+		}
+
+		@Override
+		public void elapsedSeconds(long seconds) {}
+
+		@Override
+		public long seekToSeconds() {
+			return - 1;
+		}
+
+		@Override
+		public void stop() {}
+
+		@Override
+		public void startReadingHeader() {}
+
+		@Override
+		public void start(DecodeStreamInfo decodeStreamInfo) {
+			info = decodeStreamInfo;
+		}
+	}
+
+	private static class MemoryEncodeFeed implements EncodeFeed {
+		private final byte[] pcm;
+		private final ByteArrayOutputStream vorbis = new ByteArrayOutputStream();
+		private int position;
+
+		MemoryEncodeFeed(byte[] pcm) {
+			this.pcm = pcm;
+		}
+
+		@Override
+		public long readPCMData(byte[] pcmDataBuffer, int amountToWrite) {
+			int length = Math.min(amountToWrite, pcm.length - position);
+			System.arraycopy(pcm, position, pcmDataBuffer, 0, length);
+			position += length;
+			return length;
+		}
+
+		@Override
+		public int writeVorbisData(byte[] vorbisData, int amountToRead) {
+			vorbis.write(vorbisData, 0, amountToRead);
+			return amountToRead;
+		}
+
+		@Override
+		public void stop() {}
+
+		@Override
+		public void stopEncoding() {}
+
+		@Override
+		public void start() {}
+	}
+}
@@ -0,0 +1,154 @@
+package org.xiph.vorbis.decoder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+
+import junit.framework.TestCase;
+
+/* The signals that never reach the native decoder, driven by an executor that runs its tasks only when told to. */
+public class DecodePublisherTest extends TestCase {
+	private static final File SAMPLE = new File("src/sample/backinblack.ogg");
+
+	private static class QueueExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		int runAll() {
+			int ran = 0;
+			while (!tasks.isEmpty()) {
+				tasks.remove(0).run();
+				ran++;
+			}
+			return ran;
+		}
+	}
+
+	private static class RecordingSubscriber implements Flow.Subscriber<ByteBuffer> {
+		private Flow.Subscription subscription;
+		private final List<Throwable> errors = new ArrayList<Throwable>();
+		private int chunks;
+		private int completions;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(ByteBuffer item) {
+			chunks++;
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			errors.add(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			completions++;
+		}
+	}
+
+	public void testNonPositiveRequestFails() {
+		QueueExecutor executor = new QueueExecutor();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new DecodePublisher(SAMPLE, null, executor, 1024).subscribe(subscriber);
+		assertNotNull(subscriber.subscription);
+
+		subscriber.subscription.request(0);
+		assertEquals(1, executor.runAll());
+		assertEquals(1, subscriber.errors.size());
+		assertTrue(subscriber.errors.get(0) instanceof IllegalArgumentException);
+
+		/* the subscription is over, later signals are dropped */
+		subscriber.subscription.request(1);
+		subscriber.subscription.request(- 1);
+		executor.runAll();
+		assertEquals(1, subscriber.errors.size());
+		assertEquals(0, subscriber.chunks);
+		assertEquals(0, subscriber.completions);
+	}
+
+	public void testSignalsWhileScheduledShareOneDrain() {
+		QueueExecutor executor = new QueueExecutor();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new DecodePublisher(SAMPLE, null, executor, 1024).subscribe(subscriber);
+
+		subscriber.subscription.request(- 5);
+		subscriber.subscription.request(0);
+		subscriber.subscription.cancel();
+		assertEquals(1, executor.runAll());
+		/* cancelling wins over the bad requests and nothing is signalled */
+		assertTrue(subscriber.errors.isEmpty());
+
+		subscriber.subscription.request(0);
+		assertEquals(1, executor.runAll());
+		assertTrue(subscriber.errors.isEmpty());
+	}
+
+	public void testCancelBeforeRequesting() {
+		QueueExecutor executor = new QueueExecutor();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new DecodePublisher(SAMPLE, null, executor, 1024).subscribe(subscriber);
+
+		subscriber.subscription.cancel();
+		executor.runAll();
+		subscriber.subscription.request(Long.MAX_VALUE);
+		executor.runAll();
+		assertEquals(0, subscriber.chunks);
+		assertEquals(0, subscriber.completions);
+		assertTrue(subscriber.errors.isEmpty());
+	}
+
+	public void testRejectedExecutionFails() {
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new DecodePublisher(SAMPLE, null, new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				throw new RejectedExecutionException("shut down");
+			}
+		}, 1024).subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+		assertEquals(1, subscriber.errors.size());
+		assertTrue(subscriber.errors.get(0) instanceof RejectedExecutionException);
+	}
+
+	public void testRejectsBadArguments() {
+		Executor executor = new QueueExecutor();
+		try {
+			new DecodePublisher(null, null, executor, 1024);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new DecodePublisher(SAMPLE, null, null, 1024);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new DecodePublisher(SAMPLE, null, executor, 0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new DecodePublisher(SAMPLE, null, executor, 1024).subscribe(null);
+			fail();
+		} catch (NullPointerException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/********************************************************************
+
+ function: per session pools for the allocations of libogg and libvorbis
+
+ Every _ogg_malloc goes to the arena the calling thread is using, if
+ any. An arena keeps the blocks freed into it in size classes and hands
+ them out again, and once released it waits idle to be acquired by the
+ next session, so thousands of short sessions with the same settings
+ stop going back to the system allocator for the same codebooks,
+ lookup tables and buffers over and over. Every arena counts the bytes
+ live in it, and all allocations are counted process-wide, arena or
+ not.
+
+ An arena is used by one thread at a time. Blocks always go back to
+ the arena they came from, whichever arena the freeing thread is using,
+ and whatever a session did not free goes back when its arena is
+ released.
+
+ ********************************************************************/
+#ifndef _OGG_ARENA_H
+#define _OGG_ARENA_H
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#include <stddef.h>
+
+typedef struct ogg_arena ogg_arena;
+
+/* an idle arena with its blocks kept from an earlier session or a new
+   one, NULL if out of memory */
+extern ogg_arena *ogg_arena_acquire(void);
+/* ends the session of arena, which must not be in use by any thread.
+   The blocks it still has are taken back, none of them may be touched
+   after, and the arena waits idle for the next session */
+extern void       ogg_arena_release(ogg_arena *arena);
+/* allocates from arena on the calling thread until the next call, NULL
+   for the system allocator. Returns the arena used before */
+extern ogg_arena *ogg_arena_use(ogg_arena *arena);
+
+/* bytes allocated from arena in this session and not freed, and the
+   most there were at once */
+extern long       ogg_arena_live(const ogg_arena *arena);
+extern long       ogg_arena_peak(const ogg_arena *arena);
+
+/* the same for all allocations of the process, the bytes of freed
+   blocks the arenas keep for reuse, and the bytes sessions left
+   allocated when released, which only grow with leaks */
+extern long       ogg_arena_process_live(void);
+extern long       ogg_arena_process_peak(void);
+extern long       ogg_arena_process_cached(void);
+extern long       ogg_arena_process_reclaimed(void);
+/* gives the blocks of all idle arenas back to the system */
+extern void       ogg_arena_trim(void);
+
+extern void      *ogg_arena_malloc(size_t bytes);
+extern void      *ogg_arena_calloc(size_t members, size_t bytes);
+extern void      *ogg_arena_realloc(void *ptr, size_t bytes);
+extern void       ogg_arena_free(void *ptr);
+
+#ifdef __cplusplus
+}
+#endif
+
+#endif  /* _OGG_ARENA_H */
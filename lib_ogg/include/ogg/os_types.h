@@ -18,11 +18,12 @@
 #define _OS_TYPES_H
 
 /* make it easy on the folks that want to compile the libs with a
-   different malloc than stdlib */
-#define _ogg_malloc  malloc
-#define _ogg_calloc  calloc
-#define _ogg_realloc realloc
-#define _ogg_free    free
+   different malloc than stdlib: allocate from the session arenas */
+#include <ogg/arena.h>
+#define _ogg_malloc  ogg_arena_malloc
+#define _ogg_calloc  ogg_arena_calloc
+#define _ogg_realloc ogg_arena_realloc
+#define _ogg_free    ogg_arena_free
 
 #if defined(_WIN32)
 
@@ -10,6 +10,7 @@ endif
 
 
 LOCAL_SRC_FILES := \
+	arena.c \
 	bitwise.c \
 	framing.c
 
@@ -0,0 +1,316 @@
+/********************************************************************
+
+ function: per session pools for the allocations of libogg and libvorbis
+
+ Every block carries a small header naming its arena and the bytes
+ asked for, so it can be freed from any thread into the arena it came
+ from, and links the blocks of an arena still in use so its release
+ can take back what the session left. Blocks up to CLASS_LIMIT are
+ rounded up to one of four size classes per power of two and kept on
+ a free list per class when freed, larger ones and those of threads
+ without an arena go straight to the system allocator.
+
+ ********************************************************************/
+
+#include <stdlib.h>
+#include <string.h>
+#include <ogg/arena.h>
+
+/* the counters and the idle lock are longs, which the Interlocked
+   functions take as they are, LONG being long on windows */
+#if defined(_MSC_VER)
+#  include <windows.h>
+#  define THREAD_LOCAL __declspec(thread)
+#  define ATOMIC_ADD(p,v) (InterlockedExchangeAdd((p),(v))+(v))
+#  define ATOMIC_CAS(p,old,new) (InterlockedCompareExchange((p),(new),(old))==(old))
+#  define ATOMIC_TRY_LOCK(p) (InterlockedExchange((p),1)==0)
+#  define ATOMIC_UNLOCK(p) InterlockedExchange((p),0)
+#else
+#  define THREAD_LOCAL __thread
+#  define ATOMIC_ADD(p,v) __sync_add_and_fetch((p),(v))
+#  define ATOMIC_CAS(p,old,new) __sync_bool_compare_and_swap((p),(old),(new))
+#  define ATOMIC_TRY_LOCK(p) (__sync_lock_test_and_set((p),1)==0)
+#  define ATOMIC_UNLOCK(p) __sync_lock_release(p)
+#endif
+
+#define CLASS_LIMIT (1<<20)
+#define CLASSES 65            /* 16 bytes, then four per power of two up to CLASS_LIMIT */
+#define ARENA_CACHED (4<<20)  /* freed bytes an arena keeps */
+#define IDLE_ARENAS 8
+#define IDLE_CACHED (16<<20)  /* freed bytes kept by all arenas before idle ones are dropped */
+
+/* four words, keeps the alignment of the system allocator on 32 and 64 bit */
+typedef struct block_header {
+  ogg_arena *arena;
+  size_t bytes;
+  struct block_header *prev;
+  struct block_header *next;  /* in use or on a free list */
+} block_header;
+
+struct ogg_arena {
+  block_header *blocks;
+  block_header *free_blocks[CLASSES];
+  long live;
+  long peak;
+  long cached;
+  ogg_arena *next_idle;
+};
+
+static THREAD_LOCAL ogg_arena *current;
+
+static volatile long process_live;
+static volatile long process_peak;
+static volatile long process_cached;
+static volatile long process_reclaimed;
+
+static volatile long idle_lock;
+static ogg_arena *idle;
+static int idle_count;
+
+static int class_of(size_t bytes){
+  size_t n;
+  int bit=4;
+
+  if(bytes<=16)return 0;
+  if(bytes>CLASS_LIMIT)return -1;
+  n=bytes-1;
+  while(n>>(bit+1))bit++;
+  /* the top three bits of n pick one of the four classes of its power of two */
+  return (bit-4)*4+(int)(n>>(bit-2))-3;
+}
+
+static size_t class_bytes(int size_class){
+  if(size_class==0)return 16;
+  size_class--;
+  return (size_t)(5+size_class%4)<<(size_class/4+2);
+}
+
+static long count(volatile long *counter,long bytes){
+  return ATOMIC_ADD(counter,bytes);
+}
+
+static void raise_peak(long live){
+  long peak;
+  while(live>(peak=process_peak) &&
+        !ATOMIC_CAS(&process_peak,peak,live));
+}
+
+static void lock_idle(void){
+  while(!ATOMIC_TRY_LOCK(&idle_lock));
+}
+
+static void unlock_idle(void){
+  ATOMIC_UNLOCK(&idle_lock);
+}
+
+/* takes a block out of use, onto its free list while the arena keeps
+   few enough bytes */
+static void recycle(ogg_arena *arena,block_header *block){
+  int size_class=class_of(block->bytes);
+
+  if(block->prev)block->prev->next=block->next;
+  else arena->blocks=block->next;
+  if(block->next)block->next->prev=block->prev;
+  arena->live-=block->bytes;
+  count(&process_live,-(long)block->bytes);
+
+  if(size_class>=0 && arena->cached+(long)class_bytes(size_class)<=ARENA_CACHED){
+    block->next=arena->free_blocks[size_class];
+    arena->free_blocks[size_class]=block;
+    arena->cached+=class_bytes(size_class);
+    count(&process_cached,class_bytes(size_class));
+  }else{
+    free(block);
+  }
+}
+
+static void drop_blocks(ogg_arena *arena){
+  int i;
+  for(i=0;i<CLASSES;i++){
+    block_header *block=arena->free_blocks[i];
+    while(block){
+      block_header *next=block->next;
+      free(block);
+      block=next;
+    }
+    arena->free_blocks[i]=NULL;
+  }
+  count(&process_cached,-arena->cached);
+  arena->cached=0;
+}
+
+static void *allocate(ogg_arena *arena,size_t bytes){
+  int size_class=arena?class_of(bytes):-1;
+  block_header *block=NULL;
+
+  if(size_class>=0){
+    block=arena->free_blocks[size_class];
+    if(block){
+      arena->free_blocks[size_class]=block->next;
+      arena->cached-=class_bytes(size_class);
+      count(&process_cached,-(long)class_bytes(size_class));
+    }else{
+      block=malloc(sizeof(*block)+class_bytes(size_class));
+    }
+  }else{
+    block=malloc(sizeof(*block)+bytes);
+  }
+  if(!block)return NULL;
+
+  block->arena=arena;
+  block->bytes=bytes;
+  if(arena){
+    block->prev=NULL;
+    block->next=arena->blocks;
+    if(block->next)block->next->prev=block;
+    arena->blocks=block;
+    arena->live+=bytes;
+    if(arena->live>arena->peak)arena->peak=arena->live;
+  }
+  raise_peak(count(&process_live,bytes));
+  return block+1;
+}
+
+ogg_arena *ogg_arena_acquire(void){
+  ogg_arena *arena;
+
+  lock_idle();
+  arena=idle;
+  if(arena){
+    idle=arena->next_idle;
+    idle_count--;
+  }
+  unlock_idle();
+
+  if(!arena){
+    arena=calloc(1,sizeof(*arena));
+    if(!arena)return NULL;
+  }
+  arena->peak=0;
+  return arena;
+}
+
+void ogg_arena_release(ogg_arena *arena){
+  if(!arena)return;
+
+  if(arena->blocks){
+    count(&process_reclaimed,arena->live);
+    while(arena->blocks)recycle(arena,arena->blocks);
+  }
+
+  /* kept for the next session, or dropped once enough are kept */
+  lock_idle();
+  if(idle_count<IDLE_ARENAS && process_cached<=IDLE_CACHED){
+    arena->next_idle=idle;
+    idle=arena;
+    idle_count++;
+    arena=NULL;
+  }
+  unlock_idle();
+  if(arena){
+    drop_blocks(arena);
+    free(arena);
+  }
+}
+
+ogg_arena *ogg_arena_use(ogg_arena *arena){
+  ogg_arena *previous=current;
+  current=arena;
+  return previous;
+}
+
+long ogg_arena_live(const ogg_arena *arena){
+  return arena?arena->live:0;
+}
+
+long ogg_arena_peak(const ogg_arena *arena){
+  return arena?arena->peak:0;
+}
+
+long ogg_arena_process_live(void){
+  return process_live;
+}
+
+long ogg_arena_process_peak(void){
+  return process_peak;
+}
+
+long ogg_arena_process_cached(void){
+  return process_cached;
+}
+
+long ogg_arena_process_reclaimed(void){
+  return process_reclaimed;
+}
+
+void ogg_arena_trim(void){
+  ogg_arena *arena;
+
+  lock_idle();
+  arena=idle;
+  idle=NULL;
+  idle_count=0;
+  unlock_idle();
+
+  while(arena){
+    ogg_arena *next=arena->next_idle;
+    drop_blocks(arena);
+    free(arena);
+    arena=next;
+  }
+}
+
+void *ogg_arena_malloc(size_t bytes){
+  return allocate(current,bytes);
+}
+
+void *ogg_arena_calloc(size_t members,size_t bytes){
+  void *ptr;
+
+  if(bytes && members>(size_t)-1/bytes)return NULL;
+  ptr=allocate(current,members*bytes);
+  /* recycled blocks are not cleared */
+  if(ptr)memset(ptr,0,members*bytes);
+  return ptr;
+}
+
+void *ogg_arena_realloc(void *ptr,size_t bytes){
+  block_header *block;
+  ogg_arena *arena;
+  int size_class;
+  void *moved;
+
+  if(!ptr)return ogg_arena_malloc(bytes);
+  block=(block_header *)ptr-1;
+  arena=block->arena;
+  size_class=arena?class_of(block->bytes):-1;
+
+  if(size_class>=0 && size_class==class_of(bytes)){
+    /* still fits the class it was rounded up to */
+    arena->live+=(long)bytes-(long)block->bytes;
+    if(arena->live>arena->peak)arena->peak=arena->live;
+    raise_peak(count(&process_live,(long)bytes-(long)block->bytes));
+    block->bytes=bytes;
+    return ptr;
+  }
+
+  /* grows or shrinks into the arena the block belongs to */
+  moved=allocate(arena,bytes);
+  if(!moved)return NULL;
+  memcpy(moved,ptr,block->bytes<bytes?block->bytes:bytes);
+  ogg_arena_free(ptr);
+  return moved;
+}
+
+void ogg_arena_free(void *ptr){
+  block_header *block;
+
+  if(!ptr)return;
+  block=(block_header *)ptr-1;
+  if(block->arena){
+    recycle(block->arena,block);
+  }else{
+    count(&process_live,-(long)block->bytes);
+    free(block);
+  }
+}
@@ -42,6 +42,7 @@ typedef struct highlevel_encode_setup {
   int impulse_block_p;
   int noise_normalize_p;
   int coupling_p;
+  int speed; /* OV_ENCODE_SPEED_*, trades analysis precision for throughput */
 
   double stereo_point_setting;
   double lowpass_kHz;
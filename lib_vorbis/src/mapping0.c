@@ -605,6 +605,16 @@ static int mapping0_forward(vorbis_block *vb){
         k<=(vorbis_bitrate_managed(vb)?PACKETBLOBS-1:PACKETBLOBS/2);
         k++){
       oggpack_buffer *opb=vbi->packetblob[k];
+      int stride=ci->psy_g_param.blob_stride;
+
+      /* faster speed settings only search a subset of the blobs, the
+         ones carrying the floor fits are always encoded and the rest
+         reuse the next smaller encoded blob */
+      if(stride>1 && k%stride && k!=PACKETBLOBS/2 && k!=PACKETBLOBS-1){
+        oggpack_buffer *prev=vbi->packetblob[k-1];
+        oggpack_writecopy(opb,oggpack_get_buffer(prev),oggpack_bits(prev));
+        continue;
+      }
 
       /* start out our new packet blob with packet type and mode */
       /* Encode the packet type */
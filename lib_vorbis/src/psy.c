@@ -411,15 +411,17 @@ static void seed_curve(float *seed,
   }
 }
 
-static void seed_loop(vorbis_look_psy *p,
-                      const float ***curves,
-                      const float *f,
-                      const float *flr,
-                      float *seed,
-                      float specmax){
+static int seed_loop(vorbis_look_psy *p,
+                     const float ***curves,
+                     const float *f,
+                     const float *flr,
+                     float *seed,
+                     float specmax,
+                     float seedmin){
   vorbis_info_psy *vi=p->vi;
   long n=p->n,i;
   float dBoffset=vi->max_curve_dB-specmax;
+  int seeded=0;
 
   /* prime the working vector with peak values */
 
@@ -431,7 +433,7 @@ static void seed_loop(vorbis_look_psy *p,
       if(f[i]>max)max=f[i];
     }
 
-    if(max+6.f>flr[i]){
+    if(max+6.f>flr[i] && max>seedmin){
       oc=oc>>p->shiftoc;
 
       if(oc>=P_BANDS)oc=P_BANDS-1;
@@ -444,8 +446,10 @@ static void seed_loop(vorbis_look_psy *p,
                  p->total_octave_lines,
                  p->eighth_octave_lines,
                  dBoffset);
+      seeded++;
     }
   }
+  return seeded;
 }
 
 static void seed_chase(float *seeds, int linesper, long n){
@@ -754,6 +758,7 @@ void _vp_tonemask(vorbis_look_psy *p,
 
   float *seed=alloca(sizeof(*seed)*p->total_octave_lines);
   float att=local_specmax+p->vi->ath_adjatt;
+  float seedmin=NEGINF;
   for(i=0;i<p->total_octave_lines;i++)seed[i]=NEGINF;
 
   /* set the ATH (floating below localmax, not global max by a
@@ -763,9 +768,13 @@ void _vp_tonemask(vorbis_look_psy *p,
   for(i=0;i<n;i++)
     logmask[i]=p->ath[i]+att;
 
-  /* tone masking */
-  seed_loop(p,(const float ***)p->tonecurves,logfft,logmask,seed,global_specmax);
-  max_seeds(p,seed,logmask);
+  /* tone masking, the faster encode speeds only seed from the
+     strongest peaks */
+  if(p->vi->tone_seed_range>0.f)
+    seedmin=local_specmax-p->vi->tone_seed_range;
+  if(seed_loop(p,(const float ***)p->tonecurves,logfft,logmask,seed,
+               global_specmax,seedmin))
+    max_seeds(p,seed,logmask);
 
 }
 
@@ -61,6 +61,10 @@ typedef struct vorbis_info_psy{
   int normal_start;
   int normal_partition;
   double normal_thresh;
+
+  /* encode speed; only seed tone masking curves for peaks within this
+     many dB of the local maximum, 0 seeds every peak as usual */
+  float tone_seed_range;
 } vorbis_info_psy;
 
 typedef struct{
@@ -81,6 +85,10 @@ typedef struct{
   int   coupling_postpointamp[PACKETBLOBS];
   int   sliding_lowpass[2][PACKETBLOBS];
 
+  /* encode speed; when managed only every blob_stride'th packetblob
+     is searched, the rest are copied down */
+  int   blob_stride;
+
 } vorbis_info_psy_global;
 
 typedef struct {
@@ -378,6 +378,36 @@ struct ovectl_ratemanage2_arg {
  */
 #define OV_ECTL_COUPLING_SET         0x41
 
+/**
+ *  Returns the current encoder analysis speed setting in the int pointed
+ *  to by arg.
+ *
+ * Argument: <tt>int *</tt>
+*/
+#define OV_ECTL_SPEED_GET            0x50
+
+/**
+ *  Sets the encoder analysis speed according to arg.
+ *
+ * Argument: <tt>int *</tt>
+ *
+ *  One of \ref OV_ENCODE_SPEED_BEST [default], \ref OV_ENCODE_SPEED_BALANCED
+ *  or \ref OV_ENCODE_SPEED_FAST. Faster settings trade psychoacoustic
+ *  precision for encode throughput: both seed the tone mask from the
+ *  stronger spectral peaks only and search fewer candidate packets when
+ *  bitrate managed, FAST additionally skips noise normalization. The
+ *  resulting streams are fully spec compliant and decode with any
+ *  decoder.
+ */
+#define OV_ECTL_SPEED_SET            0x51
+
+/** Full analysis, the default */
+#define OV_ENCODE_SPEED_BEST         0
+/** Simplified masking and coarser residue search */
+#define OV_ENCODE_SPEED_BALANCED     1
+/** Cheapest analysis, no noise normalization */
+#define OV_ENCODE_SPEED_FAST         2
+
   /* deprecated rate management supported only for compatibility */
 
 /**
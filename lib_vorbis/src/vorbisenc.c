@@ -249,6 +249,11 @@ static void vorbis_encode_global_psych_setup(vorbis_info *vi,double s,
     g->postecho_thresh[i]=in[is].postecho_thresh[i]*(1.-ds)+in[is+1].postecho_thresh[i]*ds;
   }
   g->ampmax_att_per_sec=ci->hi.amplitude_track_dBpersec;
+
+  /* coarser bitrate management search for the faster speed settings */
+  g->blob_stride=1;
+  if(ci->hi.speed==OV_ENCODE_SPEED_BALANCED)g->blob_stride=2;
+  if(ci->hi.speed==OV_ENCODE_SPEED_FAST)g->blob_stride=4;
   return;
 }
 
@@ -321,7 +326,14 @@ static void vorbis_encode_psyset_setup(vorbis_info *vi,double s,
   memcpy(p,&_psy_info_template,sizeof(*p));
   p->blockflag=block>>1;
 
-  if(hi->noise_normalize_p){
+  /* the faster speed settings only seed the tone mask from the
+     stronger peaks, fast also skips noise normalization */
+  if(hi->speed==OV_ENCODE_SPEED_BALANCED)
+    p->tone_seed_range=40.f;
+  if(hi->speed==OV_ENCODE_SPEED_FAST)
+    p->tone_seed_range=20.f;
+
+  if(hi->noise_normalize_p && hi->speed!=OV_ENCODE_SPEED_FAST){
     p->normal_p=1;
     p->normal_start=nn_start[is];
     p->normal_partition=nn_partition[is];
@@ -1178,6 +1190,20 @@ int vorbis_encode_ctl(vorbis_info *vi,int number,void *arg){
         if(hi->impulse_noisetune<-15.)hi->impulse_noisetune=-15.;
       }
       return(0);
+    case OV_ECTL_SPEED_GET:
+      {
+        int *iarg=(int *)arg;
+        *iarg=hi->speed;
+      }
+      return(0);
+    case OV_ECTL_SPEED_SET:
+      {
+        int *iarg=(int *)arg;
+        if(*iarg<OV_ENCODE_SPEED_BEST || *iarg>OV_ENCODE_SPEED_FAST)
+          return(OV_EINVAL);
+        hi->speed=*iarg;
+      }
+      return(0);
     case OV_ECTL_COUPLING_GET:
       {
         int *iarg=(int *)arg;
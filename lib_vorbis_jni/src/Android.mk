@@ -3,7 +3,7 @@ LOCAL_PATH := $(call my-dir)
 include $(CLEAR_VARS)
 
 LOCAL_MODULE := vorbis-jni
-LOCAL_CFLAGS += -I$(LOCAL_PATH)/../include -fsigned-char
+LOCAL_CFLAGS += -I$(LOCAL_PATH)/../include -I$(LOCAL_PATH)/../../lib_vorbis/src -fsigned-char
 ifeq ($(TARGET_ARCH),arm)
 	LOCAL_CFLAGS += -march=armv6 -marm -mfloat-abi=softfp -mfpu=vfp
 endif
@@ -14,6 +14,23 @@ LOCAL_LDLIBS := -L$(SYSROOT)/usr/lib -llog
 
 LOCAL_SRC_FILES := \
 	org_xiph_vorbis_encoder_VorbisEncoder.c \
-	org_xiph_vorbis_decoder_VorbisDecoder.c
+	org_xiph_vorbis_decoder_VorbisDecoder.c \
+	pcm_convert.c \
+	decode_file.c \
+	encode_settings.c \
+	bitrate_control.c \
+	encode_file.c \
+	peak_pyramid.c \
+	loudness_meter.c \
+	pull_decoder.c \
+	org_xiph_vorbis_decoder_VorbisPcmReader.c \
+	mixer.c \
+	org_xiph_vorbis_mixer_VorbisMixer.c \
+	resampler.c \
+	transcoder.c \
+	org_xiph_vorbis_transcode_VorbisTranscoder.c \
+	push_decoder.c \
+	push_encoder.c \
+	org_xiph_vorbis_helper_NativeMemory.c
 
 include $(BUILD_SHARED_LIBRARY)
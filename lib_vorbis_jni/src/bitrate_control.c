@@ -0,0 +1,98 @@
+/* Bitrate management beyond what vorbis_encode_ctl offers */
+
+#include <math.h>
+#include "codec_internal.h"
+#include "bitrate_control.h"
+
+/* the smallest reservoir libvorbis sets up itself */
+#define MIN_RESERVOIR_BITS 128
+
+/* the rate the reservoir is sized by, picked the way vorbis_encode_setup_managed
+   picks a nominal bitrate when only limits are given */
+static double reference_rate(long min, long nominal, long max) {
+	if (nominal > 0) {
+		return nominal;
+	}
+	if (max > 0 && min > 0) {
+		return (max + min) * .5;
+	}
+	return max > 0 ? max * .875 : min;
+}
+
+void bitrate_control_reservoir(vorbis_info *vi, long bits, double bias) {
+	codec_setup_info *ci = vi->codec_setup;
+	if (bits >= 0) {
+		ci->hi.bitrate_reservoir = bits < MIN_RESERVOIR_BITS ? MIN_RESERVOIR_BITS : bits;
+	}
+	if (bias >= 0) {
+		ci->hi.bitrate_reservoir_bias = bias > 1 ? 1 : bias;
+	}
+}
+
+int bitrate_control_managed(vorbis_dsp_state *vd) {
+	private_state *b = vd->backend_state;
+	return b != NULL && b->bms.managed;
+}
+
+void bitrate_control_current(vorbis_dsp_state *vd, long *min, long *nominal, long *max) {
+	codec_setup_info *ci = vd->vi->codec_setup;
+	*min = ci->bi.min_rate > 0 ? ci->bi.min_rate : 0;
+	*nominal = ci->bi.avg_rate > 0 ? ci->bi.avg_rate : 0;
+	*max = ci->bi.max_rate > 0 ? ci->bi.max_rate : 0;
+}
+
+int bitrate_control_set(vorbis_dsp_state *vd, long min, long nominal, long max) {
+	private_state *b = vd->backend_state;
+	codec_setup_info *ci = vd->vi->codec_setup;
+	bitrate_manager_info *bi = &ci->bi;
+	bitrate_manager_state *bm;
+	long halfsamples = ci->blocksizes[0] >> 1;
+	double scale;
+
+	if (!bitrate_control_managed(vd)) {
+		return OV_EINVAL;
+	}
+	bm = &b->bms;
+	if (min < 0) min = 0;
+	if (nominal < 0) nominal = 0;
+	if (max < 0) max = 0;
+
+	/* the same invariants OV_ECTL_RATEMANAGE2_SET checks */
+	if (min == 0 && nominal == 0 && max == 0) {
+		return OV_EINVAL;
+	}
+	if ((min > 0 && nominal > 0 && min > nominal) || (max > 0 && nominal > 0 && max < nominal)
+			|| (min > 0 && max > 0 && min > max)) {
+		return OV_EINVAL;
+	}
+
+	/* the reservoir keeps holding as many seconds of audio, as full as it was */
+	scale = reference_rate(min, nominal, max) / reference_rate(bi->min_rate, bi->avg_rate, bi->max_rate);
+	bi->reservoir_bits = (long) (bi->reservoir_bits * scale);
+	if (bi->reservoir_bits < MIN_RESERVOIR_BITS) {
+		bi->reservoir_bits = MIN_RESERVOIR_BITS;
+	}
+	bm->avg_reservoir = (long) (bm->avg_reservoir * scale);
+	bm->minmax_reservoir = (long) (bm->minmax_reservoir * scale);
+
+	/* what vorbis_bitrate_init works out, picked up by the next vorbis_bitrate_addblock */
+	bi->min_rate = min;
+	bi->avg_rate = nominal;
+	bi->max_rate = max;
+	bm->avg_bitsper = rint(1. * nominal * halfsamples / vd->vi->rate);
+	bm->min_bitsper = rint(1. * min * halfsamples / vd->vi->rate);
+	bm->max_bitsper = rint(1. * max * halfsamples / vd->vi->rate);
+	return 0;
+}
+
+int bitrate_control_scale(vorbis_dsp_state *vd, long bitrate) {
+	long min, nominal, max;
+	double scale;
+
+	if (!bitrate_control_managed(vd) || bitrate <= 0) {
+		return OV_EINVAL;
+	}
+	bitrate_control_current(vd, &min, &nominal, &max);
+	scale = bitrate / reference_rate(min, nominal, max);
+	return bitrate_control_set(vd, (long) rint(min * scale), (long) rint(nominal * scale), (long) rint(max * scale));
+}
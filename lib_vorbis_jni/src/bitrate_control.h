@@ -0,0 +1,35 @@
+/* Bitrate management beyond what vorbis_encode_ctl offers. libvorbis only
+ * takes bitrate settings before the setup is set in stone, and in whole
+ * kbps, so this reaches into its private state: to set the reservoir
+ * exactly, and to retarget the manager of a running encoder by moving the
+ * targets it picks each packet by, which takes effect from the next block
+ * analysed.
+ */
+#ifndef _BITRATE_CONTROL_H
+#define _BITRATE_CONTROL_H
+
+#include <vorbis/codec.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+//Overrides the reservoir of a managed setup before vorbis_encode_setup_init, -1 keeps the default bits or bias
+void bitrate_control_reservoir(vorbis_info *vi, long bits, double bias);
+
+//Whether the encoder was set up with bitrate management, the only kind that can be retargeted
+int bitrate_control_managed(vorbis_dsp_state *vd);
+
+//The current limits and average in bits per second, 0 where there is none
+void bitrate_control_current(vorbis_dsp_state *vd, long *min, long *nominal, long *max);
+
+//Retargets to the given limits and average, -1 or 0 for none, returns 0 or OV_EINVAL if unmanaged or inconsistent
+int bitrate_control_set(vorbis_dsp_state *vd, long min, long nominal, long max);
+
+//Moves the average and both limits by the same factor so the average, or the limits if there is none, ends up around bitrate
+int bitrate_control_scale(vorbis_dsp_state *vd, long bitrate);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
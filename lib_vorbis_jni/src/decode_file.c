@@ -0,0 +1,262 @@
+/* Decodes an Ogg Vorbis file straight to a raw pcm or WAV file. The
+ * converted pcm is gathered in a large buffer and written unbuffered to
+ * the output so each write is a single big chunk, a WAV header is
+ * reserved up front and patched with the final sizes once done. */
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <vorbis/codec.h>
+#include <vorbis/vorbisfile.h>
+#include "pcm_convert.h"
+#include "decode_file.h"
+
+#define OUTPUT_BUFFER_LENGTH (1024*1024)
+#define READ_FRAMES 4096
+
+#define WAVE_FORMAT_PCM 1
+#define WAVE_FORMAT_IEEE_FLOAT 3
+#define WAVE_FORMAT_EXTENSIBLE 0xFFFE
+
+#define WAV_HEADER_MAX 80
+
+static void put16(unsigned char *p, unsigned int v) {
+	p[0] = v & 0xff;
+	p[1] = (v >> 8) & 0xff;
+}
+
+static void put32(unsigned char *p, ogg_uint32_t v) {
+	p[0] = v & 0xff;
+	p[1] = (v >> 8) & 0xff;
+	p[2] = (v >> 16) & 0xff;
+	p[3] = (v >> 24) & 0xff;
+}
+
+/* sizes past what a RIFF chunk can describe are saturated, most readers
+   then simply read to the end of the file */
+static ogg_uint32_t riff_size(ogg_int64_t size) {
+	return size > 0xffffffffLL ? 0xffffffffU : (ogg_uint32_t) size;
+}
+
+/* bytes a single channel sample takes in the output file, 24 bit samples
+   are packed into three bytes in WAV files */
+static int output_bytes_per_sample(int container, int format) {
+	if (container == DECODE_FILE_WAV && format == PCM_FORMAT_S24_IN_32) {
+		return 3;
+	}
+	return pcm_convert_bytes_per_sample(format);
+}
+
+/* builds the WAV header for the given stream, returns its length. Plain
+   PCM or float headers for mono and stereo, WAVE_FORMAT_EXTENSIBLE with
+   an unspecified channel mask for anything wider */
+static int wav_header(unsigned char *h, int channels, long rate, int format, ogg_int64_t frames, ogg_int64_t data_bytes) {
+	int is_float = format == PCM_FORMAT_F32;
+	int extensible = channels > 2;
+	int bytes = output_bytes_per_sample(DECODE_FILE_WAV, format);
+	int valid_bits = format == PCM_FORMAT_S16 ? 16 : format == PCM_FORMAT_S24_IN_32 ? 24 : 32;
+	int fmt_length = extensible ? 40 : is_float ? 18 : 16;
+	int length = 12 + 8 + fmt_length + (is_float ? 12 : 0) + 8;
+	unsigned char *p = h;
+
+	memcpy(p, "RIFF", 4);
+	put32(p + 4, riff_size(length - 8 + data_bytes));
+	memcpy(p + 8, "WAVE", 4);
+	p += 12;
+
+	memcpy(p, "fmt ", 4);
+	put32(p + 4, fmt_length);
+	put16(p + 8, extensible ? WAVE_FORMAT_EXTENSIBLE : is_float ? WAVE_FORMAT_IEEE_FLOAT : WAVE_FORMAT_PCM);
+	put16(p + 10, channels);
+	put32(p + 12, rate);
+	put32(p + 16, rate * channels * bytes);
+	put16(p + 20, channels * bytes);
+	put16(p + 22, bytes * 8);
+	if (fmt_length > 16) {
+		put16(p + 24, fmt_length - 18);
+	}
+	if (extensible) {
+		/* valid bits, channel mask, then the sub format guid */
+		static const unsigned char guid_tail[14] = { 0x00, 0x00, 0x00, 0x00, 0x10, 0x00, 0x80, 0x00, 0x00, 0xaa, 0x00, 0x38, 0x9b, 0x71 };
+		put16(p + 26, valid_bits);
+		put32(p + 28, 0);
+		put16(p + 32, is_float ? WAVE_FORMAT_IEEE_FLOAT : WAVE_FORMAT_PCM);
+		memcpy(p + 34, guid_tail, sizeof(guid_tail));
+	}
+	p += 8 + fmt_length;
+
+	if (is_float) {
+		memcpy(p, "fact", 4);
+		put32(p + 4, 4);
+		put32(p + 8, riff_size(frames));
+		p += 12;
+	}
+
+	memcpy(p, "data", 4);
+	put32(p + 4, riff_size(data_bytes));
+	return length;
+}
+
+/* squeezes sign extended 24 in 32 bit samples down to packed 24 bit,
+   in place since the output never overtakes the input */
+static void pack_s24(unsigned char *buffer, long samples) {
+	const ogg_int32_t *in = (const ogg_int32_t *) buffer;
+	unsigned char *out = buffer;
+	long i;
+	for (i = 0; i < samples; i++) {
+		ogg_int32_t v = in[i];
+		out[0] = v & 0xff;
+		out[1] = (v >> 8) & 0xff;
+		out[2] = (v >> 16) & 0xff;
+		out += 3;
+	}
+}
+
+static int flush_output(FILE *out, unsigned char *buffer, long *used, decode_file_result *result) {
+	if (*used > 0 && fwrite(buffer, 1, *used, out) != (size_t) *used) {
+		return 0;
+	}
+	result->bytes_written += *used;
+	*used = 0;
+	return 1;
+}
+
+int decode_to_file(const char *in_path, const char *out_path, int container, int format, int dither, float gain,
+		loudness_result *loudness, decode_file_progress progress, void *context, decode_file_result *result) {
+	OggVorbis_File vf;
+	vorbis_info *vi;
+	pcm_convert_state convert;
+	loudness_meter *meter = NULL;
+	unsigned char header[WAV_HEADER_MAX];
+	unsigned char *buffer;
+	FILE *out;
+	int channels, header_length = 0, current_section, ret = DECODE_FILE_SUCCESS, layout_changed = 0;
+	long rate, used = 0, frames_per_read, out_bytes;
+	ogg_int64_t total, progress_step, next_progress;
+
+	memset(result, 0, sizeof(*result));
+
+	if (ov_fopen(in_path, &vf) < 0) {
+		return DECODE_FILE_NOT_VORBIS;
+	}
+	vi = ov_info(&vf, -1);
+	channels = vi->channels;
+	rate = vi->rate;
+	total = ov_seekable(&vf) ? ov_pcm_total(&vf, -1) : -1;
+
+	out = fopen(out_path, "wb");
+	buffer = malloc(OUTPUT_BUFFER_LENGTH);
+	if (out == NULL || buffer == NULL) {
+		ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+		goto cleanup;
+	}
+	if (loudness != NULL && (meter = loudness_meter_new(channels, rate)) == NULL) {
+		ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+		goto cleanup;
+	}
+	/* we only ever hand over large chunks, no point copying them twice */
+	setvbuf(out, NULL, _IONBF, 0);
+
+	pcm_convert_init(&convert, format, dither);
+	pcm_convert_set_gain(&convert, gain);
+	out_bytes = output_bytes_per_sample(container, format) * channels;
+	frames_per_read = OUTPUT_BUFFER_LENGTH / (channels * 4);
+	if (frames_per_read > READ_FRAMES) {
+		frames_per_read = READ_FRAMES;
+	}
+
+	/* reserve the header, the sizes are patched in at the end */
+	if (container == DECODE_FILE_WAV) {
+		header_length = wav_header(header, channels, rate, format, 0, 0);
+		memcpy(buffer, header, header_length);
+		used = header_length;
+	}
+
+	/* report roughly every percent, or every ten seconds of audio when
+	   the length is unknown */
+	progress_step = total > 0 ? total / 100 : rate * 10;
+	if (progress_step < rate) {
+		progress_step = rate;
+	}
+	next_progress = progress_step;
+
+	for (;;) {
+		float **pcm;
+		long frames;
+
+		/* make sure a whole read always fits */
+		if (OUTPUT_BUFFER_LENGTH - used < frames_per_read * channels * 4 && !flush_output(out, buffer, &used, result)) {
+			ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+			break;
+		}
+
+		frames = ov_read_float(&vf, &pcm, frames_per_read, &current_section);
+		if (frames == 0) {
+			break;
+		}
+		if (frames < 0) {
+			/* a hole in the data, keep going like the player does */
+			continue;
+		}
+		if (ov_info(&vf, current_section)->channels != channels) {
+			/* chained stream with a different layout, a single raw or WAV
+			   file cannot describe it so stop here and say so */
+			layout_changed = 1;
+			break;
+		}
+
+		if (meter != NULL && !loudness_meter_add(meter, pcm, frames)) {
+			ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+			break;
+		}
+		pcm_convert(&convert, pcm, channels, frames, buffer + used);
+		if (container == DECODE_FILE_WAV && format == PCM_FORMAT_S24_IN_32) {
+			pack_s24(buffer + used, frames * channels);
+		}
+		used += frames * out_bytes;
+		result->decoded_samples += frames;
+
+		if (progress != NULL && result->decoded_samples >= next_progress) {
+			if (!progress(context, result->decoded_samples, total)) {
+				ret = DECODE_FILE_STOPPED;
+				break;
+			}
+			next_progress += progress_step;
+		}
+	}
+
+	if (ret == DECODE_FILE_SUCCESS && !flush_output(out, buffer, &used, result)) {
+		ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+	}
+
+	/* now that the sizes are known, patch the header */
+	if (ret == DECODE_FILE_SUCCESS && container == DECODE_FILE_WAV) {
+		wav_header(header, channels, rate, format, result->decoded_samples, result->bytes_written - header_length);
+		if (fseek(out, 0, SEEK_SET) != 0 || fwrite(header, 1, header_length, out) != (size_t) header_length) {
+			ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+		}
+	}
+
+	if (progress != NULL && ret == DECODE_FILE_SUCCESS && !progress(context, result->decoded_samples, total)) {
+		ret = DECODE_FILE_STOPPED;
+	}
+	if (ret == DECODE_FILE_SUCCESS && layout_changed) {
+		ret = DECODE_FILE_CHAIN_LAYOUT_CHANGED;
+	}
+	result->clipped_samples = convert.clipped;
+	if (meter != NULL) {
+		loudness_meter_result(meter, loudness);
+	}
+
+cleanup:
+	if (out != NULL && fclose(out) != 0 && ret == DECODE_FILE_SUCCESS) {
+		ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+	}
+	if (ret == DECODE_FILE_STOPPED) {
+		remove(out_path);
+	}
+	free(buffer);
+	loudness_meter_free(meter);
+	ov_clear(&vf);
+	return ret;
+}
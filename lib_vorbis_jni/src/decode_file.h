@@ -0,0 +1,46 @@
+/* Decodes an Ogg Vorbis file straight to a raw pcm or WAV file without
+ * leaving native code, only reporting coarse progress through a callback.
+ */
+#ifndef _DECODE_FILE_H
+#define _DECODE_FILE_H
+
+#include <ogg/os_types.h>
+#include "loudness_meter.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* containers, must match the ordinals of org.xiph.vorbis.decoder.OutputFormat.Container */
+#define DECODE_FILE_RAW 0
+#define DECODE_FILE_WAV 1
+
+/* result codes, shared with org.xiph.vorbis.decoder.DecodeFeed */
+#define DECODE_FILE_SUCCESS 0
+#define DECODE_FILE_NOT_VORBIS -24
+#define DECODE_FILE_ERROR_WRITING_OUTPUT -27
+/* the progress callback asked to stop, the partial output is removed. Never
+   reaches java, which gets the exception of the listener instead */
+#define DECODE_FILE_STOPPED -30
+/* a chained link changed the channel count, the output holds the audio up to
+   it and is complete otherwise */
+#define DECODE_FILE_CHAIN_LAYOUT_CHANGED -31
+
+//Called every percent or so of decoded audio, total_samples is -1 for unseekable input. Returns 0 to stop the decode
+typedef int (*decode_file_progress)(void *context, ogg_int64_t decoded_samples, ogg_int64_t total_samples);
+
+typedef struct {
+	ogg_int64_t decoded_samples;   /* sample frames written to the output */
+	ogg_int64_t clipped_samples;   /* channel samples outside full scale */
+	ogg_int64_t bytes_written;     /* including the WAV header */
+} decode_file_result;
+
+//Decodes in_path to out_path in the given container and PCM_FORMAT_* scaled by gain, returns one of the result codes.
+//The source is metered on the way through when loudness is not NULL
+int decode_to_file(const char *in_path, const char *out_path, int container, int format, int dither, float gain,
+		loudness_result *loudness, decode_file_progress progress, void *context, decode_file_result *result);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
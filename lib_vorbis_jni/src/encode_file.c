@@ -0,0 +1,334 @@
+/* Encodes a WAV or raw 16 bit pcm file straight to an Ogg Vorbis file.
+ * Input is pulled through a large stdio buffer in big reads and pages go
+ * out through an equally large one, so nothing but the encoder itself
+ * runs per block. All state lives on the stack or in per call
+ * allocations, so separate calls can run on separate threads. */
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <vorbis/vorbisenc.h>
+#include "encode_file.h"
+
+#define IO_BUFFER_LENGTH (1024*1024)
+#define READ_FRAMES 8192
+
+#define WAVE_FORMAT_PCM 1
+#define WAVE_FORMAT_IEEE_FLOAT 3
+#define WAVE_FORMAT_EXTENSIBLE 0xFFFE
+
+/* the sample layouts we can read */
+#define INPUT_U8 0
+#define INPUT_S16 1
+#define INPUT_S24 2
+#define INPUT_S32 3
+#define INPUT_F32 4
+
+typedef struct {
+	FILE *file;
+	int format;
+	int channels;
+	long rate;
+	int frame_bytes;
+	ogg_int64_t remaining;   /* bytes of sample data left, -1 to read to the end */
+} pcm_input;
+
+static unsigned int get16(const unsigned char *p) {
+	return p[0] | (p[1] << 8);
+}
+
+static ogg_uint32_t get32(const unsigned char *p) {
+	return p[0] | (p[1] << 8) | (p[2] << 16) | ((ogg_uint32_t) p[3] << 24);
+}
+
+/* reads the fmt chunk into the input description */
+static int parse_wav_format(pcm_input *input, const unsigned char *fmt, ogg_uint32_t length) {
+	unsigned int tag, bits;
+
+	if (length < 16) {
+		return ENCODE_FILE_UNSUPPORTED_INPUT;
+	}
+	tag = get16(fmt);
+	input->channels = get16(fmt + 2);
+	input->rate = get32(fmt + 4);
+	bits = get16(fmt + 14);
+	if (tag == WAVE_FORMAT_EXTENSIBLE && length >= 40) {
+		/* the first two bytes of the sub format guid are the real tag */
+		tag = get16(fmt + 24);
+	}
+
+	if (tag == WAVE_FORMAT_PCM) {
+		switch (bits) {
+			case 8: input->format = INPUT_U8; break;
+			case 16: input->format = INPUT_S16; break;
+			case 24: input->format = INPUT_S24; break;
+			case 32: input->format = INPUT_S32; break;
+			default: return ENCODE_FILE_UNSUPPORTED_INPUT;
+		}
+	} else if (tag == WAVE_FORMAT_IEEE_FLOAT && bits == 32) {
+		input->format = INPUT_F32;
+	} else {
+		return ENCODE_FILE_UNSUPPORTED_INPUT;
+	}
+	if (input->channels < 1 || input->channels > 255 || input->rate < 1) {
+		return ENCODE_FILE_UNSUPPORTED_INPUT;
+	}
+	input->frame_bytes = input->channels * (bits / 8);
+	return ENCODE_FILE_SUCCESS;
+}
+
+/* walks the RIFF chunks up to the start of the sample data */
+static int open_wav(pcm_input *input) {
+	unsigned char chunk[8], fmt[40];
+	int have_format = 0;
+
+	while (fread(chunk, 1, 8, input->file) == 8) {
+		ogg_uint32_t length = get32(chunk + 4);
+		ogg_uint32_t padded = length + (length & 1);
+
+		if (memcmp(chunk, "fmt ", 4) == 0) {
+			ogg_uint32_t keep = length < sizeof(fmt) ? length : sizeof(fmt);
+			int ret;
+			if (fread(fmt, 1, keep, input->file) != keep || fseek(input->file, padded - keep, SEEK_CUR) != 0) {
+				return ENCODE_FILE_ERROR_READING_INPUT;
+			}
+			if ((ret = parse_wav_format(input, fmt, length)) != ENCODE_FILE_SUCCESS) {
+				return ret;
+			}
+			have_format = 1;
+		} else if (memcmp(chunk, "data", 4) == 0) {
+			if (!have_format) {
+				return ENCODE_FILE_UNSUPPORTED_INPUT;
+			}
+			/* streamed wav files leave the size at 0 or all ones */
+			input->remaining = (length == 0 || length == 0xffffffffU) ? -1 : length;
+			return ENCODE_FILE_SUCCESS;
+		} else if (fseek(input->file, padded, SEEK_CUR) != 0) {
+			return ENCODE_FILE_ERROR_READING_INPUT;
+		}
+	}
+	return ENCODE_FILE_UNSUPPORTED_INPUT;
+}
+
+/* sniffs for a WAV header, anything else is taken as raw 16 bit pcm in
+   the layout the settings describe */
+static int open_input(pcm_input *input, const encode_settings *settings) {
+	unsigned char riff[12];
+	size_t got = fread(riff, 1, sizeof(riff), input->file);
+
+	if (got == sizeof(riff) && memcmp(riff, "RIFF", 4) == 0) {
+		if (memcmp(riff + 8, "WAVE", 4) != 0) {
+			return ENCODE_FILE_UNSUPPORTED_INPUT;
+		}
+		return open_wav(input);
+	}
+
+	if (fseek(input->file, 0, SEEK_SET) != 0) {
+		return ENCODE_FILE_ERROR_READING_INPUT;
+	}
+	if (settings->channels < 1 || settings->channels > 255 || settings->sample_rate < 1) {
+		return ENCODE_FILE_UNSUPPORTED_INPUT;
+	}
+	input->format = INPUT_S16;
+	input->channels = settings->channels;
+	input->rate = settings->sample_rate;
+	input->frame_bytes = settings->channels * 2;
+	input->remaining = -1;
+	return ENCODE_FILE_SUCCESS;
+}
+
+/* reads up to frames whole frames, returns how many were read */
+static long read_frames(pcm_input *input, unsigned char *buffer, long frames) {
+	size_t want = (size_t) frames * input->frame_bytes;
+	size_t got;
+
+	if (input->remaining >= 0 && (ogg_int64_t) want > input->remaining) {
+		want = (size_t) input->remaining;
+	}
+	got = fread(buffer, 1, want, input->file);
+	if (input->remaining >= 0) {
+		input->remaining -= got;
+	}
+	/* a trailing partial frame is dropped */
+	return (long) (got / input->frame_bytes);
+}
+
+/* uninterleaves little endian samples into the encoder's float planes */
+static void deinterleave(const pcm_input *input, const unsigned char *in, float **out, long frames) {
+	int channels = input->channels;
+	long i;
+	int c;
+
+	for (i = 0; i < frames; i++) {
+		for (c = 0; c < channels; c++) {
+			switch (input->format) {
+				case INPUT_U8:
+					out[c][i] = ((int) in[0] - 128) / 128.f;
+					in += 1;
+					break;
+				case INPUT_S16:
+					out[c][i] = (ogg_int16_t) get16(in) / 32768.f;
+					in += 2;
+					break;
+				case INPUT_S24:
+					out[c][i] = (((ogg_int32_t) (get16(in) << 8 | (ogg_uint32_t) in[2] << 24)) >> 8) / 8388608.f;
+					in += 3;
+					break;
+				case INPUT_S32:
+					out[c][i] = (ogg_int32_t) get32(in) / 2147483648.f;
+					in += 4;
+					break;
+				default: {
+					ogg_uint32_t bits = get32(in);
+					float value;
+					memcpy(&value, &bits, sizeof(value));
+					out[c][i] = value;
+					in += 4;
+					break;
+				}
+			}
+		}
+	}
+}
+
+static int write_page(FILE *out, ogg_page *og, encode_file_result *result) {
+	if (fwrite(og->header, 1, og->header_len, out) != (size_t) og->header_len
+			|| fwrite(og->body, 1, og->body_len, out) != (size_t) og->body_len) {
+		return 0;
+	}
+	result->bytes_written += og->header_len + og->body_len;
+	return 1;
+}
+
+static int encode(const char *in_path, const char *out_path, const encode_settings *settings, encode_file_result *result) {
+	pcm_input input;
+	FILE *out = NULL;
+	unsigned char *readbuffer = NULL;
+	int ret, eos = 0;
+
+	ogg_stream_state os;
+	ogg_page og;
+	ogg_packet op;
+	vorbis_info vi;
+	vorbis_comment vc;
+	vorbis_dsp_state vd;
+	vorbis_block vb;
+
+	memset(result, 0, sizeof(*result));
+	memset(&input, 0, sizeof(input));
+
+	input.file = fopen(in_path, "rb");
+	if (input.file == NULL) {
+		return ENCODE_FILE_ERROR_READING_INPUT;
+	}
+	setvbuf(input.file, NULL, _IOFBF, IO_BUFFER_LENGTH);
+	if ((ret = open_input(&input, settings)) != ENCODE_FILE_SUCCESS) {
+		fclose(input.file);
+		return ret;
+	}
+	result->sample_rate = input.rate;
+	result->channels = input.channels;
+
+	vorbis_info_init(&vi);
+	if (encode_settings_setup(&vi, input.channels, input.rate, settings)) {
+		fclose(input.file);
+		return ENCODE_FILE_ERROR_INITIALIZING;
+	}
+
+	out = fopen(out_path, "wb");
+	readbuffer = malloc((size_t) READ_FRAMES * input.frame_bytes);
+	if (out == NULL || readbuffer == NULL) {
+		if (out != NULL) {
+			fclose(out);
+		}
+		free(readbuffer);
+		fclose(input.file);
+		vorbis_info_clear(&vi);
+		return out == NULL ? ENCODE_FILE_ERROR_WRITING_OUTPUT : ENCODE_FILE_ERROR_INITIALIZING;
+	}
+	setvbuf(out, NULL, _IOFBF, IO_BUFFER_LENGTH);
+
+	encode_settings_comments(&vc, settings);
+	vorbis_analysis_init(&vd, &vi);
+	vorbis_block_init(&vd, &vb);
+	ogg_stream_init(&os, encode_settings_serial());
+
+	{
+		ogg_packet header;
+		ogg_packet header_comm;
+		ogg_packet header_code;
+
+		vorbis_analysis_headerout(&vd, &vc, &header, &header_comm, &header_code);
+		ogg_stream_packetin(&os, &header);
+		ogg_stream_packetin(&os, &header_comm);
+		ogg_stream_packetin(&os, &header_code);
+
+		/* the audio has to start on a fresh page */
+		while (ogg_stream_flush(&os, &og)) {
+			if (!write_page(out, &og, result)) {
+				ret = ENCODE_FILE_ERROR_WRITING_OUTPUT;
+				eos = 1;
+				break;
+			}
+		}
+	}
+
+	while (!eos) {
+		long frames = read_frames(&input, readbuffer, READ_FRAMES);
+
+		if (frames == 0) {
+			if (ferror(input.file)) {
+				ret = ENCODE_FILE_ERROR_READING_INPUT;
+				break;
+			}
+			vorbis_analysis_wrote(&vd, 0);
+		} else {
+			float **buffer = vorbis_analysis_buffer(&vd, frames);
+			deinterleave(&input, readbuffer, buffer, frames);
+			vorbis_analysis_wrote(&vd, frames);
+			result->samples += frames;
+		}
+
+		while (!eos && vorbis_analysis_blockout(&vd, &vb) == 1) {
+			vorbis_analysis(&vb, NULL);
+			vorbis_bitrate_addblock(&vb);
+
+			while (!eos && vorbis_bitrate_flushpacket(&vd, &op)) {
+				ogg_stream_packetin(&os, &op);
+
+				while (!eos && ogg_stream_pageout(&os, &og)) {
+					if (!write_page(out, &og, result)) {
+						ret = ENCODE_FILE_ERROR_WRITING_OUTPUT;
+						eos = 1;
+					} else if (ogg_page_eos(&og)) {
+						eos = 1;
+					}
+				}
+			}
+		}
+	}
+
+	if (fclose(out) != 0 && ret == ENCODE_FILE_SUCCESS) {
+		ret = ENCODE_FILE_ERROR_WRITING_OUTPUT;
+	}
+	fclose(input.file);
+	free(readbuffer);
+
+	ogg_stream_clear(&os);
+	vorbis_block_clear(&vb);
+	vorbis_dsp_clear(&vd);
+	vorbis_comment_clear(&vc);
+	vorbis_info_clear(&vi);
+	return ret;
+}
+
+int encode_file(const char *in_path, const char *out_path, const encode_settings *settings, encode_file_result *result) {
+	ogg_arena *arena = ogg_arena_acquire();
+	ogg_arena *previous = ogg_arena_use(arena);
+	int ret = encode(in_path, out_path, settings, result);
+
+	ogg_arena_use(previous);
+	result->peak_bytes = ogg_arena_peak(arena);
+	ogg_arena_release(arena);
+	return ret;
+}
@@ -0,0 +1,35 @@
+/* Encodes a WAV or raw 16 bit pcm file straight to an Ogg Vorbis file
+ * without leaving native code.
+ */
+#ifndef _ENCODE_FILE_H
+#define _ENCODE_FILE_H
+
+#include <ogg/os_types.h>
+#include "encode_settings.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* result codes, shared with org.xiph.vorbis.encoder.EncodeFeed */
+#define ENCODE_FILE_SUCCESS 0
+#define ENCODE_FILE_ERROR_INITIALIZING -44
+#define ENCODE_FILE_ERROR_READING_INPUT -45
+#define ENCODE_FILE_UNSUPPORTED_INPUT -46
+#define ENCODE_FILE_ERROR_WRITING_OUTPUT -47
+
+typedef struct {
+	long sample_rate;
+	int channels;
+	ogg_int64_t samples;         /* sample frames encoded */
+	ogg_int64_t bytes_written;   /* size of the ogg file */
+	long peak_bytes;             /* most bytes the encoder state took up at once */
+} encode_file_result;
+
+//Encodes in_path to out_path, returns one of the result codes. Each call is self contained so calls may run in parallel
+int encode_file(const char *in_path, const char *out_path, const encode_settings *settings, encode_file_result *result);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
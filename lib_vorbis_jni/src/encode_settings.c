@@ -0,0 +1,63 @@
+/* Encoder settings shared by the feed driven and the file encoders */
+
+#include <time.h>
+#include "encode_settings.h"
+#include "bitrate_control.h"
+
+int encode_settings_setup(vorbis_info *vi, long channels, long rate, const encode_settings *settings) {
+	int speed = settings->speed;
+	int ret;
+
+	if (encode_settings_managed(settings)) {
+		ret = vorbis_encode_setup_managed(vi, channels, rate, settings->max_bitrate, settings->bitrate, settings->min_bitrate);
+	} else {
+		ret = vorbis_encode_setup_vbr(vi, channels, rate, settings->quality);
+	}
+
+	/* the reservoir is tuned on top of the defaults the managed setup picked */
+	if (!ret && encode_settings_managed(settings)) {
+		bitrate_control_reservoir(vi, settings->reservoir_bits, settings->reservoir_bias);
+	}
+
+	/* the speed has to be picked before the setup is set in stone */
+	if (!ret) {
+		ret = vorbis_encode_ctl(vi, OV_ECTL_SPEED_SET, &speed);
+	}
+	if (!ret) {
+		ret = vorbis_encode_setup_init(vi);
+	}
+	if (ret) {
+		vorbis_info_clear(vi);
+	}
+	return ret;
+}
+
+void encode_settings_comments(vorbis_comment *vc, const encode_settings *settings) {
+	int i;
+
+	vorbis_comment_init(vc);
+	if (settings->comments == NULL) {
+		vorbis_comment_add_tag(vc, "ENCODER", "JNIVorbisEncoder");
+		return;
+	}
+	for (i = 0; i < settings->comment_count; i++) {
+		vorbis_comment_add(vc, settings->comments[i]);
+	}
+}
+
+/* rand() shares one hidden state between all threads and srand(time)
+   hands out the same serial to every stream started in the same
+   second, so mix the time with the clock and a stack address (distinct
+   per thread) through a murmur style finalizer instead */
+int encode_settings_serial(void) {
+	int local;
+	ogg_uint32_t h = (ogg_uint32_t) time(NULL);
+	h ^= (ogg_uint32_t) clock() * 0x9e3779b9U;
+	h ^= (ogg_uint32_t) (size_t) &local;
+	h ^= h >> 16;
+	h *= 0x85ebca6bU;
+	h ^= h >> 13;
+	h *= 0xc2b2ae35U;
+	h ^= h >> 16;
+	return (int) (h & 0x7fffffff);
+}
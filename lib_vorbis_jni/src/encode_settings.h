@@ -0,0 +1,44 @@
+/* Encoder settings shared by the feed driven and the file encoders, and
+ * the vorbis_info setup that goes with them.
+ */
+#ifndef _ENCODE_SETTINGS_H
+#define _ENCODE_SETTINGS_H
+
+#include <ogg/os_types.h>
+#include <vorbis/vorbisenc.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+typedef struct {
+	long sample_rate;   /* of raw pcm input, wav input carries its own */
+	int channels;       /* of raw pcm input, wav input carries its own */
+	float quality;      /* vbr quality, used when bitrate is not positive */
+	long bitrate;       /* average bitrate of managed encoding, -1 for none */
+	int speed;          /* OV_ENCODE_SPEED_* */
+	char **comments;    /* utf-8 KEY=value entries, NULL for just the default encoder tag */
+	int comment_count;
+	long max_latency_millis; /* feed driven encoding flushes a page once it holds this much audio, 0 for full pages only */
+	long min_bitrate;   /* lower limit of managed encoding, -1 for none */
+	long max_bitrate;   /* upper limit of managed encoding, -1 for none, quality mode when neither limit nor bitrate is set */
+	long reservoir_bits; /* how far managed encoding may stray from its limits and average, -1 for the libvorbis default */
+	double reservoir_bias; /* 0 to 1, how much the reservoir favours hoarding bits, -1 for the libvorbis default */
+} encode_settings;
+
+//Whether the settings ask for bitrate management rather than quality mode
+#define encode_settings_managed(settings) ((settings)->bitrate > 0 || (settings)->min_bitrate > 0 || (settings)->max_bitrate > 0)
+
+//Sets up vi for the given stream layout and settings, returns 0 or the libvorbis error, vi is cleared on failure
+int encode_settings_setup(vorbis_info *vi, long channels, long rate, const encode_settings *settings);
+
+//Initialises vc with the comments of the settings
+void encode_settings_comments(vorbis_comment *vc, const encode_settings *settings);
+
+//Picks a serial number for a new logical stream, safe to call from several threads at once
+int encode_settings_serial(void);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,14 @@
+/* Marks the entry points bound from Java through java.lang.foreign rather
+ * than JNI. A mingw dll whose JNI functions are exported with dllexport
+ * exports nothing else unless asked to.
+ */
+#ifndef _FOREIGN_API_H
+#define _FOREIGN_API_H
+
+#if defined(_WIN32)
+#define FOREIGN_API __declspec(dllexport)
+#else
+#define FOREIGN_API __attribute__((visibility("default")))
+#endif
+
+#endif
@@ -0,0 +1,377 @@
+/* Integrated loudness after ITU-R BS.1770-4: every channel goes through
+ * the two stage K-weighting filter, weighted mean squares are kept per
+ * 100 ms hop and combined into overlapping 400 ms blocks, which are gated
+ * at -70 LUFS and then 10 LU below the ungated mean once decoding ends.
+ *
+ * True peak is found by polyphase oversampling. The interpolation is
+ * skipped for any stretch whose samples could not possibly interpolate
+ * above the peak already found, which is most of a typical track. */
+
+#include <stdlib.h>
+#include <string.h>
+#include <math.h>
+#include "loudness_meter.h"
+
+#define TRUE_PEAK_TAPS 12
+#define TRUE_PEAK_MAX_FACTOR 4
+#define TRUE_PEAK_CHUNK 64
+#define HISTORY (TRUE_PEAK_TAPS - 1)
+
+#define ABSOLUTE_GATE -70.0
+#define RELATIVE_GATE -10.0
+
+#ifndef M_PI
+#define M_PI 3.14159265358979323846
+#endif
+
+typedef struct {
+	double b0, b1, b2, a1, a2;
+} biquad;
+
+typedef struct {
+	double z1, z2;
+} biquad_state;
+
+struct loudness_meter {
+	int channels;
+	long rate;
+	double *weight;             /* per channel */
+	biquad shelf;
+	biquad highpass;
+	biquad_state *state;        /* shelf and high pass per channel */
+
+	long hop;                   /* samples in 100 ms */
+	long hop_count;
+	double hop_energy;
+	double sub[4];              /* energies of the last four hops */
+	long subs;
+	double *blocks;             /* mean square of every 400 ms block */
+	long block_count;
+	long block_capacity;
+
+	int factor;
+	float fir[TRUE_PEAK_MAX_FACTOR][TRUE_PEAK_TAPS];
+	float fir_bound;            /* largest possible gain of any phase */
+	float *history;             /* last HISTORY input samples per channel */
+	float true_peak;
+	float sample_peak;
+};
+
+/* BS.1770 channel weights in vorbis channel order: surrounds count 1.41,
+   the LFE channel of 5.1 and wider layouts is left out */
+static double channel_weight(int channels, int c) {
+	if (channels >= 6 && c == channels - 1) {
+		return 0.;
+	}
+	if ((channels == 4 && c >= 2) || (channels >= 5 && c >= 3)) {
+		return 1.41;
+	}
+	return 1.;
+}
+
+/* the K-weighting filters for any sample rate, the analogue prototypes
+   are the ones libebur128 derived from the 48 kHz coefficients of the
+   recommendation */
+static void k_weighting(long rate, biquad *shelf, biquad *highpass) {
+	double f0 = 1681.974450955533;
+	double gain = 3.999843853973347;
+	double q = 0.7071752369554196;
+	double k = tan(M_PI * f0 / rate);
+	double vh = pow(10., gain / 20.);
+	double vb = pow(vh, 0.4996667741545416);
+	double a0 = 1. + k / q + k * k;
+
+	shelf->b0 = (vh + vb * k / q + k * k) / a0;
+	shelf->b1 = 2. * (k * k - vh) / a0;
+	shelf->b2 = (vh - vb * k / q + k * k) / a0;
+	shelf->a1 = 2. * (k * k - 1.) / a0;
+	shelf->a2 = (1. - k / q + k * k) / a0;
+
+	f0 = 38.13547087602444;
+	q = 0.5003270373238773;
+	k = tan(M_PI * f0 / rate);
+	a0 = 1. + k / q + k * k;
+
+	highpass->b0 = 1.;
+	highpass->b1 = -2.;
+	highpass->b2 = 1.;
+	highpass->a1 = 2. * (k * k - 1.) / a0;
+	highpass->a2 = (1. - k / q + k * k) / a0;
+}
+
+/* a Blackman windowed sinc split into factor phases, each normalised to
+   unity gain at DC */
+static void design_interpolator(loudness_meter *meter) {
+	int length = meter->factor * TRUE_PEAK_TAPS;
+	int n, p, k;
+
+	for (n = 0; n < length; n++) {
+		double t = (n - (length - 1) / 2.) / meter->factor;
+		double sinc = t == 0. ? 1. : sin(M_PI * t) / (M_PI * t);
+		double window = 0.42 - 0.5 * cos(2. * M_PI * n / (length - 1)) + 0.08 * cos(4. * M_PI * n / (length - 1));
+		meter->fir[n % meter->factor][n / meter->factor] = (float) (sinc * window);
+	}
+
+	meter->fir_bound = 0.f;
+	for (p = 0; p < meter->factor; p++) {
+		float sum = 0.f, bound = 0.f;
+		for (k = 0; k < TRUE_PEAK_TAPS; k++) {
+			sum += meter->fir[p][k];
+		}
+		for (k = 0; k < TRUE_PEAK_TAPS; k++) {
+			meter->fir[p][k] /= sum;
+			bound += fabsf(meter->fir[p][k]);
+		}
+		if (bound > meter->fir_bound) {
+			meter->fir_bound = bound;
+		}
+	}
+}
+
+loudness_meter *loudness_meter_new(int channels, long rate) {
+	loudness_meter *meter;
+	int c;
+
+	if (channels < 1 || rate < 1) {
+		return NULL;
+	}
+	meter = calloc(1, sizeof(*meter));
+	if (meter == NULL) {
+		return NULL;
+	}
+	meter->channels = channels;
+	meter->rate = rate;
+	meter->weight = malloc(channels * sizeof(*meter->weight));
+	meter->state = calloc(channels * 2, sizeof(*meter->state));
+	meter->history = calloc(channels * HISTORY, sizeof(*meter->history));
+	if (meter->weight == NULL || meter->state == NULL || meter->history == NULL) {
+		loudness_meter_free(meter);
+		return NULL;
+	}
+	for (c = 0; c < channels; c++) {
+		meter->weight[c] = channel_weight(channels, c);
+	}
+	k_weighting(rate, &meter->shelf, &meter->highpass);
+	meter->hop = (rate + 5) / 10;
+
+	meter->factor = rate < 96000 ? 4 : rate < 192000 ? 2 : 1;
+	if (meter->factor > 1) {
+		design_interpolator(meter);
+	}
+	return meter;
+}
+
+static int add_block(loudness_meter *meter, double mean_square) {
+	if (meter->block_count == meter->block_capacity) {
+		long capacity = meter->block_capacity ? meter->block_capacity * 2 : 1024;
+		double *blocks = realloc(meter->blocks, capacity * sizeof(*blocks));
+		if (blocks == NULL) {
+			return 0;
+		}
+		meter->blocks = blocks;
+		meter->block_capacity = capacity;
+	}
+	meter->blocks[meter->block_count++] = mean_square;
+	return 1;
+}
+
+/* one K-weighting step, shelf then high pass, for a single sample */
+#define K_WEIGHT(x, z, s, h) do { \
+		double y_ = shelf->b0 * (x) + s[0]; \
+		s[0] = shelf->b1 * (x) - shelf->a1 * y_ + s[1]; \
+		s[1] = shelf->b2 * (x) - shelf->a2 * y_; \
+		z = highpass->b0 * y_ + h[0]; \
+		h[0] = highpass->b1 * y_ - highpass->a1 * z + h[1]; \
+		h[1] = highpass->b2 * y_ - highpass->a2 * z; \
+	} while (0)
+
+/* runs a channel through the K-weighting filter, returns the sum of
+   squares of the filtered samples */
+static double filter_channel(const biquad *shelf, const biquad *highpass, biquad_state *state, const float *in, long samples) {
+	double s[2] = { state[0].z1, state[0].z2 };
+	double h[2] = { state[1].z1, state[1].z2 };
+	double sum = 0.;
+	long i;
+
+	for (i = 0; i < samples; i++) {
+		double z;
+		K_WEIGHT(in[i], z, s, h);
+		sum += z * z;
+	}
+
+	state[0].z1 = s[0];
+	state[0].z2 = s[1];
+	state[1].z1 = h[0];
+	state[1].z2 = h[1];
+	return sum;
+}
+
+/* the same for two channels at once, the filter is one long dependency
+   chain per channel so interleaving two of them nearly halves the time */
+static void filter_pair(const biquad *shelf, const biquad *highpass, biquad_state *state, const float *left, const float *right,
+		long samples, double *sum_left, double *sum_right) {
+	double ls[2] = { state[0].z1, state[0].z2 };
+	double lh[2] = { state[1].z1, state[1].z2 };
+	double rs[2] = { state[2].z1, state[2].z2 };
+	double rh[2] = { state[3].z1, state[3].z2 };
+	double lsum = 0., rsum = 0.;
+	long i;
+
+	for (i = 0; i < samples; i++) {
+		double lz, rz;
+		K_WEIGHT(left[i], lz, ls, lh);
+		K_WEIGHT(right[i], rz, rs, rh);
+		lsum += lz * lz;
+		rsum += rz * rz;
+	}
+
+	state[0].z1 = ls[0];
+	state[0].z2 = ls[1];
+	state[1].z1 = lh[0];
+	state[1].z2 = lh[1];
+	state[2].z1 = rs[0];
+	state[2].z2 = rs[1];
+	state[3].z1 = rh[0];
+	state[3].z2 = rh[1];
+	*sum_left = lsum;
+	*sum_right = rsum;
+}
+
+/* tracks the sample peak and, where it could matter, the oversampled peak
+   of one channel */
+static void peak_channel(loudness_meter *meter, int c, const float *in, long samples) {
+	float buffer[HISTORY + TRUE_PEAK_CHUNK];
+	float *history = meter->history + c * HISTORY;
+	long done;
+	int p, k;
+
+	for (done = 0; done < samples; done += TRUE_PEAK_CHUNK) {
+		long n = samples - done < TRUE_PEAK_CHUNK ? samples - done : TRUE_PEAK_CHUNK;
+		float history_max = 0.f, chunk_max = 0.f;
+		long i;
+
+		memcpy(buffer, history, HISTORY * sizeof(float));
+		memcpy(buffer + HISTORY, in + done, n * sizeof(float));
+		for (i = 0; i < HISTORY; i++) {
+			float v = fabsf(buffer[i]);
+			history_max = v > history_max ? v : history_max;
+		}
+		for (i = HISTORY; i < HISTORY + n; i++) {
+			float v = fabsf(buffer[i]);
+			chunk_max = v > chunk_max ? v : chunk_max;
+		}
+		if (chunk_max > meter->sample_peak) {
+			meter->sample_peak = chunk_max;
+		}
+		if (chunk_max > meter->true_peak) {
+			meter->true_peak = chunk_max;
+		}
+
+		if (meter->factor > 1 && (chunk_max > history_max ? chunk_max : history_max) * meter->fir_bound > meter->true_peak) {
+			float peak = meter->true_peak;
+			for (i = HISTORY; i < HISTORY + n; i++) {
+				const float *x = buffer + i;
+				for (p = 0; p < meter->factor; p++) {
+					const float *h = meter->fir[p];
+					float y = 0.f;
+					for (k = 0; k < TRUE_PEAK_TAPS; k++) {
+						y += x[-k] * h[k];
+					}
+					y = fabsf(y);
+					peak = y > peak ? y : peak;
+				}
+			}
+			meter->true_peak = peak;
+		}
+
+		memcpy(history, buffer + n, HISTORY * sizeof(float));
+	}
+}
+
+int loudness_meter_add(loudness_meter *meter, float **pcm, long samples) {
+	long done = 0;
+	int c;
+
+	for (c = 0; c < meter->channels; c++) {
+		peak_channel(meter, c, pcm[c], samples);
+	}
+
+	while (done < samples) {
+		long n = meter->hop - meter->hop_count;
+		if (n > samples - done) {
+			n = samples - done;
+		}
+		for (c = 0; c + 1 < meter->channels; c += 2) {
+			double left, right;
+			filter_pair(&meter->shelf, &meter->highpass, meter->state + c * 2, pcm[c] + done, pcm[c + 1] + done, n, &left, &right);
+			meter->hop_energy += meter->weight[c] * left + meter->weight[c + 1] * right;
+		}
+		if (c < meter->channels) {
+			double sum = filter_channel(&meter->shelf, &meter->highpass, meter->state + c * 2, pcm[c] + done, n);
+			meter->hop_energy += meter->weight[c] * sum;
+		}
+		meter->hop_count += n;
+		done += n;
+
+		if (meter->hop_count == meter->hop) {
+			/* every hop past the third completes a 400 ms block */
+			meter->sub[meter->subs % 4] = meter->hop_energy;
+			meter->subs++;
+			meter->hop_energy = 0.;
+			meter->hop_count = 0;
+			if (meter->subs >= 4) {
+				double energy = meter->sub[0] + meter->sub[1] + meter->sub[2] + meter->sub[3];
+				if (!add_block(meter, energy / (4. * meter->hop))) {
+					return 0;
+				}
+			}
+		}
+	}
+	return 1;
+}
+
+static double to_lufs(double mean_square) {
+	return -0.691 + 10. * log10(mean_square);
+}
+
+void loudness_meter_result(const loudness_meter *meter, loudness_result *result) {
+	double absolute = pow(10., (ABSOLUTE_GATE + 0.691) / 10.);
+	double relative, sum = 0.;
+	long i, count = 0;
+
+	for (i = 0; i < meter->block_count; i++) {
+		if (meter->blocks[i] > absolute) {
+			sum += meter->blocks[i];
+			count++;
+		}
+	}
+
+	result->integrated = -HUGE_VAL;
+	if (count > 0) {
+		relative = pow(10., (to_lufs(sum / count) + RELATIVE_GATE + 0.691) / 10.);
+		sum = 0.;
+		count = 0;
+		for (i = 0; i < meter->block_count; i++) {
+			if (meter->blocks[i] > absolute && meter->blocks[i] > relative) {
+				sum += meter->blocks[i];
+				count++;
+			}
+		}
+		if (count > 0) {
+			result->integrated = to_lufs(sum / count);
+		}
+	}
+	result->true_peak = meter->true_peak;
+	result->sample_peak = meter->sample_peak;
+}
+
+void loudness_meter_free(loudness_meter *meter) {
+	if (meter == NULL) {
+		return;
+	}
+	free(meter->weight);
+	free(meter->state);
+	free(meter->history);
+	free(meter->blocks);
+	free(meter);
+}
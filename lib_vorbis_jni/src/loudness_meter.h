@@ -0,0 +1,38 @@
+/* Measures integrated loudness (ITU-R BS.1770 / EBU R128), true peak and
+ * sample peak of planar float pcm as it is decoded.
+ */
+#ifndef _LOUDNESS_METER_H
+#define _LOUDNESS_METER_H
+
+#include <ogg/os_types.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* the ReplayGain 2.0 reference level in LUFS */
+#define LOUDNESS_REPLAY_GAIN_REFERENCE -18.0
+
+typedef struct loudness_meter loudness_meter;
+
+typedef struct {
+	double integrated;    /* gated loudness in LUFS, -HUGE_VAL if everything was gated away */
+	double true_peak;     /* linear, from 4x oversampling below 96 kHz */
+	double sample_peak;   /* linear */
+} loudness_result;
+
+//Creates a meter for the given layout in vorbis channel order, returns NULL if out of memory
+loudness_meter *loudness_meter_new(int channels, long rate);
+
+//Feeds samples frames of planar float pcm, returns 0 if out of memory
+int loudness_meter_add(loudness_meter *meter, float **pcm, long samples);
+
+//Computes the result over everything fed so far
+void loudness_meter_result(const loudness_meter *meter, loudness_result *result);
+
+void loudness_meter_free(loudness_meter *meter);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,266 @@
+/* Mixes decoding voices into planar float buses and converts the sum once
+ * per block. A voice decodes straight from vorbisfile's own float buffers
+ * into the bus, scaled by a per frame gain only while a fade is running
+ * and by a constant otherwise, so a steady voice costs one multiply add
+ * per sample on top of decoding it. */
+
+#include <math.h>
+#include <stdlib.h>
+#include <string.h>
+#include "pcm_convert.h"
+#include "pull_decoder.h"
+#include "mixer.h"
+
+#ifndef M_PI
+#define M_PI 3.14159265358979323846
+#endif
+
+struct mixer {
+	int channels;
+	int block_frames;
+	int bus_count;
+	float *samples;
+	float **buses;          /* bus_count runs of channels pointers into samples */
+	pcm_convert_state convert;
+};
+
+struct mixer_voice {
+	pull_decoder *decoder;
+	int channels;
+	ogg_int64_t start;
+	ogg_int64_t stop;
+	float gain;             /* the gain as of the last frame rendered */
+	int fading;
+	ogg_int64_t fade_at;
+	long fade_frames;
+	float fade_from;
+	float fade_to;
+	float mono_pan[2];      /* constant power, -3 dB per side in the centre */
+	float stereo_pan[2];    /* balance, both sides at full level in the centre */
+	float *gains;
+	long gains_capacity;
+	int finished;
+};
+
+mixer *mixer_new(int channels, int block_frames, int bus_count, int format, int dither, float gain) {
+	mixer *mix = calloc(1, sizeof(mixer));
+	int i;
+
+	if (mix == NULL) {
+		return NULL;
+	}
+	mix->channels = channels;
+	mix->block_frames = block_frames;
+	mix->bus_count = bus_count;
+	mix->samples = calloc((size_t) bus_count * channels * block_frames, sizeof(float));
+	mix->buses = malloc((size_t) bus_count * channels * sizeof(float *));
+	if (mix->samples == NULL || mix->buses == NULL) {
+		mixer_free(mix);
+		return NULL;
+	}
+	for (i = 0; i < bus_count * channels; i++) {
+		mix->buses[i] = mix->samples + (size_t) i * block_frames;
+	}
+	pcm_convert_init(&mix->convert, format, dither);
+	pcm_convert_set_gain(&mix->convert, gain);
+	return mix;
+}
+
+int mixer_channels(const mixer *mix) {
+	return mix->channels;
+}
+
+float **mixer_bus(mixer *mix, int bus) {
+	float **channels = mix->buses + bus * mix->channels;
+	memset(channels[0], 0, (size_t) mix->channels * mix->block_frames * sizeof(float));
+	return channels;
+}
+
+long mixer_mixdown(mixer *mix, int buses, int frames, void *out) {
+	long before = mix->convert.clipped;
+	int bus, i, j;
+
+	for (bus = 1; bus < buses && bus < mix->bus_count; bus++) {
+		for (i = 0; i < mix->channels; i++) {
+			float *sum = mix->buses[i];
+			const float *add = mix->buses[bus * mix->channels + i];
+			for (j = 0; j < frames; j++) {
+				sum[j] += add[j];
+			}
+		}
+	}
+	pcm_convert(&mix->convert, mix->buses, mix->channels, frames, out);
+	return mix->convert.clipped - before;
+}
+
+void mixer_free(mixer *mix) {
+	if (mix != NULL) {
+		free(mix->samples);
+		free(mix->buses);
+		free(mix);
+	}
+}
+
+mixer_voice *mixer_voice_open(const char *path) {
+	mixer_voice *voice = calloc(1, sizeof(mixer_voice));
+
+	if (voice == NULL) {
+		return NULL;
+	}
+	/* only the float reads are used, the conversion format does not matter */
+	voice->decoder = pull_decoder_open(path, PCM_FORMAT_F32, 0, 1.f);
+	if (voice->decoder == NULL) {
+		free(voice);
+		return NULL;
+	}
+	voice->channels = pull_decoder_channels(voice->decoder);
+	voice->start = MIXER_NEVER;
+	voice->stop = MIXER_NEVER;
+	voice->gain = 1.f;
+	mixer_voice_pan(voice, 0.f);
+	return voice;
+}
+
+int mixer_voice_channels(const mixer_voice *voice) {
+	return voice->channels;
+}
+
+long mixer_voice_rate(const mixer_voice *voice) {
+	return pull_decoder_rate(voice->decoder);
+}
+
+ogg_int64_t mixer_voice_total(const mixer_voice *voice) {
+	return pull_decoder_total(voice->decoder);
+}
+
+void mixer_voice_schedule(mixer_voice *voice, ogg_int64_t start, ogg_int64_t stop) {
+	voice->start = start;
+	voice->stop = stop;
+}
+
+void mixer_voice_fade(mixer_voice *voice, float target, ogg_int64_t at, long frames) {
+	voice->fading = 1;
+	voice->fade_at = at;
+	voice->fade_frames = frames;
+	voice->fade_from = voice->gain;
+	voice->fade_to = target;
+}
+
+void mixer_voice_pan(mixer_voice *voice, float pan) {
+	double angle = (pan + 1.) * M_PI / 4.;
+	voice->mono_pan[0] = (float) cos(angle);
+	voice->mono_pan[1] = (float) sin(angle);
+	voice->stereo_pan[0] = pan > 0.f ? 1.f - pan : 1.f;
+	voice->stereo_pan[1] = pan < 0.f ? 1.f + pan : 1.f;
+}
+
+/* works out the gain of frames starting at output frame position, returns NULL when it is the same for all of them */
+static const float *fade_gains(mixer_voice *voice, ogg_int64_t position, long frames) {
+	long j;
+
+	if (!voice->fading || voice->fade_at >= position + frames) {
+		return NULL;
+	}
+	for (j = 0; j < frames; j++) {
+		ogg_int64_t elapsed = position + j - voice->fade_at;
+		if (elapsed < 0) {
+			voice->gains[j] = voice->gain;
+		} else if (elapsed >= voice->fade_frames) {
+			voice->gains[j] = voice->fade_to;
+		} else {
+			voice->gains[j] = voice->fade_from + (voice->fade_to - voice->fade_from) * ((float) elapsed / voice->fade_frames);
+		}
+	}
+	voice->gain = voice->gains[frames - 1];
+	if (position + frames >= voice->fade_at + voice->fade_frames) {
+		voice->fading = 0;
+		voice->gain = voice->fade_to;
+	}
+	return voice->gains;
+}
+
+static void add(float *out, const float *in, const float *gains, float scale, long frames) {
+	long j;
+
+	if (gains == NULL) {
+		for (j = 0; j < frames; j++) {
+			out[j] += in[j] * scale;
+		}
+	} else {
+		for (j = 0; j < frames; j++) {
+			out[j] += in[j] * gains[j] * scale;
+		}
+	}
+}
+
+static void add_voice(mixer_voice *voice, float **pcm, const float *gains, float **bus, int channels, long offset, long frames) {
+	/* the constant part of the gain folds into the per channel scale */
+	float gain = gains == NULL ? voice->gain : 1.f;
+	int i;
+
+	if (channels == 2 && voice->channels == 1) {
+		add(bus[0] + offset, pcm[0], gains, gain * voice->mono_pan[0], frames);
+		add(bus[1] + offset, pcm[0], gains, gain * voice->mono_pan[1], frames);
+	} else if (channels == 2 && voice->channels == 2) {
+		add(bus[0] + offset, pcm[0], gains, gain * voice->stereo_pan[0], frames);
+		add(bus[1] + offset, pcm[1], gains, gain * voice->stereo_pan[1], frames);
+	} else if (channels == 1) {
+		for (i = 0; i < voice->channels; i++) {
+			add(bus[0] + offset, pcm[i], gains, gain / voice->channels, frames);
+		}
+	} else {
+		for (i = 0; i < voice->channels; i++) {
+			add(bus[i % channels] + offset, pcm[i], gains, gain, frames);
+		}
+	}
+}
+
+int mixer_voice_render(mixer_voice *voice, float **bus, int channels, int frames, ogg_int64_t position) {
+	long offset = 0;
+	long end = frames;
+
+	if (voice->finished) {
+		return 0;
+	}
+	if (voice->start == MIXER_NEVER || voice->start >= position + frames) {
+		return 1;
+	}
+	if (voice->start > position) {
+		offset = (long) (voice->start - position);
+	}
+	if (voice->stop != MIXER_NEVER && voice->stop < position + frames) {
+		end = voice->stop > position + offset ? (long) (voice->stop - position) : offset;
+	}
+	if (voice->gains_capacity < frames) {
+		float *resized = realloc(voice->gains, frames * sizeof(float));
+		if (resized == NULL) {
+			voice->finished = 1;
+			return 0;
+		}
+		voice->gains = resized;
+		voice->gains_capacity = frames;
+	}
+	while (offset < end) {
+		float **pcm;
+		long read = pull_decoder_read_float(voice->decoder, &pcm, end - offset);
+		if (read <= 0) {
+			voice->finished = 1;
+			return 0;
+		}
+		add_voice(voice, pcm, fade_gains(voice, position + offset, read), bus, channels, offset, read);
+		offset += read;
+	}
+	if (voice->stop != MIXER_NEVER && voice->stop <= position + frames) {
+		voice->finished = 1;
+		return 0;
+	}
+	return 1;
+}
+
+void mixer_voice_close(mixer_voice *voice) {
+	if (voice != NULL) {
+		pull_decoder_close(voice->decoder);
+		free(voice->gains);
+		free(voice);
+	}
+}
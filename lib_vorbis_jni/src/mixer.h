@@ -0,0 +1,62 @@
+/* Mixes any number of decoding vorbis voices into one output. Voices are
+ * added into planar float buses a block at a time, each with its own gain,
+ * pan and scheduled fades, starts and stops, all counted in output frames so
+ * they land on an exact sample. The buses are summed and converted to the
+ * output format once per block.
+ */
+#ifndef _MIXER_H
+#define _MIXER_H
+
+#include <ogg/os_types.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* scheduled frame meaning never */
+#define MIXER_NEVER -1
+
+typedef struct mixer mixer;
+typedef struct mixer_voice mixer_voice;
+
+//Creates a mixer with bus_count buses of block_frames frames, converting to PCM_FORMAT_* scaled by gain, NULL if out of memory
+mixer *mixer_new(int channels, int block_frames, int bus_count, int format, int dither, float gain);
+
+int mixer_channels(const mixer *mix);
+
+//Clears bus for the next block and returns its planar channels, each bus may be filled from a different thread
+float **mixer_bus(mixer *mix, int bus);
+
+//Sums the first buses and converts frames of them to interleaved output, returns the samples clipped
+long mixer_mixdown(mixer *mix, int buses, int frames, void *out);
+
+void mixer_free(mixer *mix);
+
+//Opens a vorbis file as a voice that is not scheduled to start yet, NULL if it is not a readable vorbis file
+mixer_voice *mixer_voice_open(const char *path);
+
+int mixer_voice_channels(const mixer_voice *voice);
+
+long mixer_voice_rate(const mixer_voice *voice);
+
+//Length in sample frames
+ogg_int64_t mixer_voice_total(const mixer_voice *voice);
+
+//Starts the voice at the output frame start and stops it at the output frame stop, or at its end for MIXER_NEVER
+void mixer_voice_schedule(mixer_voice *voice, ogg_int64_t start, ogg_int64_t stop);
+
+//Ramps the gain linearly from wherever it is at output frame at to target over frames, 0 frames steps straight to it
+void mixer_voice_fade(mixer_voice *voice, float target, ogg_int64_t at, long frames);
+
+//Places the voice between -1 for left and 1 for right, constant power for mono voices and balance for stereo ones
+void mixer_voice_pan(mixer_voice *voice, float pan);
+
+//Adds the block of frames starting at output frame position into bus, returns 0 once the voice has finished
+int mixer_voice_render(mixer_voice *voice, float **bus, int channels, int frames, ogg_int64_t position);
+
+void mixer_voice_close(mixer_voice *voice);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
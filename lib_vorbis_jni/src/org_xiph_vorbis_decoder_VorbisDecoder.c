@@ -3,6 +3,11 @@ the jni callbacks. Decodes simple and chained OggVorbis files from beginning
 to end. */
 
 #include "org_xiph_vorbis_decoder_VorbisDecoder.h"
+#include "pcm_convert.h"
+#include "decode_file.h"
+#include "peak_pyramid.h"
+#include "loudness_meter.h"
+#include <time.h>
 
 /*Define message codes*/
 #define INVALID_OGG_BITSTREAM -21
@@ -11,9 +16,12 @@ to end. */
 #define NOT_VORBIS_HEADER -24
 #define CORRUPT_SECONDARY_HEADER -25
 #define PREMATURE_END_OF_FILE -26
+#define MISSING_HEADERS -29
 #define SUCCESS 0
 
 #define BUFFER_LENGTH 4096
+/* how far a mid-way join searches for a page, a few of the largest possible */
+#define JOIN_MAX_SKIP (4 * 65307)
 #define DEBUG 0
 
 extern void _VDBG_dump(void);
@@ -97,20 +105,228 @@ jboolean writePCMDataFromVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jm
     return success;
 }
 
-//Writes the pcm data to the Java layer
-void writePCMDataBytesFromVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jmethodID* writePCMDataMethodId, char* buffer, int bytes, jbyteArray* jByteArrayWriteBuffer) {
+//Writes the pcm data bytes to the Java layer
+jboolean writePCMDataBytesFromVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jmethodID* writePCMDataMethodId, char* buffer, int bytes, jbyteArray* jByteArrayWriteBuffer) {
 
     //No data to read, just exit
     if(bytes == 0) {
-        return;
+        return JNI_TRUE;
     }
 
-    //Copy the contents of what we're writing to the java short array
-    //(*env)->SetShortArrayRegion(env, (*jShortArrayWriteBuffer), 0, bytes, (jshort *)buffer);
+    //Copy the contents of what we're writing to the java byte array
     (*env)->SetByteArrayRegion(env, (*jByteArrayWriteBuffer), 0, bytes, (jbyte *)(buffer));
 
     //Call the write pcm data method
-    (*env)->CallVoidMethod(env, (*vorbisDataFeed), (*writePCMDataMethodId), (*jByteArrayWriteBuffer), bytes);
+    return (*env)->CallBooleanMethod(env, (*vorbisDataFeed), (*writePCMDataMethodId), (*jByteArrayWriteBuffer), bytes);
+}
+
+//Reads the output format, dither and gain settings from the java decode options, returns whether loudness should be measured
+int readDecodeOptions(JNIEnv *env, jobject* decodeOptions, pcm_convert_state* convert) {
+    if((*decodeOptions) == NULL) {
+        //Plain 16 bit pcm, as decoded before there were options
+        pcm_convert_init(convert, PCM_FORMAT_S16, 0);
+        return 0;
+    }
+    jclass decodeOptionsClass = (*env)->GetObjectClass(env, (*decodeOptions));
+    jmethodID getPcmFormatMethodId = (*env)->GetMethodID(env, decodeOptionsClass, "getPcmFormat", "()Lorg/xiph/vorbis/decoder/PcmFormat;");
+    jmethodID isDitherMethodId = (*env)->GetMethodID(env, decodeOptionsClass, "isDither", "()Z");
+    jmethodID getGainMethodId = (*env)->GetMethodID(env, decodeOptionsClass, "getGain", "()F");
+    jmethodID isMeasureLoudnessMethodId = (*env)->GetMethodID(env, decodeOptionsClass, "isMeasureLoudness", "()Z");
+
+    jobject pcmFormat = (*env)->CallObjectMethod(env, (*decodeOptions), getPcmFormatMethodId);
+    jclass pcmFormatClass = (*env)->GetObjectClass(env, pcmFormat);
+    jmethodID ordinalMethodId = (*env)->GetMethodID(env, pcmFormatClass, "ordinal", "()I");
+    int format = (*env)->CallIntMethod(env, pcmFormat, ordinalMethodId);
+    jboolean dither = (*env)->CallBooleanMethod(env, (*decodeOptions), isDitherMethodId);
+
+    jfloat gain = (*env)->CallFloatMethod(env, (*decodeOptions), getGainMethodId);
+    jboolean measureLoudness = (*env)->CallBooleanMethod(env, (*decodeOptions), isMeasureLoudnessMethodId);
+
+    pcm_convert_init(convert, format, dither == JNI_TRUE);
+    pcm_convert_set_gain(convert, gain);
+
+    (*env)->DeleteLocalRef(env, pcmFormat);
+    (*env)->DeleteLocalRef(env, pcmFormatClass);
+    (*env)->DeleteLocalRef(env, decodeOptionsClass);
+    return measureLoudness == JNI_TRUE;
+}
+
+//Reads the header cache from the java decode options, NULL unless the stream may be joined mid-way
+jobject readHeaderCache(JNIEnv *env, jobject* decodeOptions) {
+    if((*decodeOptions) == NULL) {
+        return NULL;
+    }
+    jclass decodeOptionsClass = (*env)->GetObjectClass(env, (*decodeOptions));
+    jmethodID getHeaderCacheMethodId = (*env)->GetMethodID(env, decodeOptionsClass, "getHeaderCache", "()Lorg/xiph/vorbis/decoder/VorbisHeaderCache;");
+    jobject headerCache = (*env)->CallObjectMethod(env, (*decodeOptions), getHeaderCacheMethodId);
+    (*env)->DeleteLocalRef(env, decodeOptionsClass);
+    return headerCache;
+}
+
+//Looks up the cached identification, comment and setup packets of a stream, NULL if the cache does not know it
+jobjectArray lookupHeaders(JNIEnv *env, jobject* headerCache, int serialno) {
+    jclass headerCacheClass = (*env)->GetObjectClass(env, (*headerCache));
+    jmethodID lookupMethodId = (*env)->GetMethodID(env, headerCacheClass, "lookup", "(I)[[B");
+    jobjectArray packets = (jobjectArray)(*env)->CallObjectMethod(env, (*headerCache), lookupMethodId, (jint)serialno);
+    (*env)->DeleteLocalRef(env, headerCacheClass);
+    return packets;
+}
+
+//Hands the header packets of a stream read from its start to the cache, for later joins
+void learnHeaders(JNIEnv *env, jobject* headerCache, int serialno, jbyteArray* packets) {
+    jclass headerCacheClass = (*env)->GetObjectClass(env, (*headerCache));
+    jmethodID learnMethodId = (*env)->GetMethodID(env, headerCacheClass, "learn", "(I[B[B[B)V");
+    (*env)->CallVoidMethod(env, (*headerCache), learnMethodId, (jint)serialno, packets[0], packets[1], packets[2]);
+    (*env)->DeleteLocalRef(env, headerCacheClass);
+}
+
+//Copies a header packet to a java byte array, the packet only lives until the next packet is taken out
+jbyteArray newHeaderPacket(JNIEnv *env, ogg_packet* op) {
+    jbyteArray packet = (*env)->NewByteArray(env, op->bytes);
+    (*env)->SetByteArrayRegion(env, packet, 0, op->bytes, (jbyte*)op->packet);
+    return packet;
+}
+
+//Feeds the cached header packets to the decoder as if they had been read from the stream
+int injectHeaders(JNIEnv *env, jobjectArray packets, vorbis_info* vi, vorbis_comment* vc) {
+    int i;
+    for(i=0;i<3;i++){
+        jbyteArray packet = (jbyteArray)(*env)->GetObjectArrayElement(env, packets, i);
+        jsize length = (*env)->GetArrayLength(env, packet);
+        jbyte* bytes = (*env)->GetByteArrayElements(env, packet, NULL);
+        ogg_packet op;
+        op.packet = (unsigned char*)bytes;
+        op.bytes = length;
+        op.b_o_s = i == 0;
+        op.e_o_s = 0;
+        op.granulepos = 0;
+        op.packetno = i;
+        int result = vorbis_synthesis_headerin(vi, vc, &op);
+        (*env)->ReleaseByteArrayElements(env, packet, bytes, JNI_ABORT);
+        (*env)->DeleteLocalRef(env, packet);
+        if(result<0){
+            return i == 0 ? NOT_VORBIS_HEADER : CORRUPT_SECONDARY_HEADER;
+        }
+    }
+    return SUCCESS;
+}
+
+static jlong monotonicNanos(void) {
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (jlong)now.tv_sec * 1000000000LL + now.tv_nsec;
+}
+
+void setJoinStatistics(JNIEnv *env, jobject* decodeStatistics, long skippedBytes, ogg_int64_t granulepos) {
+    if((*decodeStatistics) == NULL) {
+        return;
+    }
+    jclass decodeStatisticsClass = (*env)->GetObjectClass(env, (*decodeStatistics));
+    jmethodID setJoinedMethodId = (*env)->GetMethodID(env, decodeStatisticsClass, "setJoined", "(JJ)V");
+    (*env)->CallVoidMethod(env, (*decodeStatistics), setJoinedMethodId, (jlong)skippedBytes, (jlong)granulepos);
+    (*env)->DeleteLocalRef(env, decodeStatisticsClass);
+}
+
+//Reports how long the decode took to hand out its first audio, as soon as it has
+void setFirstAudioStatistics(JNIEnv *env, jobject* decodeStatistics, jlong nanos) {
+    if((*decodeStatistics) == NULL) {
+        return;
+    }
+    jclass decodeStatisticsClass = (*env)->GetObjectClass(env, (*decodeStatistics));
+    jmethodID setFirstAudioNanosMethodId = (*env)->GetMethodID(env, decodeStatisticsClass, "setFirstAudioNanos", "(J)V");
+    (*env)->CallVoidMethod(env, (*decodeStatistics), setFirstAudioNanosMethodId, nanos);
+    (*env)->DeleteLocalRef(env, decodeStatisticsClass);
+}
+
+//Converts a block of planar float pcm to the requested format and writes it to the Java layer
+jboolean writeConvertedPCMToVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jmethodID* writePCMDataMethodId, pcm_convert_state* convert, float** pcm, int channels, int samples, void* convbuffer, jarray* jArrayWriteBuffer) {
+    long clipped = pcm_convert(convert, pcm, channels, samples, convbuffer);
+    if(clipped) {
+        __android_log_print(ANDROID_LOG_DEBUG, "VorbisDecoder", "Clipped %ld samples\n", clipped);
+    }
+
+    if(convert->format == PCM_FORMAT_S16) {
+        return writePCMDataFromVorbisDataFeed(env, vorbisDataFeed, writePCMDataMethodId, (ogg_int16_t *)convbuffer, samples*channels, (jshortArray *)jArrayWriteBuffer);
+    }
+    return writePCMDataBytesFromVorbisDataFeed(env, vorbisDataFeed, writePCMDataMethodId, (char *)convbuffer, samples*channels*pcm_convert_bytes_per_sample(convert->format), (jbyteArray *)jArrayWriteBuffer);
+}
+
+//Looks up the pcm write callback matching the output format
+jmethodID getWritePCMDataMethodId(JNIEnv *env, jclass vorbisDataFeedClass, pcm_convert_state* convert) {
+    if(convert->format == PCM_FORMAT_S16) {
+        return (*env)->GetMethodID(env, vorbisDataFeedClass, "writePCMData", "([SI)Z");
+    }
+    jclass formattedDataFeedClass = (*env)->FindClass(env, "org/xiph/vorbis/decoder/FormattedDecodeFeed");
+    jmethodID writePCMDataMethodId = (*env)->GetMethodID(env, formattedDataFeedClass, "writePCMData", "([BI)Z");
+    (*env)->DeleteLocalRef(env, formattedDataFeedClass);
+    return writePCMDataMethodId;
+}
+
+//Creates the java array the converted pcm is copied into
+jarray newPCMWriteBuffer(JNIEnv *env, pcm_convert_state* convert) {
+    if(convert->format == PCM_FORMAT_S16) {
+        return (*env)->NewShortArray(env, BUFFER_LENGTH);
+    }
+    return (*env)->NewByteArray(env, BUFFER_LENGTH*pcm_convert_bytes_per_sample(convert->format));
+}
+
+//Hands the decode counters back to the java statistics object, if one was given
+void setDecodeStatistics(JNIEnv *env, jobject* decodeStatistics, ogg_int64_t decodedSamples, ogg_int64_t clippedSamples) {
+    if((*decodeStatistics) == NULL) {
+        return;
+    }
+    jclass decodeStatisticsClass = (*env)->GetObjectClass(env, (*decodeStatistics));
+    jmethodID setDecodedSamplesMethodId = (*env)->GetMethodID(env, decodeStatisticsClass, "setDecodedSamples", "(J)V");
+    jmethodID setClippedSamplesMethodId = (*env)->GetMethodID(env, decodeStatisticsClass, "setClippedSamples", "(J)V");
+
+    (*env)->CallVoidMethod(env, (*decodeStatistics), setDecodedSamplesMethodId, (jlong)decodedSamples);
+    (*env)->CallVoidMethod(env, (*decodeStatistics), setClippedSamplesMethodId, (jlong)clippedSamples);
+
+    (*env)->DeleteLocalRef(env, decodeStatisticsClass);
+}
+
+//Reports the most native memory the decoder state took up, if a statistics object was given
+void setPeakNativeBytes(JNIEnv *env, jobject* decodeStatistics, long peakBytes) {
+    if((*decodeStatistics) == NULL) {
+        return;
+    }
+    jclass decodeStatisticsClass = (*env)->GetObjectClass(env, (*decodeStatistics));
+    jmethodID setPeakNativeBytesMethodId = (*env)->GetMethodID(env, decodeStatisticsClass, "setPeakNativeBytes", "(J)V");
+    (*env)->CallVoidMethod(env, (*decodeStatistics), setPeakNativeBytesMethodId, (jlong)peakBytes);
+    (*env)->DeleteLocalRef(env, decodeStatisticsClass);
+}
+
+//Converts a linear level to decibels, silence comes out as negative infinity
+static double toDecibels(double level) {
+    return level > 0 ? 20 * log10(level) : -HUGE_VAL;
+}
+
+//Hands the loudness measurements back to the java statistics object, if one was given
+void setLoudnessStatistics(JNIEnv *env, jobject* decodeStatistics, const loudness_result* loudness) {
+    if((*decodeStatistics) == NULL) {
+        return;
+    }
+    jclass decodeStatisticsClass = (*env)->GetObjectClass(env, (*decodeStatistics));
+    jmethodID setIntegratedLoudnessMethodId = (*env)->GetMethodID(env, decodeStatisticsClass, "setIntegratedLoudness", "(D)V");
+    jmethodID setTruePeakMethodId = (*env)->GetMethodID(env, decodeStatisticsClass, "setTruePeak", "(D)V");
+    jmethodID setSamplePeakMethodId = (*env)->GetMethodID(env, decodeStatisticsClass, "setSamplePeak", "(D)V");
+
+    (*env)->CallVoidMethod(env, (*decodeStatistics), setIntegratedLoudnessMethodId, (jdouble)loudness->integrated);
+    (*env)->CallVoidMethod(env, (*decodeStatistics), setTruePeakMethodId, (jdouble)toDecibels(loudness->true_peak));
+    (*env)->CallVoidMethod(env, (*decodeStatistics), setSamplePeakMethodId, (jdouble)toDecibels(loudness->sample_peak));
+
+    (*env)->DeleteLocalRef(env, decodeStatisticsClass);
+}
+
+//Finishes the loudness meter, if one was running, and hands its result back to java
+void finishLoudnessMeter(JNIEnv *env, jobject* decodeStatistics, loudness_meter* meter) {
+    loudness_result loudness;
+    if(meter == NULL) {
+        return;
+    }
+    loudness_meter_result(meter, &loudness);
+    setLoudnessStatistics(env, decodeStatistics, &loudness);
+    loudness_meter_free(meter);
 }
 
 //Starts the decode feed with the necessary information about sample rates, channels, etc about the stream
@@ -214,28 +430,39 @@ JNIEXPORT jobject JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_decodeFileM
 	return decodeStreamInfo;
 }
 
-JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
-  (JNIEnv *env, jclass cls, jobject vorbisDataFeed) {
+static jint decodeFeed(JNIEnv *env, jobject vorbisDataFeed, jobject decodeOptions, jobject decodeStatistics) {
+
+    //Read the requested output format
+    pcm_convert_state convert;
+    int measureLoudness = readDecodeOptions(env, &decodeOptions, &convert);
+    jlong start_nanos = monotonicNanos();
+    int first_audio = 0;
+
+    //With a header cache the stream may start anywhere, not just at its first page
+    jobject headerCache = readHeaderCache(env, &decodeOptions);
+    loudness_meter *meter = NULL;
+    int meter_channels = 0;
 
     //Create a new java byte array to pass to the vorbis data feed method
     jbyteArray jByteArrayReadBuffer = (*env)->NewByteArray(env, BUFFER_LENGTH);
 
     //Create our write buffer
-    jshortArray jShortArrayWriteBuffer = (*env)->NewShortArray(env, BUFFER_LENGTH*2);
+    jarray jArrayWriteBuffer = newPCMWriteBuffer(env, &convert);
 
     //Find our java classes we'll be calling
     jclass vorbisDataFeedClass = (*env)->FindClass(env, "org/xiph/vorbis/decoder/DecodeFeed");
 
     //Find our java method id's we'll be calling
     jmethodID readVorbisDataMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "readVorbisData", "([BI)I");
-    jmethodID writePCMDataMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "writePCMData", "([SI)Z");
+    jmethodID writePCMDataMethodId = getWritePCMDataMethodId(env, vorbisDataFeedClass, &convert);
     jmethodID startMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "start", "(Lorg/xiph/vorbis/decoder/DecodeStreamInfo;)V");
     jmethodID startReadingHeaderMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "startReadingHeader", "()V");
     jmethodID stopMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "stop", "()V");
     jmethodID elapsedMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "elapsedSeconds", "(J)V");
 
-    ogg_int16_t convbuffer[BUFFER_LENGTH]; /* take 8k out of the data segment, not the stack */
+    ogg_int32_t convbuffer[BUFFER_LENGTH]; /* 16k, wide enough for any output format */
     int convsize=BUFFER_LENGTH;
+    ogg_int64_t decoded_samples = 0;
     
     ogg_sync_state   oy; /* sync and verify incoming physical bitstream */
     ogg_stream_state os; /* take physical pages, weld into a logical stream of packets */
@@ -249,6 +476,12 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
     
     char *buffer;
     int  bytes;
+    int  i;
+
+    /* every way out goes through cleanup, which needs to know what is set up */
+    jint ret = SUCCESS;
+    int stream_ready = 0;
+    jbyteArray headerPackets[3] = { NULL, NULL, NULL };
     
     /********** Decode setup ************/
 
@@ -260,9 +493,9 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
     while(1){
         /* we repeat if the bitstream is chained */
         int eos=0;
+        int pending_page=0;
         int count_samples = 0;
         long elapsed_seconds = 0;
-        int i;
         
         /* grab some data at the head of the stream. We want the first page
         (which is guaranteed to be small and only contain the Vorbis
@@ -277,99 +510,168 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
         
         /* Get the first page. */
         __android_log_print(ANDROID_LOG_DEBUG, "VorbisDecoder", "Getting the first page, read (%d) bytes", bytes);
-        if(ogg_sync_pageout(&oy,&og)!=1){
+        if(headerCache != NULL){
+            /* joining mid-way, skip to the first whole page however far into
+            a page the stream starts */
+            long skipped = 0;
+            long result;
+            while((result=ogg_sync_pageseek(&oy,&og))<=0){
+                if(result<0){
+                    skipped -= result;
+                    if(skipped > JOIN_MAX_SKIP)break;
+                    continue;
+                }
+                if(bytes==0)break;
+                buffer=ogg_sync_buffer(&oy,BUFFER_LENGTH);
+                bytes=readVorbisDataFromVorbisDataFeed(env, &vorbisDataFeed, &readVorbisDataMethodId, buffer, &jByteArrayReadBuffer);
+                ogg_sync_wrote(&oy,bytes);
+            }
+            if(result<=0){
+                /* ran out of data, done unless there was only garbage */
+                if(skipped==0)break;
+                ret = INVALID_OGG_BITSTREAM;
+                goto cleanup;
+            }
+
+            if(!ogg_page_bos(&og)){
+                int serialno = ogg_page_serialno(&og);
+                jobjectArray packets = lookupHeaders(env, &headerCache, serialno);
+                if(packets == NULL){
+                    __android_log_print(ANDROID_LOG_WARN, "VorbisDecoder", "No headers to join stream %d", serialno);
+                    ret = MISSING_HEADERS;
+                    goto cleanup;
+                }
+                ogg_stream_init(&os,serialno);
+                vorbis_info_init(&vi);
+                vorbis_comment_init(&vc);
+                stream_ready = 1;
+                result = injectHeaders(env, packets, &vi, &vc);
+                (*env)->DeleteLocalRef(env, packets);
+                if(result != SUCCESS){
+                    ret = (jint)result;
+                    goto cleanup;
+                }
+                /* a reset stream expects no page number, so the join page is
+                not taken for a gap and any packet it only ends is dropped */
+                ogg_stream_reset_serialno(&os,serialno);
+                pending_page = 1;
+                __android_log_print(ANDROID_LOG_INFO, "VorbisDecoder", "Joined stream %d after skipping %ld bytes", serialno, skipped);
+                setJoinStatistics(env, &decodeStatistics, skipped, ogg_page_granulepos(&og));
+            }
+        }
+        else if(ogg_sync_pageout(&oy,&og)!=1){
             /* have we simply run out of data?  If so, we're done. */
             if(bytes<BUFFER_LENGTH)break;
             
             /* error case.  Must not be Vorbis data */
-            stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
-            return INVALID_OGG_BITSTREAM;
+            ret = INVALID_OGG_BITSTREAM;
+            goto cleanup;
         }
 
         __android_log_write(ANDROID_LOG_INFO, "VorbisDecoder", "Successfully fetched the first page");
 
-        /* Get the serial number and set up the rest of decode. */
-        /* serialno first; use it to set up a logical stream */
-        ogg_stream_init(&os,ogg_page_serialno(&og));
-
-        /* extract the initial header from the first page and verify that the
-        Ogg bitstream is in fact Vorbis data */
-
-        /* I handle the initial header first instead of just having the code
-        read all three Vorbis headers at once because reading the initial
-        header is an easy way to identify a Vorbis bitstream and it's
-        useful to see that functionality seperated out. */
+        /* the headers of a joined stream came from the cache */
+        if(!pending_page){
+            /* Get the serial number and set up the rest of decode. */
+            /* serialno first; use it to set up a logical stream */
+            ogg_stream_init(&os,ogg_page_serialno(&og));
+
+            /* extract the initial header from the first page and verify that the
+            Ogg bitstream is in fact Vorbis data */
+
+            /* I handle the initial header first instead of just having the code
+            read all three Vorbis headers at once because reading the initial
+            header is an easy way to identify a Vorbis bitstream and it's
+            useful to see that functionality seperated out. */
+
+            vorbis_info_init(&vi);
+            vorbis_comment_init(&vc);
+            stream_ready = 1;
+            if(ogg_stream_pagein(&os,&og)<0){
+                /* error; stream version mismatch perhaps */
+                ret = ERROR_READING_FIRST_PAGE;
+                goto cleanup;
+            }
 
-        vorbis_info_init(&vi);
-        vorbis_comment_init(&vc);
-        if(ogg_stream_pagein(&os,&og)<0){
-            /* error; stream version mismatch perhaps */
-            stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
-            return ERROR_READING_FIRST_PAGE;
-        }
 
+            if(ogg_stream_packetout(&os,&op)!=1){
+                /* no page? must not be vorbis */
+                ret = ERROR_READING_INITIAL_HEADER_PACKET;
+                goto cleanup;
+            }
 
-        if(ogg_stream_packetout(&os,&op)!=1){
-            /* no page? must not be vorbis */
-            stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
-            return ERROR_READING_INITIAL_HEADER_PACKET;
-        }
 
+            if(vorbis_synthesis_headerin(&vi,&vc,&op)<0){
+                /* error case; not a vorbis header */
+                ret = NOT_VORBIS_HEADER;
+                goto cleanup;
+            }
 
-        if(vorbis_synthesis_headerin(&vi,&vc,&op)<0){
-            /* error case; not a vorbis header */
-            stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
-            return NOT_VORBIS_HEADER;
-        }
+            /* keep the headers for listeners joining this stream later */
+            if(headerCache != NULL){
+                headerPackets[0] = newHeaderPacket(env, &op);
+            }
 
 
-        /* At this point, we're sure we're Vorbis. We've set up the logical
-        (Ogg) bitstream decoder. Get the comment and codebook headers and
-        set up the Vorbis decoder */
+            /* At this point, we're sure we're Vorbis. We've set up the logical
+            (Ogg) bitstream decoder. Get the comment and codebook headers and
+            set up the Vorbis decoder */
 
-        /* The next two packets in order are the comment and codebook headers.
-        They're likely large and may span multiple pages. Thus we read
-        and submit data until we get our two packets, watching that no
-        pages are missing. If a page is missing, error out; losing a
-        header page is the only place where missing data is fatal. */
+            /* The next two packets in order are the comment and codebook headers.
+            They're likely large and may span multiple pages. Thus we read
+            and submit data until we get our two packets, watching that no
+            pages are missing. If a page is missing, error out; losing a
+            header page is the only place where missing data is fatal. */
 
-        i=0;
-        while(i<2){
+            i=0;
             while(i<2){
-                int result=ogg_sync_pageout(&oy,&og);
-                if(result==0)break; /* Need more data */
-                /* Don't complain about missing or corrupt data yet. We'll
-                catch it at the packet output phase */
-                if(result==1){
-                    ogg_stream_pagein(&os,&og); /* we can ignore any errors here
-                    as they'll also become apparent
-                    at packetout */
-                    while(i<2){
-                        result=ogg_stream_packetout(&os,&op);
-                        if(result==0)break;
-                        if(result<0){
-                            /* Uh oh; data at some point was corrupted or missing!
-                            We can't tolerate that in a header.  Die. */
-                            stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
-                            return CORRUPT_SECONDARY_HEADER;
-                        }
-                        result=vorbis_synthesis_headerin(&vi,&vc,&op);
-                        if(result<0){
-                            stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
-                            return CORRUPT_SECONDARY_HEADER;
+                while(i<2){
+                    int result=ogg_sync_pageout(&oy,&og);
+                    if(result==0)break; /* Need more data */
+                    /* Don't complain about missing or corrupt data yet. We'll
+                    catch it at the packet output phase */
+                    if(result==1){
+                        ogg_stream_pagein(&os,&og); /* we can ignore any errors here
+                        as they'll also become apparent
+                        at packetout */
+                        while(i<2){
+                            result=ogg_stream_packetout(&os,&op);
+                            if(result==0)break;
+                            if(result<0){
+                                /* Uh oh; data at some point was corrupted or missing!
+                                We can't tolerate that in a header.  Die. */
+                                ret = CORRUPT_SECONDARY_HEADER;
+                                goto cleanup;
+                            }
+                            result=vorbis_synthesis_headerin(&vi,&vc,&op);
+                            if(result<0){
+                                ret = CORRUPT_SECONDARY_HEADER;
+                                goto cleanup;
+                            }
+                            i++;
+                            if(headerCache != NULL){
+                                headerPackets[i] = newHeaderPacket(env, &op);
+                            }
                         }
-                        i++;
                     }
                 }
+                /* no harm in not checking before adding more */
+                buffer=ogg_sync_buffer(&oy,BUFFER_LENGTH);
+                bytes=readVorbisDataFromVorbisDataFeed(env, &vorbisDataFeed, &readVorbisDataMethodId, buffer, &jByteArrayReadBuffer);
+                if(bytes==0 && i<2){
+                    ret = PREMATURE_END_OF_FILE;
+                    goto cleanup;
+                }
+                ogg_sync_wrote(&oy,bytes);
             }
-            /* no harm in not checking before adding more */
-            buffer=ogg_sync_buffer(&oy,BUFFER_LENGTH);
-            bytes=readVorbisDataFromVorbisDataFeed(env, &vorbisDataFeed, &readVorbisDataMethodId, buffer, &jByteArrayReadBuffer);
-            if(bytes==0 && i<2){
-                stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
-                return PREMATURE_END_OF_FILE;
+
+            if(headerCache != NULL){
+                learnHeaders(env, &headerCache, os.serialno, headerPackets);
+                for(i=0;i<3;i++){
+                    (*env)->DeleteLocalRef(env, headerPackets[i]);
+                    headerPackets[i] = NULL;
+                }
             }
-            ogg_sync_wrote(&oy,bytes);
         }
 
 
@@ -392,6 +694,13 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
 
         /* OK, got and parsed all three headers. Initialize the Vorbis
         packet->PCM decoder. */
+        /* the meter follows the first link, later links with another
+        layout are played but not measured */
+        if(measureLoudness && meter == NULL) {
+            meter = loudness_meter_new(vi.channels, vi.rate);
+            meter_channels = vi.channels;
+        }
+
         if(vorbis_synthesis_init(&vd,&vi)==0){
             /* central decode state */
             vorbis_block_init(&vd,&vb);          /* local state for most of the decode
@@ -403,7 +712,15 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
             /* The rest is just a straight decode loop until end of stream */
             while(!eos){
                 while(!eos){
-                    int result=ogg_sync_pageout(&oy,&og);
+                    int result;
+                    if(pending_page){
+                        /* the page a mid-way join starts at is read already */
+                        pending_page=0;
+                        result=1;
+                    }
+                    else{
+                        result=ogg_sync_pageout(&oy,&og);
+                    }
                     if(result==0)break; /* need more data */
                     if(result<0){
                         /* missing or corrupt data at this page position */
@@ -446,43 +763,19 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
                                 		__android_log_print(ANDROID_LOG_INFO, "VorbisDecoder", "elapsed %d seconds", elapsed_seconds);
                                 	}
 
-                                    int j;
-                                    int clipflag=0;
                                     int bout=(samples<convsize?samples:convsize);
 
-                                    /* convert floats to 16 bit signed ints (host order) and
+                                    /* convert floats to the requested format (host order) and
                                     interleave */
-                                    for(i=0;i<vi.channels;i++){
-                                        ogg_int16_t *ptr=convbuffer+i;
-                                        float  *mono=pcm[i];
-                                        for(j=0;j<bout;j++){
-
-                                            #if 1
-                                            int val=floor(mono[j]*32767.f+.5f);
-                                            #else /* optional dither */
-                                            int val=mono[j]*32767.f+drand48()-0.5f;
-                                            #endif
-                                            /* might as well guard against clipping */
-                                            if(val>32767){
-                                                val=32767;
-                                                clipflag=1;
-                                            }
-
-                                            if(val<-32768){
-                                                val=-32768;
-                                                clipflag=1;
-                                            }
-
-                                            *ptr=val;
-                                            ptr+=vi.channels;
-                                        }
+                                    decoded_samples += bout;
+                                    if(!first_audio){
+                                        first_audio = 1;
+                                        setFirstAudioStatistics(env, &decodeStatistics, monotonicNanos() - start_nanos);
                                     }
-
-                                    if(clipflag) {
-                                        __android_log_print(ANDROID_LOG_INFO, "VorbisDecoder", "Clipping in frame %ld\n",(long)(vd.sequence));
+                                    if (meter != NULL && vi.channels == meter_channels) {
+                                        loudness_meter_add(meter, pcm, bout);
                                     }
-
-                                    if (!writePCMDataFromVorbisDataFeed(env, &vorbisDataFeed, &writePCMDataMethodId, &convbuffer[0], bout*vi.channels, &jShortArrayWriteBuffer)){
+                                    if (!writeConvertedPCMToVorbisDataFeed(env, &vorbisDataFeed, &writePCMDataMethodId, &convert, pcm, vi.channels, bout, convbuffer, &jArrayWriteBuffer)){
                                     	eos = 1;
                                     }
 
@@ -520,20 +813,39 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
         ogg_stream_clear(&os);
         vorbis_comment_clear(&vc);
         vorbis_info_clear(&vi);  /* must be called last */
+        stream_ready = 0;
     }
 
-    /* OK, clean up the framer */
-    ogg_sync_clear(&oy);
-
+    setDecodeStatistics(env, &decodeStatistics, decoded_samples, convert.clipped);
+    finishLoudnessMeter(env, &decodeStatistics, meter);
+    meter = NULL;
 
+cleanup:
+    /* a stream that failed while it was set up */
+    if(stream_ready){
+        ogg_stream_clear(&os);
+        vorbis_comment_clear(&vc);
+        vorbis_info_clear(&vi);
+    }
+    for(i=0;i<3;i++){
+        if(headerPackets[i] != NULL){
+            (*env)->DeleteLocalRef(env, headerPackets[i]);
+        }
+    }
 
+    /* OK, clean up the framer */
+    ogg_sync_clear(&oy);
+    loudness_meter_free(meter);
     stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
 
     //Clean up our buffers
     (*env)->DeleteLocalRef(env, jByteArrayReadBuffer);
-    (*env)->DeleteLocalRef(env, jShortArrayWriteBuffer);
+    (*env)->DeleteLocalRef(env, jArrayWriteBuffer);
+    if(headerCache != NULL){
+        (*env)->DeleteLocalRef(env, headerCache);
+    }
 
-    return SUCCESS;
+    return ret;
 }
 
 //Callback on the elapsed seconds
@@ -543,13 +855,37 @@ long seekSecondVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jmethodID* s
 	return seek_seconds;
 }
 
-JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingFile(JNIEnv *env, jclass cls, jobject file, jobject vorbisDataFeed){
+//The decoder state of the feed and file decodes lives in an arena of its own, recycled by the next decode
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeStartDecoding
+  (JNIEnv *env, jclass cls, jobject vorbisDataFeed, jobject decodeOptions, jobject decodeStatistics) {
+    ogg_arena *arena = ogg_arena_acquire();
+    ogg_arena *previous = ogg_arena_use(arena);
+    jint ret = decodeFeed(env, vorbisDataFeed, decodeOptions, decodeStatistics);
+
+    ogg_arena_use(previous);
+    setPeakNativeBytes(env, &decodeStatistics, ogg_arena_peak(arena));
+    ogg_arena_release(arena);
+    return ret;
+}
+
+//The original entry point, decodes to 16 bit pcm without statistics
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
+  (JNIEnv *env, jclass cls, jobject vorbisDataFeed) {
+    return Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeStartDecoding(env, cls, vorbisDataFeed, NULL, NULL);
+}
+
+static jint decodeFileFeed(JNIEnv *env, jobject file, jobject vorbisDataFeed, jobject decodeOptions, jobject decodeStatistics){
+
+    //Read the requested output format
+    pcm_convert_state convert;
+    int measureLoudness = readDecodeOptions(env, &decodeOptions, &convert);
+    loudness_meter *meter = NULL;
 
     //Find our java classes we'll be calling
     jclass vorbisDataFeedClass = (*env)->FindClass(env, "org/xiph/vorbis/decoder/DecodeFeed");
 
     //Find our java method id's we'll be calling
-    jmethodID writePCMDataMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "writePCMData", "([SI)Z");
+    jmethodID writePCMDataMethodId = getWritePCMDataMethodId(env, vorbisDataFeedClass, &convert);
     jmethodID startMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "start", "(Lorg/xiph/vorbis/decoder/DecodeStreamInfo;)V");
     jmethodID startReadingHeaderMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "startReadingHeader", "()V");
     jmethodID stopMethodId = (*env)->GetMethodID(env, vorbisDataFeedClass, "stop", "()V");
@@ -566,7 +902,7 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingF
     __android_log_print(ANDROID_LOG_INFO, "VorbisDecoder", "decoding playback of file at path %s", file_path);
 
     //Create our write buffer
-    jshortArray jShortArrayWriteBuffer = (*env)->NewShortArray(env, BUFFER_LENGTH*2);
+    jarray jArrayWriteBuffer = newPCMWriteBuffer(env, &convert);
 
     OggVorbis_File vf;
     int eof = 0;
@@ -608,17 +944,20 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingF
 		start(env, &vorbisDataFeed, &startMethodId, vi->rate, vi->channels, vendor, playtime);
 	}
 
+	if(measureLoudness) {
+		meter = loudness_meter_new(vi->channels, vi->rate);
+	}
+
 	float **pcm;
-    ogg_int16_t convbuffer[BUFFER_LENGTH]; /* take 8k out of the data segment, not the stack */
-    int convsize=BUFFER_LENGTH;
+    ogg_int32_t convbuffer[BUFFER_LENGTH]; /* 16k, wide enough for any output format */
+    int convsize=BUFFER_LENGTH/vi->channels;
     long elapsed_seconds = 0;
     long last_seek_seconds = -1;
+    ogg_int64_t decoded_samples = 0;
 
-	int i;
-	int j;
 	long read_length = 0;
 	while(!eof){
-		read_length = ov_read_float(&vf, &pcm, BUFFER_LENGTH, &current_section);
+		read_length = ov_read_float(&vf, &pcm, convsize, &current_section);
 		if (read_length == 0) {
 			/* EOF */
 			eof=1;
@@ -626,40 +965,8 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingF
 			/* error in the stream.  Not a problem, just reporting it in
 			case we (the app) cares.  In this case, we don't. */
 		} else {
-			int clipflag=0;
 			int bout=(read_length<convsize?read_length:convsize);
 
-			/* convert floats to 16 bit signed ints (host order) and
-			interleave */
-			for(i=0;i<vi->channels;i++){
-				ogg_int16_t *ptr=convbuffer+i;
-				float  *mono=pcm[i];
-				for(j=0;j<bout;j++){
-
-					#if 1
-					int val=floor(mono[j]*32767.f+.5f);
-					#else /* optional dither */
-					int val=mono[j]*32767.f+drand48()-0.5f;
-					#endif
-					/* might as well guard against clipping */
-					if(val>32767){
-						val=32767;
-						clipflag=1;
-					}
-
-					if(val<-32768){
-						val=-32768;
-						clipflag=1;
-					}
-
-					*ptr=val;
-					ptr+=vi->channels;
-				}
-			}
-
-            if(clipflag) {
-                __android_log_print(ANDROID_LOG_INFO, "VorbisDecoder", "Clipping in stream\n");
-            }
             long current_seconds = ov_time_tell(&vf);
             if (current_seconds != elapsed_seconds){
             	elapsed_seconds = current_seconds;
@@ -669,7 +976,13 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingF
 
 			/* we don't bother dealing with sample rate changes, etc, but
 			you'll have to*/
-			if (!writePCMDataFromVorbisDataFeed(env, &vorbisDataFeed, &writePCMDataMethodId, &convbuffer[0], bout*vi->channels, &jShortArrayWriteBuffer)){
+			/* convert floats to the requested format (host order) and
+			interleave */
+			decoded_samples += bout;
+			if (meter != NULL && ov_info(&vf, current_section)->channels == vi->channels) {
+				loudness_meter_add(meter, pcm, bout);
+			}
+			if (!writeConvertedPCMToVorbisDataFeed(env, &vorbisDataFeed, &writePCMDataMethodId, &convert, pcm, vi->channels, bout, convbuffer, &jArrayWriteBuffer)){
 				eof = 1;
 			}
 
@@ -684,11 +997,120 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingF
 		}
 	}
 
+	setDecodeStatistics(env, &decodeStatistics, decoded_samples, convert.clipped);
+	finishLoudnessMeter(env, &decodeStatistics, meter);
 	stopDecodeFeed(env, &vorbisDataFeed, &stopMethodId);
 	ov_clear(&vf);
 
-    (*env)->DeleteLocalRef(env, jShortArrayWriteBuffer);
+    (*env)->DeleteLocalRef(env, jArrayWriteBuffer);
 
 	return SUCCESS;
 }
 
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeStartDecodingFile(JNIEnv *env, jclass cls, jobject file, jobject vorbisDataFeed, jobject decodeOptions, jobject decodeStatistics){
+    ogg_arena *arena = ogg_arena_acquire();
+    ogg_arena *previous = ogg_arena_use(arena);
+    jint ret = decodeFileFeed(env, file, vorbisDataFeed, decodeOptions, decodeStatistics);
+
+    ogg_arena_use(previous);
+    setPeakNativeBytes(env, &decodeStatistics, ogg_arena_peak(arena));
+    ogg_arena_release(arena);
+    return ret;
+}
+
+//The original entry point, decodes a file to 16 bit pcm without statistics
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingFile(JNIEnv *env, jclass cls, jobject file, jobject vorbisDataFeed){
+    return Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeStartDecodingFile(env, cls, file, vorbisDataFeed, NULL, NULL);
+}
+
+//Everything the progress callback needs to reach the java listener
+typedef struct {
+    JNIEnv *env;
+    jobject listener;
+    jmethodID onProgressMethodId;
+} decode_progress_context;
+
+//Forwards the native decode progress to the java listener, a listener that throws stops the decode
+static int onDecodeProgress(void *context, ogg_int64_t decoded_samples, ogg_int64_t total_samples) {
+    decode_progress_context *progress = (decode_progress_context *)context;
+    (*progress->env)->CallVoidMethod(progress->env, progress->listener, progress->onProgressMethodId, (jlong)decoded_samples, (jlong)total_samples);
+    return (*progress->env)->ExceptionCheck(progress->env) == JNI_FALSE;
+}
+
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeDecodeToFile(JNIEnv *env, jclass cls, jstring inPath, jstring outPath, jint container, jint pcmFormat, jboolean dither, jfloat gain, jboolean measureLoudness, jobject listener, jobject decodeStatistics) {
+    decode_progress_context progress;
+    decode_file_result result;
+    loudness_result loudness;
+    int ret;
+
+    const char *in_path = (*env)->GetStringUTFChars(env, inPath, NULL);
+    const char *out_path = (*env)->GetStringUTFChars(env, outPath, NULL);
+
+    if(listener != NULL) {
+        jclass listenerClass = (*env)->GetObjectClass(env, listener);
+        progress.env = env;
+        progress.listener = listener;
+        progress.onProgressMethodId = (*env)->GetMethodID(env, listenerClass, "onProgress", "(JJ)V");
+        (*env)->DeleteLocalRef(env, listenerClass);
+    }
+
+    __android_log_print(ANDROID_LOG_INFO, "VorbisDecoder", "decoding file %s to %s", in_path, out_path);
+    ogg_arena *arena = ogg_arena_acquire();
+    ogg_arena *previous = ogg_arena_use(arena);
+    ret = decode_to_file(in_path, out_path, container, pcmFormat, dither == JNI_TRUE, gain, measureLoudness == JNI_TRUE ? &loudness : NULL,
+            listener != NULL ? onDecodeProgress : NULL, &progress, &result);
+    ogg_arena_use(previous);
+    if(ret != SUCCESS) {
+        __android_log_print(ANDROID_LOG_ERROR, "VorbisDecoder", "failed decoding %s to %s: %d", in_path, out_path, ret);
+    }
+
+    //Stopped by a listener that threw, no more calls into java until its exception is thrown
+    if(ret != DECODE_FILE_STOPPED) {
+        setDecodeStatistics(env, &decodeStatistics, result.decoded_samples, result.clipped_samples);
+        setPeakNativeBytes(env, &decodeStatistics, ogg_arena_peak(arena));
+        if((ret == SUCCESS || ret == DECODE_FILE_CHAIN_LAYOUT_CHANGED) && measureLoudness == JNI_TRUE) {
+            setLoudnessStatistics(env, &decodeStatistics, &loudness);
+        }
+    }
+    ogg_arena_release(arena);
+
+    (*env)->ReleaseStringUTFChars(env, inPath, in_path);
+    (*env)->ReleaseStringUTFChars(env, outPath, out_path);
+    return ret;
+}
+
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeGeneratePeaks(JNIEnv *env, jclass cls, jstring inPath, jstring peakPath, jintArray samplesPerBin, jobject decodeStatistics) {
+    long samples_per_bin[PEAK_PYRAMID_MAX_LEVELS];
+    decode_file_result result;
+    jint levels[PEAK_PYRAMID_MAX_LEVELS];
+    int level_count = (*env)->GetArrayLength(env, samplesPerBin);
+    int i, ret;
+
+    if(level_count > PEAK_PYRAMID_MAX_LEVELS) {
+        level_count = PEAK_PYRAMID_MAX_LEVELS;
+    }
+    (*env)->GetIntArrayRegion(env, samplesPerBin, 0, level_count, levels);
+    for(i = 0; i < level_count; i++) {
+        samples_per_bin[i] = levels[i];
+    }
+
+    const char *in_path = (*env)->GetStringUTFChars(env, inPath, NULL);
+    const char *peak_path = (*env)->GetStringUTFChars(env, peakPath, NULL);
+
+    __android_log_print(ANDROID_LOG_INFO, "VorbisDecoder", "generating %d peak levels of %s into %s", level_count, in_path, peak_path);
+    ogg_arena *arena = ogg_arena_acquire();
+    ogg_arena *previous = ogg_arena_use(arena);
+    ret = decode_to_peaks(in_path, peak_path, samples_per_bin, level_count, &result);
+    ogg_arena_use(previous);
+    if(ret != SUCCESS) {
+        __android_log_print(ANDROID_LOG_ERROR, "VorbisDecoder", "failed generating peaks of %s: %d", in_path, ret);
+    }
+
+    setDecodeStatistics(env, &decodeStatistics, result.decoded_samples, 0);
+    setPeakNativeBytes(env, &decodeStatistics, ogg_arena_peak(arena));
+    ogg_arena_release(arena);
+
+    (*env)->ReleaseStringUTFChars(env, inPath, in_path);
+    (*env)->ReleaseStringUTFChars(env, peakPath, peak_path);
+    return ret;
+}
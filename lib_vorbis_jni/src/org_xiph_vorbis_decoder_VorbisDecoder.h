@@ -54,6 +54,22 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecoding
 JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingFile
   (JNIEnv *env, jclass cls, jobject file, jobject vorbisDataFeed);
 
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisDecoder
+ * Method:    nativeStartDecoding
+ * Signature: (Lorg/xiph/vorbis/decoder/DecodeFeed;Lorg/xiph/vorbis/decoder/DecodeOptions;Lorg/xiph/vorbis/decoder/DecodeStatistics;)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeStartDecoding
+  (JNIEnv *env, jclass cls, jobject vorbisDataFeed, jobject decodeOptions, jobject decodeStatistics);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisDecoder
+ * Method:    nativeStartDecodingFile
+ * Signature: (Ljava/io/File;Lorg/xiph/vorbis/decoder/DecodeFeed;Lorg/xiph/vorbis/decoder/DecodeOptions;Lorg/xiph/vorbis/decoder/DecodeStatistics;)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeStartDecodingFile
+  (JNIEnv *env, jclass cls, jobject file, jobject vorbisDataFeed, jobject decodeOptions, jobject decodeStatistics);
+
 /*
  * Class:     org_xiph_vorbis_decoder_VorbisDecoder
  * Method:    decodeFileMetadata
@@ -62,6 +78,22 @@ JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_startDecodingF
 JNIEXPORT jobject JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_decodeFileMetadata
   (JNIEnv *env, jclass cls, jobject vorbisFile);
 
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisDecoder
+ * Method:    nativeDecodeToFile
+ * Signature: (Ljava/lang/String;Ljava/lang/String;IIZFZLorg/xiph/vorbis/decoder/DecodeProgressListener;Lorg/xiph/vorbis/decoder/DecodeStatistics;)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeDecodeToFile
+  (JNIEnv *env, jclass cls, jstring inPath, jstring outPath, jint container, jint pcmFormat, jboolean dither, jfloat gain, jboolean measureLoudness, jobject listener, jobject decodeStatistics);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisDecoder
+ * Method:    nativeGeneratePeaks
+ * Signature: (Ljava/lang/String;Ljava/lang/String;[ILorg/xiph/vorbis/decoder/DecodeStatistics;)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisDecoder_nativeGeneratePeaks
+  (JNIEnv *env, jclass cls, jstring inPath, jstring peakPath, jintArray samplesPerBin, jobject decodeStatistics);
+
 //callback on elasped time in seconds
 int elapsedSecondVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jmethodID* elapsedMethodId, long elapsed_seconds);
 
@@ -74,6 +106,9 @@ int readVorbisDataFromVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jmeth
 //Writes the pcm data to the Java layer
 jboolean writePCMDataFromVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jmethodID* writePCMDataMethodId, ogg_int16_t* buffer, int bytes, jshortArray* jShortArrayWriteBuffer);
 
+//Writes the pcm data bytes to the Java layer
+jboolean writePCMDataBytesFromVorbisDataFeed(JNIEnv *env, jobject* vorbisDataFeed, jmethodID* writePCMDataMethodId, char* buffer, int bytes, jbyteArray* jByteArrayWriteBuffer);
+
 //Starts the decode feed with the necessary information about sample rates, channels, etc about the stream
 void start(JNIEnv *env, jobject *vorbisDataFeed, jmethodID* startMethodId, long sampleRate, long channels, char* vendor, long playtime);
 
@@ -0,0 +1,188 @@
+/* Thin JNI layer over pull_decoder, the Java side holds the handle as a
+long and makes sure it is never used after being closed. Streams are
+read through a java InputStream from inside vorbisfile, so every call
+that may decode first records the JNIEnv of the calling thread. */
+
+#include <stdint.h>
+#include <stdlib.h>
+#include "org_xiph_vorbis_decoder_VorbisPcmReader.h"
+#include "pull_decoder.h"
+
+#define STREAM_BUFFER_LENGTH 8192
+
+typedef struct {
+    JNIEnv *env;
+    jobject stream;
+    jbyteArray buffer;
+    jmethodID readMethodId;
+    int failed;
+} stream_source;
+
+typedef struct {
+    pull_decoder *decoder;
+    stream_source *source;  /* NULL when decoding a file */
+} reader_handle;
+
+#define HANDLE(handle) ((reader_handle *) (intptr_t) (handle))
+
+//Binds the handle to the calling thread
+static reader_handle *attach(JNIEnv *env, jlong handle) {
+    reader_handle *reader = HANDLE(handle);
+    if(reader->source != NULL) {
+        reader->source->env = env;
+    }
+    return reader;
+}
+
+//vorbisfile read callback, once the stream throws it reads as the end and the exception is raised on return to java
+static size_t readStream(void *ptr, size_t size, size_t nmemb, void *datasource) {
+    stream_source *source = datasource;
+    JNIEnv *env = source->env;
+    jint wanted = size * nmemb > STREAM_BUFFER_LENGTH ? STREAM_BUFFER_LENGTH : (jint) (size * nmemb);
+    jint read;
+
+    if(source->failed || wanted == 0) {
+        return 0;
+    }
+    read = (*env)->CallIntMethod(env, source->stream, source->readMethodId, source->buffer, 0, wanted);
+    if((*env)->ExceptionCheck(env)) {
+        source->failed = 1;
+        return 0;
+    }
+    if(read <= 0) {
+        return 0;
+    }
+    (*env)->GetByteArrayRegion(env, source->buffer, 0, read, ptr);
+    return read / size;
+}
+
+static void freeSource(JNIEnv *env, stream_source *source) {
+    (*env)->DeleteGlobalRef(env, source->stream);
+    (*env)->DeleteGlobalRef(env, source->buffer);
+    free(source);
+}
+
+//vorbisfile close callback, releases the references to the stream but leaves closing it to java
+static int closeStream(void *datasource) {
+    stream_source *source = datasource;
+    freeSource(source->env, source);
+    return 0;
+}
+
+static jlong openHandle(JNIEnv *env, pull_decoder *decoder, stream_source *source, jlongArray info) {
+    reader_handle *reader;
+    jlong values[3];
+
+    if(decoder == NULL) {
+        return 0;
+    }
+    reader = malloc(sizeof(reader_handle));
+    if(reader == NULL) {
+        pull_decoder_close(decoder);
+        return 0;
+    }
+    reader->decoder = decoder;
+    reader->source = source;
+    values[0] = pull_decoder_channels(decoder);
+    values[1] = pull_decoder_rate(decoder);
+    values[2] = pull_decoder_total(decoder);
+    (*env)->SetLongArrayRegion(env, info, 0, 3, values);
+    return (jlong) (intptr_t) reader;
+}
+
+//Opens the file and fills in channels, sample rate and total samples, returns 0 if it cannot be decoded
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeOpen
+(JNIEnv *env, jclass cls, jstring path, jint pcmFormat, jboolean dither, jfloat gain, jlongArray info) {
+    const char *file_path = (*env)->GetStringUTFChars(env, path, NULL);
+    pull_decoder *decoder = pull_decoder_open(file_path, pcmFormat, dither, gain);
+    (*env)->ReleaseStringUTFChars(env, path, file_path);
+    return openHandle(env, decoder, NULL, info);
+}
+
+//Opens an input stream, the total samples are always unknown
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeOpenStream
+(JNIEnv *env, jclass cls, jobject stream, jint pcmFormat, jboolean dither, jfloat gain, jlongArray info) {
+    ov_callbacks callbacks = { readStream, NULL, closeStream, NULL };
+    stream_source *source = calloc(1, sizeof(stream_source));
+    jclass streamClass = (*env)->GetObjectClass(env, stream);
+    jbyteArray buffer = (*env)->NewByteArray(env, STREAM_BUFFER_LENGTH);
+    pull_decoder *decoder = NULL;
+
+    if(source != NULL && buffer != NULL) {
+        source->env = env;
+        source->stream = (*env)->NewGlobalRef(env, stream);
+        source->buffer = (*env)->NewGlobalRef(env, buffer);
+        source->readMethodId = (*env)->GetMethodID(env, streamClass, "read", "([BII)I");
+        decoder = pull_decoder_open_callbacks(source, callbacks, pcmFormat, dither, gain);
+        if(decoder == NULL) {
+            freeSource(env, source);
+            source = NULL;
+        }
+    } else {
+        free(source);
+    }
+    (*env)->DeleteLocalRef(env, buffer);
+    (*env)->DeleteLocalRef(env, streamClass);
+    return openHandle(env, decoder, source, info);
+}
+
+//Decodes into a direct buffer
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeRead
+(JNIEnv *env, jclass cls, jlong handle, jobject buffer, jint offset, jint length) {
+    reader_handle *reader = attach(env, handle);
+    char *address = (*env)->GetDirectBufferAddress(env, buffer);
+    return pull_decoder_read(reader->decoder, address + offset, length);
+}
+
+//Decodes into a heap array, for files the array is pinned rather than copied where the vm allows it. Streams call back
+//into java while decoding, which is not allowed inside a critical region, so they take the slower route
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeReadArray
+(JNIEnv *env, jclass cls, jlong handle, jbyteArray array, jint offset, jint length) {
+    reader_handle *reader = attach(env, handle);
+    jbyte *bytes;
+    jint read;
+
+    if(reader->source != NULL) {
+        bytes = (*env)->GetByteArrayElements(env, array, NULL);
+        if(bytes == NULL) {
+            return PULL_DECODER_ERROR_DECODING;
+        }
+        read = pull_decoder_read(reader->decoder, bytes + offset, length);
+        (*env)->ReleaseByteArrayElements(env, array, bytes, 0);
+        return read;
+    }
+    bytes = (*env)->GetPrimitiveArrayCritical(env, array, NULL);
+    if(bytes == NULL) {
+        return PULL_DECODER_ERROR_DECODING;
+    }
+    read = pull_decoder_read(reader->decoder, bytes + offset, length);
+    (*env)->ReleasePrimitiveArrayCritical(env, array, bytes, 0);
+    return read;
+}
+
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeSeek
+(JNIEnv *env, jclass cls, jlong handle, jlong sample) {
+    return pull_decoder_seek(attach(env, handle)->decoder, sample);
+}
+
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativePosition
+(JNIEnv *env, jclass cls, jlong handle) {
+    return pull_decoder_position(attach(env, handle)->decoder);
+}
+
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeClippedSamples
+(JNIEnv *env, jclass cls, jlong handle) {
+    return pull_decoder_clipped(attach(env, handle)->decoder);
+}
+
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeMemory
+(JNIEnv *env, jclass cls, jlong handle) {
+    return pull_decoder_native_bytes(attach(env, handle)->decoder);
+}
+
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeClose
+(JNIEnv *env, jclass cls, jlong handle) {
+    reader_handle *reader = attach(env, handle);
+    pull_decoder_close(reader->decoder);
+    free(reader);
+}
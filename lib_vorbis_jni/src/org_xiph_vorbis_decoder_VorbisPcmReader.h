@@ -0,0 +1,84 @@
+#include <jni.h>
+
+#ifndef _Included_org_xiph_vorbis_decoder_VorbisPcmReader
+#define _Included_org_xiph_vorbis_decoder_VorbisPcmReader
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativeOpen
+ * Signature: (Ljava/lang/String;IZF[J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeOpen
+  (JNIEnv *env, jclass cls, jstring path, jint pcmFormat, jboolean dither, jfloat gain, jlongArray info);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativeOpenStream
+ * Signature: (Ljava/io/InputStream;IZF[J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeOpenStream
+  (JNIEnv *env, jclass cls, jobject stream, jint pcmFormat, jboolean dither, jfloat gain, jlongArray info);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativeRead
+ * Signature: (JLjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeRead
+  (JNIEnv *env, jclass cls, jlong handle, jobject buffer, jint offset, jint length);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativeReadArray
+ * Signature: (J[BII)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeReadArray
+  (JNIEnv *env, jclass cls, jlong handle, jbyteArray array, jint offset, jint length);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativeSeek
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeSeek
+  (JNIEnv *env, jclass cls, jlong handle, jlong sample);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativePosition
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativePosition
+  (JNIEnv *env, jclass cls, jlong handle);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativeClippedSamples
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeClippedSamples
+  (JNIEnv *env, jclass cls, jlong handle);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativeMemory
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeMemory
+  (JNIEnv *env, jclass cls, jlong handle);
+
+/*
+ * Class:     org_xiph_vorbis_decoder_VorbisPcmReader
+ * Method:    nativeClose
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_decoder_VorbisPcmReader_nativeClose
+  (JNIEnv *env, jclass cls, jlong handle);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
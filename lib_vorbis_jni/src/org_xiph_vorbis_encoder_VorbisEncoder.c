@@ -5,14 +5,8 @@
 #define ERROR_INITIALIZING -44
 #define SUCCESS 0
 
-#define WITH_BITRATE 1
-#define WITH_QUALITY 2
-
 #define READ 1024
 
-jfloat NO_QUALITY = -1;
-jlong NO_BITRATE = -1;
-
 //Starts the encode feed
 void startEncodeFeed(JNIEnv *env, jobject *vorbisDataFeed, jmethodID* startMethodId) {
     __android_log_print(ANDROID_LOG_INFO, "VorbisEncoder", "Notifying encode feed to start");
@@ -64,14 +58,50 @@ int writeVorbisDataToEncoderDataFeed(JNIEnv *env, jobject* encoderDataFeed, jmet
     return amountWritten;
 }
 
+//Takes up a new request of the bitrate control, if there is one, and reports the bitrates now in force
+void pollBitrateControl(JNIEnv *env, bitrate_poll *poll, vorbis_dsp_state *vd) {
+    if(poll->control == NULL) {
+        return;
+    }
+    jint generation = (*env)->CallIntMethod(env, poll->control, poll->getGenerationMethodId);
+    if(generation == poll->generation) {
+        return;
+    }
+
+    //The request arrives as generation, kind, minimum, average and maximum
+    jlong request[5];
+    jlongArray requestArray = (jlongArray)(*env)->CallObjectMethod(env, poll->control, poll->getRequestMethodId);
+    (*env)->GetLongArrayRegion(env, requestArray, 0, 5, request);
+    (*env)->DeleteLocalRef(env, requestArray);
+    poll->generation = (jint)request[0];
+
+    int ret;
+    if(!bitrate_control_managed(vd)) {
+        //A quality mode encoding has nothing to reset, only actual requests are rejected
+        if(request[1] != BITRATE_RESET) {
+            (*env)->CallVoidMethod(env, poll->control, poll->bitrateAppliedMethodId, JNI_FALSE, (jlong)0, (jlong)0, (jlong)0);
+        }
+        return;
+    }
+    if(request[1] == BITRATE_SCALE) {
+        ret = bitrate_control_scale(vd, (long)request[3]);
+    } else if(request[1] == BITRATE_EXACT) {
+        ret = bitrate_control_set(vd, (long)request[2], (long)request[3], (long)request[4]);
+    } else {
+        ret = bitrate_control_set(vd, poll->start_min, poll->start_nominal, poll->start_max);
+    }
+
+    long min, nominal, max;
+    bitrate_control_current(vd, &min, &nominal, &max);
+    __android_log_print(ANDROID_LOG_DEBUG, "VorbisEncoder", "Bitrate now %ld, limits %ld to %ld", nominal, min, max);
+    (*env)->CallVoidMethod(env, poll->control, poll->bitrateAppliedMethodId, ret == 0 ? JNI_TRUE : JNI_FALSE, (jlong)min, (jlong)nominal, (jlong)max);
+}
+
 //Method to start encoding
-int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *channels_ptr, jfloat *quality_ptr, jlong *bitrate_ptr, jobject *encoderDataFeed_ptr, int type) {
+static int encodeFeed(JNIEnv *env, const encode_settings *settings, jobject *encoderDataFeed_ptr, jobject bitrateControl) {
     //Dereference our variables
-    jclass cls = (*cls_ptr);
-    jlong sampleRate = (*sampleRate_ptr);
-    jlong channels = (*channels_ptr);
-    jfloat quality = (*quality_ptr);
-    jlong bitrate = (*bitrate_ptr);
+    long sampleRate = settings->sample_rate;
+    long channels = settings->channels;
     jobject encoderDataFeed = (*encoderDataFeed_ptr);
 
     //Create our PCM data buffer
@@ -92,6 +122,30 @@ int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *ch
     jmethodID startMethodId = (*env)->GetMethodID(env, encoderDataFeedClass, "start", "()V");
     jmethodID stopMethodId = (*env)->GetMethodID(env, encoderDataFeedClass, "stop", "()V");
 
+    //Feeds that want to hear about each audio page implement the page listener
+    jclass pageListenerClass = (*env)->FindClass(env, "org/xiph/vorbis/encoder/OggPageListener");
+    jmethodID pageWrittenMethodId = NULL;
+    if((*env)->IsInstanceOf(env, encoderDataFeed, pageListenerClass)) {
+        pageWrittenMethodId = (*env)->GetMethodID(env, pageListenerClass, "pageWritten", "(JI)V");
+    }
+
+    /* a page is flushed early once the audio in it spans this many samples, so a low bitrate
+       stream does not sit on seconds of audio waiting for the page to fill up */
+    ogg_int64_t max_latency_samples = (ogg_int64_t)settings->max_latency_millis * sampleRate / 1000;
+    ogg_int64_t page_granulepos = 0;
+
+    /* a bitrate control is polled before every read, a change takes effect from the next block analysed */
+    bitrate_poll poll;
+    poll.control = bitrateControl;
+    poll.generation = -1;
+    jclass bitrateControlClass = NULL;
+    if(bitrateControl != NULL) {
+        bitrateControlClass = (*env)->GetObjectClass(env, bitrateControl);
+        poll.getGenerationMethodId = (*env)->GetMethodID(env, bitrateControlClass, "getGeneration", "()I");
+        poll.getRequestMethodId = (*env)->GetMethodID(env, bitrateControlClass, "getRequest", "()[J");
+        poll.bitrateAppliedMethodId = (*env)->GetMethodID(env, bitrateControlClass, "bitrateApplied", "(ZJJJ)V");
+    }
+
     ogg_stream_state os; /* take physical pages, weld into a logical
                             stream of packets */
     ogg_page         og; /* one Ogg bitstream page.  Vorbis packets are inside */
@@ -139,21 +193,13 @@ int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *ch
              vorbis_encode_setup_init(&vi));
 
      *********************************************************************/
-     switch(type) {
-        case WITH_BITRATE:
-            __android_log_print(ANDROID_LOG_INFO, "VorbisEncoder", "Initializing with %lld channels %lldHz sample rate and %lld bitrate", channels, sampleRate, bitrate);
-            ret=vorbis_encode_init(&vi, (long)channels, (long)sampleRate, (long)-1, (long)bitrate, (long)-1);
-            break;
-        case WITH_QUALITY:
-            __android_log_print(ANDROID_LOG_INFO, "VorbisEncoder", "Initializing with %lld channels %lldHz sample rate and %f quality", channels, sampleRate, quality);
-            ret=vorbis_encode_init_vbr(&vi, (long)channels, (long)sampleRate, (float)quality);
-            break;
-        default:
-            __android_log_print(ANDROID_LOG_ERROR, "VorbisEncoder", "Failed to initialize");
-            stopEncodeFeed(env, &encoderDataFeed, &stopMethodId);
-            return ERROR_INITIALIZING;
+     if(encode_settings_managed(settings)) {
+        __android_log_print(ANDROID_LOG_INFO, "VorbisEncoder", "Initializing with %ld channels %ldHz sample rate and %ld bitrate, limits %ld to %ld", channels, sampleRate, settings->bitrate, settings->min_bitrate, settings->max_bitrate);
+     } else {
+        __android_log_print(ANDROID_LOG_INFO, "VorbisEncoder", "Initializing with %ld channels %ldHz sample rate and %f quality", channels, sampleRate, settings->quality);
      }
-
+     __android_log_print(ANDROID_LOG_INFO, "VorbisEncoder", "Using encoder speed %d", settings->speed);
+     ret=encode_settings_setup(&vi, channels, sampleRate, settings);
 
     /* do not continue if setup failed; this can happen if we ask for a
        mode that libVorbis does not support (eg, too low a bitrate, etc,
@@ -169,18 +215,21 @@ int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *ch
 
     /* add a comment */
     __android_log_print(ANDROID_LOG_DEBUG, "VorbisEncoder", "Adding comments");
-    vorbis_comment_init(&vc);
-    vorbis_comment_add_tag(&vc,"ENCODER","JNIVorbisEncoder");
+    encode_settings_comments(&vc, settings);
 
     /* set up the analysis state and auxiliary encoding storage */
     vorbis_analysis_init(&vd,&vi);
     vorbis_block_init(&vd,&vb);
 
+    /* a reset goes back to what the stream was set up with, and a request made before this
+       encoding started applies from its first block */
+    bitrate_control_current(&vd, &poll.start_min, &poll.start_nominal, &poll.start_max);
+    pollBitrateControl(env, &poll, &vd);
+
     /* set up our packet->stream encoder */
     /* pick a random serial number; that way we can more likely build
        chained streams just by concatenation */
-    srand(time(NULL));
-    ogg_stream_init(&os,rand());
+    ogg_stream_init(&os,encode_settings_serial());
 
     /* Vorbis streams begin with three headers; the initial header (with
        most of the codec setup parameters) which is mandated by the Ogg
@@ -216,6 +265,7 @@ int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *ch
     __android_log_print(ANDROID_LOG_INFO, "VorbisEncoder", "Starting to read from pcm callback");
     while(!eos){
       long i;
+      pollBitrateControl(env, &poll, &vd);
       long bytes = readPCMDataFromEncoderDataFeed(env, &encoderDataFeed, &readPCMDataMethodId, readbuffer, READ*4, &jByteArrayBuffer);
 
       if(bytes==0){
@@ -230,7 +280,8 @@ int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *ch
         /* data to encode */
 
         /* expose the buffer to submit data */
-        float **buffer=vorbis_analysis_buffer(&vd,READ);
+        /* sized by what was read, a read of mono holds twice as many frames as READ */
+        float **buffer=vorbis_analysis_buffer(&vd,bytes/(2*channels));
 
         /* uninterleave samples */
         int channel;
@@ -262,9 +313,17 @@ int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *ch
           /* write out pages (if any) */
           while(!eos){
             int result=ogg_stream_pageout(&os,&og);
+            if(result==0 && max_latency_samples > 0 && op.granulepos - page_granulepos >= max_latency_samples) {
+              result=ogg_stream_flush(&os,&og);
+            }
             if(result==0)break;
+            /* a page no packet ends on has no granule position, the latency runs on from the last one that had */
+            if(ogg_page_granulepos(&og)>=0)page_granulepos=ogg_page_granulepos(&og);
             writeVorbisDataToEncoderDataFeed(env, &encoderDataFeed, &writeVorbisDataMethodId, og.header, og.header_len, &jByteArrayWriteBuffer);
             writeVorbisDataToEncoderDataFeed(env, &encoderDataFeed, &writeVorbisDataMethodId, og.body, og.body_len, &jByteArrayWriteBuffer);
+            if(pageWrittenMethodId != NULL) {
+                (*env)->CallVoidMethod(env, encoderDataFeed, pageWrittenMethodId, (jlong)page_granulepos, (jint)(og.header_len + og.body_len));
+            }
 
             /* this could be set above, but for illustrative purposes, I do
                it here (to show that vorbis does know where the stream ends) */
@@ -289,20 +348,180 @@ int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *ch
     stopEncodeFeed(env, &encoderDataFeed, &stopMethodId);
 
     //Clean up encode buffers
+    (*env)->DeleteLocalRef(env, pageListenerClass);
+    if(bitrateControlClass != NULL) {
+        (*env)->DeleteLocalRef(env, bitrateControlClass);
+    }
     (*env)->DeleteLocalRef(env, jByteArrayBuffer);
     (*env)->DeleteLocalRef(env, jByteArrayWriteBuffer);
 
     return SUCCESS;
 }
 
+//Encodes with the encoder state in an arena of its own, recycled by the next encode
+int startEncoding(JNIEnv *env, const encode_settings *settings, jobject *encoderDataFeed_ptr, jobject bitrateControl) {
+    ogg_arena *arena = ogg_arena_acquire();
+    ogg_arena *previous = ogg_arena_use(arena);
+    int ret = encodeFeed(env, settings, encoderDataFeed_ptr, bitrateControl);
+
+    ogg_arena_use(previous);
+    ogg_arena_release(arena);
+    return ret;
+}
+
 //jni method for encoding with quality
 JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_startEncodingWithQuality
 (JNIEnv *env, jclass cls, jlong sampleRate, jlong channels, jfloat quality, jobject encoderDataFeed) {
-    startEncoding(env, &cls, &sampleRate, &channels, &quality, &NO_BITRATE, &encoderDataFeed, WITH_QUALITY);
+    return Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeStartEncodingWithQuality(env, cls, sampleRate, channels, quality, OV_ENCODE_SPEED_BEST, encoderDataFeed);
 }
 
 //jni method for encoding with bitrate
 JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_startEncodingWithBitrate
 (JNIEnv *env, jclass cls, jlong sampleRate, jlong channels, jlong bitrate, jobject encoderDataFeed) {
-    startEncoding(env, &cls, &sampleRate, &channels, &NO_QUALITY, &bitrate, &encoderDataFeed, WITH_BITRATE);
+    return Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeStartEncodingWithBitrate(env, cls, sampleRate, channels, bitrate, OV_ENCODE_SPEED_BEST, encoderDataFeed);
+}
+
+//jni method for encoding with quality at an encoder speed
+JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeStartEncodingWithQuality
+(JNIEnv *env, jclass cls, jlong sampleRate, jlong channels, jfloat quality, jint speed, jobject encoderDataFeed) {
+    encode_settings settings = { (long)sampleRate, (int)channels, quality, -1, speed, NULL, 0, 0, -1, -1, -1, -1 };
+    return startEncoding(env, &settings, &encoderDataFeed, NULL);
+}
+
+//jni method for encoding with bitrate at an encoder speed
+JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeStartEncodingWithBitrate
+(JNIEnv *env, jclass cls, jlong sampleRate, jlong channels, jlong bitrate, jint speed, jobject encoderDataFeed) {
+    encode_settings settings = { (long)sampleRate, (int)channels, -1, (long)bitrate, speed, NULL, 0, 0, -1, -1, -1, -1 };
+    return startEncoding(env, &settings, &encoderDataFeed, NULL);
+}
+
+//jni method for encoding with the full encoder settings
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeStartEncoding
+(JNIEnv *env, jclass cls, jobject encoderSettings, jobject encoderDataFeed) {
+    encode_settings settings;
+    int ret;
+
+    readEncoderSettings(env, &encoderSettings, &settings);
+
+    jclass encoderSettingsClass = (*env)->GetObjectClass(env, encoderSettings);
+    jmethodID getBitrateControlMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getBitrateControl", "()Lorg/xiph/vorbis/encoder/BitrateControl;");
+    jobject bitrateControl = (*env)->CallObjectMethod(env, encoderSettings, getBitrateControlMethodId);
+
+    ret = startEncoding(env, &settings, &encoderDataFeed, bitrateControl);
+    releaseEncoderSettings(&settings);
+
+    if(bitrateControl != NULL) {
+        (*env)->DeleteLocalRef(env, bitrateControl);
+    }
+    (*env)->DeleteLocalRef(env, encoderSettingsClass);
+    return ret;
+}
+
+//Reads the java encoder settings into their native counterpart, release them with releaseEncoderSettings
+void readEncoderSettings(JNIEnv *env, jobject* encoderSettings, encode_settings* settings) {
+    jclass encoderSettingsClass = (*env)->GetObjectClass(env, (*encoderSettings));
+    jmethodID getSampleRateMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getSampleRate", "()J");
+    jmethodID getChannelsMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getChannels", "()I");
+    jmethodID getQualityMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getQuality", "()F");
+    jmethodID getBitrateMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getBitrate", "()J");
+    jmethodID getSpeedMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getSpeed", "()Lorg/xiph/vorbis/encoder/EncoderSpeed;");
+    jmethodID getCommentEntriesMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getCommentEntries", "()[[B");
+    jmethodID getMaxLatencyMillisMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getMaxLatencyMillis", "()J");
+    jmethodID getMinBitrateMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getMinBitrate", "()J");
+    jmethodID getMaxBitrateMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getMaxBitrate", "()J");
+    jmethodID getReservoirBitsMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getReservoirBits", "()J");
+    jmethodID getReservoirBiasMethodId = (*env)->GetMethodID(env, encoderSettingsClass, "getReservoirBias", "()D");
+
+    settings->sample_rate = (long)(*env)->CallLongMethod(env, (*encoderSettings), getSampleRateMethodId);
+    settings->channels = (*env)->CallIntMethod(env, (*encoderSettings), getChannelsMethodId);
+    settings->quality = (*env)->CallFloatMethod(env, (*encoderSettings), getQualityMethodId);
+    settings->bitrate = (long)(*env)->CallLongMethod(env, (*encoderSettings), getBitrateMethodId);
+    settings->max_latency_millis = (long)(*env)->CallLongMethod(env, (*encoderSettings), getMaxLatencyMillisMethodId);
+    settings->min_bitrate = (long)(*env)->CallLongMethod(env, (*encoderSettings), getMinBitrateMethodId);
+    settings->max_bitrate = (long)(*env)->CallLongMethod(env, (*encoderSettings), getMaxBitrateMethodId);
+    settings->reservoir_bits = (long)(*env)->CallLongMethod(env, (*encoderSettings), getReservoirBitsMethodId);
+    settings->reservoir_bias = (*env)->CallDoubleMethod(env, (*encoderSettings), getReservoirBiasMethodId);
+
+    jobject speed = (*env)->CallObjectMethod(env, (*encoderSettings), getSpeedMethodId);
+    jclass speedClass = (*env)->GetObjectClass(env, speed);
+    jmethodID getLevelMethodId = (*env)->GetMethodID(env, speedClass, "getLevel", "()I");
+    settings->speed = (*env)->CallIntMethod(env, speed, getLevelMethodId);
+
+    //The comments arrive as utf-8 KEY=value entries, copied out as C strings
+    jobjectArray entries = (jobjectArray)(*env)->CallObjectMethod(env, (*encoderSettings), getCommentEntriesMethodId);
+    int count = (*env)->GetArrayLength(env, entries);
+    int i;
+    settings->comments = calloc(count > 0 ? count : 1, sizeof(char *));
+    settings->comment_count = 0;
+    for(i = 0; settings->comments != NULL && i < count; i++) {
+        jbyteArray entry = (jbyteArray)(*env)->GetObjectArrayElement(env, entries, i);
+        int length = (*env)->GetArrayLength(env, entry);
+        char *comment = malloc(length + 1);
+        if(comment != NULL) {
+            (*env)->GetByteArrayRegion(env, entry, 0, length, (jbyte *)comment);
+            comment[length] = 0;
+            settings->comments[settings->comment_count++] = comment;
+        }
+        (*env)->DeleteLocalRef(env, entry);
+    }
+
+    (*env)->DeleteLocalRef(env, entries);
+    (*env)->DeleteLocalRef(env, speedClass);
+    (*env)->DeleteLocalRef(env, speed);
+    (*env)->DeleteLocalRef(env, encoderSettingsClass);
+}
+
+//Frees what readEncoderSettings allocated
+void releaseEncoderSettings(encode_settings* settings) {
+    int i;
+    for(i = 0; i < settings->comment_count; i++) {
+        free(settings->comments[i]);
+    }
+    free(settings->comments);
+    settings->comments = NULL;
+    settings->comment_count = 0;
+}
+
+//Hands the file encode summary back to the java result object
+void setEncodeResult(JNIEnv *env, jobject* encodeResult, encode_file_result* result) {
+    jclass encodeResultClass = (*env)->GetObjectClass(env, (*encodeResult));
+    jmethodID setSampleRateMethodId = (*env)->GetMethodID(env, encodeResultClass, "setSampleRate", "(J)V");
+    jmethodID setChannelsMethodId = (*env)->GetMethodID(env, encodeResultClass, "setChannels", "(I)V");
+    jmethodID setSamplesMethodId = (*env)->GetMethodID(env, encodeResultClass, "setSamples", "(J)V");
+    jmethodID setBytesMethodId = (*env)->GetMethodID(env, encodeResultClass, "setBytes", "(J)V");
+    jmethodID setPeakNativeBytesMethodId = (*env)->GetMethodID(env, encodeResultClass, "setPeakNativeBytes", "(J)V");
+
+    (*env)->CallVoidMethod(env, (*encodeResult), setSampleRateMethodId, (jlong)result->sample_rate);
+    (*env)->CallVoidMethod(env, (*encodeResult), setChannelsMethodId, (jint)result->channels);
+    (*env)->CallVoidMethod(env, (*encodeResult), setSamplesMethodId, (jlong)result->samples);
+    (*env)->CallVoidMethod(env, (*encodeResult), setBytesMethodId, (jlong)result->bytes_written);
+    (*env)->CallVoidMethod(env, (*encodeResult), setPeakNativeBytesMethodId, (jlong)result->peak_bytes);
+
+    (*env)->DeleteLocalRef(env, encodeResultClass);
+}
+
+//jni method for encoding a whole file natively
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeEncodeFile
+(JNIEnv *env, jclass cls, jstring inPath, jstring outPath, jobject encoderSettings, jobject encodeResult) {
+    encode_settings settings;
+    encode_file_result result;
+    int ret;
+
+    readEncoderSettings(env, &encoderSettings, &settings);
+
+    const char *in_path = (*env)->GetStringUTFChars(env, inPath, NULL);
+    const char *out_path = (*env)->GetStringUTFChars(env, outPath, NULL);
+
+    __android_log_print(ANDROID_LOG_INFO, "VorbisEncoder", "Encoding file %s to %s", in_path, out_path);
+    ret = encode_file(in_path, out_path, &settings, &result);
+    if(ret != SUCCESS) {
+        __android_log_print(ANDROID_LOG_ERROR, "VorbisEncoder", "Failed encoding %s to %s: %d", in_path, out_path, ret);
+    }
+    releaseEncoderSettings(&settings);
+
+    setEncodeResult(env, &encodeResult, &result);
+
+    (*env)->ReleaseStringUTFChars(env, inPath, in_path);
+    (*env)->ReleaseStringUTFChars(env, outPath, out_path);
+    return ret;
 }
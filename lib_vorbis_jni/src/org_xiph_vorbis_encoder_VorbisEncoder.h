@@ -8,6 +8,9 @@
 #include <stdarg.h>
 #include <vorbis/vorbisenc.h>
 #include <jni.h>
+#include "encode_settings.h"
+#include "encode_file.h"
+#include "bitrate_control.h"
 
 #if MIMIC_ANDROID
 #include <jni_md.h>
@@ -43,8 +46,26 @@ long readPCMDataFromEncoderDataFeed(JNIEnv *env, jobject* encoderDataFeed, jmeth
 //Writes the vorbis data to the Java layer
 int writeVorbisDataToEncoderDataFeed(JNIEnv *env, jobject* encoderDataFeed, jmethodID* writeVorbisDataMethodId, char* buffer, int bytes, jbyteArray* jByteArrayWriteBuffer);
 
-//Method to start encoding
-int startEncoding(JNIEnv *env, jclass *cls_ptr, jlong *sampleRate_ptr, jlong *channels_ptr, jfloat *quality_ptr, jlong *bitrate_ptr, jobject *encoderDataFeed_ptr, int type);
+/* the kinds of BitrateControl request */
+#define BITRATE_RESET 0
+#define BITRATE_SCALE 1
+#define BITRATE_EXACT 2
+
+//The java bitrate control of an encoding and the request it last took up
+typedef struct {
+    jobject control;     /* NULL if there is none */
+    jmethodID getGenerationMethodId;
+    jmethodID getRequestMethodId;
+    jmethodID bitrateAppliedMethodId;
+    jint generation;
+    long start_min, start_nominal, start_max; /* what the stream was set up with */
+} bitrate_poll;
+
+//Takes up a new request of the bitrate control, if there is one, and reports the bitrates now in force
+void pollBitrateControl(JNIEnv *env, bitrate_poll *poll, vorbis_dsp_state *vd);
+
+//Method to start encoding, with an optional java bitrate control
+int startEncoding(JNIEnv *env, const encode_settings *settings, jobject *encoderDataFeed_ptr, jobject bitrateControl);
 
 //jni method for encoding with quality
 JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_startEncodingWithQuality
@@ -53,6 +74,31 @@ JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_startEncodingWi
 //jni method for encoding with bitrate
 JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_startEncodingWithBitrate
 (JNIEnv *env, jclass cls, jlong sampleRate, jlong channels, jlong bitrate, jobject encoderDataFeed);
+
+//jni method for encoding with quality at an encoder speed
+JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeStartEncodingWithQuality
+(JNIEnv *env, jclass cls, jlong sampleRate, jlong channels, jfloat quality, jint speed, jobject encoderDataFeed);
+
+//jni method for encoding with bitrate at an encoder speed
+JNIEXPORT int JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeStartEncodingWithBitrate
+(JNIEnv *env, jclass cls, jlong sampleRate, jlong channels, jlong bitrate, jint speed, jobject encoderDataFeed);
+
+//jni method for encoding with the full encoder settings
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeStartEncoding
+(JNIEnv *env, jclass cls, jobject encoderSettings, jobject encoderDataFeed);
+
+//Reads the java encoder settings into their native counterpart, release them with releaseEncoderSettings
+void readEncoderSettings(JNIEnv *env, jobject* encoderSettings, encode_settings* settings);
+
+//Frees what readEncoderSettings allocated
+void releaseEncoderSettings(encode_settings* settings);
+
+//Hands the file encode summary back to the java result object
+void setEncodeResult(JNIEnv *env, jobject* encodeResult, encode_file_result* result);
+
+//jni method for encoding a whole file natively
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_encoder_VorbisEncoder_nativeEncodeFile
+(JNIEnv *env, jclass cls, jstring inPath, jstring outPath, jobject encoderSettings, jobject encodeResult);
 #ifdef __cplusplus
 }
 #endif
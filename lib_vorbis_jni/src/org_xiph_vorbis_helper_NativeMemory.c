@@ -0,0 +1,31 @@
+/* Reads the process-wide counters of the session arenas libogg keeps for
+itself and libvorbis. */
+
+#include <ogg/arena.h>
+#include "org_xiph_vorbis_helper_NativeMemory.h"
+
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativeLiveBytes
+(JNIEnv *env, jclass cls) {
+    return ogg_arena_process_live();
+}
+
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativePeakBytes
+(JNIEnv *env, jclass cls) {
+    return ogg_arena_process_peak();
+}
+
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativeCachedBytes
+(JNIEnv *env, jclass cls) {
+    return ogg_arena_process_cached();
+}
+
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativeReclaimedBytes
+(JNIEnv *env, jclass cls) {
+    return ogg_arena_process_reclaimed();
+}
+
+//Drops the blocks of the idle arenas, those in use keep theirs
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativeTrim
+(JNIEnv *env, jclass cls) {
+    ogg_arena_trim();
+}
@@ -0,0 +1,52 @@
+#include <jni.h>
+
+#ifndef _Included_org_xiph_vorbis_helper_NativeMemory
+#define _Included_org_xiph_vorbis_helper_NativeMemory
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Class:     org_xiph_vorbis_helper_NativeMemory
+ * Method:    nativeLiveBytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativeLiveBytes
+  (JNIEnv *env, jclass cls);
+
+/*
+ * Class:     org_xiph_vorbis_helper_NativeMemory
+ * Method:    nativePeakBytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativePeakBytes
+  (JNIEnv *env, jclass cls);
+
+/*
+ * Class:     org_xiph_vorbis_helper_NativeMemory
+ * Method:    nativeCachedBytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativeCachedBytes
+  (JNIEnv *env, jclass cls);
+
+/*
+ * Class:     org_xiph_vorbis_helper_NativeMemory
+ * Method:    nativeReclaimedBytes
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativeReclaimedBytes
+  (JNIEnv *env, jclass cls);
+
+/*
+ * Class:     org_xiph_vorbis_helper_NativeMemory
+ * Method:    nativeTrim
+ * Signature: ()V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_helper_NativeMemory_nativeTrim
+  (JNIEnv *env, jclass cls);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,101 @@
+/* Thin JNI layer over mixer, the Java side holds the mixer and its voices
+as longs, renders each bus from a single thread at a time and never uses a
+handle after freeing it. */
+
+#include <stdint.h>
+#include <stdlib.h>
+#include "org_xiph_vorbis_mixer_VorbisMixer.h"
+#include "mixer.h"
+
+#define MIXER(handle) ((mixer *) (intptr_t) (handle))
+#define VOICE(handle) ((mixer_voice *) (intptr_t) (handle))
+
+//Creates the mixer, returns 0 if out of memory
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeNew
+(JNIEnv *env, jclass cls, jint channels, jint blockFrames, jint buses, jint pcmFormat, jboolean dither, jfloat gain) {
+    return (jlong) (intptr_t) mixer_new(channels, blockFrames, buses, pcmFormat, dither, gain);
+}
+
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeFree
+(JNIEnv *env, jclass cls, jlong handle) {
+    mixer_free(MIXER(handle));
+}
+
+//Opens a voice and fills in channels, sample rate and total samples, returns 0 if it cannot be decoded
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeOpenVoice
+(JNIEnv *env, jclass cls, jstring path, jlongArray info) {
+    const char *file_path = (*env)->GetStringUTFChars(env, path, NULL);
+    mixer_voice *voice = mixer_voice_open(file_path);
+    jlong values[3];
+
+    (*env)->ReleaseStringUTFChars(env, path, file_path);
+    if(voice == NULL) {
+        return 0;
+    }
+    values[0] = mixer_voice_channels(voice);
+    values[1] = mixer_voice_rate(voice);
+    values[2] = mixer_voice_total(voice);
+    (*env)->SetLongArrayRegion(env, info, 0, 3, values);
+    return (jlong) (intptr_t) voice;
+}
+
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeSchedule
+(JNIEnv *env, jclass cls, jlong voice, jlong start, jlong stop) {
+    mixer_voice_schedule(VOICE(voice), start, stop);
+}
+
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeFade
+(JNIEnv *env, jclass cls, jlong voice, jfloat gain, jlong at, jlong frames) {
+    mixer_voice_fade(VOICE(voice), gain, at, (long) frames);
+}
+
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativePan
+(JNIEnv *env, jclass cls, jlong voice, jfloat pan) {
+    mixer_voice_pan(VOICE(voice), pan);
+}
+
+//Clears a bus and renders the voices from up to to into it, recording in playing which of them are still going. Several
+//threads render at once into different buses and ranges of the arrays, so only their own range is copied in and out
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeRender
+(JNIEnv *env, jclass cls, jlong handle, jint bus, jlongArray voices, jint from, jint to, jint frames, jlong position, jbooleanArray playing) {
+    mixer *mix = MIXER(handle);
+    float **channels = mixer_bus(mix, bus);
+    jint count = to - from;
+    jlong *handles;
+    jboolean *flags;
+    jint i;
+
+    if(count <= 0) {
+        return;
+    }
+    handles = malloc(count * (sizeof(jlong) + sizeof(jboolean)));
+    if(handles == NULL) {
+        return;
+    }
+    flags = (jboolean *) (handles + count);
+    (*env)->GetLongArrayRegion(env, voices, from, count, handles);
+    for(i = 0; i < count; i++) {
+        flags[i] = (jboolean) mixer_voice_render(VOICE(handles[i]), channels, mixer_channels(mix), frames, position);
+    }
+    (*env)->SetBooleanArrayRegion(env, playing, from, count, flags);
+    free(handles);
+}
+
+//Sums the buses used into the output array, returns the samples clipped
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeMixdown
+(JNIEnv *env, jclass cls, jlong handle, jint buses, jint frames, jbyteArray out, jint offset) {
+    jbyte *bytes = (*env)->GetPrimitiveArrayCritical(env, out, NULL);
+    jlong clipped;
+
+    if(bytes == NULL) {
+        return 0;
+    }
+    clipped = mixer_mixdown(MIXER(handle), buses, frames, bytes + offset);
+    (*env)->ReleasePrimitiveArrayCritical(env, out, bytes, 0);
+    return clipped;
+}
+
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeCloseVoice
+(JNIEnv *env, jclass cls, jlong voice) {
+    mixer_voice_close(VOICE(voice));
+}
@@ -0,0 +1,84 @@
+#include <jni.h>
+
+#ifndef _Included_org_xiph_vorbis_mixer_VorbisMixer
+#define _Included_org_xiph_vorbis_mixer_VorbisMixer
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativeNew
+ * Signature: (IIIIZF)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeNew
+  (JNIEnv *env, jclass cls, jint channels, jint blockFrames, jint buses, jint pcmFormat, jboolean dither, jfloat gain);
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativeFree
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeFree
+  (JNIEnv *env, jclass cls, jlong handle);
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativeOpenVoice
+ * Signature: (Ljava/lang/String;[J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeOpenVoice
+  (JNIEnv *env, jclass cls, jstring path, jlongArray info);
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativeSchedule
+ * Signature: (JJJ)V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeSchedule
+  (JNIEnv *env, jclass cls, jlong voice, jlong start, jlong stop);
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativeFade
+ * Signature: (JFJJ)V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeFade
+  (JNIEnv *env, jclass cls, jlong voice, jfloat gain, jlong at, jlong frames);
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativePan
+ * Signature: (JF)V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativePan
+  (JNIEnv *env, jclass cls, jlong voice, jfloat pan);
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativeRender
+ * Signature: (JI[JIIIJ[Z)V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeRender
+  (JNIEnv *env, jclass cls, jlong handle, jint bus, jlongArray voices, jint from, jint to, jint frames, jlong position, jbooleanArray playing);
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativeMixdown
+ * Signature: (JII[BI)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeMixdown
+  (JNIEnv *env, jclass cls, jlong handle, jint buses, jint frames, jbyteArray out, jint offset);
+
+/*
+ * Class:     org_xiph_vorbis_mixer_VorbisMixer
+ * Method:    nativeCloseVoice
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_mixer_VorbisMixer_nativeCloseVoice
+  (JNIEnv *env, jclass cls, jlong voice);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,90 @@
+/* Thin JNI layer over transcoder, the Java side holds the transcoder and its
+rungs as longs, encodes each rung from a single thread at a time, never
+decodes into a buffer that is being encoded and never uses a handle after
+freeing it. */
+
+#include <stdint.h>
+#include <stdlib.h>
+#include "org_xiph_vorbis_transcode_VorbisTranscoder.h"
+#include "org_xiph_vorbis_encoder_VorbisEncoder.h"
+#include "transcoder.h"
+
+#define TRANSCODER(handle) ((transcoder *) (intptr_t) (handle))
+#define RUNG(handle) ((transcoder_rung *) (intptr_t) (handle))
+
+//Opens the source and fills in channels, sample rate and total samples, returns 0 if it cannot be decoded
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeOpen
+(JNIEnv *env, jclass cls, jstring path, jint blockFrames, jlongArray info) {
+    const char *file_path = (*env)->GetStringUTFChars(env, path, NULL);
+    transcoder *t = transcoder_open(file_path, blockFrames);
+    jlong values[3];
+
+    (*env)->ReleaseStringUTFChars(env, path, file_path);
+    if(t == NULL) {
+        return 0;
+    }
+    values[0] = transcoder_channels(t);
+    values[1] = transcoder_rate(t);
+    values[2] = transcoder_total(t);
+    (*env)->SetLongArrayRegion(env, info, 0, 3, values);
+    return (jlong) (intptr_t) t;
+}
+
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeDecode
+(JNIEnv *env, jclass cls, jlong handle, jint buffer) {
+    return (jint) transcoder_decode(TRANSCODER(handle), buffer);
+}
+
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeClose
+(JNIEnv *env, jclass cls, jlong handle) {
+    transcoder_close(TRANSCODER(handle));
+}
+
+//Sets up a rendition writing to outPath, or kept for draining when it is null, returns 0 and the reason in error if it cannot be
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeNewRung
+(JNIEnv *env, jclass cls, jlong handle, jobject encoderSettings, jlong sampleRate, jboolean sourceComments, jstring outPath, jintArray error) {
+    encode_settings settings;
+    const char *out_path = outPath != NULL ? (*env)->GetStringUTFChars(env, outPath, NULL) : NULL;
+    jint ret = ENCODE_FILE_SUCCESS;
+    transcoder_rung *rung;
+
+    readEncoderSettings(env, &encoderSettings, &settings);
+    rung = transcoder_rung_new(TRANSCODER(handle), &settings, (long) sampleRate, sourceComments == JNI_TRUE, out_path, &ret);
+    releaseEncoderSettings(&settings);
+
+    if(out_path != NULL) {
+        (*env)->ReleaseStringUTFChars(env, outPath, out_path);
+    }
+    (*env)->SetIntArrayRegion(env, error, 0, 1, &ret);
+    return (jlong) (intptr_t) rung;
+}
+
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeEncode
+(JNIEnv *env, jclass cls, jlong rung, jlong handle, jint buffer, jint frames) {
+    return transcoder_rung_encode(RUNG(rung), TRANSCODER(handle), buffer, frames);
+}
+
+//Copies as much of the encoded pages as fits into out, returns the bytes copied
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeDrain
+(JNIEnv *env, jclass cls, jlong rung, jbyteArray out) {
+    jsize capacity = (*env)->GetArrayLength(env, out);
+    jbyte *bytes = (*env)->GetPrimitiveArrayCritical(env, out, NULL);
+    long count;
+
+    if(bytes == NULL) {
+        return 0;
+    }
+    count = transcoder_rung_drain(RUNG(rung), (unsigned char *) bytes, capacity);
+    (*env)->ReleasePrimitiveArrayCritical(env, out, bytes, 0);
+    return (jint) count;
+}
+
+//Hands the summary of the rendition to the result and frees it, returns an error if its file could not be completed
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeFreeRung
+(JNIEnv *env, jclass cls, jlong rung, jobject encodeResult) {
+    encode_file_result result;
+
+    transcoder_rung_result(RUNG(rung), &result);
+    setEncodeResult(env, &encodeResult, &result);
+    return transcoder_rung_free(RUNG(rung));
+}
@@ -0,0 +1,68 @@
+#include <jni.h>
+
+#ifndef _Included_org_xiph_vorbis_transcode_VorbisTranscoder
+#define _Included_org_xiph_vorbis_transcode_VorbisTranscoder
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Class:     org_xiph_vorbis_transcode_VorbisTranscoder
+ * Method:    nativeOpen
+ * Signature: (Ljava/lang/String;I[J)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeOpen
+  (JNIEnv *env, jclass cls, jstring path, jint blockFrames, jlongArray info);
+
+/*
+ * Class:     org_xiph_vorbis_transcode_VorbisTranscoder
+ * Method:    nativeDecode
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeDecode
+  (JNIEnv *env, jclass cls, jlong handle, jint buffer);
+
+/*
+ * Class:     org_xiph_vorbis_transcode_VorbisTranscoder
+ * Method:    nativeClose
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeClose
+  (JNIEnv *env, jclass cls, jlong handle);
+
+/*
+ * Class:     org_xiph_vorbis_transcode_VorbisTranscoder
+ * Method:    nativeNewRung
+ * Signature: (JLorg/xiph/vorbis/encoder/EncoderSettings;JZLjava/lang/String;[I)J
+ */
+JNIEXPORT jlong JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeNewRung
+  (JNIEnv *env, jclass cls, jlong handle, jobject encoderSettings, jlong sampleRate, jboolean sourceComments, jstring outPath, jintArray error);
+
+/*
+ * Class:     org_xiph_vorbis_transcode_VorbisTranscoder
+ * Method:    nativeEncode
+ * Signature: (JJII)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeEncode
+  (JNIEnv *env, jclass cls, jlong rung, jlong handle, jint buffer, jint frames);
+
+/*
+ * Class:     org_xiph_vorbis_transcode_VorbisTranscoder
+ * Method:    nativeDrain
+ * Signature: (J[B)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeDrain
+  (JNIEnv *env, jclass cls, jlong rung, jbyteArray out);
+
+/*
+ * Class:     org_xiph_vorbis_transcode_VorbisTranscoder
+ * Method:    nativeFreeRung
+ * Signature: (JLorg/xiph/vorbis/encoder/EncodeResult;)I
+ */
+JNIEXPORT jint JNICALL Java_org_xiph_vorbis_transcode_VorbisTranscoder_nativeFreeRung
+  (JNIEnv *env, jclass cls, jlong rung, jobject encodeResult);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,254 @@
+/* Converts the planar float pcm produced by libvorbis into interleaved
+ * output. Stereo and mono, the common cases, go through an SSE2 path
+ * that scales, clamps, saturating packs and interleaves four frames at a
+ * time; everything else falls back to a branch free scalar loop. The
+ * gain is folded into the same pass, so normalising costs one multiply. */
+
+#include <math.h>
+#include <string.h>
+#include "pcm_convert.h"
+
+#if defined(__SSE2__) || defined(_M_X64) || (defined(_M_IX86_FP) && _M_IX86_FP >= 2)
+#define PCM_CONVERT_SSE2 1
+#include <emmintrin.h>
+#else
+#define PCM_CONVERT_SSE2 0
+#endif
+
+static const int bytes_per_sample[] = { 2, 4, 4, 4 };
+
+/* scale and clamp limits per format, the s32 maximum is the largest float
+   below 2^31 so the conversion can never overflow */
+static const float format_scale[] = { 32767.f, 8388607.f, 2147483647.f, 1.f };
+static const float format_max[] = { 32767.f, 8388607.f, 2147483520.f, 1.f };
+static const float format_min[] = { -32768.f, -8388608.f, -2147483648.f, -1.f };
+
+void pcm_convert_init(pcm_convert_state *state, int format, int dither) {
+	state->format = format;
+	state->dither = dither && format == PCM_FORMAT_S16;
+	/* any non zero seeds will do, they only have to differ per lane */
+	state->seed[0] = 0x9e3779b9;
+	state->seed[1] = 0x7f4a7c15;
+	state->seed[2] = 0x6a09e667;
+	state->seed[3] = 0xbb67ae85;
+	state->clipped = 0;
+	state->gain = 1.f;
+}
+
+void pcm_convert_set_gain(pcm_convert_state *state, float gain) {
+	state->gain = gain;
+}
+
+int pcm_convert_bytes_per_sample(int format) {
+	if (format < PCM_FORMAT_S16 || format > PCM_FORMAT_F32) {
+		return 0;
+	}
+	return bytes_per_sample[format];
+}
+
+/* xorshift32, good enough for dither noise and cheap to vectorise */
+static float next_uniform(ogg_uint32_t *seed) {
+	ogg_uint32_t x = *seed;
+	x ^= x << 13;
+	x ^= x >> 17;
+	x ^= x << 5;
+	*seed = x;
+	return (float)(x >> 8) * (1.f / 16777216.f);
+}
+
+/* triangular probability density noise spanning +-1 lsb */
+static float tpdf(ogg_uint32_t *seed) {
+	return next_uniform(seed) - next_uniform(seed);
+}
+
+static long convert_s16_scalar(pcm_convert_state *state, float **pcm, int channels, int from, int samples, ogg_int16_t *out) {
+	const float gain = state->gain;
+	long clipped = 0;
+	int i, j;
+	for (i = 0; i < channels; i++) {
+		const float *mono = pcm[i];
+		ogg_int16_t *ptr = out + from * channels + i;
+		for (j = from; j < samples; j++) {
+			float x = mono[j] * gain;
+			float val = x * 32767.f;
+			clipped += (x > 1.f) | (x < -1.f);
+			if (state->dither) {
+				val += tpdf(&state->seed[0]);
+			}
+			val = val > 32767.f ? 32767.f : val;
+			val = val < -32768.f ? -32768.f : val;
+			*ptr = (ogg_int16_t) lrintf(val);
+			ptr += channels;
+		}
+	}
+	return clipped;
+}
+
+static long convert_s32_scalar(int format, float gain, float **pcm, int channels, int from, int samples, ogg_int32_t *out) {
+	const float scale = format_scale[format];
+	const float max = format_max[format];
+	const float min = format_min[format];
+	long clipped = 0;
+	int i, j;
+	for (i = 0; i < channels; i++) {
+		const float *mono = pcm[i];
+		ogg_int32_t *ptr = out + from * channels + i;
+		for (j = from; j < samples; j++) {
+			float x = mono[j] * gain;
+			float val = x * scale;
+			clipped += (x > 1.f) | (x < -1.f);
+			val = val > max ? max : val;
+			val = val < min ? min : val;
+			*ptr = (ogg_int32_t) lrintf(val);
+			ptr += channels;
+		}
+	}
+	return clipped;
+}
+
+static long convert_f32_scalar(float gain, float **pcm, int channels, int from, int samples, float *out) {
+	long clipped = 0;
+	int i, j;
+	for (i = 0; i < channels; i++) {
+		const float *mono = pcm[i];
+		float *ptr = out + from * channels + i;
+		for (j = from; j < samples; j++) {
+			float x = mono[j] * gain;
+			clipped += (x > 1.f) | (x < -1.f);
+			*ptr = x;
+			ptr += channels;
+		}
+	}
+	return clipped;
+}
+
+#if PCM_CONVERT_SSE2
+static const int popcount4[16] = { 0, 1, 1, 2, 1, 2, 2, 3, 1, 2, 2, 3, 2, 3, 3, 4 };
+
+static __m128i xorshift4(__m128i x) {
+	x = _mm_xor_si128(x, _mm_slli_epi32(x, 13));
+	x = _mm_xor_si128(x, _mm_srli_epi32(x, 17));
+	x = _mm_xor_si128(x, _mm_slli_epi32(x, 5));
+	return x;
+}
+
+static __m128 tpdf4(__m128i *seed) {
+	const __m128 norm = _mm_set1_ps(1.f / 16777216.f);
+	__m128i a = xorshift4(*seed);
+	__m128i b = xorshift4(a);
+	*seed = b;
+	return _mm_mul_ps(_mm_sub_ps(_mm_cvtepi32_ps(_mm_srli_epi32(a, 8)), _mm_cvtepi32_ps(_mm_srli_epi32(b, 8))), norm);
+}
+
+/* handles mono and stereo four (or eight for mono s16) frames at a time,
+   returns the number of frames converted */
+static int convert_sse2(pcm_convert_state *state, float **pcm, int channels, int samples, void *out, long *clipped) {
+	const int format = state->format;
+	const int step = (format == PCM_FORMAT_S16 && channels == 1) ? 8 : 4;
+	const int vectors = (channels == 2 || step == 8) ? 2 : 1;
+	const __m128 one = _mm_set1_ps(1.f);
+	const __m128 gain = _mm_set1_ps(state->gain);
+	const __m128 sign = _mm_set1_ps(-0.f);
+	const __m128 scale = _mm_set1_ps(format_scale[format]);
+	const __m128 max = _mm_set1_ps(format_max[format]);
+	const __m128 min = _mm_set1_ps(format_min[format]);
+	__m128i seed = _mm_loadu_si128((const __m128i *) state->seed);
+	long clip = 0;
+	int j, k;
+
+	for (j = 0; j + step <= samples; j += step) {
+		__m128 v[2];
+		if (channels == 2) {
+			v[0] = _mm_loadu_ps(pcm[0] + j);
+			v[1] = _mm_loadu_ps(pcm[1] + j);
+		} else {
+			v[0] = _mm_loadu_ps(pcm[0] + j);
+			if (vectors == 2) {
+				v[1] = _mm_loadu_ps(pcm[0] + j + 4);
+			}
+		}
+
+		for (k = 0; k < vectors; k++) {
+			__m128 x = _mm_mul_ps(v[k], gain);
+			clip += popcount4[_mm_movemask_ps(_mm_cmpgt_ps(_mm_andnot_ps(sign, x), one))];
+			if (format != PCM_FORMAT_F32) {
+				x = _mm_mul_ps(x, scale);
+				if (state->dither) {
+					x = _mm_add_ps(x, tpdf4(&seed));
+				}
+				x = _mm_min_ps(_mm_max_ps(x, min), max);
+			}
+			v[k] = x;
+		}
+
+		switch (format) {
+			case PCM_FORMAT_S16: {
+				__m128i packed = _mm_packs_epi32(_mm_cvtps_epi32(v[0]), _mm_cvtps_epi32(v[1]));
+				if (channels == 2) {
+					/* l0..l3 r0..r3 -> l0 r0 l1 r1 l2 r2 l3 r3 */
+					packed = _mm_unpacklo_epi16(packed, _mm_srli_si128(packed, 8));
+				}
+				_mm_storeu_si128((__m128i *) ((ogg_int16_t *) out + j * channels), packed);
+				break;
+			}
+			case PCM_FORMAT_S24_IN_32:
+			case PCM_FORMAT_S32: {
+				__m128i *dst = (__m128i *) ((ogg_int32_t *) out + j * channels);
+				__m128i a = _mm_cvtps_epi32(v[0]);
+				if (channels == 2) {
+					__m128i b = _mm_cvtps_epi32(v[1]);
+					_mm_storeu_si128(dst, _mm_unpacklo_epi32(a, b));
+					_mm_storeu_si128(dst + 1, _mm_unpackhi_epi32(a, b));
+				} else {
+					_mm_storeu_si128(dst, a);
+				}
+				break;
+			}
+			default: {
+				float *dst = (float *) out + j * channels;
+				if (channels == 2) {
+					_mm_storeu_ps(dst, _mm_unpacklo_ps(v[0], v[1]));
+					_mm_storeu_ps(dst + 4, _mm_unpackhi_ps(v[0], v[1]));
+				} else {
+					_mm_storeu_ps(dst, v[0]);
+				}
+				break;
+			}
+		}
+	}
+
+	_mm_storeu_si128((__m128i *) state->seed, seed);
+	*clipped += clip;
+	return j;
+}
+#endif
+
+long pcm_convert(pcm_convert_state *state, float **pcm, int channels, int samples, void *out) {
+	long clipped = 0;
+	int done = 0;
+
+#if PCM_CONVERT_SSE2
+	if (channels == 1 || channels == 2) {
+		done = convert_sse2(state, pcm, channels, samples, out, &clipped);
+	}
+#endif
+
+	/* whatever the vector path left over, or everything on other layouts */
+	if (done < samples) {
+		switch (state->format) {
+			case PCM_FORMAT_S16:
+				clipped += convert_s16_scalar(state, pcm, channels, done, samples, (ogg_int16_t *) out);
+				break;
+			case PCM_FORMAT_S24_IN_32:
+			case PCM_FORMAT_S32:
+				clipped += convert_s32_scalar(state->format, state->gain, pcm, channels, done, samples, (ogg_int32_t *) out);
+				break;
+			default:
+				clipped += convert_f32_scalar(state->gain, pcm, channels, done, samples, (float *) out);
+				break;
+		}
+	}
+
+	state->clipped += clipped;
+	return clipped;
+}
@@ -0,0 +1,43 @@
+/* Converts the planar float pcm produced by libvorbis into interleaved
+ * integer or float output, applying a linear gain and counting the
+ * samples that had to be clipped.
+ */
+#ifndef _PCM_CONVERT_H
+#define _PCM_CONVERT_H
+
+#include <ogg/os_types.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* output formats, must match the ordinals of org.xiph.vorbis.decoder.PcmFormat */
+#define PCM_FORMAT_S16 0
+#define PCM_FORMAT_S24_IN_32 1
+#define PCM_FORMAT_S32 2
+#define PCM_FORMAT_F32 3
+
+typedef struct {
+	int format;
+	int dither;             /* TPDF dither, only used for PCM_FORMAT_S16 */
+	float gain;             /* linear gain applied before clipping, 1 by default */
+	ogg_uint32_t seed[4];   /* xorshift state for the dither noise, one per vector lane */
+	ogg_int64_t clipped;    /* running count of samples outside full scale */
+} pcm_convert_state;
+
+//Sets up a conversion state for the given output format
+void pcm_convert_init(pcm_convert_state *state, int format, int dither);
+
+//Sets the linear gain applied to every sample ahead of the conversion
+void pcm_convert_set_gain(pcm_convert_state *state, float gain);
+
+//Size in bytes of a single channel sample in the given output format
+int pcm_convert_bytes_per_sample(int format);
+
+//Converts samples frames of planar float pcm to interleaved output, returns how many samples were clipped
+long pcm_convert(pcm_convert_state *state, float **pcm, int channels, int samples, void *out);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
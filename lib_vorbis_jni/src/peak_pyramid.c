@@ -0,0 +1,303 @@
+/* Reduces decoded audio to min/max/rms waveform peaks at several zoom
+ * levels. Only the finest level looks at every sample, each finished
+ * bin is folded into the next coarser level, so the cost barely grows
+ * with the number of levels.
+ *
+ * Peak file layout, all little endian:
+ *   "VPKS", u16 version (1), u16 channels, u32 sample rate,
+ *   u64 total sample frames, u16 level count, u16 reserved (0),
+ *   per level: u32 samples per bin, u64 bin count,
+ *   then per level, per bin, per channel: s16 min, s16 max, s16 rms
+ *   with full scale at 32767. */
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <math.h>
+#include <vorbis/codec.h>
+#include <vorbis/vorbisfile.h>
+#include "peak_pyramid.h"
+
+#define PEAK_FILE_VERSION 1
+#define READ_FRAMES 4096
+
+typedef struct {
+	float min;
+	float max;
+	double sumsq;
+} peak_accumulator;
+
+typedef struct {
+	long samples_per_bin;
+	long count;                 /* samples in the bin being built */
+	peak_accumulator *acc;      /* one per channel */
+	ogg_int16_t *bins;          /* min, max, rms per channel per bin */
+	long bin_count;
+	long bin_capacity;
+} peak_level;
+
+struct peak_pyramid {
+	int channels;
+	int levels;
+	ogg_int64_t samples;
+	peak_level level[PEAK_PYRAMID_MAX_LEVELS];
+};
+
+static void reset_accumulators(peak_level *level, int channels) {
+	int c;
+	for (c = 0; c < channels; c++) {
+		level->acc[c].min = 0.f;
+		level->acc[c].max = 0.f;
+		level->acc[c].sumsq = 0.;
+	}
+	level->count = 0;
+}
+
+static ogg_int16_t quantize(float value) {
+	long q = lrintf(value * 32767.f);
+	return (ogg_int16_t) (q > 32767 ? 32767 : q < -32767 ? -32767 : q);
+}
+
+/* stores the bin being built in a level and folds it into the next
+   coarser one, which may in turn complete */
+static int close_bin(peak_pyramid *pyramid, int index) {
+	peak_level *level = &pyramid->level[index];
+	int channels = pyramid->channels;
+	ogg_int16_t *out;
+	int c;
+
+	if (level->bin_count == level->bin_capacity) {
+		long capacity = level->bin_capacity ? level->bin_capacity * 2 : 1024;
+		ogg_int16_t *bins = realloc(level->bins, (size_t) capacity * channels * 3 * sizeof(*bins));
+		if (bins == NULL) {
+			return 0;
+		}
+		level->bins = bins;
+		level->bin_capacity = capacity;
+	}
+
+	out = level->bins + (size_t) level->bin_count * channels * 3;
+	for (c = 0; c < channels; c++) {
+		peak_accumulator *acc = &level->acc[c];
+		out[0] = quantize(acc->min);
+		out[1] = quantize(acc->max);
+		out[2] = quantize((float) sqrt(acc->sumsq / level->count));
+		out += 3;
+	}
+	level->bin_count++;
+
+	if (index + 1 < pyramid->levels) {
+		peak_level *next = &pyramid->level[index + 1];
+		for (c = 0; c < channels; c++) {
+			peak_accumulator *acc = &level->acc[c];
+			peak_accumulator *into = &next->acc[c];
+			if (next->count == 0 || acc->min < into->min) {
+				into->min = acc->min;
+			}
+			if (next->count == 0 || acc->max > into->max) {
+				into->max = acc->max;
+			}
+			into->sumsq += acc->sumsq;
+		}
+		next->count += level->count;
+		if (next->count == next->samples_per_bin && !close_bin(pyramid, index + 1)) {
+			return 0;
+		}
+	}
+
+	reset_accumulators(level, channels);
+	return 1;
+}
+
+peak_pyramid *peak_pyramid_new(int channels, const long *samples_per_bin, int levels) {
+	peak_pyramid *pyramid;
+	int i;
+
+	if (channels < 1 || levels < 1 || levels > PEAK_PYRAMID_MAX_LEVELS) {
+		return NULL;
+	}
+	for (i = 0; i < levels; i++) {
+		if (samples_per_bin[i] < 1 || (i > 0 && samples_per_bin[i] % samples_per_bin[i - 1])) {
+			return NULL;
+		}
+	}
+
+	pyramid = calloc(1, sizeof(*pyramid));
+	if (pyramid == NULL) {
+		return NULL;
+	}
+	pyramid->channels = channels;
+	pyramid->levels = levels;
+	for (i = 0; i < levels; i++) {
+		pyramid->level[i].samples_per_bin = samples_per_bin[i];
+		pyramid->level[i].acc = calloc(channels, sizeof(peak_accumulator));
+		if (pyramid->level[i].acc == NULL) {
+			peak_pyramid_free(pyramid);
+			return NULL;
+		}
+	}
+	return pyramid;
+}
+
+int peak_pyramid_add(peak_pyramid *pyramid, float **pcm, long samples) {
+	peak_level *finest = &pyramid->level[0];
+	long done = 0;
+	int c;
+
+	while (done < samples) {
+		long n = finest->samples_per_bin - finest->count;
+		if (n > samples - done) {
+			n = samples - done;
+		}
+
+		for (c = 0; c < pyramid->channels; c++) {
+			const float *in = pcm[c] + done;
+			peak_accumulator *acc = &finest->acc[c];
+			float min = finest->count ? acc->min : in[0];
+			float max = finest->count ? acc->max : in[0];
+			double sumsq = 0.;
+			long j;
+			for (j = 0; j < n; j++) {
+				float v = in[j];
+				min = v < min ? v : min;
+				max = v > max ? v : max;
+				sumsq += v * v;
+			}
+			acc->min = min;
+			acc->max = max;
+			acc->sumsq += sumsq;
+		}
+
+		finest->count += n;
+		done += n;
+		if (finest->count == finest->samples_per_bin && !close_bin(pyramid, 0)) {
+			return 0;
+		}
+	}
+	pyramid->samples += samples;
+	return 1;
+}
+
+static void put16(unsigned char *p, unsigned int v) {
+	p[0] = v & 0xff;
+	p[1] = (v >> 8) & 0xff;
+}
+
+static void put32(unsigned char *p, ogg_uint32_t v) {
+	put16(p, v & 0xffff);
+	put16(p + 2, v >> 16);
+}
+
+static void put64(unsigned char *p, ogg_int64_t v) {
+	put32(p, (ogg_uint32_t) (v & 0xffffffff));
+	put32(p + 4, (ogg_uint32_t) (v >> 32));
+}
+
+int peak_pyramid_write(peak_pyramid *pyramid, const char *path, long rate) {
+	unsigned char header[24 + 12 * PEAK_PYRAMID_MAX_LEVELS];
+	unsigned char *p = header;
+	FILE *out;
+	int i, ok;
+
+	/* close the trailing partial bins, finest first so they fold upward */
+	for (i = 0; i < pyramid->levels; i++) {
+		if (pyramid->level[i].count > 0 && !close_bin(pyramid, i)) {
+			return -1;
+		}
+	}
+
+	memcpy(p, "VPKS", 4);
+	put16(p + 4, PEAK_FILE_VERSION);
+	put16(p + 6, pyramid->channels);
+	put32(p + 8, rate);
+	put64(p + 12, pyramid->samples);
+	put16(p + 20, pyramid->levels);
+	put16(p + 22, 0);
+	p += 24;
+	for (i = 0; i < pyramid->levels; i++) {
+		put32(p, pyramid->level[i].samples_per_bin);
+		put64(p + 4, pyramid->level[i].bin_count);
+		p += 12;
+	}
+
+	out = fopen(path, "wb");
+	if (out == NULL) {
+		return -1;
+	}
+	ok = fwrite(header, 1, p - header, out) == (size_t) (p - header);
+	for (i = 0; ok && i < pyramid->levels; i++) {
+		peak_level *level = &pyramid->level[i];
+		size_t values = (size_t) level->bin_count * pyramid->channels * 3;
+		size_t j;
+		/* the peaks are kept in host order, the file is little endian */
+		for (j = 0; j < values; j++) {
+			put16((unsigned char *) &level->bins[j], (ogg_uint16_t) level->bins[j]);
+		}
+		ok = fwrite(level->bins, sizeof(*level->bins), values, out) == values;
+	}
+	if (fclose(out) != 0) {
+		ok = 0;
+	}
+	return ok ? 0 : -1;
+}
+
+void peak_pyramid_free(peak_pyramid *pyramid) {
+	int i;
+	if (pyramid == NULL) {
+		return;
+	}
+	for (i = 0; i < pyramid->levels; i++) {
+		free(pyramid->level[i].acc);
+		free(pyramid->level[i].bins);
+	}
+	free(pyramid);
+}
+
+int decode_to_peaks(const char *in_path, const char *out_path, const long *samples_per_bin, int levels, decode_file_result *result) {
+	OggVorbis_File vf;
+	peak_pyramid *pyramid;
+	int channels, current_section, ret = DECODE_FILE_SUCCESS;
+	long rate;
+
+	memset(result, 0, sizeof(*result));
+
+	if (ov_fopen(in_path, &vf) < 0) {
+		return DECODE_FILE_NOT_VORBIS;
+	}
+	channels = ov_info(&vf, -1)->channels;
+	rate = ov_info(&vf, -1)->rate;
+
+	pyramid = peak_pyramid_new(channels, samples_per_bin, levels);
+	if (pyramid == NULL) {
+		ov_clear(&vf);
+		return DECODE_FILE_ERROR_WRITING_OUTPUT;
+	}
+
+	for (;;) {
+		float **pcm;
+		long frames = ov_read_float(&vf, &pcm, READ_FRAMES, &current_section);
+		if (frames == 0) {
+			break;
+		}
+		if (frames < 0) {
+			continue;
+		}
+		if (ov_info(&vf, current_section)->channels != channels) {
+			/* chained stream with a different layout, stop here */
+			break;
+		}
+		if (!peak_pyramid_add(pyramid, pcm, frames)) {
+			ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+			break;
+		}
+		result->decoded_samples += frames;
+	}
+
+	if (ret == DECODE_FILE_SUCCESS && peak_pyramid_write(pyramid, out_path, rate) != 0) {
+		ret = DECODE_FILE_ERROR_WRITING_OUTPUT;
+	}
+
+	peak_pyramid_free(pyramid);
+	ov_clear(&vf);
+	return ret;
+}
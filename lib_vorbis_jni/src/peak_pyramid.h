@@ -0,0 +1,35 @@
+/* Reduces decoded audio to min/max/rms waveform peaks at several zoom
+ * levels and writes them as a compact binary peak file.
+ */
+#ifndef _PEAK_PYRAMID_H
+#define _PEAK_PYRAMID_H
+
+#include <ogg/os_types.h>
+#include "decode_file.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define PEAK_PYRAMID_MAX_LEVELS 16
+
+typedef struct peak_pyramid peak_pyramid;
+
+//Creates a pyramid, every level's samples per bin must be a multiple of the previous one
+peak_pyramid *peak_pyramid_new(int channels, const long *samples_per_bin, int levels);
+
+//Folds samples frames of planar float pcm into every level
+int peak_pyramid_add(peak_pyramid *pyramid, float **pcm, long samples);
+
+//Closes the trailing partial bins and writes the peak file, returns 0 on success
+int peak_pyramid_write(peak_pyramid *pyramid, const char *path, long rate);
+
+void peak_pyramid_free(peak_pyramid *pyramid);
+
+//Decodes in_path and writes its peak file to out_path, returns one of the decode_file result codes
+int decode_to_peaks(const char *in_path, const char *out_path, const long *samples_per_bin, int levels, decode_file_result *result);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,187 @@
+/* Decodes an Ogg Vorbis file a caller sized chunk at a time. Every read
+ * asks vorbisfile for no more frames than still fit the caller's buffer
+ * and converts them straight into it, so nothing is buffered in between and
+ * a handle can sit idle for as long as the caller likes. The decoder state
+ * lives in an arena of its own, used by whichever thread calls in. */
+
+#include <stdlib.h>
+#include <vorbis/codec.h>
+#include <vorbis/vorbisfile.h>
+#include "pcm_convert.h"
+#include "decode_file.h"
+#include "pull_decoder.h"
+
+struct pull_decoder {
+	ogg_arena *arena;
+	OggVorbis_File vf;
+	pcm_convert_state convert;
+	int channels;
+	long rate;
+	int frame_bytes;
+	int ended;
+};
+
+static void setup(pull_decoder *decoder, int format, int dither, float gain) {
+	vorbis_info *vi = ov_info(&decoder->vf, -1);
+	decoder->channels = vi->channels;
+	decoder->rate = vi->rate;
+	decoder->frame_bytes = pcm_convert_bytes_per_sample(format) * vi->channels;
+	pcm_convert_init(&decoder->convert, format, dither);
+	pcm_convert_set_gain(&decoder->convert, gain);
+}
+
+/* frees a decoder that failed to open, vorbisfile has cleared up after itself */
+static pull_decoder *open_failed(pull_decoder *decoder, ogg_arena *previous) {
+	ogg_arena_use(previous);
+	ogg_arena_release(decoder->arena);
+	free(decoder);
+	return NULL;
+}
+
+pull_decoder *pull_decoder_open(const char *path, int format, int dither, float gain) {
+	pull_decoder *decoder = calloc(1, sizeof(pull_decoder));
+	ogg_arena *previous;
+
+	if (decoder == NULL) {
+		return NULL;
+	}
+	decoder->arena = ogg_arena_acquire();
+	previous = ogg_arena_use(decoder->arena);
+	if (ov_fopen(path, &decoder->vf) < 0) {
+		return open_failed(decoder, previous);
+	}
+	ogg_arena_use(previous);
+	setup(decoder, format, dither, gain);
+	return decoder;
+}
+
+pull_decoder *pull_decoder_open_callbacks(void *datasource, ov_callbacks callbacks, int format, int dither, float gain) {
+	pull_decoder *decoder = calloc(1, sizeof(pull_decoder));
+	ogg_arena *previous;
+
+	if (decoder == NULL) {
+		return NULL;
+	}
+	decoder->arena = ogg_arena_acquire();
+	previous = ogg_arena_use(decoder->arena);
+	if (ov_open_callbacks(datasource, &decoder->vf, NULL, 0, callbacks) < 0) {
+		return open_failed(decoder, previous);
+	}
+	ogg_arena_use(previous);
+	setup(decoder, format, dither, gain);
+	return decoder;
+}
+
+int pull_decoder_channels(const pull_decoder *decoder) {
+	return decoder->channels;
+}
+
+long pull_decoder_rate(const pull_decoder *decoder) {
+	return decoder->rate;
+}
+
+vorbis_comment *pull_decoder_comment(pull_decoder *decoder) {
+	return ov_comment(&decoder->vf, 0);
+}
+
+ogg_int64_t pull_decoder_total(const pull_decoder *decoder) {
+	/* ov_seekable and ov_pcm_total only read the handle but are not declared const */
+	OggVorbis_File *vf = (OggVorbis_File *) &decoder->vf;
+	return ov_seekable(vf) ? ov_pcm_total(vf, -1) : -1;
+}
+
+static long read_pcm(pull_decoder *decoder, void *out, long capacity) {
+	long frames_wanted = capacity / decoder->frame_bytes;
+	long bytes = 0;
+	int section;
+
+	/* vorbisfile hands out at most a block per call, keep going until the buffer is full */
+	while (!decoder->ended && frames_wanted > 0) {
+		float **pcm;
+		long frames = ov_read_float(&decoder->vf, &pcm, frames_wanted, &section);
+		if (frames == OV_HOLE) {
+			/* a hole in the data, keep going like the player does */
+			continue;
+		}
+		if (frames < 0) {
+			return bytes > 0 ? bytes : PULL_DECODER_ERROR_DECODING;
+		}
+		if (frames == 0 || ov_info(&decoder->vf, section)->channels != decoder->channels) {
+			/* a chained stream changing its layout ends the output, like decode_to_file */
+			decoder->ended = 1;
+			break;
+		}
+		pcm_convert(&decoder->convert, pcm, decoder->channels, frames, (char *) out + bytes);
+		bytes += frames * decoder->frame_bytes;
+		frames_wanted -= frames;
+	}
+	return bytes;
+}
+
+long pull_decoder_read(pull_decoder *decoder, void *out, long capacity) {
+	ogg_arena *previous = ogg_arena_use(decoder->arena);
+	long bytes = read_pcm(decoder, out, capacity);
+	ogg_arena_use(previous);
+	return bytes;
+}
+
+static long read_float(pull_decoder *decoder, float ***pcm, long max_frames) {
+	int section;
+
+	while (!decoder->ended && max_frames > 0) {
+		long frames = ov_read_float(&decoder->vf, pcm, max_frames, &section);
+		if (frames == OV_HOLE) {
+			continue;
+		}
+		if (frames < 0) {
+			return PULL_DECODER_ERROR_DECODING;
+		}
+		if (frames == 0 || ov_info(&decoder->vf, section)->channels != decoder->channels) {
+			decoder->ended = 1;
+			break;
+		}
+		return frames;
+	}
+	return 0;
+}
+
+long pull_decoder_read_float(pull_decoder *decoder, float ***pcm, long max_frames) {
+	ogg_arena *previous = ogg_arena_use(decoder->arena);
+	long frames = read_float(decoder, pcm, max_frames);
+	ogg_arena_use(previous);
+	return frames;
+}
+
+int pull_decoder_seek(pull_decoder *decoder, ogg_int64_t sample) {
+	ogg_arena *previous = ogg_arena_use(decoder->arena);
+	int result = ov_pcm_seek(&decoder->vf, sample);
+	ogg_arena_use(previous);
+
+	if (result != 0) {
+		return PULL_DECODER_ERROR_DECODING;
+	}
+	decoder->ended = 0;
+	return DECODE_FILE_SUCCESS;
+}
+
+ogg_int64_t pull_decoder_position(pull_decoder *decoder) {
+	return ov_pcm_tell(&decoder->vf);
+}
+
+ogg_int64_t pull_decoder_clipped(const pull_decoder *decoder) {
+	return decoder->convert.clipped;
+}
+
+long pull_decoder_native_bytes(const pull_decoder *decoder) {
+	return ogg_arena_live(decoder->arena);
+}
+
+void pull_decoder_close(pull_decoder *decoder) {
+	if (decoder != NULL) {
+		ogg_arena *previous = ogg_arena_use(decoder->arena);
+		ov_clear(&decoder->vf);
+		ogg_arena_use(previous);
+		ogg_arena_release(decoder->arena);
+		free(decoder);
+	}
+}
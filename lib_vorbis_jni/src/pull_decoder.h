@@ -0,0 +1,58 @@
+/* Decodes an Ogg Vorbis file a caller sized chunk at a time, keeping all
+ * decoder state in a handle between calls so the caller sets the pace.
+ */
+#ifndef _PULL_DECODER_H
+#define _PULL_DECODER_H
+
+#include <ogg/os_types.h>
+#include <vorbis/vorbisfile.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* result codes besides those of decode_file, shared with org.xiph.vorbis.decoder.DecodeFeed */
+#define PULL_DECODER_ERROR_DECODING -28
+
+typedef struct pull_decoder pull_decoder;
+
+//Opens path for decoding to PCM_FORMAT_* scaled by gain, NULL if it is not a readable vorbis file
+pull_decoder *pull_decoder_open(const char *path, int format, int dither, float gain);
+
+//Opens a stream read through callbacks, which are closed with the decoder but not when opening fails
+pull_decoder *pull_decoder_open_callbacks(void *datasource, ov_callbacks callbacks, int format, int dither, float gain);
+
+int pull_decoder_channels(const pull_decoder *decoder);
+
+long pull_decoder_rate(const pull_decoder *decoder);
+
+//The comments of the first stream, owned by the decoder
+vorbis_comment *pull_decoder_comment(pull_decoder *decoder);
+
+//Length in sample frames, -1 for unseekable input
+ogg_int64_t pull_decoder_total(const pull_decoder *decoder);
+
+//Fills out with as many whole interleaved frames as fit in capacity bytes, returns the bytes written, 0 at the end or a negative result code
+long pull_decoder_read(pull_decoder *decoder, void *out, long capacity);
+
+//Decodes up to max_frames and points pcm at them as planar float, valid until the next call, returns the frames, 0 at the end or a negative result code
+long pull_decoder_read_float(pull_decoder *decoder, float ***pcm, long max_frames);
+
+//Moves to the given sample frame, returns 0 or a negative result code
+int pull_decoder_seek(pull_decoder *decoder, ogg_int64_t sample);
+
+//The sample frame the next read starts at
+ogg_int64_t pull_decoder_position(pull_decoder *decoder);
+
+//Channel samples clipped so far
+ogg_int64_t pull_decoder_clipped(const pull_decoder *decoder);
+
+//Bytes the decoder state takes up in its arena
+long pull_decoder_native_bytes(const pull_decoder *decoder);
+
+void pull_decoder_close(pull_decoder *decoder);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
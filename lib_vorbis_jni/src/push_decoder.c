@@ -0,0 +1,293 @@
+/* The decode loop of the feed driven decoder turned inside out. Where that
+ * loop reads from the feed whenever the framer runs dry and writes to it
+ * whenever a chunk of pcm is ready, this one returns to the caller at both
+ * points and picks up where it left off on the next call, so the caller
+ * drives and nothing ever calls back. Chained streams, corrupt pages and
+ * the end of the input are handled the way the feed driven loop handles
+ * them. */
+
+#include <stdlib.h>
+#include <vorbis/codec.h>
+#include "pcm_convert.h"
+#include "push_decoder.h"
+
+/* result codes, shared with org.xiph.vorbis.decoder.DecodeFeed */
+#define INVALID_OGG_BITSTREAM -21
+#define ERROR_READING_FIRST_PAGE -22
+#define ERROR_READING_INITIAL_HEADER_PACKET -23
+#define NOT_VORBIS_HEADER -24
+#define CORRUPT_SECONDARY_HEADER -25
+#define PREMATURE_END_OF_FILE -26
+
+/* input searched for the first page of a stream before giving up on it, the read size of the feed driven decoder */
+#define SYNC_LIMIT 4096
+
+enum push_state {
+	STATE_SYNC,      /* looking for the first page of a stream */
+	STATE_HEADERS,   /* reading the comment and codebook headers */
+	STATE_AUDIO,
+	STATE_ENDED
+};
+
+struct push_decoder {
+	ogg_arena *arena;       /* holds everything libogg and libvorbis allocate */
+	enum push_state state;
+	int input_ended;
+	int unsynced;           /* bytes taken in while looking for the first page */
+	int headers;            /* secondary headers read so far */
+	int stream_eos;         /* the last page of the stream is in */
+	int stream_open;        /* os, vi and vc are set up */
+	int synthesis_open;     /* vd and vb are set up */
+	int frame_bytes;
+	pcm_convert_state convert;
+	ogg_int64_t decoded;
+
+	ogg_sync_state oy;
+	ogg_stream_state os;
+	ogg_page og;
+	ogg_packet op;
+	vorbis_info vi;
+	vorbis_comment vc;
+	vorbis_dsp_state vd;
+	vorbis_block vb;
+};
+
+push_decoder *push_decoder_new(int format, int dither, float gain) {
+	push_decoder *decoder = calloc(1, sizeof(push_decoder));
+
+	if (decoder == NULL) {
+		return NULL;
+	}
+	decoder->arena = ogg_arena_acquire();
+	pcm_convert_init(&decoder->convert, format, dither);
+	pcm_convert_set_gain(&decoder->convert, gain);
+	ogg_sync_init(&decoder->oy);
+	return decoder;
+}
+
+unsigned char *push_decoder_buffer(push_decoder *decoder, int size) {
+	ogg_arena *previous = ogg_arena_use(decoder->arena);
+	unsigned char *buffer = (unsigned char *) ogg_sync_buffer(&decoder->oy, size);
+	ogg_arena_use(previous);
+	return buffer;
+}
+
+void push_decoder_wrote(push_decoder *decoder, int bytes) {
+	if (bytes <= 0) {
+		decoder->input_ended = 1;
+		return;
+	}
+	ogg_sync_wrote(&decoder->oy, bytes);
+	if (decoder->state == STATE_SYNC) {
+		decoder->unsynced += bytes;
+	}
+}
+
+/* clears the state of the stream just decoded, ready for the next link of a chain */
+static void close_stream(push_decoder *decoder) {
+	if (decoder->synthesis_open) {
+		vorbis_block_clear(&decoder->vb);
+		vorbis_dsp_clear(&decoder->vd);
+		decoder->synthesis_open = 0;
+	}
+	if (decoder->stream_open) {
+		ogg_stream_clear(&decoder->os);
+		vorbis_comment_clear(&decoder->vc);
+		vorbis_info_clear(&decoder->vi);  /* must be called last */
+		decoder->stream_open = 0;
+	}
+	decoder->state = STATE_SYNC;
+	decoder->unsynced = 0;
+	decoder->headers = 0;
+	decoder->stream_eos = 0;
+}
+
+/* sets the stream up from its first page, returns 0 or a result code */
+static int open_stream(push_decoder *decoder) {
+	ogg_stream_init(&decoder->os, ogg_page_serialno(&decoder->og));
+	vorbis_info_init(&decoder->vi);
+	vorbis_comment_init(&decoder->vc);
+	decoder->stream_open = 1;
+
+	if (ogg_stream_pagein(&decoder->os, &decoder->og) < 0) {
+		return ERROR_READING_FIRST_PAGE;
+	}
+	if (ogg_stream_packetout(&decoder->os, &decoder->op) != 1) {
+		return ERROR_READING_INITIAL_HEADER_PACKET;
+	}
+	if (vorbis_synthesis_headerin(&decoder->vi, &decoder->vc, &decoder->op) < 0) {
+		return NOT_VORBIS_HEADER;
+	}
+	decoder->state = STATE_HEADERS;
+	return 0;
+}
+
+/* reads what there is of the secondary headers, returns 1 once both are in, 0 for more input or a result code */
+static int read_headers(push_decoder *decoder) {
+	while (decoder->headers < 2) {
+		int result = ogg_stream_packetout(&decoder->os, &decoder->op);
+		if (result < 0) {
+			/* data was corrupted or missing, which a header cannot tolerate */
+			return CORRUPT_SECONDARY_HEADER;
+		}
+		if (result == 1) {
+			if (vorbis_synthesis_headerin(&decoder->vi, &decoder->vc, &decoder->op) < 0) {
+				return CORRUPT_SECONDARY_HEADER;
+			}
+			decoder->headers++;
+			continue;
+		}
+		result = ogg_sync_pageout(&decoder->oy, &decoder->og);
+		if (result == 0) {
+			return decoder->input_ended ? PREMATURE_END_OF_FILE : 0;
+		}
+		if (result == 1) {
+			/* errors show up at packetout */
+			ogg_stream_pagein(&decoder->os, &decoder->og);
+		}
+	}
+	return 1;
+}
+
+static int read_pcm(push_decoder *decoder, void *out, int capacity) {
+	while (1) {
+		int result;
+
+		switch (decoder->state) {
+		case STATE_ENDED:
+			return PUSH_DECODER_END;
+
+		case STATE_SYNC:
+			if (ogg_sync_pageout(&decoder->oy, &decoder->og) != 1) {
+				if (decoder->input_ended) {
+					decoder->state = STATE_ENDED;
+					return PUSH_DECODER_END;
+				}
+				/* a whole read without a page, must not be Vorbis data */
+				if (decoder->unsynced >= SYNC_LIMIT) {
+					decoder->state = STATE_ENDED;
+					return INVALID_OGG_BITSTREAM;
+				}
+				return PUSH_DECODER_NEED_INPUT;
+			}
+			if ((result = open_stream(decoder)) != 0) {
+				decoder->state = STATE_ENDED;
+				return result;
+			}
+			break;
+
+		case STATE_HEADERS:
+			result = read_headers(decoder);
+			if (result <= 0) {
+				if (result < 0) {
+					decoder->state = STATE_ENDED;
+				}
+				return result;
+			}
+			if (vorbis_synthesis_init(&decoder->vd, &decoder->vi) != 0) {
+				/* corrupt header, skip the stream like the feed driven decoder */
+				close_stream(decoder);
+				break;
+			}
+			vorbis_block_init(&decoder->vd, &decoder->vb);
+			decoder->synthesis_open = 1;
+			decoder->frame_bytes = pcm_convert_bytes_per_sample(decoder->convert.format) * decoder->vi.channels;
+			decoder->state = STATE_AUDIO;
+			return PUSH_DECODER_STREAM;
+
+		case STATE_AUDIO: {
+			float **pcm;
+			int samples = vorbis_synthesis_pcmout(&decoder->vd, &pcm);
+			if (samples > 0) {
+				int frames = capacity / decoder->frame_bytes;
+				if (frames <= 0) {
+					return 0;
+				}
+				if (samples > frames) {
+					samples = frames;
+				}
+				pcm_convert(&decoder->convert, pcm, decoder->vi.channels, samples, out);
+				vorbis_synthesis_read(&decoder->vd, samples);
+				decoder->decoded += samples;
+				return samples * decoder->frame_bytes;
+			}
+			result = ogg_stream_packetout(&decoder->os, &decoder->op);
+			if (result == 1) {
+				if (vorbis_synthesis(&decoder->vb, &decoder->op) == 0) {
+					vorbis_synthesis_blockin(&decoder->vd, &decoder->vb);
+				}
+				break;
+			}
+			if (result < 0) {
+				/* missing or corrupt data, already complained about at the page */
+				break;
+			}
+			if (decoder->stream_eos) {
+				close_stream(decoder);
+				break;
+			}
+			result = ogg_sync_pageout(&decoder->oy, &decoder->og);
+			if (result == 0) {
+				if (decoder->input_ended) {
+					close_stream(decoder);
+					decoder->state = STATE_ENDED;
+					return PUSH_DECODER_END;
+				}
+				return PUSH_DECODER_NEED_INPUT;
+			}
+			if (result == 1) {
+				ogg_stream_pagein(&decoder->os, &decoder->og);
+				if (ogg_page_eos(&decoder->og)) {
+					decoder->stream_eos = 1;
+				}
+			}
+			break;
+		}
+		}
+	}
+}
+
+int push_decoder_read(push_decoder *decoder, void *out, int capacity) {
+	ogg_arena *previous = ogg_arena_use(decoder->arena);
+	int result = read_pcm(decoder, out, capacity);
+	ogg_arena_use(previous);
+	return result;
+}
+
+int push_decoder_channels(const push_decoder *decoder) {
+	return decoder->vi.channels;
+}
+
+int push_decoder_rate(const push_decoder *decoder) {
+	return (int) decoder->vi.rate;
+}
+
+const char *push_decoder_vendor(const push_decoder *decoder) {
+	return decoder->vc.vendor;
+}
+
+ogg_int64_t push_decoder_decoded(const push_decoder *decoder) {
+	return decoder->decoded;
+}
+
+ogg_int64_t push_decoder_clipped(const push_decoder *decoder) {
+	return decoder->convert.clipped;
+}
+
+ogg_int64_t push_decoder_peak_bytes(const push_decoder *decoder) {
+	return ogg_arena_peak(decoder->arena);
+}
+
+void push_decoder_free(push_decoder *decoder) {
+	ogg_arena *previous;
+
+	if (decoder == NULL) {
+		return;
+	}
+	previous = ogg_arena_use(decoder->arena);
+	close_stream(decoder);
+	ogg_sync_clear(&decoder->oy);
+	ogg_arena_use(previous);
+	ogg_arena_release(decoder->arena);
+	free(decoder);
+}
@@ -0,0 +1,61 @@
+/* Decodes an Ogg Vorbis stream the caller pushes in, without calling back
+ * into the caller. Input is written straight into memory the decoder hands
+ * out and pcm is converted straight into memory the caller hands in, so a
+ * foreign caller can keep both in buffers it shares with native code. Only
+ * fixed width types cross the interface, there are no layouts that differ
+ * between platforms.
+ */
+#ifndef _PUSH_DECODER_H
+#define _PUSH_DECODER_H
+
+#include <ogg/os_types.h>
+#include "foreign_api.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* what push_decoder_read returns besides pcm and the decode_file result codes */
+#define PUSH_DECODER_NEED_INPUT 0
+#define PUSH_DECODER_STREAM -1
+#define PUSH_DECODER_END -2
+
+typedef struct push_decoder push_decoder;
+
+//A decoder converting to PCM_FORMAT_* scaled by gain, NULL if out of memory
+FOREIGN_API push_decoder *push_decoder_new(int format, int dither, float gain);
+
+//Memory for up to size more bytes of input, valid until push_decoder_wrote
+FOREIGN_API unsigned char *push_decoder_buffer(push_decoder *decoder, int size);
+
+//Takes in the bytes written to the buffer, 0 ends the input
+FOREIGN_API void push_decoder_wrote(push_decoder *decoder, int bytes);
+
+//Decodes as many whole interleaved frames as fit in capacity bytes of out, which must hold at least one. Returns the bytes
+//written, PUSH_DECODER_NEED_INPUT, PUSH_DECODER_STREAM once the headers of a stream are read, PUSH_DECODER_END once the input
+//ended or a negative result code
+FOREIGN_API int push_decoder_read(push_decoder *decoder, void *out, int capacity);
+
+//The layout of the stream being decoded, valid from PUSH_DECODER_STREAM on
+FOREIGN_API int push_decoder_channels(const push_decoder *decoder);
+
+FOREIGN_API int push_decoder_rate(const push_decoder *decoder);
+
+//The vendor string of the stream being decoded, owned by the decoder
+FOREIGN_API const char *push_decoder_vendor(const push_decoder *decoder);
+
+//Sample frames decoded so far, over all streams
+FOREIGN_API ogg_int64_t push_decoder_decoded(const push_decoder *decoder);
+
+//Channel samples clipped so far
+FOREIGN_API ogg_int64_t push_decoder_clipped(const push_decoder *decoder);
+
+//The most bytes the decoder state took up at once
+FOREIGN_API ogg_int64_t push_decoder_peak_bytes(const push_decoder *decoder);
+
+FOREIGN_API void push_decoder_free(push_decoder *decoder);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
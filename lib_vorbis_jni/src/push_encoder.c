@@ -0,0 +1,197 @@
+/* The encode loop of the feed driven encoder turned inside out. Pcm is
+ * only handed to libvorbis when it is written, the analysis runs when the
+ * caller asks for a page and stops as soon as one is ready, so the caller
+ * drives and nothing is buffered beyond what libvorbis keeps anyway. Pages
+ * come out as the feed driven encoder writes them, early flushes for the
+ * maximum latency included. */
+
+#include <stdlib.h>
+#include <string.h>
+#include <vorbis/vorbisenc.h>
+#include "encode_settings.h"
+#include "push_encoder.h"
+
+struct push_encoder {
+	ogg_arena *arena;       /* holds everything libogg and libvorbis allocate */
+	int channels;
+	int started;            /* the headers are in the stream */
+	int flushing_headers;   /* and not all out in pages yet */
+	int ended;
+	ogg_int64_t max_latency_samples;
+	ogg_int64_t packet_granulepos;
+	ogg_int64_t page_granulepos;
+
+	ogg_stream_state os;
+	ogg_page og;
+	ogg_packet op;
+	vorbis_info vi;
+	vorbis_comment vc;
+	vorbis_dsp_state vd;
+	vorbis_block vb;
+};
+
+push_encoder *push_encoder_new(int channels, int rate, float quality, int bitrate, int min_bitrate, int max_bitrate,
+		int reservoir_bits, double reservoir_bias, int speed, int max_latency_millis) {
+	push_encoder *encoder = calloc(1, sizeof(push_encoder));
+	encode_settings settings = { rate, channels, quality, bitrate, speed, NULL, 0, max_latency_millis, min_bitrate,
+			max_bitrate, reservoir_bits, reservoir_bias };
+	ogg_arena *previous;
+
+	if (encoder == NULL) {
+		return NULL;
+	}
+	encoder->arena = ogg_arena_acquire();
+	previous = ogg_arena_use(encoder->arena);
+	vorbis_info_init(&encoder->vi);
+	if (encode_settings_setup(&encoder->vi, channels, rate, &settings)) {
+		ogg_arena_use(previous);
+		ogg_arena_release(encoder->arena);
+		free(encoder);
+		return NULL;
+	}
+	encoder->channels = channels;
+	encoder->max_latency_samples = (ogg_int64_t) max_latency_millis * rate / 1000;
+
+	/* the comments are all the caller's, there is no default encoder tag */
+	vorbis_comment_init(&encoder->vc);
+	vorbis_analysis_init(&encoder->vd, &encoder->vi);
+	vorbis_block_init(&encoder->vd, &encoder->vb);
+	ogg_stream_init(&encoder->os, encode_settings_serial());
+	ogg_arena_use(previous);
+	return encoder;
+}
+
+int push_encoder_comment(push_encoder *encoder, const char *comment) {
+	ogg_arena *previous;
+
+	if (encoder->started) {
+		return -1;
+	}
+	previous = ogg_arena_use(encoder->arena);
+	vorbis_comment_add(&encoder->vc, comment);
+	ogg_arena_use(previous);
+	return 0;
+}
+
+/* puts the three headers in the stream, the comments are final from here on */
+static void start(push_encoder *encoder) {
+	ogg_packet header;
+	ogg_packet header_comm;
+	ogg_packet header_code;
+
+	vorbis_analysis_headerout(&encoder->vd, &encoder->vc, &header, &header_comm, &header_code);
+	ogg_stream_packetin(&encoder->os, &header);
+	ogg_stream_packetin(&encoder->os, &header_comm);
+	ogg_stream_packetin(&encoder->os, &header_code);
+	encoder->started = 1;
+	encoder->flushing_headers = 1;
+}
+
+static void write_pcm(push_encoder *encoder, const unsigned char *pcm, int bytes) {
+	int frames = bytes / (2 * encoder->channels);
+	float **buffer;
+	int i, channel;
+
+	if (!encoder->started) {
+		start(encoder);
+	}
+	if (frames <= 0) {
+		/* the end of the stream, libvorbis marks it in the last page */
+		vorbis_analysis_wrote(&encoder->vd, 0);
+		return;
+	}
+	buffer = vorbis_analysis_buffer(&encoder->vd, frames);
+	for (i = 0; i < frames; i++) {
+		for (channel = 0; channel < encoder->channels; channel++) {
+			const unsigned char *sample = pcm + (i * encoder->channels + channel) * 2;
+			buffer[channel][i] = (ogg_int16_t) (sample[0] | (sample[1] << 8)) / 32768.f;
+		}
+	}
+	vorbis_analysis_wrote(&encoder->vd, frames);
+}
+
+void push_encoder_write(push_encoder *encoder, const unsigned char *pcm, int bytes) {
+	ogg_arena *previous = ogg_arena_use(encoder->arena);
+	write_pcm(encoder, pcm, bytes);
+	ogg_arena_use(previous);
+}
+
+static int copy_page(push_encoder *encoder, unsigned char *out) {
+	memcpy(out, encoder->og.header, encoder->og.header_len);
+	memcpy(out + encoder->og.header_len, encoder->og.body, encoder->og.body_len);
+	return encoder->og.header_len + encoder->og.body_len;
+}
+
+static int next_page(push_encoder *encoder, unsigned char *out) {
+	if (!encoder->started) {
+		start(encoder);
+	}
+	while (!encoder->ended) {
+		int result;
+
+		/* the audio has to start on a fresh page */
+		if (encoder->flushing_headers) {
+			if (ogg_stream_flush(&encoder->os, &encoder->og)) {
+				return copy_page(encoder, out);
+			}
+			encoder->flushing_headers = 0;
+		}
+
+		result = ogg_stream_pageout(&encoder->os, &encoder->og);
+		if (result == 0 && encoder->max_latency_samples > 0
+				&& encoder->packet_granulepos - encoder->page_granulepos >= encoder->max_latency_samples) {
+			result = ogg_stream_flush(&encoder->os, &encoder->og);
+		}
+		if (result != 0) {
+			/* a page no packet ends on has no granule position, the latency runs on from the last one that had */
+			if (ogg_page_granulepos(&encoder->og) >= 0) {
+				encoder->page_granulepos = ogg_page_granulepos(&encoder->og);
+			}
+			if (ogg_page_eos(&encoder->og)) {
+				encoder->ended = 1;
+			}
+			return copy_page(encoder, out);
+		}
+
+		if (vorbis_bitrate_flushpacket(&encoder->vd, &encoder->op)) {
+			ogg_stream_packetin(&encoder->os, &encoder->op);
+			encoder->packet_granulepos = encoder->op.granulepos;
+			continue;
+		}
+		if (vorbis_analysis_blockout(&encoder->vd, &encoder->vb) == 1) {
+			vorbis_analysis(&encoder->vb, NULL);
+			vorbis_bitrate_addblock(&encoder->vb);
+			continue;
+		}
+		break;
+	}
+	return 0;
+}
+
+int push_encoder_page(push_encoder *encoder, unsigned char *out) {
+	ogg_arena *previous = ogg_arena_use(encoder->arena);
+	int length = next_page(encoder, out);
+	ogg_arena_use(previous);
+	return length;
+}
+
+ogg_int64_t push_encoder_granulepos(const push_encoder *encoder) {
+	return encoder->page_granulepos;
+}
+
+void push_encoder_free(push_encoder *encoder) {
+	ogg_arena *previous;
+
+	if (encoder == NULL) {
+		return;
+	}
+	previous = ogg_arena_use(encoder->arena);
+	ogg_stream_clear(&encoder->os);
+	vorbis_block_clear(&encoder->vb);
+	vorbis_dsp_clear(&encoder->vd);
+	vorbis_comment_clear(&encoder->vc);
+	vorbis_info_clear(&encoder->vi);
+	ogg_arena_use(previous);
+	ogg_arena_release(encoder->arena);
+	free(encoder);
+}
@@ -0,0 +1,44 @@
+/* Encodes pcm the caller pushes in to Ogg Vorbis pages the caller pulls
+ * out, without calling back into the caller. Each page is copied straight
+ * into memory the caller hands in, so a foreign caller can keep pcm and
+ * pages in buffers it shares with native code. Only fixed width types
+ * cross the interface, there are no layouts that differ between platforms.
+ */
+#ifndef _PUSH_ENCODER_H
+#define _PUSH_ENCODER_H
+
+#include <ogg/os_types.h>
+#include "foreign_api.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/* the largest page there is, header and body */
+#define PUSH_ENCODER_MAX_PAGE 65307
+
+typedef struct push_encoder push_encoder;
+
+//An encoder with the settings of encode_settings, NULL if libvorbis cannot encode them or out of memory
+FOREIGN_API push_encoder *push_encoder_new(int channels, int rate, float quality, int bitrate, int min_bitrate, int max_bitrate,
+		int reservoir_bits, double reservoir_bias, int speed, int max_latency_millis);
+
+//Adds a utf-8 KEY=value comment, only before the first page is taken out, returns 0 or -1 if it is too late
+FOREIGN_API int push_encoder_comment(push_encoder *encoder, const char *comment);
+
+//Takes in bytes of interleaved 16 bit little-endian pcm, whole frames only, 0 ends the stream
+FOREIGN_API void push_encoder_write(push_encoder *encoder, const unsigned char *pcm, int bytes);
+
+//Encodes until a page is ready and copies it to out, which must hold PUSH_ENCODER_MAX_PAGE bytes. Returns the bytes of the
+//page or 0 once all the pcm taken in so far is in pages
+FOREIGN_API int push_encoder_page(push_encoder *encoder, unsigned char *out);
+
+//The granule position of the page taken out last
+FOREIGN_API ogg_int64_t push_encoder_granulepos(const push_encoder *encoder);
+
+FOREIGN_API void push_encoder_free(push_encoder *encoder);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
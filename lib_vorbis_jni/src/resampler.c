@@ -0,0 +1,206 @@
+/* Windowed sinc resampling. The filter is a Blackman windowed sinc cut off
+ * just below the lower of the two Nyquist frequencies, tabled finely enough
+ * that interpolating between entries stays well below what the encoder it
+ * feeds can resolve. The weights are worked out once per output frame and
+ * shared by its channels. The position in the input advances by an exact
+ * fraction of the two rates, so long streams do not drift. */
+
+#include <stdlib.h>
+#include <string.h>
+#include <math.h>
+#include "resampler.h"
+
+#ifndef M_PI
+#define M_PI 3.14159265358979323846
+#endif
+
+/* zero crossings of the filter on each side, the sharper the longer */
+#define ZERO_CROSSINGS 16
+/* table entries per input sample */
+#define TABLE_RESOLUTION 512
+/* where the pass band ends, as a fraction of the lower Nyquist frequency */
+#define ROLLOFF 0.95
+/* input taken into the history at a time */
+#define CHUNK_FRAMES 4096
+
+struct resampler {
+	int channels;
+	long in_step;        /* the rates reduced by their common divisor */
+	long out_step;
+	int half;            /* taps on each side of an output, in input samples */
+	float *table;        /* the filter from its centre outwards */
+	float *weights;      /* the taps of the output being worked out */
+	float **history;     /* per channel, the input the filter still reaches */
+	long capacity;
+	long filled;
+	long position;       /* history index of the input sample at or just before the next output */
+	long phase;          /* how far past position the next output lies, in 1/out_step */
+	ogg_int64_t consumed;
+	ogg_int64_t produced;
+};
+
+static long gcd(long a, long b) {
+	while (b != 0) {
+		long t = a % b;
+		a = b;
+		b = t;
+	}
+	return a;
+}
+
+resampler *resampler_new(int channels, long in_rate, long out_rate) {
+	resampler *r = calloc(1, sizeof(resampler));
+	long divisor = gcd(in_rate, out_rate);
+	double cutoff = ROLLOFF * (out_rate < in_rate ? (double) out_rate / in_rate : 1.0);
+	long entries, k;
+	int c;
+
+	if (r == NULL) {
+		return NULL;
+	}
+	r->channels = channels;
+	r->in_step = in_rate / divisor;
+	r->out_step = out_rate / divisor;
+	r->half = (int) ceil(ZERO_CROSSINGS / cutoff);
+	r->capacity = 2 * r->half + CHUNK_FRAMES;
+
+	entries = (long) r->half * TABLE_RESOLUTION + 2;
+	r->table = malloc(entries * sizeof(float));
+	r->weights = malloc(2 * r->half * sizeof(float));
+	r->history = calloc(channels, sizeof(float *));
+	if (r->table == NULL || r->weights == NULL || r->history == NULL) {
+		resampler_free(r);
+		return NULL;
+	}
+	for (c = 0; c < channels; c++) {
+		if ((r->history[c] = calloc(r->capacity, sizeof(float))) == NULL) {
+			resampler_free(r);
+			return NULL;
+		}
+	}
+
+	for (k = 0; k < entries; k++) {
+		double x = (double) k / TABLE_RESOLUTION;
+		double t = x / r->half;
+		double sinc = k == 0 ? 1 : sin(M_PI * cutoff * x) / (M_PI * cutoff * x);
+		double window = t >= 1 ? 0 : 0.42 + 0.5 * cos(M_PI * t) + 0.08 * cos(2 * M_PI * t);
+		r->table[k] = (float) (cutoff * sinc * window);
+	}
+
+	/* the first output falls on the first input, with silence before it */
+	r->filled = r->half;
+	r->position = r->half;
+	return r;
+}
+
+long resampler_max_output(const resampler *r, long in_frames) {
+	/* what is held back in the history is at most half a filter */
+	return (long) ((((ogg_int64_t) r->half + in_frames) * r->out_step + r->in_step - 1) / r->in_step) + 1;
+}
+
+/* filters every output the history reaches far enough for, up to limit in all unless it is negative */
+static long produce(resampler *r, float **out, long offset, ogg_int64_t limit) {
+	int taps = 2 * r->half;
+	long written = 0;
+
+	while (r->position + r->half < r->filled && (limit < 0 || r->produced < limit)) {
+		double fraction = (double) r->phase / r->out_step;
+		long first = r->position - r->half + 1;
+		int j, c;
+
+		for (j = 0; j < taps; j++) {
+			double x = fabs(j - r->half + 1 - fraction) * TABLE_RESOLUTION;
+			long index = (long) x;
+			float weight = (float) (x - index);
+			r->weights[j] = r->table[index] + (r->table[index + 1] - r->table[index]) * weight;
+		}
+		for (c = 0; c < r->channels; c++) {
+			const float *in = r->history[c] + first;
+			float sum = 0;
+			for (j = 0; j < taps; j++) {
+				sum += in[j] * r->weights[j];
+			}
+			out[c][offset + written] = sum;
+		}
+		written++;
+		r->produced++;
+		r->phase += r->in_step;
+		r->position += r->phase / r->out_step;
+		r->phase %= r->out_step;
+	}
+	return written;
+}
+
+/* drops the input no output will reach any more */
+static void compact(resampler *r) {
+	long drop = r->position - r->half + 1;
+	int c;
+
+	if (drop <= 0) {
+		return;
+	}
+	if (drop > r->filled) {
+		/* a big step down skips input that has not even arrived yet */
+		drop = r->filled;
+	}
+	for (c = 0; c < r->channels; c++) {
+		memmove(r->history[c], r->history[c] + drop, (r->filled - drop) * sizeof(float));
+	}
+	r->filled -= drop;
+	r->position -= drop;
+}
+
+long resampler_process(resampler *r, float **in, long in_frames, float **out) {
+	long written = 0;
+	long done = 0;
+	int c;
+
+	while (done < in_frames) {
+		long count = in_frames - done;
+		if (count > r->capacity - r->filled) {
+			count = r->capacity - r->filled;
+		}
+		for (c = 0; c < r->channels; c++) {
+			memcpy(r->history[c] + r->filled, in[c] + done, count * sizeof(float));
+		}
+		r->filled += count;
+		r->consumed += count;
+		done += count;
+		written += produce(r, out, written, -1);
+		compact(r);
+	}
+	return written;
+}
+
+long resampler_flush(resampler *r, float **out) {
+	/* as many outputs as fall within the input */
+	ogg_int64_t total = (r->consumed * r->out_step + r->in_step - 1) / r->in_step;
+	long pad = r->half + 1;
+	long written;
+	int c;
+
+	for (c = 0; c < r->channels; c++) {
+		memset(r->history[c] + r->filled, 0, pad * sizeof(float));
+	}
+	r->filled += pad;
+	written = produce(r, out, 0, total);
+	compact(r);
+	return written;
+}
+
+void resampler_free(resampler *r) {
+	int c;
+
+	if (r == NULL) {
+		return;
+	}
+	if (r->history != NULL) {
+		for (c = 0; c < r->channels; c++) {
+			free(r->history[c]);
+		}
+		free(r->history);
+	}
+	free(r->weights);
+	free(r->table);
+	free(r);
+}
@@ -0,0 +1,33 @@
+/* Converts planar float audio from one sample rate to another with a
+ * windowed sinc filter, a block at a time, so a stream can be resampled
+ * on its way into an encoder.
+ */
+#ifndef _RESAMPLER_H
+#define _RESAMPLER_H
+
+#include <ogg/os_types.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+typedef struct resampler resampler;
+
+//Creates a resampler from in_rate to out_rate, NULL if out of memory
+resampler *resampler_new(int channels, long in_rate, long out_rate);
+
+//The most frames resampler_process can write for in_frames more input, resampler_flush for 0
+long resampler_max_output(const resampler *r, long in_frames);
+
+//Resamples in_frames of planar input into out, which has room for resampler_max_output frames, returns the frames written
+long resampler_process(resampler *r, float **in, long in_frames, float **out);
+
+//Writes what is left of the filtered input once the input has ended, so the output is exactly as long as the input
+long resampler_flush(resampler *r, float **out);
+
+void resampler_free(resampler *r);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,378 @@
+/* One decode, many encodes. The source is decoded to planar float once per
+ * block and every rung takes that block straight into its analysis buffer,
+ * through its own resampler when it runs at another rate. Rungs share
+ * nothing but the read only block, so each can be encoded on its own
+ * thread, and the decoder fills the other block in the meantime. */
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <ctype.h>
+#include <vorbis/vorbisenc.h>
+#include "pcm_convert.h"
+#include "pull_decoder.h"
+#include "resampler.h"
+#include "transcoder.h"
+
+#define IO_BUFFER_LENGTH (256*1024)
+
+struct transcoder {
+	pull_decoder *decoder;
+	int channels;
+	long rate;
+	int block_frames;
+	float **buffers[2];
+};
+
+struct transcoder_rung {
+	ogg_arena *arena;       /* holds the encoder state */
+	FILE *out;              /* NULL when the pages are kept for draining */
+	unsigned char *pages;
+	long pages_length;
+	long pages_read;
+	long pages_capacity;
+	resampler *resampler;   /* NULL at the rate of the source */
+	int channels;
+	long rate;
+	int ended;
+	int error;
+	ogg_int64_t samples;
+	ogg_int64_t bytes;
+
+	ogg_stream_state os;
+	vorbis_info vi;
+	vorbis_comment vc;
+	vorbis_dsp_state vd;
+	vorbis_block vb;
+};
+
+static float **new_planes(int channels, int frames) {
+	float **planes = calloc(channels, sizeof(float *));
+	int c;
+
+	if (planes == NULL) {
+		return NULL;
+	}
+	for (c = 0; c < channels; c++) {
+		if ((planes[c] = malloc(frames * sizeof(float))) == NULL) {
+			while (--c >= 0) {
+				free(planes[c]);
+			}
+			free(planes);
+			return NULL;
+		}
+	}
+	return planes;
+}
+
+static void free_planes(float **planes, int channels) {
+	int c;
+
+	if (planes == NULL) {
+		return;
+	}
+	for (c = 0; c < channels; c++) {
+		free(planes[c]);
+	}
+	free(planes);
+}
+
+transcoder *transcoder_open(const char *path, int block_frames) {
+	transcoder *t = calloc(1, sizeof(transcoder));
+
+	if (t == NULL) {
+		return NULL;
+	}
+	/* only float blocks are read, the format of the converter is never used */
+	t->decoder = pull_decoder_open(path, PCM_FORMAT_S16, 0, 1.f);
+	if (t->decoder == NULL) {
+		free(t);
+		return NULL;
+	}
+	t->channels = pull_decoder_channels(t->decoder);
+	t->rate = pull_decoder_rate(t->decoder);
+	t->block_frames = block_frames;
+	t->buffers[0] = new_planes(t->channels, block_frames);
+	t->buffers[1] = new_planes(t->channels, block_frames);
+	if (t->buffers[0] == NULL || t->buffers[1] == NULL) {
+		transcoder_close(t);
+		return NULL;
+	}
+	return t;
+}
+
+int transcoder_channels(const transcoder *t) {
+	return t->channels;
+}
+
+long transcoder_rate(const transcoder *t) {
+	return t->rate;
+}
+
+ogg_int64_t transcoder_total(const transcoder *t) {
+	return pull_decoder_total(t->decoder);
+}
+
+long transcoder_decode(transcoder *t, int buffer) {
+	float **block = t->buffers[buffer];
+	long frames = 0;
+	int c;
+
+	/* vorbisfile hands out at most a vorbis block per call */
+	while (frames < t->block_frames) {
+		float **pcm;
+		long got = pull_decoder_read_float(t->decoder, &pcm, t->block_frames - frames);
+		if (got < 0) {
+			return got;
+		}
+		if (got == 0) {
+			break;
+		}
+		for (c = 0; c < t->channels; c++) {
+			memcpy(block[c] + frames, pcm[c], got * sizeof(float));
+		}
+		frames += got;
+	}
+	return frames;
+}
+
+/* writes a page to the file or keeps it for draining */
+static int write_page(transcoder_rung *rung, ogg_page *og) {
+	long length = og->header_len + og->body_len;
+
+	if (rung->out != NULL) {
+		if (fwrite(og->header, 1, og->header_len, rung->out) != (size_t) og->header_len
+				|| fwrite(og->body, 1, og->body_len, rung->out) != (size_t) og->body_len) {
+			return 0;
+		}
+	} else {
+		if (rung->pages_read > 0) {
+			memmove(rung->pages, rung->pages + rung->pages_read, rung->pages_length - rung->pages_read);
+			rung->pages_length -= rung->pages_read;
+			rung->pages_read = 0;
+		}
+		if (rung->pages_length + length > rung->pages_capacity) {
+			long capacity = rung->pages_capacity > 0 ? rung->pages_capacity : 65536;
+			unsigned char *pages;
+			while (capacity < rung->pages_length + length) {
+				capacity *= 2;
+			}
+			if ((pages = realloc(rung->pages, capacity)) == NULL) {
+				return 0;
+			}
+			rung->pages = pages;
+			rung->pages_capacity = capacity;
+		}
+		memcpy(rung->pages + rung->pages_length, og->header, og->header_len);
+		memcpy(rung->pages + rung->pages_length + og->header_len, og->body, og->body_len);
+		rung->pages_length += length;
+	}
+	rung->bytes += length;
+	return 1;
+}
+
+/* takes every block the encoder has ready through to pages */
+static void pump(transcoder_rung *rung) {
+	ogg_packet op;
+	ogg_page og;
+
+	while (!rung->ended && vorbis_analysis_blockout(&rung->vd, &rung->vb) == 1) {
+		vorbis_analysis(&rung->vb, NULL);
+		vorbis_bitrate_addblock(&rung->vb);
+
+		while (!rung->ended && vorbis_bitrate_flushpacket(&rung->vd, &op)) {
+			ogg_stream_packetin(&rung->os, &op);
+
+			while (!rung->ended && ogg_stream_pageout(&rung->os, &og)) {
+				if (!write_page(rung, &og)) {
+					rung->error = ENCODE_FILE_ERROR_WRITING_OUTPUT;
+					rung->ended = 1;
+				} else if (ogg_page_eos(&og)) {
+					rung->ended = 1;
+				}
+			}
+		}
+	}
+}
+
+/* adds the comments of the source, but for its encoder tag which no longer applies */
+static void copy_comments(vorbis_comment *vc, const vorbis_comment *source) {
+	static const char encoder[] = "ENCODER=";
+	int i, k;
+
+	for (i = 0; source != NULL && i < source->comments; i++) {
+		const char *comment = source->user_comments[i];
+		for (k = 0; encoder[k] != 0 && toupper((unsigned char) comment[k]) == encoder[k]; k++);
+		if (encoder[k] != 0) {
+			vorbis_comment_add(vc, comment);
+		}
+	}
+}
+
+static transcoder_rung *new_rung(transcoder *t, const encode_settings *settings, long rate, int source_comments,
+		const char *out_path, int *error) {
+	transcoder_rung *rung = calloc(1, sizeof(transcoder_rung));
+	ogg_packet header;
+	ogg_packet header_comm;
+	ogg_packet header_code;
+	ogg_page og;
+
+	if (rung == NULL) {
+		*error = ENCODE_FILE_ERROR_INITIALIZING;
+		return NULL;
+	}
+	rung->channels = t->channels;
+	rung->rate = rate > 0 ? rate : t->rate;
+
+	vorbis_info_init(&rung->vi);
+	if (encode_settings_setup(&rung->vi, rung->channels, rung->rate, settings)) {
+		free(rung);
+		*error = ENCODE_FILE_ERROR_INITIALIZING;
+		return NULL;
+	}
+	if (rung->rate != t->rate && (rung->resampler = resampler_new(rung->channels, t->rate, rung->rate)) == NULL) {
+		vorbis_info_clear(&rung->vi);
+		free(rung);
+		*error = ENCODE_FILE_ERROR_INITIALIZING;
+		return NULL;
+	}
+	if (out_path != NULL) {
+		if ((rung->out = fopen(out_path, "wb")) == NULL) {
+			resampler_free(rung->resampler);
+			vorbis_info_clear(&rung->vi);
+			free(rung);
+			*error = ENCODE_FILE_ERROR_WRITING_OUTPUT;
+			return NULL;
+		}
+		setvbuf(rung->out, NULL, _IOFBF, IO_BUFFER_LENGTH);
+	}
+
+	encode_settings_comments(&rung->vc, settings);
+	if (source_comments) {
+		copy_comments(&rung->vc, pull_decoder_comment(t->decoder));
+	}
+	vorbis_analysis_init(&rung->vd, &rung->vi);
+	vorbis_block_init(&rung->vd, &rung->vb);
+	ogg_stream_init(&rung->os, encode_settings_serial());
+
+	vorbis_analysis_headerout(&rung->vd, &rung->vc, &header, &header_comm, &header_code);
+	ogg_stream_packetin(&rung->os, &header);
+	ogg_stream_packetin(&rung->os, &header_comm);
+	ogg_stream_packetin(&rung->os, &header_code);
+
+	/* the audio has to start on a fresh page */
+	while (!rung->error && ogg_stream_flush(&rung->os, &og)) {
+		if (!write_page(rung, &og)) {
+			rung->error = ENCODE_FILE_ERROR_WRITING_OUTPUT;
+			rung->ended = 1;
+		}
+	}
+	return rung;
+}
+
+transcoder_rung *transcoder_rung_new(transcoder *t, const encode_settings *settings, long rate, int source_comments,
+		const char *out_path, int *error) {
+	ogg_arena *arena = ogg_arena_acquire();
+	ogg_arena *previous = ogg_arena_use(arena);
+	transcoder_rung *rung = new_rung(t, settings, rate, source_comments, out_path, error);
+
+	ogg_arena_use(previous);
+	if (rung == NULL) {
+		ogg_arena_release(arena);
+		return NULL;
+	}
+	rung->arena = arena;
+	return rung;
+}
+
+int transcoder_rung_encode(transcoder_rung *rung, const transcoder *t, int buffer, long frames) {
+	float **block = t->buffers[buffer];
+	float **analysis;
+	long written;
+	int c;
+	ogg_arena *previous;
+
+	if (rung->ended) {
+		return rung->error;
+	}
+	previous = ogg_arena_use(rung->arena);
+	if (rung->resampler != NULL) {
+		analysis = vorbis_analysis_buffer(&rung->vd, resampler_max_output(rung->resampler, frames));
+		written = frames > 0 ? resampler_process(rung->resampler, block, frames, analysis)
+				: resampler_flush(rung->resampler, analysis);
+	} else {
+		analysis = vorbis_analysis_buffer(&rung->vd, frames);
+		for (c = 0; c < rung->channels; c++) {
+			memcpy(analysis[c], block[c], frames * sizeof(float));
+		}
+		written = frames;
+	}
+	/* writing nothing would end the stream */
+	if (written > 0) {
+		vorbis_analysis_wrote(&rung->vd, written);
+		rung->samples += written;
+	}
+	if (frames == 0) {
+		vorbis_analysis_wrote(&rung->vd, 0);
+	}
+	pump(rung);
+	ogg_arena_use(previous);
+	return rung->error;
+}
+
+long transcoder_rung_drain(transcoder_rung *rung, unsigned char *out, long capacity) {
+	long count = rung->pages_length - rung->pages_read;
+
+	if (count > capacity) {
+		count = capacity;
+	}
+	memcpy(out, rung->pages + rung->pages_read, count);
+	rung->pages_read += count;
+	if (rung->pages_read == rung->pages_length) {
+		rung->pages_read = 0;
+		rung->pages_length = 0;
+	}
+	return count;
+}
+
+void transcoder_rung_result(const transcoder_rung *rung, encode_file_result *result) {
+	result->sample_rate = rung->rate;
+	result->channels = rung->channels;
+	result->samples = rung->samples;
+	result->bytes_written = rung->bytes;
+	result->peak_bytes = ogg_arena_peak(rung->arena);
+}
+
+int transcoder_rung_free(transcoder_rung *rung) {
+	int ret = ENCODE_FILE_SUCCESS;
+	ogg_arena *previous;
+
+	if (rung == NULL) {
+		return ret;
+	}
+	if (rung->out != NULL && fclose(rung->out) != 0) {
+		ret = ENCODE_FILE_ERROR_WRITING_OUTPUT;
+	}
+	previous = ogg_arena_use(rung->arena);
+	ogg_stream_clear(&rung->os);
+	vorbis_block_clear(&rung->vb);
+	vorbis_dsp_clear(&rung->vd);
+	vorbis_comment_clear(&rung->vc);
+	vorbis_info_clear(&rung->vi);
+	ogg_arena_use(previous);
+	ogg_arena_release(rung->arena);
+	resampler_free(rung->resampler);
+	free(rung->pages);
+	free(rung);
+	return ret;
+}
+
+void transcoder_close(transcoder *t) {
+	if (t == NULL) {
+		return;
+	}
+	free_planes(t->buffers[0], t->channels);
+	free_planes(t->buffers[1], t->channels);
+	pull_decoder_close(t->decoder);
+	free(t);
+}
@@ -0,0 +1,58 @@
+/* Decodes an Ogg Vorbis file once and encodes the audio into any number of
+ * renditions, each with its own settings and sample rate. The source is
+ * decoded a block at a time into one of two planar float buffers, so the
+ * next block can be decoded while the renditions encode the last one, and
+ * each rendition may be encoded from a different thread.
+ */
+#ifndef _TRANSCODER_H
+#define _TRANSCODER_H
+
+#include <ogg/os_types.h>
+#include "encode_settings.h"
+#include "encode_file.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+typedef struct transcoder transcoder;
+typedef struct transcoder_rung transcoder_rung;
+
+//Opens path for decoding block_frames at a time, NULL if it is not a readable vorbis file or out of memory
+transcoder *transcoder_open(const char *path, int block_frames);
+
+int transcoder_channels(const transcoder *t);
+
+long transcoder_rate(const transcoder *t);
+
+//Length in sample frames
+ogg_int64_t transcoder_total(const transcoder *t);
+
+//Decodes the next block into buffer 0 or 1, returns the frames, 0 at the end or a negative result code.
+//Must not run while rungs encode from the same buffer
+long transcoder_decode(transcoder *t, int buffer);
+
+//Adds a rendition at rate, 0 for the rate of the source, written to out_path or, when that is NULL, kept for
+//transcoder_rung_drain. The comments of the settings are followed by those of the source if source_comments is set.
+//Returns NULL and sets error to one of the encode_file result codes if it cannot be set up
+transcoder_rung *transcoder_rung_new(transcoder *t, const encode_settings *settings, long rate, int source_comments,
+		const char *out_path, int *error);
+
+//Encodes frames of buffer, or ends the stream when frames is 0, returns 0 or one of the encode_file result codes
+int transcoder_rung_encode(transcoder_rung *rung, const transcoder *t, int buffer, long frames);
+
+//Copies up to capacity bytes of the pages kept in memory to out, returns the bytes copied
+long transcoder_rung_drain(transcoder_rung *rung, unsigned char *out, long capacity);
+
+//Fills in the sample rate, channels, frames encoded and bytes of the rendition so far
+void transcoder_rung_result(const transcoder_rung *rung, encode_file_result *result);
+
+//Closes the output file of the rung, returns 0 or ENCODE_FILE_ERROR_WRITING_OUTPUT
+int transcoder_rung_free(transcoder_rung *rung);
+
+void transcoder_close(transcoder *t);
+
+#ifdef __cplusplus
+}
+#endif
+#endif